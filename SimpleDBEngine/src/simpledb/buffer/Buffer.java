@@ -10,21 +10,48 @@ import simpledb.log.LogMgr;
  * the number of times the buffer has been pinned,
  * whether its contents have been modified,
  * and if so, the id and lsn of the modifying transaction.
+ * The lsn of the most recent logged change to a page is kept
+ * in the page itself, in its last LSN_SIZE bytes, so that
+ * recovery can tell which changes a page on disk already holds.
+ * A dirty buffer also keeps the LSN of the first record that
+ * modified it since it was last written (its recovery LSN);
+ * the log must keep the records from there on until the
+ * buffer is written. A transaction may also defer logging its
+ * changes to a page; it then registers a log hook, which writes
+ * them to the log before the page can be written.
+ * <P>
+ * The block assignment and pin count are changed only while
+ * holding the monitor of the stripe that owns the buffer.
+ * The buffer's own monitor protects its modification status,
+ * so that the contents are never written while a transaction
+ * is in the middle of changing them; it also serves as the latch
+ * on which pinners wait while the block is being read in.
  * @author Edward Sciore
  */
 public class Buffer {
+   /**
+    * The number of bytes at the end of each page
+    * that hold the page's LSN.
+    */
+   public static final int LSN_SIZE = Long.BYTES;
    private FileMgr fm;
    private LogMgr lm;
    private Page contents;
    private BlockId blk = null;
    private int pins = 0;
    private int txnum = -1;
-   private int lsn = -1;
+   private int lsnpos;
+   private long recLSN = -1;
+   private Runnable logHook = null;
+   private boolean loading = false;
+   private boolean loadFailed = false;
+   private boolean prefetched = false;
 
    public Buffer(FileMgr fm, LogMgr lm) {
       this.fm = fm;
       this.lm = lm;
       contents = new Page(fm.blockSize());
+      lsnpos = fm.blockSize() - LSN_SIZE;
    }
    
    public Page contents() {
@@ -40,10 +67,20 @@ public class Buffer {
       return blk;
    }
 
-   public void setModified(int txnum, int lsn) {
+   /**
+    * Marks the buffer as modified by the specified transaction.
+    * If the change was logged, the page's LSN becomes
+    * that of the log record.
+    * @param txnum the id of the modifying transaction
+    * @param lsn the LSN of the log record, or -1 if the change was not logged
+    */
+   public synchronized void setModified(int txnum, long lsn) {
       this.txnum = txnum;
-      if (lsn >= 0)
-         this.lsn = lsn;
+      if (lsn >= 0) {
+         contents.setLong(lsnpos, lsn);
+         if (recLSN < 0)
+            recLSN = lsn;
+      }
    }
 
    /**
@@ -55,33 +92,151 @@ public class Buffer {
       return pins > 0;
    }
    
-   public int modifyingTx() {
+   /**
+    * Returns the LSN of the most recent logged change
+    * to the page, or 0 if it has none.
+    * @return the page's LSN
+    */
+   public synchronized long pageLSN() {
+      return contents.getLong(lsnpos);
+   }
+
+   public synchronized int modifyingTx() {
       return txnum;
    }
 
    /**
-    * Reads the contents of the specified block into
-    * the contents of the buffer.
-    * If the buffer was dirty, then its previous contents
-    * are first written to disk.
+    * Return true if the buffer may be chosen
+    * by a replacement strategy.
+    * @return true if the buffer can be replaced
+    */
+   boolean isEvictable() {
+      return pins == 0;
+   }
+
+   /**
+    * Return true if the buffer's contents differ
+    * from its disk block.
+    * @return true if the buffer is dirty
+    */
+   synchronized boolean isModified() {
+      return txnum >= 0;
+   }
+
+   /**
+    * Return the LSN of the first log record that modified
+    * the buffer since it was last written, or -1 if no
+    * logged modification is waiting to be written.
+    * @return the buffer's recovery LSN
+    */
+   synchronized long recoveryLSN() {
+      return recLSN;
+   }
+
+   /**
+    * Assigns the buffer to the specified block,
+    * without reading it.
+    * Until {@link #load()} completes, threads that pin
+    * the buffer will wait in {@link #waitUntilLoaded()}.
+    * The buffer must not be dirty.
     * @param b a reference to the data block
     */
-   void assignToBlock(BlockId b) {
-      flush();
+   synchronized void assignToBlock(BlockId b) {
       blk = b;
-      fm.read(blk, contents);
       pins = 0;
+      loading = true;
+      loadFailed = false;
+      prefetched = false;
+   }
+
+   /**
+    * Reads the contents of the assigned block into
+    * the contents of the buffer, and then releases
+    * any threads waiting for it.
+    */
+   void load() {
+      try {
+         fm.read(blk, contents);
+      }
+      catch(RuntimeException e) {
+         finishLoading(true);
+         throw e;
+      }
+      finishLoading(false);
+   }
+
+   /**
+    * Waits until the buffer's block has been read in.
+    * @throws RuntimeException if the block could not be read
+    */
+   synchronized void waitUntilLoaded() {
+      try {
+         while (loading)
+            wait();
+      }
+      catch(InterruptedException e) {
+         throw new BufferAbortException();
+      }
+      if (loadFailed)
+         throw new RuntimeException("cannot read block " + blk);
+   }
+
+   /**
+    * Marks the buffer as having been read ahead of any pin.
+    */
+   synchronized void setPrefetched() {
+      prefetched = true;
+   }
+
+   /**
+    * Returns true if the buffer was read ahead and
+    * has not been pinned since, and clears the mark.
+    * @return true if this is the first pin of a prefetched block
+    */
+   synchronized boolean takePrefetched() {
+      boolean result = prefetched;
+      prefetched = false;
+      return result;
+   }
+
+   synchronized boolean loadFailed() {
+      return loadFailed;
+   }
+
+   /**
+    * Detaches the buffer from its block.
+    */
+   synchronized void clear() {
+      blk = null;
+      loadFailed = false;
    }
    
+   /**
+    * Register the action that logs the changes to the page
+    * that a transaction has not logged yet, or null once they
+    * are logged. The action runs, holding the buffer's monitor,
+    * before the page is written.
+    * @param hook the action that logs the pending changes
+    */
+   public synchronized void setLogHook(Runnable hook) {
+      logHook = hook;
+   }
+
    /**
     * Write the buffer to its disk block if it is dirty.
+    * Pending changes are logged first.
+    * @return true if the buffer was written
     */
-   void flush() {
-      if (txnum >= 0) {
-         lm.flush(lsn);
-         fm.write(blk, contents);
-         txnum = -1;
-      }
+   synchronized boolean flush() {
+      if (txnum < 0)
+         return false;
+      if (logHook != null)
+         logHook.run();
+      lm.flush(contents.getLong(lsnpos));
+      fm.write(blk, contents);
+      txnum = -1;
+      recLSN = -1;
+      return true;
    }
 
    /**
@@ -97,4 +252,14 @@ public class Buffer {
    void unpin() {
       pins--;
    }
-}
\ No newline at end of file
+
+   /**
+    * Releases the threads waiting for the block to be read in.
+    * @param failed true if the block could not be read
+    */
+   synchronized void finishLoading(boolean failed) {
+      loading = false;
+      loadFailed = failed;
+      notifyAll();
+   }
+}
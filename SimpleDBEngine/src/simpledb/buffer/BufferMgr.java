@@ -1,129 +1,765 @@
 package simpledb.buffer;
 
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
 import simpledb.file.*;
 import simpledb.log.LogMgr;
 
 /**
  * Manages the pinning and unpinning of buffers to blocks.
+ * The buffer pool is partitioned into {@link BufferStripe stripes}
+ * by the hash of the block id, and each stripe has its own
+ * monitor, block table, free list and {@link ReplacementStrategy}.
+ * The manager never holds a stripe monitor while reading or
+ * writing a block: a block being read in is entered into its
+ * stripe's table immediately, and other threads pinning it
+ * wait only on that buffer until the read completes.
+ * Threads that find no unpinned buffer wait in a FIFO queue.
+ * Optionally, a {@link BufferWriter} cleans dirty buffers and a
+ * {@link Prefetcher} reads ahead of sequential scans, each in
+ * its own daemon thread.
  * @author Edward Sciore
  *
  */
 public class BufferMgr {
+   private static final int MIN_STRIPE_SIZE = 16;
    private Buffer[] bufferpool;
-   private int numAvailable;
-   private static final long MAX_TIME = 10000; // 10 seconds
+   private BufferStripe[] stripes;
+   private ReplacementPolicy policy;
+   private AtomicInteger numAvailable;
+   private AtomicLong victimWrites = new AtomicLong();
+   private BufferWriter writer = null;
+   private FileMgr fm;
+   private volatile Prefetcher prefetcher = null;
+   private long maxWaitTime = 10000; // 10 seconds
+   private ReentrantLock waitLock = new ReentrantLock();
+   private Deque<Waiter> waiters = new ArrayDeque<>();
+   private volatile int numWaiting = 0;
+   private int maxWaiting = 0;
+   private long waits = 0, totalWaitTime = 0, longestWaitTime = 0, timeouts = 0;
    
    /**
     * Creates a buffer manager having the specified number 
-    * of buffer slots.
+    * of buffer slots, using the clock replacement policy.
     * This constructor depends on a {@link FileMgr} and
     * {@link simpledb.log.LogMgr LogMgr} object.
     * @param numbuffs the number of buffer slots to allocate
     */
    public BufferMgr(FileMgr fm, LogMgr lm, int numbuffs) {
+      this(fm, lm, numbuffs, ReplacementPolicy.CLOCK);
+   }
+   
+   /**
+    * Creates a buffer manager having the specified number 
+    * of buffer slots and replacement policy.
+    * The pool has one stripe per processor, 
+    * but at most one per 16 buffers.
+    * @param numbuffs the number of buffer slots to allocate
+    * @param policy the policy used to choose buffers to replace
+    */
+   public BufferMgr(FileMgr fm, LogMgr lm, int numbuffs, ReplacementPolicy policy) {
+      this(fm, lm, numbuffs, policy, defaultStripes(numbuffs));
+   }
+   
+   /**
+    * Creates a buffer manager having the specified number 
+    * of buffer slots, replacement policy and stripes.
+    * @param numbuffs the number of buffer slots to allocate
+    * @param policy the policy used to choose buffers to replace
+    * @param numstripes the number of partitions of the pool
+    */
+   public BufferMgr(FileMgr fm, LogMgr lm, int numbuffs, ReplacementPolicy policy, int numstripes) {
+      this.fm = fm;
+      this.policy = policy;
+      numstripes = Math.max(1, Math.min(numstripes, numbuffs));
+      numAvailable = new AtomicInteger(numbuffs);
+      stripes = new BufferStripe[numstripes];
+      for (int i=0; i<numstripes; i++) {
+         ReplacementStrategy strategy = policy.newStrategy(numbuffs / numstripes);
+         stripes[i] = new BufferStripe(strategy, numAvailable);
+      }
       bufferpool = new Buffer[numbuffs];
-      numAvailable = numbuffs;
-      for (int i=0; i<numbuffs; i++)
+      for (int i=0; i<numbuffs; i++) {
          bufferpool[i] = new Buffer(fm, lm);
+         stripes[i % numstripes].addFree(bufferpool[i]);
+      }
    }
    
    /**
     * Returns the number of available (i.e. unpinned) buffers.
     * @return the number of available buffers
     */
-   public synchronized int available() {
-      return numAvailable;
+   public int available() {
+      return numAvailable.get();
    }
    
    /**
-    * Flushes the dirty buffers modified by the specified transaction.
+    * Flushes the dirty buffers modified by the specified transaction,
+    * and forces them to disk. Pages of the transaction that were
+    * written earlier by the background writer or by an eviction
+    * are forced as well.
     * @param txnum the transaction's id number
     */
-   public synchronized void flushAll(int txnum) {
+   public void flushAll(int txnum) {
       for (Buffer buff : bufferpool)
          if (buff.modifyingTx() == txnum)
          buff.flush();
+      fm.forceAll();
    }
    
    
    /**
     * Unpins the specified data buffer. If its pin count
-    * goes to zero, then notify any waiting threads.
+    * goes to zero, then wake the oldest waiting thread.
     * @param buff the buffer to be unpinned
     */
-   public synchronized void unpin(Buffer buff) {
-      buff.unpin();
-      if (!buff.isPinned()) {
-         numAvailable++;
-         notifyAll();
-      }
+   public void unpin(Buffer buff) {
+      if (stripeFor(buff.block()).unpin(buff) && numWaiting > 0)
+         signalOldestWaiter();
    }
    
    /**
     * Pins a buffer to the specified block, potentially
     * waiting until a buffer becomes available.
-    * If no buffer becomes available within a fixed 
+    * If no buffer becomes available within the manager's
+    * default waiting time, then a {@link BufferAbortException} is thrown.
+    * @param blk a reference to a disk block
+    * @return the buffer pinned to that block
+    */
+   public Buffer pin(BlockId blk) {
+      return pin(blk, maxWaitTime);
+   }
+   
+   /**
+    * Pins a buffer to the specified block, potentially
+    * waiting until a buffer becomes available.
+    * A block that is already resident is always pinned at once.
+    * Otherwise, if other threads are already waiting for a buffer,
+    * the calling thread waits behind them:
+    * buffers are granted to waiting threads in the order in which
+    * they started waiting, and each unpinned buffer wakes up only
+    * the oldest waiting thread.
+    * If no buffer becomes available within the specified 
     * time period, then a {@link BufferAbortException} is thrown.
     * @param blk a reference to a disk block
+    * @param maxwait the maximum time to wait, in milliseconds
     * @return the buffer pinned to that block
     */
-   public synchronized Buffer pin(BlockId blk) {
+   public Buffer pin(BlockId blk, long maxwait) {
+      Buffer buff = pinIfResident(blk);
+      if (buff == null && numWaiting == 0)
+         buff = tryToPin(blk);
+      if (buff == null)
+         buff = waitToPin(blk, maxwait);
+      return buff;
+   }  
+   
+   /**
+    * Pins buffers to a range of consecutive blocks of a file.
+    * The blocks that are not resident are read with as few
+    * multi-block reads as possible: a run of missing blocks
+    * is read with one call to {@link FileMgr#readRange}.
+    * A block for which no buffer is available is pinned
+    * as by {@link #pin(BlockId, long)}, waiting if need be.
+    * If any block cannot be pinned, none of them stay pinned.
+    * @param filename the name of the file
+    * @param startblk the number of the first block
+    * @param endblk the number of the last block
+    * @param maxwait the maximum time to wait for each buffer, in milliseconds
+    * @return the pinned buffers, in block order
+    */
+   public Buffer[] pinRange(String filename, int startblk, int endblk, long maxwait) {
+      Buffer[] buffs = new Buffer[endblk - startblk + 1];
+      List<Buffer> run = new ArrayList<>();
+      int pinned = 0;
+      try {
+         for (int i=0; i<buffs.length; i++) {
+            BlockId blk = new BlockId(filename, startblk+i);
+            Buffer buff = stripeFor(blk).pinIfResident(blk);
+            boolean mine = false;
+            if (buff == null && numWaiting == 0) {
+               int home = stripeIndex(blk);
+               Buffer spare = findSpare(home);
+               if (spare != null) {
+                  buff = stripes[home].install(blk, spare);
+                  mine = (buff == spare);
+                  if (!mine && numWaiting > 0)
+                     signalOldestWaiter();
+               }
+            }
+            if (mine) {
+               buffs[i] = buff;
+               pinned++;
+               run.add(buff);
+               continue;
+            }
+            // read the pending run before waiting for anything else
+            loadRun(run);
+            if (buff == null)
+               buff = pin(blk, maxwait);
+            buffs[i] = buff;
+            pinned++;
+            buff.waitUntilLoaded();
+         }
+         loadRun(run);
+      }
+      catch(RuntimeException e) {
+         for (Buffer buff : run)
+            buff.finishLoading(true);
+         for (int i=0; i<pinned; i++)
+            unpin(buffs[i]);
+         throw e;
+      }
+      return buffs;
+   }
+   
+   /**
+    * Returns the default time that pin waits for a buffer.
+    * @return the waiting time in milliseconds
+    */
+   public long maxWaitTime() {
+      return maxWaitTime;
+   }
+   
+   /**
+    * Sets the default time that pin waits for a buffer.
+    * @param millis the waiting time in milliseconds
+    */
+   public void setMaxWaitTime(long millis) {
+      maxWaitTime = millis;
+   }
+   
+   /**
+    * Starts a daemon thread that writes dirty, unpinned buffers
+    * to disk in the background, so that pins seldom have to
+    * write a victim before reading their own block.
+    * @param interval the time between the writer's rounds, in milliseconds
+    */
+   public synchronized void startWriter(long interval) {
+      if (writer != null)
+         return;
+      writer = new BufferWriter(this, stripes, interval);
+      Thread t = new Thread(writer, "simpledb-buffer-writer");
+      t.setDaemon(true);
+      t.start();
+   }
+   
+   /**
+    * Stops the background writer, if it is running.
+    */
+   public synchronized void stopWriter() {
+      if (writer != null)
+         writer.stop();
+      writer = null;
+   }
+   
+   /**
+    * Returns the number of pages written by the background writer.
+    * @return the number of pages written
+    */
+   public synchronized long writerPages() {
+      return (writer == null) ? 0 : writer.pagesWritten();
+   }
+   
+   /**
+    * Returns the background writer's average rate.
+    * @return the number of pages written per second
+    */
+   public synchronized double writerRate() {
+      return (writer == null) ? 0 : writer.writeRate();
+   }
+   
+   /**
+    * Returns the number of times a pin had to write
+    * a dirty victim before it could read its own block.
+    * @return the number of foreground victim writes
+    */
+   public long victimWrites() {
+      return victimWrites.get();
+   }
+   
+   /**
+    * Returns the fraction of buffers whose contents
+    * have not been written to disk.
+    * @return the dirty page ratio
+    */
+   public double dirtyRatio() {
+      int dirty = 0;
+      for (Buffer buff : bufferpool)
+         if (buff.isModified())
+            dirty++;
+      return (double) dirty / bufferpool.length;
+   }
+   
+   /**
+    * Returns the dirty page table: the blocks whose buffers
+    * hold logged modifications that have not been written,
+    * each with the LSN of the first such modification.
+    * The buffers are examined one at a time, without
+    * stopping other threads from pinning or modifying them.
+    * @return the recovery LSN of each dirty block
+    */
+   public Map<BlockId,Long> dirtyPages() {
+      Map<BlockId,Long> result = new HashMap<>();
+      for (Buffer buff : bufferpool)
+         synchronized (buff) {
+            long reclsn = buff.recoveryLSN();
+            if (reclsn >= 0)
+               result.put(buff.block(), reclsn);
+         }
+      return result;
+   }
+   
+   /**
+    * Forces to disk the pages that have been written
+    * but not yet forced, whichever transaction modified them.
+    * The buffers that are still dirty are not written.
+    */
+   public void forceWrittenPages() {
+      fm.forceAll();
+   }
+   
+   /**
+    * Returns the replacement policy used by this manager.
+    * @return the replacement policy
+    */
+   public ReplacementPolicy policy() {
+      return policy;
+   }
+   
+   /**
+    * Returns the number of stripes the pool is partitioned into.
+    * @return the number of stripes
+    */
+   public int stripes() {
+      return stripes.length;
+   }
+   
+   /**
+    * Turns on read-ahead: when a file is being read sequentially,
+    * the blocks following the current one are read into unpinned
+    * buffers by a daemon thread before they are pinned.
+    * @param window the maximum number of blocks to read ahead of a scan
+    */
+   public synchronized void startPrefetcher(int window) {
+      if (prefetcher == null)
+         prefetcher = new Prefetcher(this, fm, window);
+   }
+   
+   /**
+    * Turns off read-ahead.
+    */
+   public synchronized void stopPrefetcher() {
+      if (prefetcher != null)
+         prefetcher.shutdown();
+      prefetcher = null;
+   }
+   
+   /**
+    * Returns the number of blocks that were read ahead.
+    * @return the number of blocks read ahead
+    */
+   public synchronized long prefetches() {
+      return (prefetcher == null) ? 0 : prefetcher.blocksRead();
+   }
+   
+   /**
+    * Returns the number of pins whose block was already in a buffer.
+    * @return the number of buffer hits
+    */
+   public long hits() {
+      long n = 0;
+      for (BufferStripe s : stripes)
+         n += s.hits();
+      return n;
+   }
+   
+   /**
+    * Returns the number of pins that had to read their block from disk.
+    * @return the number of buffer misses
+    */
+   public long misses() {
+      long n = 0;
+      for (BufferStripe s : stripes)
+         n += s.misses();
+      return n;
+   }
+   
+   /**
+    * Returns the number of times a resident block was
+    * replaced in order to read in another one.
+    * @return the number of evictions
+    */
+   public long evictions() {
+      long n = 0;
+      for (BufferStripe s : stripes)
+         n += s.evictions();
+      return n;
+   }
+   
+   /**
+    * Returns the number of threads currently waiting for a buffer.
+    * @return the length of the waiting queue
+    */
+   public int waiting() {
+      return numWaiting;
+   }
+   
+   /**
+    * Returns the largest number of threads that
+    * have been waiting for a buffer at the same time.
+    * @return the maximum length of the waiting queue
+    */
+   public int maxWaiting() {
+      waitLock.lock();
+      try {
+         return maxWaiting;
+      }
+      finally {
+         waitLock.unlock();
+      }
+   }
+   
+   /**
+    * Returns the number of pins that had to wait for a buffer,
+    * including those that timed out.
+    * @return the number of waits
+    */
+   public long waits() {
+      waitLock.lock();
+      try {
+         return waits;
+      }
+      finally {
+         waitLock.unlock();
+      }
+   }
+   
+   /**
+    * Returns the total time spent by pins waiting for a buffer.
+    * @return the total waiting time in milliseconds
+    */
+   public long totalWaitTime() {
+      waitLock.lock();
+      try {
+         return totalWaitTime;
+      }
+      finally {
+         waitLock.unlock();
+      }
+   }
+   
+   /**
+    * Returns the longest time that a pin has waited for a buffer.
+    * @return the maximum waiting time in milliseconds
+    */
+   public long longestWaitTime() {
+      waitLock.lock();
+      try {
+         return longestWaitTime;
+      }
+      finally {
+         waitLock.unlock();
+      }
+   }
+   
+   /**
+    * Returns the number of pins that gave up waiting
+    * and threw a {@link BufferAbortException}.
+    * @return the number of timeouts
+    */
+   public long timeouts() {
+      waitLock.lock();
       try {
-         long timestamp = System.currentTimeMillis();
-         Buffer buff = tryToPin(blk);
-         while (buff == null && !waitingTooLong(timestamp)) {
-            wait(MAX_TIME);
+         return timeouts;
+      }
+      finally {
+         waitLock.unlock();
+      }
+   }
+   
+   /**
+    * Pins the block if it is resident.
+    * @param blk a reference to a disk block
+    * @return the pinned buffer, or null if the block is not resident
+    */
+   private Buffer pinIfResident(BlockId blk) {
+      Buffer buff = stripeFor(blk).pinIfResident(blk);
+      if (buff != null) {
+         Prefetcher p = prefetcher;
+         if (p != null && buff.takePrefetched())
+            p.accessed(blk);
+         waitUntilLoaded(buff);
+      }
+      return buff;
+   }
+   
+   /**
+    * Enters the calling thread at the end of the waiting queue
+    * and waits until it is at the head of the queue and
+    * a buffer has been unpinned.
+    * The thread that is at the head of an empty queue tries
+    * right away, in case a buffer was unpinned before it was queued.
+    * @param blk a reference to a disk block
+    * @param maxwait the maximum time to wait, in milliseconds
+    * @return the pinned buffer
+    */
+   private Buffer waitToPin(BlockId blk, long maxwait) {
+      long start = System.currentTimeMillis();
+      Waiter w = new Waiter(waitLock.newCondition());
+      waitLock.lock();
+      try {
+         waiters.add(w);
+         numWaiting = waiters.size();
+         maxWaiting = Math.max(maxWaiting, numWaiting);
+         w.signalled = (waiters.peek() == w);
+      }
+      finally {
+         waitLock.unlock();
+      }
+      Buffer buff = null;
+      boolean timedout = false;
+      try {
+         while (buff == null) {
+            awaitSignal(w, start + maxwait);
             buff = tryToPin(blk);
          }
-         if (buff == null)
-            throw new BufferAbortException();
-         return buff;
+      }
+      catch(BufferAbortException e) {
+         timedout = true;
+         throw e;
+      }
+      finally {
+         waitLock.lock();
+         try {
+            long elapsed = System.currentTimeMillis() - start;
+            waits++;
+            totalWaitTime += elapsed;
+            longestWaitTime = Math.max(longestWaitTime, elapsed);
+            if (timedout)
+               timeouts++;
+            leaveQueue(w);
+         }
+         finally {
+            waitLock.unlock();
+         }
+      }
+      return buff;
+   }
+   
+   private void awaitSignal(Waiter w, long deadline) {
+      waitLock.lock();
+      try {
+         while (!w.signalled) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+               throw new BufferAbortException();
+            w.cond.await(remaining, TimeUnit.MILLISECONDS);
+         }
+         w.signalled = false;
       }
       catch(InterruptedException e) {
          throw new BufferAbortException();
       }
-   }  
+      finally {
+         waitLock.unlock();
+      }
+   }
    
-   private boolean waitingTooLong(long starttime) {
-      return System.currentTimeMillis() - starttime > MAX_TIME;
+   /**
+    * Removes the waiter from the queue.
+    * If it was at the head, the new head is woken up
+    * if there may be a buffer for it.
+    * Must be called while holding waitLock.
+    */
+   private void leaveQueue(Waiter w) {
+      boolean washead = (waiters.peek() == w);
+      waiters.remove(w);
+      numWaiting = waiters.size();
+      Waiter next = waiters.peek();
+      if (washead && next != null && numAvailable.get() > 0) {
+         next.signalled = true;
+         next.cond.signal();
+      }
+   }
+   
+   private void signalOldestWaiter() {
+      waitLock.lock();
+      try {
+         Waiter w = waiters.peek();
+         if (w != null) {
+            w.signalled = true;
+            w.cond.signal();
+         }
+      }
+      finally {
+         waitLock.unlock();
+      }
    }
    
    /**
     * Tries to pin a buffer to the specified block. 
     * If there is already a buffer assigned to that block
     * then that buffer is used;  
-    * otherwise, an unpinned buffer from the pool is chosen.
+    * otherwise, an unpinned buffer from the pool is chosen
+    * and the block is read into it.
     * Returns a null value if there are no available buffers.
     * @param blk a reference to a disk block
     * @return the pinned buffer
     */
    private Buffer tryToPin(BlockId blk) {
-      Buffer buff = findExistingBuffer(blk);
-      if (buff == null) {
-         buff = chooseUnpinnedBuffer();
-         if (buff == null)
-            return null;
-         buff.assignToBlock(blk);
-      }
-      if (!buff.isPinned())
-         numAvailable--;
-      buff.pin();
+      Buffer buff = pinIfResident(blk);
+      if (buff != null)
+         return buff;
+      int home = stripeIndex(blk);
+      Buffer spare = findSpare(home);
+      if (spare == null)
+         return null;
+      buff = stripes[home].install(blk, spare);
+      if (buff != spare) {
+         if (numWaiting > 0) // the spare buffer went to the free list
+            signalOldestWaiter();
+         waitUntilLoaded(buff);
+         return buff;
+      }
+      try {
+         buff.load();
+      }
+      catch(RuntimeException e) {
+         unpin(buff);
+         throw e;
+      }
+      Prefetcher p = prefetcher;
+      if (p != null)
+         p.accessed(blk);
       return buff;
    }
    
-   private Buffer findExistingBuffer(BlockId blk) {
-      for (Buffer buff : bufferpool) {
-         BlockId b = buff.block();
-         if (b != null && b.equals(blk))
+   /**
+    * Reads the block into an unpinned buffer on behalf of
+    * the prefetcher, leaving it unpinned.
+    * Nothing is done if the block is already resident
+    * or if no buffer is available.
+    * @param blk a reference to a disk block
+    * @return true if the block was read
+    */
+   boolean readAhead(BlockId blk) {
+      int home = stripeIndex(blk);
+      if (stripes[home].isResident(blk))
+         return false;
+      Buffer spare = findSpare(home);
+      if (spare == null)
+         return false;
+      Buffer buff = stripes[home].install(blk, spare);
+      boolean loaded = false;
+      try {
+         if (buff == spare) {
+            buff.setPrefetched();
+            buff.load();
+            loaded = true;
+         }
+      }
+      catch(RuntimeException e) {
+         // a failed read-ahead is retried by the pin that needs the block
+      }
+      finally {
+         unpin(buff);
+      }
+      if (buff != spare && numWaiting > 0)
+         signalOldestWaiter();
+      return loaded;
+   }
+   
+   /**
+    * Reads a run of consecutive blocks into the buffers
+    * assigned to them, and empties the run.
+    * @param run buffers assigned to consecutive blocks of one file
+    */
+   private void loadRun(List<Buffer> run) {
+      if (run.isEmpty())
+         return;
+      Page[] pages = new Page[run.size()];
+      for (int i=0; i<pages.length; i++)
+         pages[i] = run.get(i).contents();
+      BlockId first = run.get(0).block();
+      try {
+         fm.readRange(first.fileName(), first.number(), pages);
+      }
+      catch(RuntimeException e) {
+         for (Buffer buff : run)
+            buff.finishLoading(true);
+         run.clear();
+         throw e;
+      }
+      for (Buffer buff : run)
+         buff.finishLoading(false);
+      run.clear();
+   }
+   
+   private void waitUntilLoaded(Buffer buff) {
+      try {
+         buff.waitUntilLoaded();
+      }
+      catch(RuntimeException e) {
+         unpin(buff);
+         throw e;
+      }
+   }
+   
+   /**
+    * Finds a buffer that can be assigned to a new block,
+    * looking first in the block's own stripe and then in the others.
+    * Dirty victims are written to disk here, 
+    * outside of any stripe monitor. A victim is still in
+    * its stripe while it is written, so other threads may
+    * pin and read it; the write goes through its own view
+    * of the page (see Page.contents), and page reads use
+    * absolute positions, so neither disturbs the other.
+    * @param home the index of the stripe of the block to be pinned
+    * @return an unpinned buffer owned by no stripe, or null
+    */
+   private Buffer findSpare(int home) {
+      for (int i=0; i<stripes.length; i++) {
+         BufferStripe s = stripes[(home + i) % stripes.length];
+         Buffer buff = s.chooseVictim();
+         while (buff != null && buff.isPinned()) {
+            if (buff.flush())
+               victimWrites.incrementAndGet();
+            unpin(buff);
+            buff = s.chooseVictim();
+         }
+         if (buff != null)
             return buff;
       }
       return null;
    }
    
-   private Buffer chooseUnpinnedBuffer() {
-      for (Buffer buff : bufferpool)
-         if (!buff.isPinned())
-         return buff;
-      return null;
+   private BufferStripe stripeFor(BlockId blk) {
+      return stripes[stripeIndex(blk)];
+   }
+   
+   private int stripeIndex(BlockId blk) {
+      return (blk.hashCode() & Integer.MAX_VALUE) % stripes.length;
+   }
+   
+   private static int defaultStripes(int numbuffs) {
+      int cpus = Runtime.getRuntime().availableProcessors();
+      return Math.max(1, Math.min(cpus, numbuffs / MIN_STRIPE_SIZE));
+   }
+   
+   /**
+    * A thread waiting for a buffer.
+    * The thread may try to pin only after it has been signalled,
+    * which happens only when it is at the head of the queue.
+    */
+   private static class Waiter {
+      Condition cond;
+      boolean signalled = false;
+      
+      Waiter(Condition cond) {
+         this.cond = cond;
+      }
    }
 }
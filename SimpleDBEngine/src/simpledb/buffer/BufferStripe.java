@@ -0,0 +1,198 @@
+package simpledb.buffer;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import simpledb.file.BlockId;
+
+/**
+ * One partition of the buffer pool.
+ * Each block is hashed to a stripe, which alone records
+ * whether the block is resident.
+ * A stripe owns a table of its resident blocks, a list of
+ * free buffers, and its own replacement strategy, all of which
+ * are protected by the stripe's monitor.
+ * No disk I/O is done while that monitor is held.
+ * Unpinned buffers may move between stripes: a stripe
+ * that runs out of buffers takes one from another stripe.
+ * The stripe counts the buffers it owns, resident or free,
+ * and tells its strategy whenever the count changes, so that
+ * the strategy's limits follow the stripe's actual size.
+ */
+class BufferStripe {
+   private Map<BlockId,Buffer> bufferTable = new HashMap<>();
+   private Deque<Buffer> freeList = new ArrayDeque<>();
+   private ReplacementStrategy strategy;
+   private AtomicInteger numAvailable;
+   private int numbuffs = 0;
+   private long hits = 0, misses = 0, evictions = 0;
+
+   /**
+    * Create an empty stripe.
+    * @param strategy the replacement strategy for the stripe's buffers
+    * @param numAvailable the pool-wide count of unpinned buffers
+    */
+   BufferStripe(ReplacementStrategy strategy, AtomicInteger numAvailable) {
+      this.strategy = strategy;
+      this.numAvailable = numAvailable;
+   }
+
+   /**
+    * Add an unassigned buffer to the stripe's free list.
+    * @param buff the buffer
+    */
+   synchronized void addFree(Buffer buff) {
+      freeList.add(buff);
+      resize(1);
+   }
+
+   /**
+    * Pin the buffer holding the specified block,
+    * if the block is resident.
+    * The block may still be in the process of being read.
+    * @param blk a reference to a disk block
+    * @return the pinned buffer, or null if the block is not resident
+    */
+   synchronized Buffer pinIfResident(BlockId blk) {
+      Buffer buff = bufferTable.get(blk);
+      if (buff != null) {
+         hits++;
+         pin(buff);
+         strategy.accessed(buff);
+      }
+      return buff;
+   }
+
+   /**
+    * Return true if the block is resident in this stripe.
+    * @param blk a reference to a disk block
+    * @return true if the block is resident
+    */
+   synchronized boolean isResident(BlockId blk) {
+      return bufferTable.containsKey(blk);
+   }
+
+   /**
+    * Give up a buffer so that another block can be read into it.
+    * A free buffer is used if there is one; otherwise the
+    * replacement strategy chooses an unpinned buffer, which
+    * is removed from the stripe.
+    * If the chosen buffer is dirty it is not removed, but
+    * is returned pinned, so that the caller can write it
+    * to disk outside of the monitor and then unpin it.
+    * @return an unpinned buffer that no stripe owns, a pinned dirty buffer,
+    * or null if every buffer in the stripe is pinned
+    */
+   synchronized Buffer chooseVictim() {
+      Buffer buff = freeList.poll();
+      if (buff != null) {
+         resize(-1);
+         return buff;
+      }
+      buff = strategy.chooseUnpinnedBuffer();
+      if (buff == null)
+         return null;
+      if (buff.isModified()) {
+         pin(buff);
+         return buff;
+      }
+      evictions++;
+      strategy.evicted(buff);
+      bufferTable.remove(buff.block());
+      buff.clear();
+      resize(-1);
+      return buff;
+   }
+
+   /**
+    * Pin the specified block in the spare buffer,
+    * which the calling thread obtained from chooseVictim.
+    * If another thread made the block resident in the meantime,
+    * then that buffer is pinned instead and the spare
+    * buffer is added to this stripe's free list.
+    * The caller must read in the block whenever 
+    * the returned buffer is the spare one.
+    * @param blk a reference to a disk block
+    * @param spare an unpinned buffer that no stripe owns
+    * @return the pinned buffer for the block
+    */
+   synchronized Buffer install(BlockId blk, Buffer spare) {
+      Buffer buff = bufferTable.get(blk);
+      if (buff != null) {
+         hits++;
+         freeList.add(spare);
+      }
+      else {
+         misses++;
+         buff = spare;
+         buff.assignToBlock(blk);
+         bufferTable.put(blk, buff);
+         strategy.assigned(buff);
+      }
+      resize(1);
+      pin(buff);
+      strategy.accessed(buff);
+      return buff;
+   }
+
+   /**
+    * Decrease the pin count of the buffer.
+    * A buffer whose block could not be read is
+    * moved to the free list once nobody has it pinned.
+    * @param buff a buffer owned by this stripe
+    * @return true if the buffer is no longer pinned
+    */
+   synchronized boolean unpin(Buffer buff) {
+      buff.unpin();
+      if (buff.isPinned())
+         return false;
+      numAvailable.incrementAndGet();
+      if (buff.loadFailed()) {
+         strategy.evicted(buff);
+         bufferTable.remove(buff.block());
+         buff.clear();
+         freeList.add(buff);
+      }
+      else
+         strategy.unpinned(buff);
+      return true;
+   }
+
+   /**
+    * Return the buffers of this stripe that are
+    * dirty but not pinned.
+    * @return the dirty unpinned buffers
+    */
+   synchronized List<Buffer> dirtyUnpinnedBuffers() {
+      List<Buffer> result = new ArrayList<>();
+      for (Buffer buff : bufferTable.values())
+         if (!buff.isPinned() && buff.isModified())
+            result.add(buff);
+      return result;
+   }
+
+   synchronized long hits() {
+      return hits;
+   }
+
+   synchronized long misses() {
+      return misses;
+   }
+
+   synchronized long evictions() {
+      return evictions;
+   }
+
+   /**
+    * Record that the stripe gained or lost a buffer.
+    */
+   private void resize(int delta) {
+      numbuffs += delta;
+      strategy.resize(numbuffs);
+   }
+
+   private void pin(Buffer buff) {
+      if (!buff.isPinned())
+         numAvailable.decrementAndGet();
+      buff.pin();
+   }
+}
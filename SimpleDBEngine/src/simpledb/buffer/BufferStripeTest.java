@@ -0,0 +1,67 @@
+package simpledb.buffer;
+
+import java.util.Random;
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+public class BufferStripeTest {
+   private static final int NUMBLOCKS = 200, NUMBUFFS = 64;
+   private static final int NUMTHREADS = 32, PINS_PER_THREAD = 5000;
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("bufferstripetest", 400, 8);
+      FileMgr fm = db.fileMgr();
+      Page p = new Page(fm.blockSize());
+      for (int i=0; i<NUMBLOCKS; i++) {
+         p.setInt(0, i);
+         fm.write(new BlockId("testfile", i), p);
+      }
+      int cpus = Runtime.getRuntime().availableProcessors();
+      for (int numstripes : new int[] {1, Math.max(cpus, 4)})
+         run(fm, db, ReplacementPolicy.CLOCK, numstripes);
+
+      // buffers move between stripes, and the strategies
+      // that keep history must follow the stripes' sizes
+      for (ReplacementPolicy policy : new ReplacementPolicy[] {ReplacementPolicy.LRU_K, ReplacementPolicy.TWO_Q})
+         run(fm, db, policy, Math.max(cpus, 4));
+   }
+
+   private static void run(FileMgr fm, SimpleDB db, ReplacementPolicy policy, int numstripes) throws Exception {
+      BufferMgr bm = new BufferMgr(fm, db.logMgr(), NUMBUFFS, policy, numstripes);
+      long start = System.nanoTime();
+      Thread[] threads = new Thread[NUMTHREADS];
+      for (int t=0; t<NUMTHREADS; t++) {
+         threads[t] = new Thread(new Pinner(bm, t));
+         threads[t].start();
+      }
+      for (Thread t : threads)
+         t.join();
+      long millis = (System.nanoTime() - start) / 1000000;
+      System.out.println(policy + ", " + bm.stripes() + " stripe(s): " + (NUMTHREADS*PINS_PER_THREAD) 
+            + " pins in " + millis + " ms, misses=" + bm.misses()
+            + ", available=" + bm.available());
+   }
+
+   // Each thread pins random blocks and checks that
+   // every buffer holds the block it was pinned to.
+   static class Pinner implements Runnable {
+      private BufferMgr bm;
+      private Random rand;
+
+      Pinner(BufferMgr bm, int seed) {
+         this.bm = bm;
+         this.rand = new Random(seed);
+      }
+
+      public void run() {
+         for (int i=0; i<PINS_PER_THREAD; i++) {
+            int blknum = rand.nextInt(NUMBLOCKS);
+            Buffer buff = bm.pin(new BlockId("testfile", blknum));
+            int val = buff.contents().getInt(0);
+            if (val != blknum)
+               System.out.println("block " + blknum + " contains " + val);
+            bm.unpin(buff);
+         }
+      }
+   }
+}
@@ -0,0 +1,63 @@
+package simpledb.buffer;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+public class BufferWaitTest {
+   private static BufferMgr bm;
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("bufferwaittest", 400, 3); // only 3 buffers
+      bm = db.bufferMgr();
+      Buffer[] held = new Buffer[3];
+      for (int i=0; i<3; i++)
+         held[i] = bm.pin(new BlockId("testfile", i));
+
+      // Five threads queue up, in order, for the full pool.
+      Thread[] threads = new Thread[5];
+      for (int i=0; i<threads.length; i++) {
+         threads[i] = new Thread(new Waiter(10+i));
+         threads[i].start();
+         Thread.sleep(50);
+      }
+      System.out.println("Waiting threads: " + bm.waiting());
+
+      // Each buffer released goes to the oldest waiting thread.
+      for (int i=0; i<3; i++) {
+         bm.unpin(held[i]);
+         Thread.sleep(50);
+      }
+      for (Thread t : threads)
+         t.join();
+
+      try {
+         bm.pin(new BlockId("testfile", 99), 100); // pool is full again
+      }
+      catch(BufferAbortException e) {
+         System.out.println("Pin of block 99 timed out after 100 ms");
+      }
+      System.out.println("waits=" + bm.waits() + " max queue=" + bm.maxWaiting()
+            + " longest wait=" + bm.longestWaitTime() + "ms timeouts=" + bm.timeouts());
+   }
+
+   // Pins a block, holds it briefly, and unpins it.
+   // The last three threads keep their buffers.
+   static class Waiter implements Runnable {
+      private int blknum;
+
+      Waiter(int blknum) {
+         this.blknum = blknum;
+      }
+
+      public void run() {
+         Buffer buff = bm.pin(new BlockId("testfile", blknum));
+         System.out.println("Thread for block " + blknum + " got a buffer");
+         try {
+            Thread.sleep(20);
+         }
+         catch(InterruptedException e) {}
+         if (blknum < 12)
+            bm.unpin(buff);
+      }
+   }
+}
@@ -0,0 +1,97 @@
+package simpledb.buffer;
+
+import java.util.List;
+
+/**
+ * The background page writer.
+ * The writer periodically writes every dirty, unpinned buffer
+ * to disk, so that by the time the replacement strategy chooses
+ * a buffer as a victim it is usually clean, and the pinning
+ * thread does not have to write it before reading its own block.
+ * Each write goes through {@link Buffer#flush()}, which forces
+ * the log up to the buffer's LSN first.
+ * When the fraction of dirty buffers exceeds a threshold,
+ * the writer starts its next round without sleeping.
+ */
+class BufferWriter implements Runnable {
+   private static final double BUSY_DIRTY_RATIO = 0.5;
+   private BufferMgr bm;
+   private BufferStripe[] stripes;
+   private long interval;
+   private volatile boolean stopped = false;
+   private long pagesWritten = 0;
+   private long starttime;
+
+   /**
+    * Create a writer for the stripes of the specified buffer manager.
+    * @param bm the buffer manager
+    * @param stripes the stripes of the buffer pool
+    * @param interval the time between rounds, in milliseconds
+    */
+   BufferWriter(BufferMgr bm, BufferStripe[] stripes, long interval) {
+      this.bm = bm;
+      this.stripes = stripes;
+      this.interval = interval;
+   }
+
+   public void run() {
+      starttime = System.currentTimeMillis();
+      while (!stopped) {
+         try {
+            if (bm.dirtyRatio() < BUSY_DIRTY_RATIO)
+               Thread.sleep(interval);
+         }
+         catch(InterruptedException e) {
+            return;
+         }
+         writeRound();
+      }
+   }
+
+   /**
+    * Ask the writer to stop after its current round.
+    */
+   void stop() {
+      stopped = true;
+   }
+
+   /**
+    * Return the number of pages written by the writer.
+    * @return the number of pages written
+    */
+   synchronized long pagesWritten() {
+      return pagesWritten;
+   }
+
+   /**
+    * Return the average number of pages written per second
+    * since the writer started.
+    * @return the write rate
+    */
+   synchronized double writeRate() {
+      long elapsed = System.currentTimeMillis() - starttime;
+      return (elapsed == 0) ? 0 : pagesWritten * 1000.0 / elapsed;
+   }
+
+   /**
+    * Write the dirty, unpinned buffers of each stripe.
+    * The stripe's monitor is held only while collecting them.
+    * A buffer that is pinned again in the meantime is
+    * still safe to write: a transaction modifies it only
+    * while holding the buffer's monitor, as flush does,
+    * and readers use absolute positions in the page, while
+    * the write goes through its own view of the page.
+    */
+   private void writeRound() {
+      for (BufferStripe s : stripes) {
+         List<Buffer> dirty = s.dirtyUnpinnedBuffers();
+         for (Buffer buff : dirty) {
+            if (buff.flush()) {
+               synchronized (this) {
+                  pagesWritten++;
+               }
+            }
+         }
+      }
+   }
+}
@@ -0,0 +1,29 @@
+package simpledb.buffer;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+public class BufferWriterTest {
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("bufferwritertest", 400, 8);
+      for (boolean background : new boolean[] {false, true}) {
+         BufferMgr bm = new BufferMgr(db.fileMgr(), db.logMgr(), 8);
+         if (background)
+            bm.startWriter(5);
+         // Modify a block, then move on to the next one,
+         // as an update statement scanning a table would.
+         for (int i=0; i<200; i++) {
+            Buffer buff = bm.pin(new BlockId("testfile", i));
+            buff.contents().setInt(0, i);
+            buff.setModified(1, 0);
+            bm.unpin(buff);
+            Thread.sleep(1);
+         }
+         System.out.println("background writer " + (background ? "on" : "off")
+               + ": victim writes=" + bm.victimWrites()
+               + " writer pages=" + bm.writerPages()
+               + " dirty ratio=" + bm.dirtyRatio());
+         bm.stopWriter();
+      }
+   }
+}
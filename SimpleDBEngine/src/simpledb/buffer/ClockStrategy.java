@@ -0,0 +1,65 @@
+package simpledb.buffer;
+
+import java.util.*;
+
+/**
+ * The clock (second-chance) replacement strategy.
+ * The resident buffers are arranged in a ring, and each
+ * has a reference bit that is set whenever it is pinned.
+ * The clock hand sweeps the ring, clearing reference bits,
+ * and chooses the first unpinned buffer whose bit is already clear.
+ * Pinning a buffer only sets its bit, so it takes constant time.
+ */
+class ClockStrategy implements ReplacementStrategy {
+   private List<Buffer> ring = new ArrayList<>();
+   private Map<Buffer,Integer> slots = new HashMap<>();
+   private Set<Buffer> referenced = new HashSet<>();
+   private Deque<Integer> emptySlots = new ArrayDeque<>();
+   private int hand = 0;
+
+   public void assigned(Buffer buff) {
+      Integer slot = emptySlots.poll();
+      if (slot == null) {
+         slot = ring.size();
+         ring.add(buff);
+      }
+      else
+         ring.set(slot, buff);
+      slots.put(buff, slot);
+   }
+
+   public void accessed(Buffer buff) {
+      referenced.add(buff);
+   }
+
+   public void unpinned(Buffer buff) {}
+
+   public void evicted(Buffer buff) {
+      Integer slot = slots.remove(buff);
+      if (slot != null) {
+         ring.set(slot, null);
+         emptySlots.push(slot);
+      }
+      referenced.remove(buff);
+   }
+
+   /**
+    * Sweep the ring at most twice: the first pass may
+    * clear the reference bit of every unpinned buffer,
+    * in which case the second pass will find a victim.
+    */
+   public Buffer chooseUnpinnedBuffer() {
+      int n = ring.size();
+      for (int i=0; i<2*n; i++) {
+         Buffer buff = ring.get(hand);
+         hand = (hand + 1) % n;
+         if (buff == null || !buff.isEvictable())
+            continue;
+         if (!referenced.remove(buff))
+            return buff;
+      }
+      return null;
+   }
+
+   public void resize(int numbuffs) {}
+}
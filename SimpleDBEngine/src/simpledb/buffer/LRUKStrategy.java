@@ -0,0 +1,116 @@
+package simpledb.buffer;
+
+import java.util.*;
+import simpledb.file.BlockId;
+
+/**
+ * The LRU-K replacement strategy (O'Neil, O'Neil and Weikum).
+ * Each block remembers the times of its last K references.
+ * The victim is the unpinned buffer whose K-th most recent
+ * reference is oldest; buffers referenced fewer than K times
+ * are treated as infinitely old, and are replaced first
+ * (in LRU order).
+ * A block touched once by a sequential scan is therefore replaced
+ * before a catalog block that is referenced over and over.
+ * The reference history of recently evicted blocks is retained,
+ * so that a block which is re-read soon keeps its history.
+ * <P>
+ * The unpinned buffers are kept in a sorted set, ordered by
+ * their K-th most recent and most recent references, so that
+ * a victim is found without scanning every resident buffer.
+ * A buffer leaves the set when it is pinned and rejoins it
+ * when it is unpinned; a buffer that the stripe pins without
+ * telling the strategy is dropped lazily, when it is met at
+ * the head of the set.
+ */
+class LRUKStrategy implements ReplacementStrategy {
+   private int k;
+   private int retained;
+   private long clock = 0;
+   private Map<Buffer,long[]> history = new HashMap<>();
+   private TreeSet<Buffer> unpinned = new TreeSet<>(this::compare);
+   private LinkedHashMap<BlockId,long[]> evictedHistory = new LinkedHashMap<>();
+
+   /**
+    * Create an LRU-K strategy.
+    * @param k the number of references remembered per block
+    * @param numbuffs the number of buffers, which also bounds
+    * how many evicted blocks keep their history
+    */
+   public LRUKStrategy(int k, int numbuffs) {
+      this.k = k;
+      this.retained = numbuffs;
+   }
+
+   public void assigned(Buffer buff) {
+      long[] times = evictedHistory.remove(buff.block());
+      if (times == null)
+         times = new long[k];
+      history.put(buff, times);
+   }
+
+   /**
+    * Shift the buffer's reference times and record
+    * the current time as the most recent one.
+    * The buffer is taken out of the unpinned set first,
+    * since its position there depends on those times.
+    */
+   public void accessed(Buffer buff) {
+      unpinned.remove(buff);
+      long[] times = history.get(buff);
+      clock++;
+      System.arraycopy(times, 0, times, 1, k-1);
+      times[0] = clock;
+   }
+
+   public void unpinned(Buffer buff) {
+      if (history.containsKey(buff))
+         unpinned.add(buff);
+   }
+
+   public void evicted(Buffer buff) {
+      unpinned.remove(buff);
+      long[] times = history.remove(buff);
+      if (times == null)
+         return;
+      evictedHistory.put(buff.block(), times);
+      Iterator<BlockId> iter = evictedHistory.keySet().iterator();
+      while (evictedHistory.size() > retained) {
+         iter.next();
+         iter.remove();
+      }
+   }
+
+   /**
+    * Return the first unpinned buffer of the set,
+    * dropping the buffers at its head that have been pinned.
+    */
+   public Buffer chooseUnpinnedBuffer() {
+      while (!unpinned.isEmpty()) {
+         Buffer buff = unpinned.first();
+         if (buff.isEvictable())
+            return buff;
+         unpinned.pollFirst();
+      }
+      return null;
+   }
+
+   public void resize(int numbuffs) {
+      retained = numbuffs;
+   }
+
+   /**
+    * Compare the K-th most recent references of two buffers
+    * (a zero means "never"), breaking ties with the most
+    * recent reference. The most recent references of two
+    * buffers always differ, as the clock advances on every
+    * reference, so the order is total.
+    */
+   private int compare(Buffer b1, Buffer b2) {
+      long[] t1 = history.get(b1);
+      long[] t2 = history.get(b2);
+      if (t1[k-1] != t2[k-1])
+         return Long.compare(t1[k-1], t2[k-1]);
+      return Long.compare(t1[0], t2[0]);
+   }
+}
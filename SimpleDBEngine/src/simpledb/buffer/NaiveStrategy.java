@@ -0,0 +1,33 @@
+package simpledb.buffer;
+
+import java.util.*;
+
+/**
+ * The original SimpleDB replacement strategy:
+ * choose the first unpinned buffer, in the order
+ * in which the buffers were first assigned.
+ */
+class NaiveStrategy implements ReplacementStrategy {
+   private Set<Buffer> buffers = new LinkedHashSet<>();
+
+   public void assigned(Buffer buff) {
+      buffers.add(buff);
+   }
+
+   public void accessed(Buffer buff) {}
+
+   public void unpinned(Buffer buff) {}
+
+   public void evicted(Buffer buff) {
+      buffers.remove(buff);
+   }
+
+   public Buffer chooseUnpinnedBuffer() {
+      for (Buffer buff : buffers)
+         if (buff.isEvictable())
+            return buff;
+      return null;
+   }
+
+   public void resize(int numbuffs) {}
+}
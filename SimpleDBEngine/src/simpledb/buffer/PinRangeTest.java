@@ -0,0 +1,44 @@
+package simpledb.buffer;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+public class PinRangeTest {
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("pinrangetest", 400, 8);
+      FileMgr fm = db.fileMgr();
+
+      // write 20 blocks with a single gather write
+      Page[] pages = new Page[20];
+      for (int i=0; i<pages.length; i++) {
+         pages[i] = new Page(fm.blockSize());
+         pages[i].setInt(0, i);
+      }
+      fm.writeRange("testfile", 0, pages);
+
+      BufferMgr bm = new BufferMgr(fm, db.logMgr(), 12);
+      // make blocks 4 and 7 resident, so the range is read in three runs
+      Buffer b4 = bm.pin(new BlockId("testfile", 4));
+      Buffer b7 = bm.pin(new BlockId("testfile", 7));
+      Buffer[] buffs = bm.pinRange("testfile", 2, 11, 1000);
+      System.out.println("pinned " + buffs.length + " blocks, available " + bm.available());
+      for (int i=0; i<buffs.length; i++)
+         if (buffs[i].contents().getInt(0) != i+2)
+            System.out.println("block " + (i+2) + " has wrong contents");
+      System.out.println("hits=" + bm.hits() + " misses=" + bm.misses());
+
+      // there is no buffer left for a further range
+      try {
+         bm.pinRange("testfile", 12, 15, 100);
+         System.out.println("range pinned without buffers");
+      }
+      catch(BufferAbortException e) {
+         System.out.println("range aborted, available " + bm.available());
+      }
+      for (Buffer buff : buffs)
+         bm.unpin(buff);
+      bm.unpin(b4);
+      bm.unpin(b7);
+      System.out.println("all unpinned, available " + bm.available());
+   }
+}
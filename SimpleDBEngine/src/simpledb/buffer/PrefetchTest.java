@@ -0,0 +1,34 @@
+package simpledb.buffer;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+public class PrefetchTest {
+   private static final int NUMBLOCKS = 100;
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("prefetchtest", 400, 8);
+      FileMgr fm = db.fileMgr();
+      Page p = new Page(fm.blockSize());
+      for (int i=0; i<NUMBLOCKS; i++) {
+         p.setInt(0, i);
+         fm.write(new BlockId("testfile", i), p);
+      }
+      for (boolean readahead : new boolean[] {false, true}) {
+         BufferMgr bm = new BufferMgr(fm, db.logMgr(), 32);
+         if (readahead)
+            bm.startPrefetcher(8);
+         // a sequential scan that does a little work per block
+         for (int i=0; i<NUMBLOCKS; i++) {
+            Buffer buff = bm.pin(new BlockId("testfile", i));
+            if (buff.contents().getInt(0) != i)
+               System.out.println("block " + i + " has wrong contents");
+            Thread.sleep(1);
+            bm.unpin(buff);
+         }
+         System.out.println("read-ahead " + (readahead ? "on" : "off")
+               + ": hits=" + bm.hits() + " prefetched=" + bm.prefetches());
+         bm.stopPrefetcher();
+      }
+   }
+}
@@ -0,0 +1,117 @@
+package simpledb.buffer;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import simpledb.file.*;
+
+/**
+ * Detects sequential access to a file and reads the
+ * following blocks into unpinned buffers in the background.
+ * The buffer manager reports each block it reads for a pin,
+ * and the first pin of each block that was read ahead.
+ * Once two consecutive blocks of a file have been accessed,
+ * the prefetcher reads up to a window of blocks past the current one,
+ * and it reads the next window when the scan is halfway through
+ * the current one.
+ * A scan therefore finds its next blocks already resident (or
+ * being read), so that full scans such as those of 
+ * {@link simpledb.record.TableScan} do not wait for each block in turn.
+ * Blocks past the end of the file are never read.
+ */
+class Prefetcher {
+   private static final int TRIGGER = 2;
+   private static final int MAX_FILES = 64;
+   private BufferMgr bm;
+   private FileMgr fm;
+   private int window;
+   private ExecutorService reader;
+   private AtomicLong blocksRead = new AtomicLong();
+   private Map<String,SeqState> states = new LinkedHashMap<String,SeqState>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<String,SeqState> eldest) {
+         return size() > MAX_FILES;
+      }
+   };
+
+   /**
+    * Create a prefetcher for the specified buffer manager.
+    * @param bm the buffer manager
+    * @param fm the file manager
+    * @param window the maximum number of blocks to read ahead
+    */
+   Prefetcher(BufferMgr bm, FileMgr fm, int window) {
+      this.bm = bm;
+      this.fm = fm;
+      this.window = window;
+      reader = Executors.newSingleThreadExecutor(r -> {
+         Thread t = new Thread(r, "simpledb-prefetcher");
+         t.setDaemon(true);
+         return t;
+      });
+   }
+
+   /**
+    * Record an access to the specified block, and start
+    * reading ahead if the file is being read sequentially.
+    * The number of blocks read ahead is limited to a quarter
+    * of the unpinned buffers.
+    * @param blk the block that was accessed
+    */
+   synchronized void accessed(BlockId blk) {
+      int n = blk.number();
+      SeqState st = states.get(blk.fileName());
+      if (st == null) {
+         states.put(blk.fileName(), new SeqState(n));
+         return;
+      }
+      if (n == st.last + 1)
+         st.run++;
+      else if (n != st.last) {
+         st.run = 1;
+         st.ahead = n;
+      }
+      st.last = n;
+      if (st.run < TRIGGER || st.ahead - n > window / 2)
+         return;
+      int first = Math.max(st.ahead, n) + 1;
+      int last = n + Math.min(window, bm.available() / 4);
+      if (last < first)
+         return;
+      st.ahead = last;
+      String filename = blk.fileName();
+      reader.execute(() -> readAhead(filename, first, last));
+   }
+
+   /**
+    * Return the number of blocks read ahead.
+    * @return the number of blocks read ahead
+    */
+   long blocksRead() {
+      return blocksRead.get();
+   }
+
+   /**
+    * Stop the background reader thread.
+    */
+   void shutdown() {
+      reader.shutdownNow();
+   }
+
+   private void readAhead(String filename, int first, int last) {
+      int size = fm.length(filename);
+      for (int i=first; i<=last && i<size; i++)
+         if (bm.readAhead(new BlockId(filename, i)))
+            blocksRead.incrementAndGet();
+   }
+
+   /**
+    * The access pattern of one file.
+    */
+   private static class SeqState {
+      int last, ahead, run = 1;
+
+      SeqState(int blknum) {
+         last = ahead = blknum;
+      }
+   }
+}
@@ -0,0 +1,35 @@
+package simpledb.buffer;
+
+/**
+ * The buffer replacement policies that the buffer manager
+ * can be configured with.
+ */
+public enum ReplacementPolicy {
+   /** Replace the first unpinned buffer found. */
+   NAIVE,
+   /** Second-chance replacement using a reference bit per buffer. */
+   CLOCK,
+   /** Replace the buffer whose second-most-recent access is oldest. */
+   LRU_K,
+   /** Keep blocks referenced only once in a FIFO queue apart from hot blocks. */
+   TWO_Q;
+
+   /**
+    * Create a new strategy object implementing this policy
+    * for a pool of the specified size.
+    * @param numbuffs the number of buffers the strategy manages
+    * @return the new strategy
+    */
+   public ReplacementStrategy newStrategy(int numbuffs) {
+      switch (this) {
+      case CLOCK:
+         return new ClockStrategy();
+      case LRU_K:
+         return new LRUKStrategy(2, numbuffs);
+      case TWO_Q:
+         return new TwoQStrategy(numbuffs);
+      default:
+         return new NaiveStrategy();
+      }
+   }
+}
@@ -0,0 +1,54 @@
+package simpledb.buffer;
+
+/**
+ * The interface implemented by each buffer replacement strategy.
+ * The buffer manager keeps the mapping from blocks to buffers;
+ * a strategy only decides which resident buffer to give up
+ * when a block needs to be read in and no buffer is free.
+ * Only buffers that currently hold a block are known to the strategy.
+ */
+public interface ReplacementStrategy {
+
+   /**
+    * Called after the buffer has been assigned to a new block.
+    * @param buff the buffer, whose block() is the new block
+    */
+   void assigned(Buffer buff);
+
+   /**
+    * Called each time the buffer is pinned,
+    * whether or not its block was already resident.
+    * @param buff the pinned buffer
+    */
+   void accessed(Buffer buff);
+
+   /**
+    * Called when the buffer's pin count drops to zero,
+    * making it a candidate for replacement.
+    * @param buff the unpinned buffer
+    */
+   void unpinned(Buffer buff);
+
+   /**
+    * Called just before the buffer's current block
+    * is removed from the buffer pool.
+    * @param buff the buffer being emptied
+    */
+   void evicted(Buffer buff);
+
+   /**
+    * Choose an unpinned buffer to be replaced.
+    * Returns a null value if every buffer is pinned.
+    * @return the buffer to replace
+    */
+   Buffer chooseUnpinnedBuffer();
+
+   /**
+    * Called when the number of buffers that the strategy
+    * manages changes, as buffers move between stripes.
+    * Limits that depend on the pool size take effect
+    * at the next eviction.
+    * @param numbuffs the number of buffers in the stripe
+    */
+   void resize(int numbuffs);
+}
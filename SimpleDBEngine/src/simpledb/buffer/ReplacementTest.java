@@ -0,0 +1,32 @@
+package simpledb.buffer;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+
+public class ReplacementTest {
+   private static final int NUMBUFFS = 8;
+
+   public static void main(String[] args) {
+      for (ReplacementPolicy policy : ReplacementPolicy.values()) {
+         SimpleDB db = new SimpleDB("replacementtest", 400, NUMBUFFS, policy);
+         BufferMgr bm = db.bufferMgr();
+         runWorkload(bm);
+         System.out.println(policy + ": hits=" + bm.hits() 
+               + " misses=" + bm.misses() + " evictions=" + bm.evictions());
+      }
+   }
+
+   // Two "catalog" blocks are read between every block
+   // of a sequential scan that is much larger than the pool.
+   private static void runWorkload(BufferMgr bm) {
+      BlockId cat0 = new BlockId("catfile", 0);
+      BlockId cat1 = new BlockId("catfile", 1);
+      for (int pass=0; pass<3; pass++) {
+         for (int i=0; i<5*NUMBUFFS; i++) {
+            bm.unpin(bm.pin(cat0));
+            bm.unpin(bm.pin(cat1));
+            bm.unpin(bm.pin(new BlockId("scanfile", i)));
+         }
+      }
+   }
+}
@@ -0,0 +1,90 @@
+package simpledb.buffer;
+
+import java.util.*;
+import simpledb.file.BlockId;
+
+/**
+ * The 2Q replacement strategy (Johnson and Shasha).
+ * A block read in for the first time goes into a FIFO queue, A1in.
+ * If it is evicted from A1in, its id is remembered in a ghost
+ * queue, A1out; if the block is read in again while its id is
+ * still in A1out, it goes into an LRU queue, Am, of hot blocks.
+ * Victims are taken from A1in whenever A1in exceeds its share
+ * of the buffers, so a long sequential scan cycles through A1in
+ * without disturbing the blocks in Am.
+ */
+class TwoQStrategy implements ReplacementStrategy {
+   private int kin, kout;
+   private LinkedHashSet<Buffer> a1in = new LinkedHashSet<>();
+   private LinkedHashSet<Buffer> am = new LinkedHashSet<>();
+   private LinkedHashSet<BlockId> a1out = new LinkedHashSet<>();
+
+   /**
+    * Create a 2Q strategy using the sizes recommended
+    * by the paper: A1in holds a quarter of the buffers,
+    * and A1out remembers half as many blocks as there are buffers.
+    * @param numbuffs the number of buffers
+    */
+   public TwoQStrategy(int numbuffs) {
+      resize(numbuffs);
+   }
+
+   public void assigned(Buffer buff) {
+      if (a1out.remove(buff.block()))
+         am.add(buff);
+      else
+         a1in.add(buff);
+   }
+
+   /**
+    * Move a hot buffer to the most-recently-used end of Am.
+    * References to a buffer in A1in are ignored, as they are
+    * likely to be correlated with the reference that read it in.
+    */
+   public void accessed(Buffer buff) {
+      if (am.remove(buff))
+         am.add(buff);
+   }
+
+   public void unpinned(Buffer buff) {}
+
+   public void evicted(Buffer buff) {
+      if (a1in.remove(buff)) {
+         a1out.add(buff.block());
+         Iterator<BlockId> iter = a1out.iterator();
+         while (a1out.size() > kout) {
+            iter.next();
+            iter.remove();
+         }
+      }
+      else
+         am.remove(buff);
+   }
+
+   public Buffer chooseUnpinnedBuffer() {
+      Buffer buff = null;
+      if (a1in.size() > kin)
+         buff = firstEvictable(a1in);
+      if (buff == null)
+         buff = firstEvictable(am);
+      if (buff == null)
+         buff = firstEvictable(a1in);
+      return buff;
+   }
+
+   /**
+    * Recompute the sizes of A1in and A1out
+    * for the new number of buffers.
+    */
+   public void resize(int numbuffs) {
+      kin = Math.max(numbuffs / 4, 1);
+      kout = Math.max(numbuffs / 2, 1);
+   }
+
+   private Buffer firstEvictable(Collection<Buffer> queue) {
+      for (Buffer buff : queue)
+         if (buff.isEvictable())
+            return buff;
+      return null;
+   }
+}
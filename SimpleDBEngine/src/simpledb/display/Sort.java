@@ -22,7 +22,8 @@ public class Sort implements ExecutionChain{
             output += key + " " + (sortfields.get(key) ? "ASC" : "DSC") + ", ";
         }
 
-        return output.substring(0, output.length() - 2);
+        // an aggregation without a group by sorts on no fields
+        return output.isEmpty() ? output : output.substring(0, output.length() - 2);
     }
 
     @Override
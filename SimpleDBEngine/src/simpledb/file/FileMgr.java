@@ -1,17 +1,57 @@
 package simpledb.file;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * The file manager. Blocks are read and written with
+ * positional channel I/O, so the methods need no lock:
+ * reads and writes of different blocks, in the same file
+ * or not, proceed in parallel. Only appends and multi-block
+ * reads and writes of the same file are serialized.
+ * When written blocks are forced to disk is decided by
+ * the manager's sync policy.
+ * <P>
+ * Files grow in extents of MIN_EXTENT to MAX_EXTENT blocks,
+ * which are written out when they are added rather than
+ * one block per append. A file is therefore usually longer
+ * than the blocks it holds, so it starts with a header
+ * that records how many blocks are in use.
+ * The header and the extent are forced along with the
+ * file's blocks: a file that has grown since it was last
+ * forced is forced with its metadata, so that its new size
+ * is on disk too, and a committed append is never lost.
+ * Files written before there was a header are still read:
+ * a file that does not start with the magic number holds
+ * only blocks, all in use, and grows one block at a time.
+ */
 public class FileMgr {
+   static final int MAGIC = 0x53444d46;
+   static final int LENGTH_POS = Integer.BYTES;
+   static final int HEADER_SIZE = 2 * Integer.BYTES;
+   private static final int MIN_EXTENT = 64;
+   private static final int MAX_EXTENT = 1024;
    private File dbDirectory;
    private int blocksize;
    private boolean isNew;
-   private Map<String,RandomAccessFile> openFiles = new HashMap<>();
+   private SyncPolicy syncPolicy;
+   private Map<String,DbFile> openFiles = new ConcurrentHashMap<>();
+   private Set<String> unforced = ConcurrentHashMap.newKeySet();
+   private ByteBuffer zeros;
 
    public FileMgr(File dbDirectory, int blocksize) {
+      this(dbDirectory, blocksize, SyncPolicy.COMMIT);
+   }
+
+   public FileMgr(File dbDirectory, int blocksize, SyncPolicy syncPolicy) {
       this.dbDirectory = dbDirectory;
       this.blocksize = blocksize;
+      this.syncPolicy = syncPolicy;
+      zeros = ByteBuffer.allocateDirect(MIN_EXTENT * blocksize);
       isNew = !dbDirectory.exists();
 
       // create the directory if the database is new
@@ -24,68 +64,382 @@ public class FileMgr {
          		new File(dbDirectory, filename).delete();
    }
 
-   public synchronized void read(BlockId blk, Page p) {
-      try {
-         RandomAccessFile f = getFile(blk.fileName());
-         f.seek(blk.number() * blocksize);
-         f.getChannel().read(p.contents());
-      }
-      catch (IOException e) {
-         throw new RuntimeException("cannot read block " + blk);
+   public void read(BlockId blk, Page p) {
+      DbFile f = getFile(blk.fileName());
+      long pos = f.offset(blk.number());
+      while (true) {
+         FileChannel fc = f.channel;
+         try {
+            ByteBuffer bb = p.contents();
+            while (bb.hasRemaining() && fc.read(bb, pos + bb.position()) >= 0)
+               ;
+            while (bb.hasRemaining())  // past the end of the file
+               bb.put((byte) 0);
+            return;
+         }
+         catch (ClosedChannelException e) {
+            f.closed(fc);
+         }
+         catch (IOException e) {
+            throw new RuntimeException("cannot read block " + blk);
+         }
       }
    }
 
-   public synchronized void write(BlockId blk, Page p) {
-      try {
-         RandomAccessFile f = getFile(blk.fileName());
-         f.seek(blk.number() * blocksize);
-         f.getChannel().write(p.contents());
-      }
-      catch (IOException e) {
-         throw new RuntimeException("cannot write block" + blk);
+   public void write(BlockId blk, Page p) {
+      DbFile f = getFile(blk.fileName());
+      if (blk.number() >= f.length)
+         f.extendTo(blk.number() + 1);
+      long pos = f.offset(blk.number());
+      while (true) {
+         FileChannel fc = f.channel;
+         try {
+            ByteBuffer bb = p.contents();
+            while (bb.hasRemaining())
+               fc.write(bb, pos + bb.position());
+            break;
+         }
+         catch (ClosedChannelException e) {
+            f.closed(fc);
+         }
+         catch (IOException e) {
+            throw new RuntimeException("cannot write block " + blk);
+         }
       }
+      written(blk.fileName());
    }
 
-   public synchronized BlockId append(String filename) {
-      int newblknum = length(filename);
-      BlockId blk = new BlockId(filename, newblknum);
-      byte[] b = new byte[blocksize];
-      try {
-         RandomAccessFile f = getFile(blk.fileName());
-         f.seek(blk.number() * blocksize);
-         f.write(b);
-      }
-      catch (IOException e) {
-         throw new RuntimeException("cannot append block" + blk);
+   /**
+    * Reads consecutive blocks of a file into the specified pages
+    * with a single scatter read, the first block into pages[0].
+    * @param filename the name of the file
+    * @param startblk the number of the first block
+    * @param pages the pages to read into
+    */
+   public void readRange(String filename, int startblk, Page[] pages) {
+      DbFile f = getFile(filename);
+      long pos = f.offset(startblk);
+      withChannel(f, "cannot read blocks of ", filename, fc -> {
+         ByteBuffer[] bbs = contents(pages);
+         ByteBuffer last = bbs[bbs.length-1];
+         synchronized (f) {
+            fc.position(pos);
+            while (last.hasRemaining() && fc.read(bbs) >= 0)
+               ;
+         }
+         for (ByteBuffer bb : bbs)  // past the end of the file
+            while (bb.hasRemaining())
+               bb.put((byte) 0);
+         return null;
+      });
+   }
+
+   /**
+    * Writes the specified pages to consecutive blocks of a file
+    * with a single gather write, pages[0] to the first block.
+    * @param filename the name of the file
+    * @param startblk the number of the first block
+    * @param pages the pages to write
+    */
+   public void writeRange(String filename, int startblk, Page[] pages) {
+      DbFile f = getFile(filename);
+      if (startblk + pages.length > f.length)
+         f.extendTo(startblk + pages.length);
+      long pos = f.offset(startblk);
+      withChannel(f, "cannot write blocks of ", filename, fc -> {
+         ByteBuffer[] bbs = contents(pages);
+         ByteBuffer last = bbs[bbs.length-1];
+         synchronized (f) {
+            fc.position(pos);
+            while (last.hasRemaining())
+               fc.write(bbs);
+         }
+         return null;
+      });
+      written(filename);
+   }
+
+   public BlockId append(String filename) {
+      return appendMany(filename, 1);
+   }
+
+   /**
+    * Appends the specified number of zeroed blocks to a file.
+    * The blocks usually lie in an extent that has already
+    * been written, in which case the only I/O is
+    * the update of the file's header.
+    * @param filename the name of the file
+    * @param n the number of blocks to append
+    * @return a reference to the first of the new blocks
+    */
+   public BlockId appendMany(String filename, int n) {
+      DbFile f = getFile(filename);
+      int newblknum;
+      synchronized (f) {
+         newblknum = f.length;
+         f.extendTo(newblknum + n);
       }
-      return blk;
+      written(filename);
+      return new BlockId(filename, newblknum);
    }
 
    public int length(String filename) {
+      return getFile(filename).length;
+   }
+
+   /**
+    * Ensures that every block written to the specified file
+    * is on disk. Under the ALWAYS policy each write was
+    * already forced, and under NEVER nothing is forced.
+    * @param filename the name of the file
+    */
+   public void force(String filename) {
+      if (unforced.remove(filename))
+         forceFile(filename);
+   }
+
+   /**
+    * Ensures that every block written to any file is on disk.
+    * Called when a transaction commits and at checkpoints.
+    */
+   public void forceAll() {
+      for (String filename : unforced)
+         force(filename);
+   }
+
+   /**
+    * Returns the names of the files in the database directory
+    * that start with the specified prefix.
+    * @param prefix the beginning of the file names
+    * @return the names of the matching files
+    */
+   public List<String> fileNames(String prefix) {
+      List<String> result = new ArrayList<>();
+      for (String filename : dbDirectory.list())
+         if (filename.startsWith(prefix))
+            result.add(filename);
+      return result;
+   }
+
+   /**
+    * Closes the specified file and removes it from the disk.
+    * The caller must ensure that no other thread
+    * is still using the file.
+    * @param filename the name of the file
+    */
+   public void delete(String filename) {
+      unforced.remove(filename);
+      DbFile f = openFiles.remove(filename);
       try {
-         RandomAccessFile f = getFile(filename);
-         return (int)(f.length() / blocksize);
+         if (f != null)
+            f.channel.close();
       }
       catch (IOException e) {
-         throw new RuntimeException("cannot access " + filename);
+         throw new RuntimeException("cannot close " + filename);
       }
+      dbFile(filename).delete();
    }
 
    public boolean isNew() {
       return isNew;
    }
-   
+
    public int blockSize() {
       return blocksize;
    }
 
-   private RandomAccessFile getFile(String filename) throws IOException {
-      RandomAccessFile f = openFiles.get(filename);
-      if (f == null) {
-         File dbTable = new File(dbDirectory, filename);
-         f = new RandomAccessFile(dbTable, "rws");
-         openFiles.put(filename, f);
+   public SyncPolicy syncPolicy() {
+      return syncPolicy;
+   }
+
+   /**
+    * Records that the specified file has been written to,
+    * and forces it if the sync policy says so.
+    * Temporary files are never forced, since they do not
+    * survive a restart anyway.
+    */
+   void written(String filename) {
+      if (syncPolicy == SyncPolicy.NEVER || filename.startsWith("temp"))
+         return;
+      if (syncPolicy == SyncPolicy.ALWAYS)
+         forceFile(filename);
+      else
+         unforced.add(filename);
+   }
+
+   /**
+    * Forces the specified file's contents to disk,
+    * and its metadata as well if the file has grown.
+    */
+   void forceFile(String filename) {
+      DbFile f = openFiles.get(filename);
+      if (f != null) {
+         boolean grown = f.grown;
+         f.grown = false;
+         withChannel(f, "cannot force ", filename, fc -> {
+            fc.force(grown);
+            return null;
+         });
+      }
+   }
+
+   File dbFile(String filename) {
+      return new File(dbDirectory, filename);
+   }
+
+   private static ByteBuffer[] contents(Page[] pages) {
+      ByteBuffer[] bbs = new ByteBuffer[pages.length];
+      for (int i=0; i<pages.length; i++)
+         bbs[i] = pages[i].contents();
+      return bbs;
+   }
+
+   private DbFile getFile(String filename) {
+      return openFiles.computeIfAbsent(filename, fname -> {
+         try {
+            return new DbFile(fname);
+         }
+         catch (IOException e) {
+            throw new RuntimeException("cannot access " + fname);
+         }
+      });
+   }
+
+   /**
+    * Performs an operation on the file's channel,
+    * retrying it if the channel gets closed.
+    * Read and write do the same without the lambda.
+    */
+   private <T> T withChannel(DbFile f, String errmsg, Object what, ChannelOp<T> op) {
+      while (true) {
+         FileChannel fc = f.channel;
+         try {
+            return op.apply(fc);
+         }
+         catch (ClosedChannelException e) {
+            f.closed(fc);
+         }
+         catch (IOException e) {
+            throw new RuntimeException(errmsg + what);
+         }
+      }
+   }
+
+   private interface ChannelOp<T> {
+      T apply(FileChannel fc) throws IOException;
+   }
+
+   /**
+    * An open database file. The length is the number of
+    * blocks in use, and the capacity the number of blocks
+    * that have been written out. The blocks from zeroFrom
+    * up to the capacity are known to contain zeros,
+    * except those below the length.
+    * A file without a header has no room to record
+    * its length, which is therefore its capacity.
+    * The file has grown if it was created, or its length
+    * or capacity changed, since it was last forced.
+    */
+   private class DbFile {
+      private String name;
+      private volatile FileChannel channel;
+      private volatile int length;
+      private int capacity;
+      private int zeroFrom;
+      private int headersize = HEADER_SIZE;
+      private volatile boolean grown = false;
+
+      DbFile(String name) throws IOException {
+         this.name = name;
+         channel = open();
+         long size = channel.size();
+         ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+         if (size == 0) {
+            header.putInt(0, MAGIC);
+            header.putInt(LENGTH_POS, 0);
+            channel.write(header, 0);
+            grown = true;
+         }
+         else {
+            while (header.hasRemaining() && channel.read(header, header.position()) >= 0)
+               ;
+            if (header.getInt(0) != MAGIC)
+               headersize = 0;
+         }
+         capacity = (int) (Math.max(size - headersize, 0) / blocksize);
+         length = (headersize == 0) ? capacity : header.getInt(LENGTH_POS);
+         zeroFrom = capacity;
+      }
+
+      long offset(int blknum) {
+         return headersize + (long) blknum * blocksize;
+      }
+
+      /**
+       * Makes the file hold at least the specified number of blocks,
+       * zeroing the new blocks and adding an extent if needed.
+       */
+      synchronized void extendTo(int newlength) {
+         if (newlength <= length)
+            return;
+         grown = true;
+         if (headersize == 0) {
+            writeZeros(length, newlength);
+            length = capacity = zeroFrom = newlength;
+            return;
+         }
+         if (newlength > capacity) {
+            int extent = Math.min(Math.max(capacity, MIN_EXTENT), MAX_EXTENT);
+            int newcapacity = Math.max(capacity + extent, newlength);
+            writeZeros(capacity, newcapacity);
+            capacity = newcapacity;
+         }
+         if (length < zeroFrom)
+            writeZeros(length, Math.min(newlength, zeroFrom));
+         length = newlength;
+         ByteBuffer bb = ByteBuffer.allocate(Integer.BYTES);
+         bb.putInt(0, newlength);
+         withChannel(this, "cannot extend ", name, fc -> fc.write(bb, LENGTH_POS));
+      }
+
+      /**
+       * Called when an operation finds the channel closed.
+       * A channel is closed for every thread when a thread
+       * using it is interrupted. The interrupted thread gives up;
+       * the others replace the channel and try again.
+       */
+      synchronized void closed(FileChannel old) {
+         if (Thread.currentThread().isInterrupted())
+            throw new RuntimeException("interrupted while accessing " + name);
+         if (channel != old)
+            return;
+         try {
+            channel = open();
+         }
+         catch (IOException e) {
+            throw new RuntimeException("cannot access " + name);
+         }
+      }
+
+      private void writeZeros(int startblk, int endblk) {
+         long start = offset(startblk);
+         long end = offset(endblk);
+         withChannel(this, "cannot extend ", name, fc -> {
+            long pos = start;
+            while (pos < end) {
+               ByteBuffer bb = zeros.duplicate();
+               bb.limit((int) Math.min(bb.capacity(), end - pos));
+               while (bb.hasRemaining())
+                  pos += fc.write(bb, pos);
+            }
+            return null;
+         });
+      }
+
+      private FileChannel open() throws IOException {
+         return FileChannel.open(dbFile(name).toPath(),
+               StandardOpenOption.READ, StandardOpenOption.WRITE,
+               StandardOpenOption.CREATE);
       }
-      return f;
    }
 }
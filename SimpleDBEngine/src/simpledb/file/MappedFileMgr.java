@@ -0,0 +1,209 @@
+package simpledb.file;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A file manager that maps each database file into memory,
+ * so that reading or writing a block is a memory copy
+ * instead of a system call.
+ * A file is mapped in extents of EXTENT_BLOCKS blocks;
+ * an append that runs past the last extent grows the file
+ * by a whole extent. The files have the same format as
+ * those of the standard file manager, header included,
+ * so a database can be opened with either manager;
+ * only files written before there was a header must be
+ * opened with the standard one.
+ * <P>
+ * Writes only reach the operating system's page cache;
+ * when they are forced to disk is decided by the sync policy,
+ * as for the standard file manager.
+ */
+public class MappedFileMgr extends FileMgr {
+   private static final int EXTENT_BLOCKS = 256;
+   private Map<String,MappedFile> openFiles = new ConcurrentHashMap<>();
+   private byte[] zeros;
+
+   public MappedFileMgr(File dbDirectory, int blocksize) {
+      this(dbDirectory, blocksize, SyncPolicy.COMMIT);
+   }
+
+   public MappedFileMgr(File dbDirectory, int blocksize, SyncPolicy syncPolicy) {
+      super(dbDirectory, blocksize, syncPolicy);
+      zeros = new byte[blocksize];
+   }
+
+   public void read(BlockId blk, Page p) {
+      ByteBuffer region = getFile(blk.fileName()).region(blk.number());
+      ByteBuffer bb = p.contents();
+      if (region != null)
+         bb.put(region);
+      else
+         bb.put(new byte[bb.remaining()]);
+   }
+
+   public void write(BlockId blk, Page p) {
+      MappedFile f = getFile(blk.fileName());
+      if (blk.number() >= f.length)
+         f.extendTo(blk.number());
+      f.region(blk.number()).put(p.contents());
+      written(blk.fileName());
+   }
+
+   public void readRange(String filename, int startblk, Page[] pages) {
+      for (int i=0; i<pages.length; i++)
+         read(new BlockId(filename, startblk+i), pages[i]);
+   }
+
+   public void writeRange(String filename, int startblk, Page[] pages) {
+      for (int i=0; i<pages.length; i++)
+         write(new BlockId(filename, startblk+i), pages[i]);
+   }
+
+   public BlockId appendMany(String filename, int n) {
+      MappedFile f = getFile(filename);
+      int newblknum = f.appendBlocks(n);
+      written(filename);
+      return new BlockId(filename, newblknum);
+   }
+
+   public int length(String filename) {
+      return getFile(filename).length;
+   }
+
+   public void delete(String filename) {
+      MappedFile f = openFiles.remove(filename);
+      if (f != null)
+         f.close();
+      super.delete(filename);
+   }
+
+   void forceFile(String filename) {
+      MappedFile f = openFiles.get(filename);
+      if (f != null)
+         f.force();
+   }
+
+   private MappedFile getFile(String filename) {
+      return openFiles.computeIfAbsent(filename, fname -> {
+         try {
+            return new MappedFile(dbFile(fname));
+         }
+         catch (IOException e) {
+            throw new RuntimeException("cannot access " + fname);
+         }
+      });
+   }
+
+   /**
+    * A mapped database file: its header and its extents.
+    * Readers use the extent array without locking;
+    * the methods that grow the file are synchronized.
+    */
+   private class MappedFile {
+      private String name;
+      private FileChannel channel;
+      private MappedByteBuffer header;
+      private volatile MappedByteBuffer[] extents;
+      private volatile int length;
+
+      MappedFile(File file) throws IOException {
+         name = file.getName();
+         channel = new RandomAccessFile(file, "rw").getChannel();
+         boolean isnew = (channel.size() == 0);
+         header = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE);
+         if (isnew) {
+            header.putInt(0, MAGIC);
+            header.putInt(LENGTH_POS, 0);
+         }
+         else if (header.getInt(0) != MAGIC)
+            throw new IOException(name + " is not a mapped database file");
+         length = header.getInt(LENGTH_POS);
+         // a file written by the standard file manager
+         // can end in a partial extent, which mapping completes
+         long size = channel.size() - HEADER_SIZE;
+         int numextents = (int) ((size + extentSize() - 1) / extentSize());
+         extents = new MappedByteBuffer[numextents];
+         for (int i=0; i<numextents; i++)
+            extents[i] = mapExtent(i);
+      }
+
+      /**
+       * Returns a view of the specified block, or null
+       * if the block lies beyond the mapped extents.
+       */
+      ByteBuffer region(int blknum) {
+         MappedByteBuffer[] ext = extents;
+         int i = blknum / EXTENT_BLOCKS;
+         if (i >= ext.length)
+            return null;
+         int pos = (blknum % EXTENT_BLOCKS) * blockSize();
+         ByteBuffer region = ext[i].duplicate();
+         region.position(pos);
+         region.limit(pos + blockSize());
+         return region;
+      }
+
+      synchronized int appendBlocks(int n) {
+         int blknum = length;
+         extendTo(blknum + n - 1);
+         for (int i=blknum; i<blknum+n; i++)
+            region(i).put(zeros);
+         return blknum;
+      }
+
+      /**
+       * Makes the file long enough to hold the specified block,
+       * mapping new extents as needed.
+       */
+      synchronized void extendTo(int blknum) {
+         try {
+            MappedByteBuffer[] ext = extents;
+            while (blknum >= ext.length * EXTENT_BLOCKS) {
+               ext = Arrays.copyOf(ext, ext.length + 1);
+               ext[ext.length-1] = mapExtent(ext.length-1);
+            }
+            extents = ext;
+         }
+         catch (IOException e) {
+            throw new RuntimeException("cannot extend " + name);
+         }
+         if (blknum >= length) {
+            length = blknum + 1;
+            header.putInt(LENGTH_POS, length);
+         }
+      }
+
+      void force() {
+         for (MappedByteBuffer extent : extents)
+            extent.force();
+         header.force();
+      }
+
+      /**
+       * Closes the file's channel. The mapped extents
+       * stay valid until they are garbage collected.
+       */
+      void close() {
+         try {
+            channel.close();
+         }
+         catch (IOException e) {
+            throw new RuntimeException("cannot close " + name);
+         }
+      }
+
+      private MappedByteBuffer mapExtent(int i) throws IOException {
+         long pos = HEADER_SIZE + (long) i * extentSize();
+         return channel.map(MapMode.READ_WRITE, pos, extentSize());
+      }
+
+      private int extentSize() {
+         return EXTENT_BLOCKS * blockSize();
+      }
+   }
+}
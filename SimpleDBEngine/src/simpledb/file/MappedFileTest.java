@@ -0,0 +1,44 @@
+package simpledb.file;
+
+import java.io.*;
+
+public class MappedFileTest {
+   public static void main(String[] args) throws IOException {
+      File dir = new File("mappedfiletest");
+      FileMgr fm = new MappedFileMgr(dir, 400);
+      int start = fm.length("testfile");
+      System.out.println("the file starts with " + start + " blocks");
+
+      // append enough blocks to span several extents
+      Page p = new Page(fm.blockSize());
+      for (int i=0; i<600; i++) {
+         BlockId blk = fm.append("testfile");
+         p.setInt(80, blk.number());
+         fm.write(blk, p);
+      }
+      fm.forceAll();
+      System.out.println("the file now has " + fm.length("testfile") + " blocks");
+
+      // a second file manager sees the logical length, not the extents
+      FileMgr fm2 = new MappedFileMgr(dir, 400);
+      System.out.println("reopened, the file has " + fm2.length("testfile") + " blocks");
+      boolean ok = true;
+      Page p2 = new Page(fm2.blockSize());
+      for (int i=start; i<start+600; i++) {
+         fm2.read(new BlockId("testfile", i), p2);
+         if (p2.getInt(80) != i)
+            ok = false;
+      }
+      System.out.println("every block reads back correctly: " + ok);
+
+      // the standard file manager reads the same files
+      FileMgr fm3 = new FileMgr(dir, 400);
+      System.out.println("the standard manager sees " + fm3.length("testfile") + " blocks");
+      fm3.read(new BlockId("testfile", start+599), p2);
+      System.out.println("its last block holds " + p2.getInt(80));
+      BlockId first = fm3.appendMany("testfile", 100);
+      fm3.read(first, p2);
+      System.out.println("appended 100 blocks from " + first.number()
+            + ", now " + fm3.length("testfile") + " blocks; first holds " + p2.getInt(80));
+   }
+}
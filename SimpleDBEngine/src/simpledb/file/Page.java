@@ -25,18 +25,26 @@ public class Page {
       bb.putInt(offset, n);
    }
 
+   public long getLong(int offset) {
+      return bb.getLong(offset);
+   }
+
+   public void setLong(int offset, long n) {
+      bb.putLong(offset, n);
+   }
+
+   // absolute reads and writes leave the buffer's position alone,
+   // so the page can be read by several threads and written to disk at once
    public byte[] getBytes(int offset) {
-      bb.position(offset);
-      int length = bb.getInt();
+      int length = bb.getInt(offset);
       byte[] b = new byte[length];
-      bb.get(b);
+      bb.get(offset + Integer.BYTES, b);
       return b;
    }
 
    public void setBytes(int offset, byte[] b) {
-      bb.position(offset);
-      bb.putInt(b.length);
-      bb.put(b);
+      bb.putInt(offset, b.length);
+      bb.put(offset + Integer.BYTES, b);
    }
    
    public String getString(int offset) {
@@ -49,14 +57,61 @@ public class Page {
       setBytes(offset, b);
    }
 
+   /**
+    * Compare the string at the specified offset with the
+    * specified string, without creating a String for it.
+    * The charset stores each character as one byte holding
+    * its code, so comparing the bytes with the characters
+    * gives the order of String.compareTo.
+    * @param offset the offset of the string in the page
+    * @param s the string to compare with
+    * @return a negative number, zero or a positive number
+    * as the string in the page is less than, equal to or
+    * greater than s
+    */
+   public int compareString(int offset, String s) {
+      int length = bb.getInt(offset);
+      int n = Math.min(length, s.length());
+      for (int i=0; i<n; i++) {
+         int c = (bb.get(offset + Integer.BYTES + i) & 0xff) - s.charAt(i);
+         if (c != 0)
+            return c;
+      }
+      return length - s.length();
+   }
+
+   /**
+    * Return the hash code of the string at the specified
+    * offset, which is that of the String it holds.
+    * @param offset the offset of the string in the page
+    * @return the hash code of the string
+    */
+   public int hashString(int offset) {
+      int length = bb.getInt(offset);
+      int h = 0;
+      for (int i=0; i<length; i++)
+         h = 31 * h + (bb.get(offset + Integer.BYTES + i) & 0xff);
+      return h;
+   }
+
+   // a copy of the page's contents, such as a prior version of a block
+   public Page copy() {
+      ByteBuffer src = bb.duplicate();
+      src.clear();
+      Page p = new Page(new byte[src.capacity()]);
+      p.bb.put(src);
+      p.bb.clear();
+      return p;
+   }
+
    public static int maxLength(int strlen) {
       float bytesPerChar = CHARSET.newEncoder().maxBytesPerChar();
       return Integer.BYTES + (strlen * (int)bytesPerChar);
    }
 
-   // a package private method, needed by FileMgr
+   // a package private method, needed by FileMgr;
+   // each caller gets its own position over the shared contents
    ByteBuffer contents() {
-      bb.position(0);
-      return bb;
+      return bb.duplicate().clear();
    }
 }
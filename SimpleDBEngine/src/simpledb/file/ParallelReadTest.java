@@ -0,0 +1,45 @@
+package simpledb.file;
+
+import java.io.*;
+
+/**
+ * Measures how block reads scale when several threads
+ * scan the same file at the same time.
+ */
+public class ParallelReadTest {
+   private static final int NUM_BLOCKS = 4000;
+
+   public static void main(String[] args) throws Exception {
+      FileMgr fm = new FileMgr(new File("parallelreadtest"), 400);
+      Page p = new Page(fm.blockSize());
+      while (fm.length("testfile") < NUM_BLOCKS) {
+         BlockId blk = fm.append("testfile");
+         p.setInt(0, blk.number());
+         fm.write(blk, p);
+      }
+
+      for (int numthreads = 1; numthreads <= 8; numthreads *= 2) {
+         Thread[] threads = new Thread[numthreads];
+         for (int i=0; i<numthreads; i++)
+            threads[i] = new Thread(() -> scan(fm));
+         long start = System.nanoTime();
+         for (Thread t : threads)
+            t.start();
+         for (Thread t : threads)
+            t.join();
+         long elapsed = (System.nanoTime() - start) / 1000000;
+         long blocks = (long) numthreads * NUM_BLOCKS;
+         System.out.println(numthreads + " scans: " + blocks + " blocks in "
+               + elapsed + " ms (" + (blocks / Math.max(elapsed, 1)) + " blocks/ms)");
+      }
+   }
+
+   private static void scan(FileMgr fm) {
+      Page p = new Page(fm.blockSize());
+      for (int i=0; i<NUM_BLOCKS; i++) {
+         fm.read(new BlockId("testfile", i), p);
+         if (p.getInt(0) != i)
+            throw new RuntimeException("block " + i + " is wrong");
+      }
+   }
+}
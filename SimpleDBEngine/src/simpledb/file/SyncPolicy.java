@@ -0,0 +1,16 @@
+package simpledb.file;
+
+/**
+ * When the file manager forces written blocks to disk.
+ */
+public enum SyncPolicy {
+   /** Force every write as soon as it is made. */
+   ALWAYS,
+   /** Force written files only when asked to, that is,
+    *  when the log is flushed, when a checkpoint is taken
+    *  and when a transaction writes its pages. */
+   COMMIT,
+   /** Never force; leave it to the operating system.
+    *  A crash can lose committed transactions. */
+   NEVER
+}
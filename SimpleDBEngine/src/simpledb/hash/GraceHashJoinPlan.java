@@ -178,8 +178,7 @@ public class GraceHashJoinPlan implements Plan {
         }
         while (src.next()) {
             UpdateScan dest = scanList.
-                    get(src.getVal(hashonfield).
-                            hashCode() % partitions);
+                    get(src.hashField(hashonfield) % partitions);
             dest.insert();
             for (String fldname : sch.fields()) {
                 dest.setVal(fldname, src.getVal(fldname));
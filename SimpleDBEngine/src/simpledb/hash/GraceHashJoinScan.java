@@ -33,6 +33,9 @@ public class GraceHashJoinScan implements Scan {
     private int keyIterator = 0;
 
     private Map<Constant, ArrayList<Map<String, Constant>>> hashTable;
+    //the rows of the hash table matching the current s2 record,
+    //looked up once per record, or null if there are none
+    private List<Map<String, Constant>> matches;
     //there is a successful match but how can we find the
     //scan in s1.
 
@@ -95,17 +98,14 @@ public class GraceHashJoinScan implements Scan {
         //initialise hashtable
         hashTable = new HashMap<>();
         while (s1.next()) {
-            if (!hashTable.containsKey(s1.getVal(joinfield1))) {
-                hashTable.put(s1.getVal(joinfield1), new ArrayList<>());
-            }
-
             Map<String, Constant> row = new HashMap<>();
             for (String field : partitions1.get(0).getLayout().schema().fields()) {
                 row.put(field, s1.getVal(field));
             }
-            hashTable.get(s1.getVal(joinfield1)).add(row);
+            hashTable.computeIfAbsent(row.get(joinfield1), k -> new ArrayList<>()).add(row);
         }
         s1.close();
+        matches = hashTable.get(s2.getVal(joinfield2));
 
         return true;
     }
@@ -134,15 +134,17 @@ public class GraceHashJoinScan implements Scan {
      */
 
     public boolean next() {
+        if (allPartitionsClosed)
+            return false;
         while (true) {
             //first check if there are duplicate key values in our hashtable
-            if (hashTable.keySet().contains(s2.getVal(joinfield2)) &&
-                    keyIterator < hashTable.get(s2.getVal(joinfield2)).size()) {
+            if (matches != null && keyIterator < matches.size()) {
                 keyIterator++;
                 return true;
             }
             while (s2.next()) {
-                if (hashTable.keySet().contains(s2.getVal(joinfield2))) {
+                matches = hashTable.get(s2.getVal(joinfield2));
+                if (matches != null) {
                     keyIterator = 1;
                     return true;
                 }
@@ -161,8 +163,7 @@ public class GraceHashJoinScan implements Scan {
         if (s2.hasField(fldname))
             return s2.getInt(fldname);
         else {
-            return hashTable.get(s2.getVal(joinfield2))
-                    .get(keyIterator - 1).get(fldname).asInt();
+            return matches.get(keyIterator - 1).get(fldname).asInt();
         }
     }
 
@@ -175,7 +176,7 @@ public class GraceHashJoinScan implements Scan {
         if (s2.hasField(fldname))
             return s2.getVal(fldname);
         else {
-            return hashTable.get(s2.getVal(joinfield2)).get(keyIterator - 1).get(fldname);
+            return matches.get(keyIterator - 1).get(fldname);
         }
     }
 
@@ -188,8 +189,7 @@ public class GraceHashJoinScan implements Scan {
         if (s2.hasField(fldname))
             return s2.getString(fldname);
         else {
-            return hashTable.get(s2.getVal(joinfield2)).
-                    get(keyIterator - 1).get(fldname).asString();
+            return matches.get(keyIterator - 1).get(fldname).asString();
         }
     }
 
@@ -200,8 +200,7 @@ public class GraceHashJoinScan implements Scan {
      */
     public boolean hasField(String fldname) {
         return s2.hasField(fldname) ||
-                hashTable.get(s2.getVal(joinfield2)).
-                        get(keyIterator - 1).keySet().contains(fldname);
+                matches.get(keyIterator - 1).keySet().contains(fldname);
     }
 
     /**
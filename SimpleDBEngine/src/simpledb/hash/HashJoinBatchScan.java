@@ -0,0 +1,213 @@
+package simpledb.hash;
+
+import simpledb.query.Batch;
+import simpledb.query.BatchScan;
+import simpledb.record.Schema;
+
+import static java.sql.Types.INTEGER;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The batch scan class for an in-memory hash join.
+ * The first call to nextBatch copies the build side into
+ * vectors, and hashes each of its rows on the join field;
+ * the rows having the same join value are chained together.
+ * The probe side is then read a batch at a time, and each
+ * of its rows is output once for each matching build row.
+ * The whole build side must fit in memory, as a partition
+ * of GraceHashJoinScan does.
+ */
+public class HashJoinBatchScan implements BatchScan {
+    private BatchScan build, probe;
+    private String joinfield1, joinfield2;
+    private Schema sch = new Schema();
+    private Batch batch;
+
+    //the build side: its vectors, and for each join value
+    //the last of its rows, which is chained to the previous ones
+    private List<String> buildfields;
+    private int[][] buildints;
+    private String[][] buildstrings;
+    private int numbuilt;
+    private Map<Object, Integer> heads;
+    private int[] chain;
+    private boolean built;
+
+    //the probe side: the current batch and row, and the next matching build row
+    private Batch probebatch;
+    private int[] probecols;
+    private int probeindex, match;
+    private boolean probedone;
+
+    /**
+     * Create a hash join of the specified batch scans.
+     *
+     * @param build      the scan that is hashed, which should be the smaller
+     * @param joinfield1 the join field of the build scan
+     * @param probe      the scan whose rows are looked up
+     * @param joinfield2 the join field of the probe scan
+     */
+    public HashJoinBatchScan(BatchScan build, String joinfield1,
+                             BatchScan probe, String joinfield2) {
+        this.build = build;
+        this.joinfield1 = joinfield1;
+        this.probe = probe;
+        this.joinfield2 = joinfield2;
+        buildfields = build.schema().fields();
+        sch.addAll(build.schema());
+        sch.addAll(probe.schema());
+        batch = new Batch(sch);
+        beforeFirst();
+    }
+
+    /**
+     * Positions the scan before the first probe row.
+     * The build side is only read once.
+     *
+     * @see BatchScan#beforeFirst()
+     */
+    public void beforeFirst() {
+        probe.beforeFirst();
+        probebatch = null;
+        probeindex = -1;
+        match = -1;
+        probedone = false;
+    }
+
+    /**
+     * Fills the batch with the joined rows, moving to the
+     * next probe row when the current one has no more matches.
+     *
+     * @see BatchScan#nextBatch()
+     */
+    public Batch nextBatch() {
+        if (!built)
+            build();
+        batch.clear();
+        int nb = buildfields.size();
+        while (!batch.isFull()) {
+            if (match < 0) {
+                if (!nextProbeRow())
+                    break;
+                continue;
+            }
+            int prow = probebatch.selection()[probeindex];
+            int row = batch.addRow();
+            for (int c = 0; c < nb; c++) {
+                if (batch.isInt(c))
+                    batch.ints(c)[row] = buildints[c][match];
+                else
+                    batch.strings(c)[row] = buildstrings[c][match];
+            }
+            for (int c = 0; c < probecols.length; c++) {
+                if (batch.isInt(nb + c))
+                    batch.ints(nb + c)[row] = probebatch.ints(probecols[c])[prow];
+                else
+                    batch.strings(nb + c)[row] = probebatch.strings(probecols[c])[prow];
+            }
+            match = chain[match];
+        }
+        return (batch.size() > 0) ? batch : null;
+    }
+
+    public Schema schema() {
+        return sch;
+    }
+
+    /**
+     * Closes the scan by closing both of its sides.
+     *
+     * @see BatchScan#close()
+     */
+    public void close() {
+        build.close();
+        probe.close();
+    }
+
+    /**
+     * Moves to the next probe row, reading the next probe
+     * batch if needed, and looks up its first match.
+     */
+    private boolean nextProbeRow() {
+        if (probedone)
+            return false;
+        probeindex++;
+        if (probebatch == null || probeindex >= probebatch.size()) {
+            probebatch = probe.nextBatch();
+            probeindex = 0;
+            if (probebatch == null) {
+                probedone = true;
+                return false;
+            }
+            List<String> probefields = probe.schema().fields();
+            probecols = new int[probefields.size()];
+            for (int c = 0; c < probecols.length; c++)
+                probecols[c] = probebatch.column(probefields.get(c));
+        }
+        int prow = probebatch.selection()[probeindex];
+        Integer head = heads.get(value(probebatch, probebatch.column(joinfield2), prow));
+        match = (head == null) ? -1 : head;
+        return true;
+    }
+
+    private void build() {
+        build.beforeFirst();
+        int nb = buildfields.size();
+        buildints = new int[nb][];
+        buildstrings = new String[nb][];
+        chain = new int[16];
+        for (int c = 0; c < nb; c++) {
+            if (build.schema().type(buildfields.get(c)) == INTEGER)
+                buildints[c] = new int[chain.length];
+            else
+                buildstrings[c] = new String[chain.length];
+        }
+        heads = new HashMap<>();
+        numbuilt = 0;
+        Batch b;
+        while ((b = build.nextBatch()) != null) {
+            int[] cols = new int[nb];
+            for (int c = 0; c < nb; c++)
+                cols[c] = b.column(buildfields.get(c));
+            int keycol = b.column(joinfield1);
+            int[] sel = b.selection();
+            for (int i = 0; i < b.size(); i++) {
+                int row = sel[i];
+                if (numbuilt == chain.length)
+                    grow();
+                for (int c = 0; c < nb; c++) {
+                    if (buildints[c] != null)
+                        buildints[c][numbuilt] = b.ints(cols[c])[row];
+                    else
+                        buildstrings[c][numbuilt] = b.strings(cols[c])[row];
+                }
+                Integer head = heads.put(value(b, keycol, row), numbuilt);
+                chain[numbuilt] = (head == null) ? -1 : head;
+                numbuilt++;
+            }
+        }
+        built = true;
+    }
+
+    private void grow() {
+        int length = 2 * chain.length;
+        chain = Arrays.copyOf(chain, length);
+        for (int c = 0; c < buildfields.size(); c++) {
+            if (buildints[c] != null)
+                buildints[c] = Arrays.copyOf(buildints[c], length);
+            else
+                buildstrings[c] = Arrays.copyOf(buildstrings[c], length);
+        }
+    }
+
+    private static Object value(Batch b, int col, int row) {
+        if (b.isInt(col))
+            return b.ints(col)[row];
+        else
+            return b.strings(col)[row];
+    }
+}
@@ -216,7 +216,7 @@ public class BTPage {
    private Constant getVal(int slot, String fldname) {
       int type = layout.schema().type(fldname);
       if (type == INTEGER)
-         return new Constant(getInt(slot, fldname));
+         return Constant.valueOf(getInt(slot, fldname));
       else
          return new Constant(getString(slot, fldname));
    }
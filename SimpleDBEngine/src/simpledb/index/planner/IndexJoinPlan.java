@@ -43,7 +43,7 @@ public class IndexJoinPlan implements Plan {
    public Scan open() {
       Scan s = p1.open();
       // throws an exception if p2 is not a tableplan
-      TableScan ts = (TableScan) p2.open();
+      UpdateScan ts = (UpdateScan) p2.open();
       Index idx = ii.open();
       return new IndexJoinScan(s, idx, joinfield, ts);
    }
@@ -39,7 +39,7 @@ public class IndexSelectPlan implements Plan {
     */
    public Scan open() {
       // throws an exception if p is not a tableplan.
-      TableScan ts = (TableScan) p.open();
+      UpdateScan ts = (UpdateScan) p.open();
       Index idx = ii.open();
       return new IndexSelectScan(ts, idx, val);
    }
@@ -51,6 +51,8 @@ public class IndexUpdatePlanner implements UpdatePlanner {
    
    public int executeDelete(DeleteData data, Transaction tx) {
       String tblname = data.tableName();
+      if (mdm.getLayout(tblname, tx).format() == Layout.COLUMNAR)
+         throw new RuntimeException("cannot delete from columnar table " + tblname);
       Plan p = new TablePlan(tx, tblname, mdm);
       p = new SelectPlan(p, data.pred());
       Map<String,IndexInfo> indexes = mdm.getIndexInfo(tblname, tx);
@@ -105,7 +107,7 @@ public class IndexUpdatePlanner implements UpdatePlanner {
    }
    
    public int executeCreateTable(CreateTableData data, Transaction tx) {
-      mdm.createTable(data.tableName(), data.newSchema(), tx);
+      mdm.createTable(data.tableName(), data.newSchema(), data.format(), tx);
       return 0;
    }
    
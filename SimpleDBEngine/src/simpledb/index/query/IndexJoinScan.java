@@ -1,7 +1,6 @@
 package simpledb.index.query;
 
 import simpledb.index.Index;
-import simpledb.record.TableScan;
 import simpledb.query.*;
 
 /**
@@ -16,7 +15,7 @@ public class IndexJoinScan implements Scan {
    private Scan lhs;
    private Index idx;
    private String joinfield;
-   private TableScan rhs;  
+   private UpdateScan rhs;  
    
    /**
     * Creates an index join scan for the specified LHS scan and 
@@ -26,7 +25,7 @@ public class IndexJoinScan implements Scan {
     * @param joinfield the LHS field used for joining
     * @param rhs the RHS scan
     */
-   public IndexJoinScan(Scan lhs, Index idx, String joinfield, TableScan rhs) {
+   public IndexJoinScan(Scan lhs, Index idx, String joinfield, UpdateScan rhs) {
       this.lhs = lhs;
       this.idx  = idx;
       this.joinfield = joinfield;
@@ -2,7 +2,6 @@ package simpledb.index.query;
 
 import simpledb.record.RID;
 import simpledb.index.Index;
-import simpledb.record.TableScan;
 import simpledb.query.*;
 
 /**
@@ -11,7 +10,7 @@ import simpledb.query.*;
  * @author Edward Sciore
  */
 public class IndexSelectScan implements Scan {
-   private TableScan ts;
+   private UpdateScan ts;
    private Index idx;
    private Constant val;
    
@@ -21,7 +20,7 @@ public class IndexSelectScan implements Scan {
     * @param idx the index
     * @param val the selection constant
     */
-   public IndexSelectScan(TableScan ts, Index idx, Constant val) {
+   public IndexSelectScan(UpdateScan ts, Index idx, Constant val) {
       this.ts  = ts;
       this.idx = idx;
       this.val = val;
@@ -15,6 +15,7 @@ class EmbeddedConnection extends ConnectionAdapter {
    private SimpleDB db;
    private Transaction currentTx;
    private Planner planner;
+   private boolean readOnly = false;
 
    /**
     * Creates a connection
@@ -46,7 +47,7 @@ class EmbeddedConnection extends ConnectionAdapter {
     */
    public void commit() throws SQLException {
       currentTx.commit();
-      currentTx = db.newTx();
+      currentTx = newTx();
    }
 
    /**
@@ -54,7 +55,30 @@ class EmbeddedConnection extends ConnectionAdapter {
     */
    public void rollback() throws SQLException {
       currentTx.rollback();
-      currentTx = db.newTx();
+      currentTx = newTx();
+   }
+
+   /**
+    * Sets whether the connection's transactions are read-only.
+    * The current transaction is committed, and the next one
+    * is of the requested kind. A read-only transaction reads
+    * a snapshot without locks and writes nothing to the log,
+    * so queries do not wait for updates, and committing them
+    * costs no disk write.
+    */
+   public void setReadOnly(boolean readOnly) throws SQLException {
+      if (readOnly == this.readOnly)
+         return;
+      currentTx.commit();
+      this.readOnly = readOnly;
+      currentTx = newTx();
+   }
+
+   /**
+    * Returns true if the connection's transactions are read-only.
+    */
+   public boolean isReadOnly() throws SQLException {
+      return readOnly;
    }
 
    /**
@@ -65,5 +89,9 @@ class EmbeddedConnection extends ConnectionAdapter {
    Transaction getTransaction() {  
       return currentTx;
    }
+
+   private Transaction newTx() {
+      return readOnly ? db.newReadOnlyTx() : db.newTx();
+   }
 }
 
@@ -16,6 +16,7 @@ class RemoteConnectionImpl extends UnicastRemoteObject implements RemoteConnecti
    private SimpleDB db;
    private Transaction currentTx;
    private Planner planner;
+   private boolean readOnly = false;
    
    /**
     * Creates a remote connection
@@ -45,6 +46,28 @@ class RemoteConnectionImpl extends UnicastRemoteObject implements RemoteConnecti
       currentTx.commit();
    }
    
+   /**
+    * Sets whether the connection's transactions are read-only.
+    * The current transaction is committed, and the next one
+    * is of the requested kind.
+    * @see simpledb.jdbc.network.RemoteConnection#setReadOnly(boolean)
+    */
+   public void setReadOnly(boolean readOnly) throws RemoteException {
+      if (readOnly == this.readOnly)
+         return;
+      currentTx.commit();
+      this.readOnly = readOnly;
+      currentTx = newTx();
+   }
+   
+   /**
+    * Returns true if the connection's transactions are read-only.
+    * @see simpledb.jdbc.network.RemoteConnection#isReadOnly()
+    */
+   public boolean isReadOnly() throws RemoteException {
+      return readOnly;
+   }
+   
 // The following methods are used by the server-side classes.
    
    /**
@@ -62,7 +85,7 @@ class RemoteConnectionImpl extends UnicastRemoteObject implements RemoteConnecti
     */
    void commit() {
       currentTx.commit();
-      currentTx = db.newTx();
+      currentTx = newTx();
    }
    
    /**
@@ -71,7 +94,11 @@ class RemoteConnectionImpl extends UnicastRemoteObject implements RemoteConnecti
     */
    void rollback() {
       currentTx.rollback();
-      currentTx = db.newTx();
+      currentTx = newTx();
+   }
+   
+   private Transaction newTx() {
+      return readOnly ? db.newReadOnlyTx() : db.newTx();
    }
 }
 
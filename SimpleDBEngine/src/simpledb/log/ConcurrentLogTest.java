@@ -0,0 +1,75 @@
+package simpledb.log;
+
+import java.io.File;
+import java.util.*;
+import simpledb.file.*;
+
+/**
+ * Appends records from several threads at once,
+ * then checks that the log holds each record exactly once
+ * and that each thread's records are in the order it appended them.
+ */
+public class ConcurrentLogTest {
+   private static final int NUM_THREADS = 8;
+   private static final int RECORDS = 2000;
+
+   public static void main(String[] args) throws Exception {
+      FileMgr fm = new FileMgr(new File("concurrentlogtest"), 400);
+      LogMgr lm = new LogMgr(fm, "simpledb.log");
+      lm.startGroupCommit(100);
+      Thread[] threads = new Thread[NUM_THREADS];
+      for (int i=0; i<NUM_THREADS; i++) {
+         int id = i;
+         threads[i] = new Thread(() -> {
+            long lastlsn = 0;
+            for (int k=0; k<RECORDS; k++) {
+               long lsn = lm.append(record(id, k));
+               if (lsn <= lastlsn)
+                  System.out.println("thread " + id + " got a decreasing LSN");
+               lastlsn = lsn;
+               if (k % 100 == 0)
+                  lm.flushCommit(lsn);
+            }
+         });
+      }
+      long start = System.currentTimeMillis();
+      for (Thread t : threads)
+         t.start();
+      for (Thread t : threads)
+         t.join();
+      long elapsed = System.currentTimeMillis() - start;
+      System.out.println((NUM_THREADS * RECORDS) + " records appended in " + elapsed + " ms");
+      check(lm);
+
+      // a new log manager sees the same records
+      lm.stopGroupCommit();
+      check(new LogMgr(fm, "simpledb.log"));
+   }
+
+   private static byte[] record(int id, int k) {
+      byte[] b = new byte[2 * Integer.BYTES + (k % 13)];
+      Page p = new Page(b);
+      p.setInt(0, id);
+      p.setInt(Integer.BYTES, k);
+      return b;
+   }
+
+   private static void check(LogMgr lm) {
+      int[] next = new int[NUM_THREADS];
+      Arrays.fill(next, RECORDS - 1);
+      boolean ok = true;
+      Iterator<byte[]> iter = lm.iterator();
+      while (iter.hasNext()) {
+         Page p = new Page(iter.next());
+         int id = p.getInt(0);
+         int k = p.getInt(Integer.BYTES);
+         if (next[id] != k)
+            ok = false;
+         next[id]--;
+      }
+      for (int n : next)
+         if (n != -1)
+            ok = false;
+      System.out.println("the log holds every record in order: " + ok);
+   }
+}
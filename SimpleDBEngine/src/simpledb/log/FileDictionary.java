@@ -0,0 +1,93 @@
+package simpledb.log;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import simpledb.file.*;
+
+/**
+ * The dictionary that gives each file named in the log
+ * a small number, so that log records need not hold file names.
+ * The names are kept in their own file, in the order in which
+ * they were numbered; a new name is forced to disk before
+ * its number can appear in the log.
+ */
+class FileDictionary {
+   private FileMgr fm;
+   private String filename;
+   private Map<String,Integer> ids = new ConcurrentHashMap<>();
+   private List<String> names = new ArrayList<>();
+   private Page page;
+   private int blknum = 0, pos = 0;
+
+   /**
+    * Reads the dictionary stored in the specified file.
+    * In each block, the names are followed by an empty string.
+    * @param fm the file manager
+    * @param filename the name of the dictionary file
+    */
+   FileDictionary(FileMgr fm, String filename) {
+      this.fm = fm;
+      this.filename = filename;
+      page = new Page(fm.blockSize());
+      int size = fm.length(filename);
+      for (int b=0; b<size; b++) {
+         blknum = b;
+         fm.read(new BlockId(filename, b), page);
+         pos = 0;
+         String name = page.getString(pos);
+         while (name.length() > 0) {
+            ids.put(name, names.size());
+            names.add(name);
+            pos += Page.maxLength(name.length());
+            name = room(0) ? page.getString(pos) : "";
+         }
+      }
+   }
+
+   /**
+    * Returns the number of the specified file,
+    * adding the file to the dictionary if needed.
+    * @param name the name of the file
+    * @return its number
+    */
+   int id(String name) {
+      Integer id = ids.get(name);
+      return (id != null) ? id : add(name);
+   }
+
+   /**
+    * Returns the name of the file having the specified number.
+    * @param id the number of the file
+    * @return its name
+    */
+   synchronized String name(int id) {
+      return names.get(id);
+   }
+
+   private synchronized int add(String name) {
+      Integer id = ids.get(name);
+      if (id != null)
+         return id;
+      if (!room(name.length())) {
+         blknum++;
+         page = new Page(fm.blockSize());
+         pos = 0;
+      }
+      page.setString(pos, name);
+      pos += Page.maxLength(name.length());
+      BlockId blk = new BlockId(filename, blknum);
+      fm.write(blk, page);
+      fm.force(filename);
+      names.add(name);
+      ids.put(name, names.size() - 1);
+      return names.size() - 1;
+   }
+
+   /**
+    * Returns true if a name of the specified length
+    * and the empty string after it fit in the current block.
+    */
+   private boolean room(int namelength) {
+      return pos + Page.maxLength(namelength) + Integer.BYTES <= fm.blockSize();
+   }
+}
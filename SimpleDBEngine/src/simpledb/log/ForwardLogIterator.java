@@ -0,0 +1,94 @@
+package simpledb.log;
+
+import java.util.*;
+import simpledb.file.*;
+
+/**
+ * A class that moves through the records of the log file
+ * in the order in which they were appended,
+ * starting after a given position.
+ * The records of a block are stored backwards, so the
+ * iterator finds them all when it reads the block and
+ * then returns them from the last one found.
+ */
+public class ForwardLogIterator implements Iterator<byte[]> {
+   private LogMgr lm;
+   private int blocksize;
+   private long startpos;
+   private int blknum;
+   private int lastblk;
+   private LogBatch batch;
+   private Page p;
+   private int[] recpos = new int[0];
+   private int current = 0;
+   private long lsn = 0;
+
+   /**
+    * Creates an iterator for the records in the log file
+    * whose LSN is larger than the specified position.
+    */
+   ForwardLogIterator(LogMgr lm, int blocksize, long startpos, int lastblk) {
+      this.lm = lm;
+      this.blocksize = blocksize;
+      this.startpos = startpos;
+      this.lastblk = lastblk;
+      batch = new LogBatch(lm, blocksize);
+      blknum = Math.max((int) (startpos / blocksize), lm.firstBlock()) - 1;
+   }
+
+   /**
+    * Determines if there is a later record in the log.
+    * @return true if there is a later record
+    */
+   public boolean hasNext() {
+      while (current == recpos.length && blknum < lastblk) {
+         blknum++;
+         moveToBlock(blknum);
+      }
+      return current < recpos.length;
+   }
+
+   /**
+    * Moves to the next log record in the block,
+    * or to the first one of a following block.
+    * @return the next log record
+    */
+   public byte[] next() {
+      if (!hasNext())
+         throw new NoSuchElementException();
+      int pos = recpos[current++];
+      lsn = (long) blknum * blocksize + blocksize - pos;
+      return p.getBytes(pos);
+   }
+
+   /**
+    * Returns the LSN of the record most recently
+    * returned by {@link #next()}.
+    * @return the LSN of the current record
+    */
+   public long lsn() {
+      return lsn;
+   }
+
+   /**
+    * Reads the specified block and finds the positions
+    * of its records after the starting position,
+    * oldest first. The blocks after it are read along with it.
+    */
+   private void moveToBlock(int blknum) {
+      List<Integer> found = new ArrayList<>();
+      p = batch.page(blknum, blknum, Math.min(blknum + LogBatch.BATCH_BLOCKS - 1, lastblk));
+      if (p != null) {
+         int pos = p.getInt(0);
+         while (pos < blocksize) {
+            if ((long) blknum * blocksize + blocksize - pos > startpos)
+               found.add(pos);
+            pos += Integer.BYTES + p.getInt(pos);
+         }
+      }
+      recpos = new int[found.size()];
+      for (int i=0; i<recpos.length; i++)
+         recpos[i] = found.get(recpos.length - 1 - i);
+      current = 0;
+   }
+}
@@ -0,0 +1,54 @@
+package simpledb.log;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+
+/**
+ * Compares the commit throughput of concurrent small
+ * transactions with and without group commit.
+ */
+public class GroupCommitTest {
+   private static final int NUM_THREADS = 8;
+   private static final int COMMITS = 50;
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("groupcommittest", 400, 16);
+      LogMgr lm = db.logMgr();
+      Transaction tx = db.newTx();
+      for (int i=0; i<NUM_THREADS; i++)
+         tx.append("testfile");
+      tx.commit();
+
+      lm.stopGroupCommit();
+      run(db, "without group commit");
+      lm.startGroupCommit(200);
+      run(db, "with group commit");
+      System.out.println(lm.groupedCommits() + " commits were flushed in "
+            + lm.commitBatches() + " batches");
+   }
+
+   private static void run(SimpleDB db, String msg) throws InterruptedException {
+      Thread[] threads = new Thread[NUM_THREADS];
+      for (int i=0; i<NUM_THREADS; i++) {
+         BlockId blk = new BlockId("testfile", i);
+         threads[i] = new Thread(() -> {
+            for (int k=0; k<COMMITS; k++) {
+               Transaction tx = db.newTx();
+               tx.pin(blk);
+               tx.setInt(blk, 0, k, true);
+               tx.commit();
+            }
+         });
+      }
+      long start = System.currentTimeMillis();
+      for (Thread t : threads)
+         t.start();
+      for (Thread t : threads)
+         t.join();
+      long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+      int n = NUM_THREADS * COMMITS;
+      System.out.println(msg + ": " + n + " commits in " + elapsed + " ms ("
+            + (n * 1000 / elapsed) + " commits/s)");
+   }
+}
@@ -0,0 +1,51 @@
+package simpledb.log;
+
+import java.util.Arrays;
+import simpledb.file.*;
+
+/**
+ * The blocks of the log most recently read by an iterator.
+ * Log iterators visit consecutive blocks, so a batch of
+ * neighbouring blocks is read with a single call
+ * instead of one read per block.
+ */
+class LogBatch {
+   static final int BATCH_BLOCKS = 32;
+   private LogMgr lm;
+   private Page[] pages = new Page[BATCH_BLOCKS];
+   private int first = 0, count = 0;
+
+   LogBatch(LogMgr lm, int blocksize) {
+      this.lm = lm;
+      for (int i=0; i<BATCH_BLOCKS; i++)
+         pages[i] = new Page(blocksize);
+   }
+
+   /**
+    * Returns the page holding the specified block.
+    * If the block is not in the batch, the batch is refilled
+    * with as many blocks of the specified range as lie in
+    * the block's segment, up to BATCH_BLOCKS of them.
+    * @param blknum the number of the block, across segments
+    * @param lo the lowest block that may be read with it
+    * @param hi the highest block that may be read with it
+    * @return the page, or null if the block is no longer in the log
+    */
+   Page page(int blknum, int lo, int hi) {
+      if (blknum >= first && blknum < first + count)
+         return pages[blknum - first];
+      int segstart = blknum - blknum % lm.segmentBlocks();
+      lo = Math.max(lo, Math.max(segstart, lm.firstBlock()));
+      hi = Math.min(hi, segstart + lm.segmentBlocks() - 1);
+      count = 0;
+      if (blknum < lo)
+         return null;
+      first = Math.max(lo, hi - BATCH_BLOCKS + 1);
+      int n = Math.min(hi - first + 1, BATCH_BLOCKS);
+      Page[] target = (n == BATCH_BLOCKS) ? pages : Arrays.copyOf(pages, n);
+      if (!lm.readBlocks(first, target))
+         return null;
+      count = n;
+      return pages[blknum - first];
+   }
+}
@@ -0,0 +1,142 @@
+package simpledb.log;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The group-commit log flusher.
+ * A committing transaction hands the LSN of its commit record
+ * to the flusher and waits on a future. The flusher waits a
+ * little for other committers to join the batch, then writes
+ * and forces the tail of the log once for all of them.
+ * A batch is written early if it reaches MAX_BATCH requests.
+ * <P>
+ * Between batches, the flusher also writes each page of the
+ * log as soon as appenders have filled it, so that a slot in
+ * the log manager's ring of pages is free when it is needed.
+ */
+class LogFlusher implements Runnable {
+   private static final int MAX_BATCH = 64;
+   private LogMgr lm;
+   private long maxDelay;
+   private List<CompletableFuture<Void>> pending = new ArrayList<>();
+   private long maxLSN = 0;
+   private boolean pageFilled = false;
+   private boolean stopped = false;
+   private long batches = 0;
+   private long requests = 0;
+
+   /**
+    * Create a flusher for the specified log manager.
+    * @param lm the log manager
+    * @param maxDelay how long a batch waits for more committers, in microseconds
+    */
+   LogFlusher(LogMgr lm, long maxDelay) {
+      this.lm = lm;
+      this.maxDelay = TimeUnit.MICROSECONDS.toNanos(maxDelay);
+   }
+
+   public void run() {
+      while (true) {
+         List<CompletableFuture<Void>> batch;
+         long lsn;
+         synchronized (this) {
+            try {
+               while (pending.isEmpty() && !pageFilled && !stopped)
+                  wait();
+               if (pending.isEmpty() && stopped)
+                  return;
+               pageFilled = false;
+               if (!pending.isEmpty())
+                  awaitBatch();
+            }
+            catch(InterruptedException e) {
+               stopped = true;
+            }
+            batch = pending;
+            lsn = maxLSN;
+            pending = new ArrayList<>();
+            if (!batch.isEmpty()) {
+               batches++;
+               requests += batch.size();
+            }
+         }
+         if (batch.isEmpty()) {
+            lm.writeFullPages();
+            continue;
+         }
+         try {
+            lm.flush(lsn);
+            for (CompletableFuture<Void> f : batch)
+               f.complete(null);
+         }
+         catch(RuntimeException e) {
+            for (CompletableFuture<Void> f : batch)
+               f.completeExceptionally(e);
+         }
+      }
+   }
+
+   /**
+    * Let more committers join the batch, until the
+    * batch is full or the delay has passed.
+    */
+   private void awaitBatch() throws InterruptedException {
+      long deadline = System.nanoTime() + maxDelay;
+      long remaining = maxDelay;
+      while (pending.size() < MAX_BATCH && !stopped && remaining > 0) {
+         TimeUnit.NANOSECONDS.timedWait(this, remaining);
+         remaining = deadline - System.nanoTime();
+      }
+   }
+
+   /**
+    * Add a request to the current batch.
+    * Every log record appended before the call
+    * is on disk when the returned future completes.
+    * @param lsn the LSN of the record to be flushed
+    * @return the future, or null if the flusher has stopped
+    */
+   synchronized CompletableFuture<Void> enqueue(long lsn) {
+      if (stopped)
+         return null;
+      CompletableFuture<Void> f = new CompletableFuture<>();
+      pending.add(f);
+      maxLSN = Math.max(maxLSN, lsn);
+      if (pending.size() == 1 || pending.size() >= MAX_BATCH)
+         notifyAll();
+      return f;
+   }
+
+   /**
+    * Tell the flusher that a page of the log has been filled.
+    */
+   synchronized void pageFilled() {
+      pageFilled = true;
+      notifyAll();
+   }
+
+   /**
+    * Ask the flusher to stop once the pending requests are written.
+    */
+   synchronized void stop() {
+      stopped = true;
+      notifyAll();
+   }
+
+   /**
+    * Return the number of batches written.
+    * @return the number of batches
+    */
+   synchronized long batches() {
+      return batches;
+   }
+
+   /**
+    * Return the number of requests written in all batches.
+    * @return the number of requests
+    */
+   synchronized long requests() {
+      return requests;
+   }
+}
@@ -1,67 +1,91 @@
 package simpledb.log;
 
-import java.util.Iterator;
+import java.util.*;
 import simpledb.file.*;
 
 /**
  * A class that provides the ability to move through the
  * records of the log file in reverse order.
+ * Blocks are numbered across the segments of the log,
+ * and the iteration ends at the oldest block still in the log.
  * 
  * @author Edward Sciore
  */
-class LogIterator implements Iterator<byte[]> {
-   private FileMgr fm;
-   private BlockId blk;
+public class LogIterator implements Iterator<byte[]> {
+   private LogMgr lm;
+   private int blocksize;
+   private int blknum;
+   private LogBatch batch;
    private Page p;
    private int currentpos;
    private int boundary;
+   private long lsn = 0;
 
    /**
     * Creates an iterator for the records in the log file,
     * positioned after the last log record.
     */
-   public LogIterator(FileMgr fm, BlockId blk) {
-      this.fm = fm;
-      this.blk = blk;
-      byte[] b = new byte[fm.blockSize()];
-      p = new Page(b);
-      moveToBlock(blk);
+   LogIterator(LogMgr lm, int blocksize, int blknum) {
+      this.lm = lm;
+      this.blocksize = blocksize;
+      this.blknum = blknum;
+      batch = new LogBatch(lm, blocksize);
+      moveToBlock(blknum);
    }
 
    /**
     * Determines if the current log record
     * is the earliest record in the log file.
+    * Blocks without records, which a restart can leave
+    * in the log, are skipped.
     * @return true if there is an earlier record
     */
    public boolean hasNext() {
-      return currentpos<fm.blockSize() || blk.number()>0;
+      while (currentpos == blocksize && blknum > lm.firstBlock()) {
+         blknum--;
+         moveToBlock(blknum);
+      }
+      return currentpos < blocksize;
    }
 
    /**
     * Moves to the next log record in the block.
     * If there are no more log records in the block,
-    * then move to the previous block
+    * then move to the previous block that has records
     * and return the log record from there.
     * @return the next earliest log record
     */
    public byte[] next() {
-      if (currentpos == fm.blockSize()) {
-         blk = new BlockId(blk.fileName(), blk.number()-1);
-         moveToBlock(blk);
-      }
+      if (!hasNext())
+         throw new NoSuchElementException();
+      lsn = (long) blknum * blocksize + blocksize - currentpos;
       byte[] rec = p.getBytes(currentpos);
       currentpos += Integer.BYTES + rec.length;
       return rec;
    }
 
+   /**
+    * Returns the LSN of the record most recently
+    * returned by {@link #next()}.
+    * @return the LSN of the current record
+    */
+   public long lsn() {
+      return lsn;
+   }
+
    /**
     * Moves to the specified log block
     * and positions it at the first record in that block
     * (i.e., the most recent one).
+    * The blocks before it are read along with it.
+    * A block whose segment has been deleted has no records.
     */
-   private void moveToBlock(BlockId blk) {
-      fm.read(blk, p);
-      boundary = p.getInt(0);
+   private void moveToBlock(int blknum) {
+      p = batch.page(blknum, blknum - LogBatch.BATCH_BLOCKS + 1, blknum);
+      if (p != null)
+         boundary = p.getInt(0);
+      else
+         boundary = blocksize;
       currentpos = boundary;
    }
 }
@@ -1,42 +1,116 @@
 package simpledb.log;
 
-import java.util.Iterator;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
 import simpledb.file.*;
 
 /**
- * The log manager, which is responsible for 
- * writing log records into a log file. The tail of 
- * the log is kept in a bytebuffer, which is flushed
- * to disk when needed. 
+ * The log manager, which is responsible for
+ * writing log records into a log file. The tail of
+ * the log is kept in a ring of in-memory pages, which
+ * are written to disk when needed.
+ * <P>
+ * Appending a record does not take a lock. The appender
+ * reserves space with a compare-and-set on the log's tail
+ * position and then copies its bytes into the page,
+ * concurrently with other appenders. The appenders mark
+ * their records complete in log order, so that every record
+ * below the completed position can be written to disk.
+ * A page is written by whichever thread needs it on disk:
+ * the log flusher, a thread flushing the log,
+ * or an appender that needs the page's slot in the ring.
+ * <P>
+ * The LSN of a record is the position in the log
+ * just after it, so LSNs increase with the order of the
+ * records in the log, also across restarts. It is a long,
+ * since a log grows past 2 GiB over its lifetime even when
+ * checkpoints keep little of it on disk.
+ * <P>
+ * The log is stored in segments of a fixed number of blocks,
+ * each in its own file named after the log file and the
+ * segment's number. Segments whose records are no longer
+ * needed are deleted by {@link #truncate(long)}.
+ * The log records refer to files by number; the names are
+ * kept in a separate dictionary file.
  * @author Edward Sciore
  */
 public class LogMgr {
+   private static final int NUM_PAGES = 8;
+   private static final int SEGMENT_BLOCKS = 256;
    private FileMgr fm;
    private String logfile;
-   private Page logpage;
-   private BlockId currentblk;
-   private int latestLSN = 0;
-   private int lastSavedLSN = 0;
+   private int blocksize;
+   private int segmentBlocks;
+   private volatile int firstBlock;
+   private ReadWriteLock segmentLock = new ReentrantReadWriteLock();
+   private byte[][] pagebytes = new byte[NUM_PAGES][];
+   private Page[] pages = new Page[NUM_PAGES];
+   private AtomicIntegerArray slotBlock = new AtomicIntegerArray(NUM_PAGES);
+   private int[] sealedBoundary = new int[NUM_PAGES];
+   private long startPos;
+   private AtomicLong tail;
+   private AtomicLong completed;
+   private long writtenPos;
+   private volatile long flushedPos;
+   private final Object writeLock = new Object();
+   private volatile LogFlusher flusher;
+   private FileDictionary dictionary;
 
    /**
-    * Creates the manager for the specified log file.
-    * If the log file does not yet exist, it is created
-    * with an empty first block.
+    * Creates the manager for the specified log file,
+    * using segments of SEGMENT_BLOCKS blocks.
     * @param FileMgr the file manager
     * @param logfile the name of the log file
     */
    public LogMgr(FileMgr fm, String logfile) {
+      this(fm, logfile, SEGMENT_BLOCKS);
+   }
+
+   /**
+    * Creates the manager for the specified log file.
+    * The log continues in a new block after the existing ones;
+    * that block is written at once, so that the log file
+    * always ends with a valid block.
+    * @param FileMgr the file manager
+    * @param logfile the name of the log file
+    * @param segmentBlocks the number of blocks in a segment
+    */
+   public LogMgr(FileMgr fm, String logfile, int segmentBlocks) {
       this.fm = fm;
       this.logfile = logfile;
-      byte[] b = new byte[fm.blockSize()];
-      logpage = new Page(b);
-      int logsize = fm.length(logfile);
-      if (logsize == 0)
-         currentblk = appendNewBlock();
-      else {
-         currentblk = new BlockId(logfile, logsize-1);
-         fm.read(currentblk, logpage);
+      this.segmentBlocks = segmentBlocks;
+      blocksize = fm.blockSize();
+      dictionary = new FileDictionary(fm, logfile + "-files");
+      int firstseg = Integer.MAX_VALUE, lastseg = -1;
+      for (String filename : fm.fileNames(logfile + ".")) {
+         try {
+            int seg = Integer.parseInt(filename.substring(logfile.length() + 1));
+            firstseg = Math.min(firstseg, seg);
+            lastseg = Math.max(lastseg, seg);
+         }
+         catch(NumberFormatException e) {
+            // not a segment of this log
+         }
+      }
+      if (lastseg < 0)
+         firstseg = lastseg = 0;
+      firstBlock = firstseg * segmentBlocks;
+      int logsize = lastseg * segmentBlocks + fm.length(segmentName(lastseg));
+      for (int i=0; i<NUM_PAGES; i++) {
+         int blknum = logsize + i;
+         pagebytes[blknum % NUM_PAGES] = new byte[blocksize];
+         pages[blknum % NUM_PAGES] = new Page(pagebytes[blknum % NUM_PAGES]);
+         slotBlock.set(blknum % NUM_PAGES, blknum);
       }
+      startPos = (long) logsize * blocksize;
+      tail = new AtomicLong(startPos);
+      completed = new AtomicLong(startPos);
+      writtenPos = startPos;
+      flushedPos = startPos;
+      Page first = pages[logsize % NUM_PAGES];
+      first.setInt(0, blocksize);
+      fm.write(logBlock(logsize), first);
    }
 
    /**
@@ -45,60 +119,327 @@ public class LogMgr {
     * All earlier log records will also be written to disk.
     * @param lsn the LSN of a log record
     */
-   public void flush(int lsn) {
-      if (lsn >= lastSavedLSN)
-         flush();
+   public void flush(long lsn) {
+      if (lsn <= flushedPos)
+         return;
+      long target = Math.min(lsn, tail.get());
+      awaitCompleted(target);
+      writeUpTo(completed.get(), true);
+   }
+
+   /**
+    * Ensures that the commit or rollback record with the
+    * specified LSN has been written to disk.
+    * If group commit is on, the record is written by the
+    * log flusher together with those of other committers,
+    * and the calling thread waits for it.
+    * Otherwise the calling thread flushes the log itself.
+    * @param lsn the LSN of a commit or rollback record
+    */
+   public void flushCommit(long lsn) {
+      LogFlusher f = flusher;
+      CompletableFuture<Void> done = (f == null) ? null : f.enqueue(lsn);
+      if (done == null) {
+         flush(lsn);
+         return;
+      }
+      try {
+         done.join();
+      }
+      catch(CompletionException e) {
+         if (e.getCause() instanceof RuntimeException)
+            throw (RuntimeException) e.getCause();
+         throw e;
+      }
+   }
+
+   /**
+    * Turns on group commit: a daemon thread flushes the log
+    * on behalf of committing transactions, once per batch.
+    * The same thread writes each page of the log as soon as
+    * it is full, so that appenders seldom find the ring full.
+    * @param maxDelay how long a batch waits for more committers, in microseconds
+    */
+   public synchronized void startGroupCommit(long maxDelay) {
+      if (flusher != null)
+         return;
+      flusher = new LogFlusher(this, maxDelay);
+      Thread t = new Thread(flusher, "simpledb-log-flusher");
+      t.setDaemon(true);
+      t.start();
+   }
+
+   /**
+    * Turns off group commit. Pending commits are still
+    * flushed by the log flusher before it stops.
+    */
+   public synchronized void stopGroupCommit() {
+      if (flusher != null)
+         flusher.stop();
+      flusher = null;
+   }
+
+   /**
+    * Returns the number of log flushes done by group commit.
+    * @return the number of batches
+    */
+   public long commitBatches() {
+      LogFlusher f = flusher;
+      return (f == null) ? 0 : f.batches();
+   }
+
+   /**
+    * Returns the number of commits flushed by group commit.
+    * @return the number of commits
+    */
+   public long groupedCommits() {
+      LogFlusher f = flusher;
+      return (f == null) ? 0 : f.requests();
+   }
+
+   /**
+    * Returns an iterator over the records of the log,
+    * from the most recent one backwards.
+    * @return the log iterator
+    */
+   public LogIterator iterator() {
+      return new LogIterator(this, blocksize, writeTail());
+   }
+
+   /**
+    * Returns an iterator over the records of the log that
+    * follow the specified position, in the order in which
+    * they were appended. Records appended after the call
+    * are not included.
+    * @param pos the position to start after
+    * @return the forward log iterator
+    */
+   public ForwardLogIterator forwardIterator(long pos) {
+      return new ForwardLogIterator(this, blocksize, pos, writeTail());
+   }
+
+   /**
+    * Returns the LSN of the most recently appended record,
+    * that is, the current end of the log. Any record
+    * appended later has a larger LSN, and starts at or
+    * after the returned position.
+    * @return the LSN at the end of the log
+    */
+   public long lastLSN() {
+      return tail.get();
    }
 
-   public Iterator<byte[]> iterator() {
-      flush();
-      return new LogIterator(fm, currentblk);
+   /**
+    * Returns the size of the largest record that can be appended.
+    * @return the maximum record size in bytes
+    */
+   public int maxRecordSize() {
+      return blocksize - 2 * Integer.BYTES;
+   }
+
+   /**
+    * Deletes the segments of the log that lie entirely
+    * before the specified position.
+    * The segment holding the end of the log is never deleted.
+    * @param pos the position of the oldest log data still needed
+    */
+   public void truncate(long pos) {
+      int keepblk = (int) (Math.min(Math.max(pos, 0), flushedPos) / blocksize);
+      int keepseg = keepblk / segmentBlocks;
+      segmentLock.writeLock().lock();
+      try {
+         for (int seg = firstBlock / segmentBlocks; seg < keepseg; seg++) {
+            fm.delete(segmentName(seg));
+            firstBlock = (seg + 1) * segmentBlocks;
+         }
+      }
+      finally {
+         segmentLock.writeLock().unlock();
+      }
    }
 
    /**
-    * Appends a log record to the log buffer. 
-    * The record consists of an arbitrary array of bytes. 
+    * Appends a log record to the log buffer.
+    * The record consists of an arbitrary array of bytes.
     * Log records are written right to left in the buffer.
     * The size of the record is written before the bytes.
     * The beginning of the buffer contains the location
-    * of the last-written record (the "boundary").
+    * of the last-written record (the "boundary"), which
+    * is filled in when the page is written to disk.
     * Storing the records backwards makes it easy to read
     * them in reverse order.
     * @param logrec a byte buffer containing the bytes.
     * @return the LSN of the final value
     */
-   public synchronized int append(byte[] logrec) {
-      int boundary = logpage.getInt(0);
-      int recsize = logrec.length;
-      int bytesneeded = recsize + Integer.BYTES;
-      if (boundary - bytesneeded < Integer.BYTES) { // the log record doesn't fit,
-         flush();        // so move to the next block.
-         currentblk = appendNewBlock();
-         boundary = logpage.getInt(0);
+   public long append(byte[] logrec) {
+      int bytesneeded = logrec.length + Integer.BYTES;
+      if (bytesneeded > blocksize - Integer.BYTES)
+         throw new RuntimeException("log record of " + logrec.length + " bytes does not fit in a block");
+      while (true) {
+         long pos = tail.get();
+         int blknum = (int) (pos / blocksize);
+         int boundary = blocksize - (int) (pos % blocksize);
+         if (boundary - bytesneeded >= Integer.BYTES) {
+            if (tail.compareAndSet(pos, pos + bytesneeded)) {
+               int slot = awaitSlot(blknum);
+               int recpos = boundary - bytesneeded;
+               pages[slot].setInt(recpos, logrec.length);
+               System.arraycopy(logrec, 0, pagebytes[slot], recpos + Integer.BYTES, logrec.length);
+               complete(pos, pos + bytesneeded);
+               return pos + bytesneeded;
+            }
+         }
+         else { // the log record doesn't fit, so move to the next block
+            long nextblkpos = (long) (blknum + 1) * blocksize;
+            if (tail.compareAndSet(pos, nextblkpos)) {
+               sealedBoundary[awaitSlot(blknum)] = boundary;
+               complete(pos, nextblkpos);
+               LogFlusher f = flusher;
+               if (f != null)
+                  f.pageFilled();
+            }
+         }
       }
-      int recpos = boundary - bytesneeded;
+   }
 
-      logpage.setBytes(recpos, logrec);
-      logpage.setInt(0, recpos); // the new boundary
-      latestLSN += 1;
-      return latestLSN;
+   /**
+    * Returns the number of the oldest block still in the log.
+    * Blocks are numbered across segments.
+    */
+   int firstBlock() {
+      return firstBlock;
    }
 
    /**
-    * Initialize the bytebuffer and append it to the log file.
+    * Returns the dictionary of the files named in the log.
     */
-   private BlockId appendNewBlock() {
-      BlockId blk = fm.append(logfile);     
-      logpage.setInt(0, fm.blockSize());
-      fm.write(blk, logpage);
-      return blk;
+   FileDictionary fileDictionary() {
+      return dictionary;
    }
 
    /**
-    * Write the buffer to the log file.
+    * Returns the number of blocks in a segment.
     */
-   private void flush() {
-      fm.write(currentblk, logpage);
-      lastSavedLSN = latestLSN;
+   int segmentBlocks() {
+      return segmentBlocks;
+   }
+
+   /**
+    * Reads consecutive blocks of the log into the pages with
+    * a single read, unless their segment has been deleted.
+    * The blocks must lie in one segment.
+    * @param blknum the number of the first block, across segments
+    * @param pages the pages to read into, one per block
+    * @return false if the blocks are no longer in the log
+    */
+   boolean readBlocks(int blknum, Page[] pages) {
+      segmentLock.readLock().lock();
+      try {
+         if (blknum < firstBlock)
+            return false;
+         BlockId blk = logBlock(blknum);
+         fm.readRange(blk.fileName(), blk.number(), pages);
+         return true;
+      }
+      finally {
+         segmentLock.readLock().unlock();
+      }
+   }
+
+   /**
+    * Writes the full pages of the log to disk, without forcing them.
+    * Called by the log flusher.
+    */
+   void writeFullPages() {
+      long target = completed.get();
+      writeUpTo(target - target % blocksize, false);
+   }
+
+   /**
+    * Writes the log up to its current end, without forcing it,
+    * so that iterators can read every record from disk.
+    * @return the number of the block holding the end of the log
+    */
+   private int writeTail() {
+      long target = tail.get();
+      awaitCompleted(target);
+      writeUpTo(target, false);
+      return (target == startPos) ? (int) (startPos / blocksize)
+                                  : (int) ((target - 1) / blocksize);
+   }
+
+   /**
+    * Marks the log records between the two positions as copied
+    * into their page. Records are marked in log order, so
+    * the thread waits until the records before its own are marked.
+    */
+   private void complete(long start, long end) {
+      while (completed.get() != start)
+         Thread.yield();
+      completed.set(end);
+   }
+
+   private void awaitCompleted(long pos) {
+      while (completed.get() < pos)
+         Thread.yield();
+   }
+
+   /**
+    * Waits until the ring slot for the specified block is free,
+    * that is, until the block that last used it is on disk.
+    * The waiting thread writes the full pages itself.
+    * @return the slot of the block
+    */
+   private int awaitSlot(int blknum) {
+      int slot = blknum % NUM_PAGES;
+      while (slotBlock.get(slot) != blknum) {
+         writeFullPages();
+         if (slotBlock.get(slot) != blknum)
+            Thread.yield();
+      }
+      return slot;
+   }
+
+   /**
+    * Writes the pages holding the log up to the specified position,
+    * which must be complete. A page that is full is written
+    * for the last time, and its slot is given to the block
+    * that will next use it.
+    * @param target the position to write to
+    * @param force whether to force the log to disk afterwards
+    */
+   private void writeUpTo(long target, boolean force) {
+      synchronized (writeLock) {
+         if (target > writtenPos) {
+            int firstblk = (int) (writtenPos / blocksize);
+            int lastblk = (int) ((target - 1) / blocksize);
+            for (int blknum = firstblk; blknum <= lastblk; blknum++) {
+               int slot = blknum % NUM_PAGES;
+               boolean full = target >= (long) (blknum + 1) * blocksize;
+               int boundary = full ? sealedBoundary[slot]
+                                   : blocksize - (int) (target - (long) blknum * blocksize);
+               pages[slot].setInt(0, boundary);
+               fm.write(logBlock(blknum), pages[slot]);
+               if (full)
+                  slotBlock.set(slot, blknum + NUM_PAGES);
+            }
+            writtenPos = target;
+         }
+         if (force && writtenPos > flushedPos) {
+            int firstseg = (int) (flushedPos / blocksize) / segmentBlocks;
+            int lastseg = (int) ((writtenPos - 1) / blocksize) / segmentBlocks;
+            for (int seg = firstseg; seg <= lastseg; seg++)
+               fm.force(segmentName(seg));
+            flushedPos = writtenPos;
+         }
+      }
+   }
+
+   private BlockId logBlock(int blknum) {
+      return new BlockId(segmentName(blknum / segmentBlocks), blknum % segmentBlocks);
+   }
+
+   private String segmentName(int seg) {
+      return logfile + "." + seg;
    }
 }
@@ -0,0 +1,81 @@
+package simpledb.log;
+
+import simpledb.file.*;
+
+/**
+ * Decodes the fields of a log record written by a
+ * {@link RecordWriter}, in the order in which they were written.
+ */
+public class RecordReader {
+   private LogMgr lm;
+   private byte[] bytes;
+   private int pos = 0;
+
+   /**
+    * Creates a reader for a record of the specified log.
+    * @param bytes the bytes of the record
+    * @param lm the log manager
+    */
+   public RecordReader(byte[] bytes, LogMgr lm) {
+      this.bytes = bytes;
+      this.lm = lm;
+   }
+
+   /**
+    * Reads an integer.
+    * @return the integer
+    */
+   public int readInt() {
+      int zz = 0;
+      for (int shift = 0; ; shift += 7) {
+         byte b = bytes[pos++];
+         zz |= (b & 0x7F) << shift;
+         if (b >= 0)
+            break;
+      }
+      return (zz >>> 1) ^ -(zz & 1);
+   }
+
+   /**
+    * Reads a long.
+    * @return the long
+    */
+   public long readLong() {
+      long zz = 0;
+      for (int shift = 0; ; shift += 7) {
+         byte b = bytes[pos++];
+         zz |= (long) (b & 0x7F) << shift;
+         if (b >= 0)
+            break;
+      }
+      return (zz >>> 1) ^ -(zz & 1);
+   }
+
+   /**
+    * Reads a string.
+    * @return the string
+    */
+   public String readString() {
+      int length = readInt();
+      String s = new String(bytes, pos, length, Page.CHARSET);
+      pos += length;
+      return s;
+   }
+
+   /**
+    * Reads a block reference.
+    * @return the block
+    */
+   public BlockId readBlockId() {
+      String filename = lm.fileDictionary().name(readInt());
+      return new BlockId(filename, readInt());
+   }
+
+   /**
+    * Returns true if there are fields left to read.
+    * @return true if the record has more fields
+    */
+   public boolean hasMore() {
+      return pos < bytes.length;
+   }
+}
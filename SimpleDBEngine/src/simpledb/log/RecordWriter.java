@@ -0,0 +1,114 @@
+package simpledb.log;
+
+import java.util.Arrays;
+import simpledb.file.*;
+
+/**
+ * Encodes the fields of a log record compactly.
+ * Integers and longs are written as variable-length quantities of
+ * seven bits per byte, after a zigzag mapping that keeps
+ * small negative numbers short; strings are written as their
+ * length followed by their bytes; and a block is written as
+ * the number of its file in the log's file dictionary
+ * followed by the block number.
+ * The write methods return the writer, so calls can be chained.
+ */
+public class RecordWriter {
+   private LogMgr lm;
+   private byte[] buf = new byte[32];
+   private int size = 0;
+
+   /**
+    * Creates a writer for a record of the specified log.
+    * @param lm the log manager
+    */
+   public RecordWriter(LogMgr lm) {
+      this.lm = lm;
+   }
+
+   /**
+    * Writes an integer.
+    * @param val the integer
+    * @return this writer
+    */
+   public RecordWriter writeInt(int val) {
+      int zz = (val << 1) ^ (val >> 31);
+      ensure(5);
+      while ((zz & ~0x7F) != 0) {
+         buf[size++] = (byte) ((zz & 0x7F) | 0x80);
+         zz >>>= 7;
+      }
+      buf[size++] = (byte) zz;
+      return this;
+   }
+
+   /**
+    * Writes a long, encoded as an integer is.
+    * @param val the long
+    * @return this writer
+    */
+   public RecordWriter writeLong(long val) {
+      long zz = (val << 1) ^ (val >> 63);
+      ensure(10);
+      while ((zz & ~0x7FL) != 0) {
+         buf[size++] = (byte) ((zz & 0x7F) | 0x80);
+         zz >>>= 7;
+      }
+      buf[size++] = (byte) zz;
+      return this;
+   }
+
+   /**
+    * Writes a string.
+    * @param s the string
+    * @return this writer
+    */
+   public RecordWriter writeString(String s) {
+      byte[] b = s.getBytes(Page.CHARSET);
+      writeInt(b.length);
+      return writeBytes(b);
+   }
+
+   /**
+    * Writes a block reference.
+    * @param blk the block
+    * @return this writer
+    */
+   public RecordWriter writeBlockId(BlockId blk) {
+      writeInt(lm.fileDictionary().id(blk.fileName()));
+      return writeInt(blk.number());
+   }
+
+   /**
+    * Writes bytes encoded by another writer, as they are.
+    * @param b the bytes
+    * @return this writer
+    */
+   public RecordWriter writeBytes(byte[] b) {
+      ensure(b.length);
+      System.arraycopy(b, 0, buf, size, b.length);
+      size += b.length;
+      return this;
+   }
+
+   /**
+    * Returns the number of bytes written so far.
+    * @return the size of the record
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Returns the encoded record.
+    * @return the bytes of the record
+    */
+   public byte[] toBytes() {
+      return Arrays.copyOf(buf, size);
+   }
+
+   private void ensure(int n) {
+      if (size + n > buf.length)
+         buf = Arrays.copyOf(buf, Math.max(2 * buf.length, size + n));
+   }
+}
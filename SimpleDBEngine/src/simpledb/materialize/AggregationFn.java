@@ -1,6 +1,7 @@
 package simpledb.materialize;
 
 import simpledb.query.*;
+import simpledb.record.Schema;
 
 /**
  * The interface implemented by aggregation functions.
@@ -34,4 +35,12 @@ public interface AggregationFn {
     * @return the computed aggregation value
     */
    Constant value();
+   
+   /**
+    * Return a new accumulator that computes the function
+    * for many groups at once, from batches of records.
+    * @param sch the schema of the aggregated records
+    * @return an accumulator for the function
+    */
+   GroupAccumulator accumulator(Schema sch);
 }
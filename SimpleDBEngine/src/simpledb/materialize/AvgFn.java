@@ -1,7 +1,9 @@
 package simpledb.materialize;
 
+import simpledb.query.Batch;
 import simpledb.query.Constant;
 import simpledb.query.Scan;
+import simpledb.record.Schema;
 
 /**
  * The <i>avg</i> aggregation function.
@@ -59,4 +61,30 @@ public class AvgFn implements AggregationFn {
    public Constant value() {
       return new Constant(sum/count);
    }
+   
+   /**
+    * Return an accumulator of the sums and counts
+    * of the groups, whose quotients are their averages.
+    * @see AggregationFn#accumulator(Schema)
+    */
+   public GroupAccumulator accumulator(Schema sch) {
+      return new GroupAccumulator() {
+         private int[] sums = new int[0], counts = new int[0];
+
+         public void add(Batch b, int[] groups, int numgroups) {
+            sums = fit(sums, numgroups, 0);
+            counts = fit(counts, numgroups, 0);
+            int[] vals = b.ints(b.column(fldname));
+            int[] sel = b.selection();
+            for (int i=0; i<b.size(); i++) {
+               sums[groups[i]] += vals[sel[i]];
+               counts[groups[i]]++;
+            }
+         }
+
+         public Constant value(int group) {
+            return new Constant(sums[group] / counts[group]);
+         }
+      };
+   }
 }
@@ -1,6 +1,7 @@
 package simpledb.materialize;
 
 import simpledb.query.*;
+import simpledb.record.Schema;
 
 /**
  * The <i>count</i> aggregation function.
@@ -55,4 +56,24 @@ public class CountFn implements AggregationFn {
    public Constant value() {
       return new Constant(count);
    }
+   
+   /**
+    * Return an accumulator of the counts of the groups.
+    * @see simpledb.materialize.AggregationFn#accumulator(simpledb.record.Schema)
+    */
+   public GroupAccumulator accumulator(Schema sch) {
+      return new GroupAccumulator() {
+         private int[] counts = new int[0];
+
+         public void add(Batch b, int[] groups, int numgroups) {
+            counts = fit(counts, numgroups, 0);
+            for (int i=0; i<b.size(); i++)
+               counts[groups[i]]++;
+         }
+
+         public Constant value(int group) {
+            return new Constant(counts[group]);
+         }
+      };
+   }
 }
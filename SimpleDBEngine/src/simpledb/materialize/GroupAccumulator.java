@@ -0,0 +1,64 @@
+package simpledb.materialize;
+
+import java.util.Arrays;
+import simpledb.query.*;
+import simpledb.record.Schema;
+
+/**
+ * Computes an aggregation function for many groups
+ * at once, from batches of records, for the batch
+ * <i>groupby</i> operator. The groups are numbered
+ * from 0, in the order in which they are found.
+ */
+public abstract class GroupAccumulator {
+
+   /**
+    * Aggregate the rows of the batch into their groups.
+    * @param b the batch
+    * @param groups the group of each row of the batch,
+    * in the order of its selection vector
+    * @param numgroups the number of groups found so far
+    */
+   public abstract void add(Batch b, int[] groups, int numgroups);
+
+   /**
+    * Return the aggregated value of a group.
+    * @param group the group
+    * @return the value of the aggregation function for the group
+    */
+   public abstract Constant value(int group);
+
+   /**
+    * Add the field that holds the aggregated values to the
+    * schema of the groups. It is an integer field, as in
+    * GroupByPlan, unless the function says otherwise.
+    * @param fldname the name of the aggregation field
+    * @param sch the schema of the groups
+    */
+   public void addField(String fldname, Schema sch) {
+      sch.addIntField(fldname);
+   }
+
+   /**
+    * Return an array with room for the specified number
+    * of groups, the new ones having the initial value.
+    */
+   protected static int[] fit(int[] a, int numgroups, int initial) {
+      if (numgroups <= a.length)
+         return a;
+      int oldlength = a.length;
+      a = Arrays.copyOf(a, Math.max(numgroups, 2 * oldlength));
+      Arrays.fill(a, oldlength, a.length, initial);
+      return a;
+   }
+
+   /**
+    * Return an array with room for the specified number
+    * of groups, the new ones being null.
+    */
+   protected static String[] fit(String[] a, int numgroups) {
+      if (numgroups <= a.length)
+         return a;
+      return Arrays.copyOf(a, Math.max(numgroups, 2 * a.length));
+   }
+}
@@ -0,0 +1,159 @@
+package simpledb.materialize;
+
+import java.util.*;
+
+import simpledb.query.*;
+import simpledb.record.Schema;
+
+/**
+ * The batch scan class for the <i>groupby</i> operator.
+ * Unlike GroupByScan, it does not need its input to be
+ * sorted: the first call to nextBatch reads the whole
+ * input, assigning the rows of each batch to their groups
+ * through a hash table, and the aggregation functions are
+ * computed for all of the groups a batch at a time.
+ * The groups are returned in the order in which they were found.
+ */
+public class GroupByBatchScan implements BatchScan {
+   private BatchScan s;
+   private List<String> groupfields;
+   private List<AggregationFn> aggfns;
+   private List<GroupAccumulator> accs;
+   private Schema sch = new Schema();
+   private Batch batch;
+   private Map<Object,Integer> groupnums;
+   private List<Constant[]> groupvals;
+   private int numgroups, nextgroup;
+   private boolean grouped;
+
+   /**
+    * Create a groupby batch scan, given the scan of the
+    * records to group.
+    * @param s the underlying batch scan
+    * @param groupfields the group fields
+    * @param aggfns the aggregation functions
+    */
+   public GroupByBatchScan(BatchScan s, List<String> groupfields, List<AggregationFn> aggfns) {
+      this.s = s;
+      this.groupfields = groupfields;
+      this.aggfns = aggfns;
+      for (String fldname : groupfields)
+         sch.add(fldname, s.schema());
+      for (AggregationFn fn : aggfns)
+         fn.accumulator(s.schema()).addField(fn.fieldName(), sch);
+      batch = new Batch(sch);
+   }
+
+   /**
+    * Position the scan before the first group.
+    * The input is grouped again by the next call to nextBatch.
+    * @see simpledb.query.BatchScan#beforeFirst()
+    */
+   public void beforeFirst() {
+      grouped = false;
+   }
+
+   /**
+    * Return the next batch of groups, each row holding the
+    * values of the group fields and of the aggregation functions.
+    * @see simpledb.query.BatchScan#nextBatch()
+    */
+   public Batch nextBatch() {
+      if (!grouped)
+         group();
+      batch.clear();
+      int numfields = groupfields.size();
+      while (!batch.isFull() && nextgroup < numgroups) {
+         int row = batch.addRow();
+         Constant[] vals = groupvals.get(nextgroup);
+         for (int c=0; c<numfields; c++)
+            batch.setVal(c, row, vals[c]);
+         for (int j=0; j<accs.size(); j++)
+            batch.setVal(numfields + j, row, accs.get(j).value(nextgroup));
+         nextgroup++;
+      }
+      return (batch.size() > 0) ? batch : null;
+   }
+
+   public Schema schema() {
+      return sch;
+   }
+
+   public void close() {
+      s.close();
+   }
+
+   /**
+    * Read the input, and aggregate each of its batches
+    * into the groups of its rows.
+    */
+   private void group() {
+      s.beforeFirst();
+      accs = new ArrayList<>();
+      for (AggregationFn fn : aggfns)
+         accs.add(fn.accumulator(s.schema()));
+      groupnums = new HashMap<>();
+      groupvals = new ArrayList<>();
+      numgroups = 0;
+      int[] groups = new int[0];
+      Batch b;
+      while ((b = s.nextBatch()) != null) {
+         if (groups.length < b.capacity())
+            groups = new int[b.capacity()];
+         findGroups(b, groups);
+         for (GroupAccumulator acc : accs)
+            acc.add(b, groups, numgroups);
+      }
+      nextgroup = 0;
+      grouped = true;
+   }
+
+   /**
+    * Find the group of each row of the batch, adding a
+    * group for each new combination of group values.
+    * Without group fields, all rows are in one group.
+    */
+   private void findGroups(Batch b, int[] groups) {
+      if (groupfields.isEmpty()) {
+         if (numgroups == 0) {
+            groupvals.add(new Constant[0]);
+            numgroups = 1;
+         }
+         Arrays.fill(groups, 0, b.size(), 0);
+         return;
+      }
+      int[] cols = new int[groupfields.size()];
+      for (int c=0; c<cols.length; c++)
+         cols[c] = b.column(groupfields.get(c));
+      int[] sel = b.selection();
+      for (int i=0; i<b.size(); i++) {
+         int row = sel[i];
+         Object key;
+         if (cols.length == 1)
+            key = value(b, cols[0], row);
+         else {
+            List<Object> vals = new ArrayList<>(cols.length);
+            for (int col : cols)
+               vals.add(value(b, col, row));
+            key = vals;
+         }
+         Integer group = groupnums.get(key);
+         if (group == null) {
+            group = numgroups++;
+            groupnums.put(key, group);
+            Constant[] vals = new Constant[cols.length];
+            for (int c=0; c<cols.length; c++)
+               vals[c] = b.getVal(cols[c], row);
+            groupvals.add(vals);
+         }
+         groups[i] = group;
+      }
+   }
+
+   private static Object value(Batch b, int col, int row) {
+      if (b.isInt(col))
+         return b.ints(col)[row];
+      else
+         return b.strings(col)[row];
+   }
+}
@@ -15,7 +15,7 @@ import simpledb.query.*;
  * @author Edward Sciore
  */
 public class GroupByPlan implements Plan {
-   private Plan p;
+   private Plan p, srcplan;
    private List<String> groupfields;
    private List<AggregationFn> aggfns;
    private Schema sch = new Schema();
@@ -37,6 +37,7 @@ public class GroupByPlan implements Plan {
          mapGroupfields.put(field, true);
       }
       this.p = new SortPlan(tx, p, mapGroupfields, isDistinct);
+      this.srcplan = p;
       this.groupfields = groupfields;
       this.aggfns = aggfns;
       for (String fldname : groupfields)
@@ -56,6 +57,17 @@ public class GroupByPlan implements Plan {
       return new GroupByScan(s, groupfields, aggfns);
    }
    
+   /**
+    * This method opens a batch groupby scan on the
+    * underlying plan, which needs no sorting since
+    * it groups the records by hashing. The groups are
+    * therefore not in the order of the group fields.
+    * @see simpledb.plan.Plan#openBatch()
+    */
+   public BatchScan openBatch() {
+      return new GroupByBatchScan(srcplan.openBatch(), groupfields, aggfns);
+   }
+   
    /**
     * Return the number of blocks required to
     * compute the aggregation,
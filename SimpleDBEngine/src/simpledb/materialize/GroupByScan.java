@@ -60,8 +60,7 @@ public class GroupByScan implements Scan {
       }
       groupval = new GroupValue(s, groupfields);
       while(moregroups = s.next()) {
-         GroupValue gv = new GroupValue(s, groupfields);
-         if (!groupval.equals(gv))
+         if (!groupval.matches(s))
             break;
          for (AggregationFn fn : aggfns)
             fn.processNext(s);
@@ -35,6 +35,21 @@ public class GroupValue {
       return vals.get(fldname);
    }
    
+   /**
+    * Return true if the current record of the specified scan
+    * has the values of this group for its grouping fields.
+    * The values are compared where the scan stores them,
+    * so no GroupValue is created for the record.
+    * @param s a scan
+    * @return true if the record belongs to this group
+    */
+   public boolean matches(Scan s) {
+      for (Map.Entry<String,Constant> e : vals.entrySet())
+         if (s.compareField(e.getKey(), e.getValue()) != 0)
+            return false;
+      return true;
+   }
+   
    /** 
     * Two GroupValue objects are equal if they have the same values
     * for their grouping fields or if
@@ -1,6 +1,8 @@
 package simpledb.materialize;
 
+import static java.sql.Types.INTEGER;
 import simpledb.query.*;
+import simpledb.record.Schema;
 
 /**
  * The <i>max</i> aggregation function.
@@ -33,9 +35,8 @@ public class MaxFn implements AggregationFn {
     * @see simpledb.materialize.AggregationFn#processNext(simpledb.query.Scan)
     */
    public void processNext(Scan s) {
-      Constant newval = s.getVal(fldname);
-      if (newval.compareTo(val) > 0)
-         val = newval;
+      if (s.compareField(fldname, val) > 0)
+         val = s.getVal(fldname);
    }
    
    /**
@@ -53,4 +54,52 @@ public class MaxFn implements AggregationFn {
    public Constant value() {
       return val;
    }
+   
+   /**
+    * Return an accumulator of the maximums of the groups,
+    * which keeps them as ints or strings, as the field's type.
+    * @see simpledb.materialize.AggregationFn#accumulator(simpledb.record.Schema)
+    */
+   public GroupAccumulator accumulator(Schema sch) {
+      if (sch.type(fldname) == INTEGER)
+         return new GroupAccumulator() {
+            private int[] vals = new int[0];
+
+            public void add(Batch b, int[] groups, int numgroups) {
+               vals = fit(vals, numgroups, Integer.MIN_VALUE);
+               int[] v = b.ints(b.column(fldname));
+               int[] sel = b.selection();
+               for (int i=0; i<b.size(); i++)
+                  if (v[sel[i]] > vals[groups[i]])
+                     vals[groups[i]] = v[sel[i]];
+            }
+
+            public Constant value(int group) {
+               return new Constant(vals[group]);
+            }
+         };
+      else
+         return new GroupAccumulator() {
+            private String[] vals = new String[0];
+
+            public void add(Batch b, int[] groups, int numgroups) {
+               vals = fit(vals, numgroups);
+               String[] v = b.strings(b.column(fldname));
+               int[] sel = b.selection();
+               for (int i=0; i<b.size(); i++) {
+                  String s = v[sel[i]];
+                  if (vals[groups[i]] == null || s.compareTo(vals[groups[i]]) > 0)
+                     vals[groups[i]] = s;
+               }
+            }
+
+            public Constant value(int group) {
+               return new Constant(vals[group]);
+            }
+
+            public void addField(String aggfld, Schema aggsch) {
+               aggsch.addStringField(aggfld, sch.length(fldname));
+            }
+         };
+   }
 }
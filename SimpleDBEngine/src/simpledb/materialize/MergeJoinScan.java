@@ -86,27 +86,26 @@ public class MergeJoinScan implements Scan {
     public boolean next() {
         boolean hasmore2 = s2.next();
 
-        if (hasmore2 && s2.getVal(fldname2).equals(joinval))
+        if (hasmore2 && joinval != null && s2.compareField(fldname2, joinval) == 0)
             return true;
 
         boolean hasmore1 = s1.next();
-        if (hasmore1 && condOp.evaluate(s1.getVal(fldname1), joinval)) {
+        if (hasmore1 && joinval != null && condOp.satisfies(s1.compareField(fldname1, joinval))) {
             s2.restorePosition();
             return true;
         }
         while (hasmore1 && hasmore2) {
-            Constant v1 = s1.getVal(fldname1);
-            Constant v2 = s2.getVal(fldname2);
+            int cmp = s1.compareField(fldname1, s2, fldname2);
 
-            if (condOp.evaluate(v1, v2)) {
+            if (condOp.satisfies(cmp)) {
                 s2.savePosition();
                 joinval = s2.getVal(fldname2);
                 return true;
             }
 
-            if (v1.compareTo(v2) <= 0)
+            if (cmp <= 0)
                 hasmore1 = s1.next();
-            else// if (v1.compareTo(v2) > 0)
+            else// if (cmp > 0)
                 hasmore2 = s2.next();
         }
         return false;
@@ -1,7 +1,10 @@
 package simpledb.materialize;
 
+import static java.sql.Types.INTEGER;
+import simpledb.query.Batch;
 import simpledb.query.Constant;
 import simpledb.query.Scan;
+import simpledb.record.Schema;
 
 /**
  * The <i>min</i> aggregation function.
@@ -34,9 +37,8 @@ public class MinFn implements AggregationFn {
     * @see AggregationFn#processNext(Scan)
     */
    public void processNext(Scan s) {
-      Constant newval = s.getVal(fldname);
-      if (newval.compareTo(val) < 0)
-         val = newval;
+      if (s.compareField(fldname, val) < 0)
+         val = s.getVal(fldname);
    }
    
    /**
@@ -54,4 +56,52 @@ public class MinFn implements AggregationFn {
    public Constant value() {
       return val;
    }
+   
+   /**
+    * Return an accumulator of the minimums of the groups,
+    * which keeps them as ints or strings, as the field's type.
+    * @see AggregationFn#accumulator(Schema)
+    */
+   public GroupAccumulator accumulator(Schema sch) {
+      if (sch.type(fldname) == INTEGER)
+         return new GroupAccumulator() {
+            private int[] vals = new int[0];
+
+            public void add(Batch b, int[] groups, int numgroups) {
+               vals = fit(vals, numgroups, Integer.MAX_VALUE);
+               int[] v = b.ints(b.column(fldname));
+               int[] sel = b.selection();
+               for (int i=0; i<b.size(); i++)
+                  if (v[sel[i]] < vals[groups[i]])
+                     vals[groups[i]] = v[sel[i]];
+            }
+
+            public Constant value(int group) {
+               return new Constant(vals[group]);
+            }
+         };
+      else
+         return new GroupAccumulator() {
+            private String[] vals = new String[0];
+
+            public void add(Batch b, int[] groups, int numgroups) {
+               vals = fit(vals, numgroups);
+               String[] v = b.strings(b.column(fldname));
+               int[] sel = b.selection();
+               for (int i=0; i<b.size(); i++) {
+                  String s = v[sel[i]];
+                  if (vals[groups[i]] == null || s.compareTo(vals[groups[i]]) < 0)
+                     vals[groups[i]] = s;
+               }
+            }
+
+            public Constant value(int group) {
+               return new Constant(vals[group]);
+            }
+
+            public void addField(String aggfld, Schema aggsch) {
+               aggsch.addStringField(aggfld, sch.length(fldname));
+            }
+         };
+   }
 }
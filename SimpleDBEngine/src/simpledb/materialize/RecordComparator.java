@@ -34,9 +34,7 @@ public class RecordComparator implements Comparator<Scan> {
     */
    public int compare(Scan s1, Scan s2) {
       for (Map.Entry<String, Boolean> entry : fields.entrySet()) {
-         Constant val1 = s1.getVal(entry.getKey());
-         Constant val2 = s2.getVal(entry.getKey());
-         int result = val1.compareTo(val2);
+         int result = s1.compareField(entry.getKey(), s2, entry.getKey());
          Boolean isAsc = entry.getValue();
          if (result != 0)
             return isAsc ? result : -1 * result;
@@ -62,7 +62,7 @@ public class SimpleJoinScan implements Scan {
    public boolean next() {
       while (true) {
          while (rhs.next()) {
-            if (lhs.getVal(joinfield1).equals(rhs.getVal(joinfield2))) {
+            if (lhs.compareField(joinfield1, rhs, joinfield2) == 0) {
                return true;
             }
          }
@@ -1,5 +1,6 @@
 package simpledb.materialize;
 
+import static java.sql.Types.INTEGER;
 import java.util.*;
 
 import simpledb.display.ExecutionChain;
@@ -165,8 +166,12 @@ public class SortPlan implements Plan {
    
    private boolean copy(Scan src, UpdateScan dest) {
       dest.insert();
-      for (String fldname : sch.fields())
-         dest.setVal(fldname, src.getVal(fldname));
+      for (String fldname : sch.fields()) {
+         if (sch.type(fldname) == INTEGER)
+            dest.setInt(fldname, src.getInt(fldname));
+         else
+            dest.setString(fldname, src.getString(fldname));
+      }
       return src.next();
    }
 }
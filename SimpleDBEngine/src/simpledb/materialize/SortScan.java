@@ -123,6 +123,33 @@ public class SortScan implements Scan {
       return currentscan.getString(fldname);
    }
    
+   /**
+    * Compare the specified field of the current scan
+    * with a constant, where the value is stored.
+    * @see simpledb.query.Scan#compareField(java.lang.String, simpledb.query.Constant)
+    */
+   public int compareField(String fldname, Constant val) {
+      return currentscan.compareField(fldname, val);
+   }
+   
+   /**
+    * Compare the specified field of the current scan
+    * with a field of another scan.
+    * @see simpledb.query.Scan#compareField(java.lang.String, simpledb.query.Scan, java.lang.String)
+    */
+   public int compareField(String fldname, Scan other, String otherfld) {
+      return currentscan.compareField(fldname, other, otherfld);
+   }
+   
+   /**
+    * Return the hash code of the specified field
+    * of the current scan.
+    * @see simpledb.query.Scan#hashField(java.lang.String)
+    */
+   public int hashField(String fldname) {
+      return currentscan.hashField(fldname);
+   }
+   
    /**
     * Return true if the specified field is in the current scan.
     * @see simpledb.query.Scan#hasField(java.lang.String)
@@ -1,7 +1,9 @@
 package simpledb.materialize;
 
+import simpledb.query.Batch;
 import simpledb.query.Constant;
 import simpledb.query.Scan;
+import simpledb.record.Schema;
 
 /**
  * The <i>sum</i> aggregation function.
@@ -54,4 +56,26 @@ public class SumFn implements AggregationFn {
    public Constant value() {
       return new Constant(sum);
    }
+   
+   /**
+    * Return an accumulator of the sums of the groups.
+    * @see AggregationFn#accumulator(Schema)
+    */
+   public GroupAccumulator accumulator(Schema sch) {
+      return new GroupAccumulator() {
+         private int[] sums = new int[0];
+
+         public void add(Batch b, int[] groups, int numgroups) {
+            sums = fit(sums, numgroups, 0);
+            int[] vals = b.ints(b.column(fldname));
+            int[] sel = b.selection();
+            for (int i=0; i<b.size(); i++)
+               sums[groups[i]] += vals[sel[i]];
+         }
+
+         public Constant value(int group) {
+            return new Constant(sums[group]);
+         }
+      };
+   }
 }
@@ -21,6 +21,10 @@ public class MetadataMgr {
       tblmgr.createTable(tblname, sch, tx);
    }
    
+   public void createTable(String tblname, Schema sch, int format, Transaction tx) {
+      tblmgr.createTable(tblname, sch, format, tx);
+   }
+   
    public Layout getLayout(String tblname, Transaction tx) {
       return tblmgr.getLayout(tblname, tx);
    }
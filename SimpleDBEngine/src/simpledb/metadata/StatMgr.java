@@ -64,6 +64,12 @@ class StatMgr {
    
    private synchronized StatInfo calcTableStats(String tblname, 
                               Layout layout, Transaction tx) {
+      if (layout.format() == Layout.COLUMNAR) {
+         ColumnScan cs = new ColumnScan(tx, tblname, layout);
+         StatInfo si = new StatInfo(cs.numBlocks(), cs.numRows());
+         cs.close();
+         return si;
+      }
       int numRecs = 0;
       int numblocks = 0;
       TableScan ts = new TableScan(tx, tblname, layout);
@@ -27,6 +27,7 @@ class TableMgr {
       Schema tcatSchema = new Schema();
       tcatSchema.addStringField("tblname", MAX_NAME);
       tcatSchema.addIntField("slotsize");
+      tcatSchema.addIntField("format");
       tcatLayout = new Layout(tcatSchema);
 
       Schema fcatSchema = new Schema();
@@ -50,12 +51,25 @@ class TableMgr {
     * @param tx the transaction creating the table
     */
    public void createTable(String tblname, Schema sch, Transaction tx) {
-      Layout layout = new Layout(sch);
+      createTable(tblname, sch, Layout.FIXED, tx);
+   }
+
+   /**
+    * Create a new table having the specified name and schema,
+    * whose blocks have the specified format.
+    * @param tblname the name of the new table
+    * @param sch the table's schema
+    * @param format the format of the table's blocks
+    * @param tx the transaction creating the table
+    */
+   public void createTable(String tblname, Schema sch, int format, Transaction tx) {
+      Layout layout = new Layout(sch, format);
       // insert one record into tblcat
       TableScan tcat = new TableScan(tx, "tblcat", tcatLayout);
       tcat.insert();
       tcat.setString("tblname", tblname);
       tcat.setInt("slotsize", layout.slotSize());
+      tcat.setInt("format", format);
       tcat.close();
 
       // insert a record into fldcat for each field
@@ -80,10 +94,12 @@ class TableMgr {
     */
    public Layout getLayout(String tblname, Transaction tx) {
       int size = -1;
+      int format = Layout.FIXED;
     TableScan tcat = new TableScan(tx, "tblcat", tcatLayout);
       while(tcat.next())
          if(tcat.getString("tblname").equals(tblname)) {
             size = tcat.getInt("slotsize");
+            format = tcat.getInt("format");
             break;
          }
       tcat.close();
@@ -101,6 +117,6 @@ class TableMgr {
             sch.addField(fldname, fldtype, fldlen);
          }
       fcat.close();
-      return new Layout(sch, offsets, size);
+      return new Layout(sch, offsets, size, format);
    }
 }
\ No newline at end of file
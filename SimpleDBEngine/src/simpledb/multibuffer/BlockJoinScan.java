@@ -65,30 +65,24 @@ public class BlockJoinScan implements Scan {
    public boolean next() {
       while(true){
          //no matter what we advance outer.
-         boolean outerhasMore = outer.next();
-         if (!outerhasMore) {
-            //if outer has no more, we can go on to the next inner. It's either time to reset outer, or go next chunk
-            boolean innerhasMore = inner.next();
-            //if outer has no more and inner has no more, time to go next chunk
-            if (!innerhasMore) {
-               //if no more next chunk, we are done.
-               if (!useNextChunk()) {
-                  return false;
-               }
-               //if there is still a next chunk, reset both inner and outer
-               outer.next();
-               inner.beforeFirst();
-               inner.next();
-            } else {
-            //outer has no more but inner has more, reset outer
-               outer.beforeFirst();
-               outer.next();
-            }
+         if (outer.next()) {
+            if (condOp.evaluate(outer.getVal(joinfieldOuter), inner.getVal(joinfieldInner)))
+               return true;
+            continue;
          }
-
-         if (condOp.evaluate(outer.getVal(joinfieldOuter), inner.getVal(joinfieldInner))) {
-            return true;
+         //if outer has no more, we can go on to the next inner and reset outer.
+         if (inner.next()) {
+            outer.beforeFirst();
+            continue;
          }
+         //if outer has no more and inner has no more, time to go next chunk.
+         //a chunk may hold no records at all (e.g. trailing empty blocks),
+         //so outer is only read at the top of the loop.
+         if (!useNextChunk())
+            return false;
+         inner.beforeFirst();
+         if (!inner.next())
+            return false;
       }
    }
    
@@ -12,12 +12,12 @@ import simpledb.record.*;
  * @author Edward Sciore
  */
 public class ChunkScan implements Scan {
-   private List<RecordPage> buffs = new ArrayList<>();
+   private List<RecordBlock> buffs = new ArrayList<>();
    private Transaction tx;
    private String filename;
    private Layout layout;
    private int startbnum, endbnum, currentbnum;
-   private RecordPage rp;
+   private RecordBlock rp;
    private int currentslot;
 
    /**
@@ -33,9 +33,13 @@ public class ChunkScan implements Scan {
       this.layout = layout;
       this.startbnum = startbnum;
       this.endbnum   = endbnum;
+      // read the whole chunk at once; the record pages
+      // then pin blocks that are already in memory
+      tx.pinRange(filename, startbnum, endbnum);
       for (int i=startbnum; i<=endbnum; i++) {
          BlockId blk = new BlockId(filename, i);
-         buffs.add(new RecordPage(tx, blk, layout));
+         buffs.add(RecordBlock.open(tx, blk, layout));
+         tx.unpin(blk);
       }
       moveToBlock(startbnum);
    }
@@ -94,7 +98,7 @@ public class ChunkScan implements Scan {
     */
    public Constant getVal(String fldname) {
       if (layout.schema().type(fldname) == INTEGER)
-         return new Constant(getInt(fldname));
+         return Constant.valueOf(getInt(fldname));
       else
          return new Constant(getString(fldname));
    }
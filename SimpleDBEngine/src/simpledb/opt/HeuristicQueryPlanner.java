@@ -33,9 +33,12 @@ public class HeuristicQueryPlanner implements QueryPlanner {
     */
    public Plan createPlan(QueryData data, Transaction tx) {
 
-      // Step 1:  Create a TablePlanner object for each mentioned table
+      // Step 1:  Create a TablePlanner object for each mentioned table,
+      // which reads only the fields that the query uses
+      Collection<String> fldnames = new HashSet<>(data.fields());
+      fldnames.addAll(data.pred().fields());
       for (String tblname : data.tables()) {
-         TablePlanner tp = new TablePlanner(tblname, data.pred(), tx, mdm, data.isDistinct());
+         TablePlanner tp = new TablePlanner(tblname, data.pred(), fldnames, tx, mdm, data.isDistinct());
          tableplanners.add(tp);
       }
 
@@ -1,6 +1,7 @@
 package simpledb.opt;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -38,13 +39,17 @@ class TablePlanner {
     * and when indexes are useful.
     * @param tblname the name of the table
     * @param mypred the query predicate
+    * @param fldnames the fields that the query uses
     * @param tx the calling transaction
     */
-   public TablePlanner(String tblname, Predicate mypred, Transaction tx, MetadataMgr mdm, boolean isDistinct) {
+   public TablePlanner(String tblname, Predicate mypred, Collection<String> fldnames,
+                       Transaction tx, MetadataMgr mdm, boolean isDistinct) {
       this.mypred  = mypred;
       this.tx  = tx;
       myplan   = new TablePlan(tx, tblname, mdm);
+      myplan.useColumns(fldnames);
       myschema = myplan.schema();
+      myplan.useFilter(mypred.selectSubPred(myschema));
       indexes  = mdm.getIndexInfo(tblname, tx);
       this.isDistinct = isDistinct;
    }
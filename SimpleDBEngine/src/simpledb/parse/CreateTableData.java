@@ -9,13 +9,22 @@ import simpledb.record.Schema;
 public class CreateTableData {
    private String tblname;
    private Schema sch;
+   private int format;
    
    /**
     * Saves the table name and schema.
     */
    public CreateTableData(String tblname, Schema sch) {
+      this(tblname, sch, 0);
+   }
+   
+   /**
+    * Saves the table name, schema and the format of its blocks.
+    */
+   public CreateTableData(String tblname, Schema sch, int format) {
       this.tblname = tblname;
       this.sch = sch;
+      this.format = format;
    }
    
    /**
@@ -33,5 +42,13 @@ public class CreateTableData {
    public Schema newSchema() {
       return sch;
    }
+   
+   /**
+    * Returns the format of the new table's blocks.
+    * @return 0 for fixed-size slots, 1 for slotted pages, 2 for columnar
+    */
+   public int format() {
+      return format;
+   }
 }
 
@@ -195,6 +195,27 @@ public class Lexer {
       return idxtype;
    }
    
+   /**
+    * Throws an exception if the current token is not a
+    * recognised table format.
+    * Otherwise, moves to the next token.
+    *
+    * @return 0 for fixed, 1 for slotted, 2 for columnar
+    */
+   public int eatTableFormat() {
+      int format;
+      if (matchKeyword("fixed"))
+         format = 0;
+      else if (matchKeyword("slotted"))
+         format = 1;
+      else if (matchKeyword("columnar"))
+         format = 2;
+      else
+         throw new BadSyntaxException();
+      nextToken();
+      return format;
+   }
+   
    /**
     * Throws an exception if the current token is not 
     * an identifier. 
@@ -224,7 +245,7 @@ public class Lexer {
               "insert", "into", "values", "delete", "update", "set",
               "create", "table", "int", "varchar", "view", "as", "index", "on",
               "btree", "using", "hash", "order", "by", "asc", "desc",
-              "group", "by");
+              "group", "by", "fixed", "slotted", "columnar");
    }
 
    private void initAggregate() {
@@ -304,7 +304,12 @@ public class Parser {
         lex.eatDelim('(');
         Schema sch = fieldDefs();
         lex.eatDelim(')');
-        return new CreateTableData(tblname, sch);
+        int format = 0;
+        if (lex.matchKeyword("using")) {
+            lex.eatKeyword("using");
+            format = lex.eatTableFormat();
+        }
+        return new CreateTableData(tblname, sch, format);
     }
 
     private Schema fieldDefs() {
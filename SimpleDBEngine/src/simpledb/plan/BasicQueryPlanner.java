@@ -25,6 +25,8 @@ public class BasicQueryPlanner implements QueryPlanner {
    public Plan createPlan(QueryData data, Transaction tx) {
       //Step 1: Create a plan for each mentioned table or view.
      List<Plan> plans = new ArrayList<>();
+      Collection<String> fldnames = new HashSet<>(data.fields());
+      fldnames.addAll(data.pred().fields());
       for (String tblname : data.tables()) {
          String viewdef = mdm.getViewDef(tblname, tx);
          if (viewdef != null) { // Recursively plan the view.
@@ -32,8 +34,12 @@ public class BasicQueryPlanner implements QueryPlanner {
             QueryData viewdata = parser.query();
             plans.add(createPlan(viewdata, tx));
          }
-         else
-            plans.add(new TablePlan(tx, tblname, mdm));
+         else {
+            TablePlan tp = new TablePlan(tx, tblname, mdm);
+            tp.useColumns(fldnames);
+            tp.useFilter(data.pred().selectSubPred(tp.schema()));
+            plans.add(tp);
+         }
       }
       
       //Step 2: Create the product of all table plans
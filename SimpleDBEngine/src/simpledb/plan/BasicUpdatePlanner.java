@@ -4,6 +4,7 @@ import java.util.Iterator;
 import simpledb.tx.Transaction;
 import simpledb.parse.*;
 import simpledb.query.*;
+import simpledb.record.Layout;
 import simpledb.metadata.MetadataMgr;
 
 /**
@@ -17,7 +18,13 @@ public class BasicUpdatePlanner implements UpdatePlanner {
       this.mdm = mdm;
    }
    
+   /**
+    * Delete the records that satisfy the predicate.
+    * Columnar tables are append-only, and are rejected.
+    */
    public int executeDelete(DeleteData data, Transaction tx) {
+      if (mdm.getLayout(data.tableName(), tx).format() == Layout.COLUMNAR)
+         throw new RuntimeException("cannot delete from columnar table " + data.tableName());
       Plan p = new TablePlan(tx, data.tableName(), mdm);
       p = new SelectPlan(p, data.pred());
       UpdateScan us = (UpdateScan) p.open();
@@ -58,7 +65,7 @@ public class BasicUpdatePlanner implements UpdatePlanner {
    }
    
    public int executeCreateTable(CreateTableData data, Transaction tx) {
-      mdm.createTable(data.tableName(), data.newSchema(), tx);
+      mdm.createTable(data.tableName(), data.newSchema(), data.format(), tx);
       return 0;
    }
    
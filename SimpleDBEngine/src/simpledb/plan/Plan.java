@@ -1,7 +1,9 @@
 package simpledb.plan;
 
 import simpledb.display.ExecutionChain;
+import simpledb.query.BatchScan;
 import simpledb.query.Scan;
+import simpledb.query.ScanBatchAdapter;
 import simpledb.record.*;
 
 /**
@@ -19,6 +21,16 @@ public interface Plan {
     */
    public Scan   open();
    
+   /**
+    * Opens a batch scan corresponding to this plan.
+    * Unless the plan has a batch operator, the records
+    * of the scan returned by open are read into batches.
+    * @return a batch scan
+    */
+   public default BatchScan openBatch() {
+      return new ScanBatchAdapter(open(), schema());
+   }
+   
    /**
     * Returns an estimate of the number of block accesses
     * that will occur when the scan is read to completion.
@@ -38,6 +38,14 @@ public class ProjectPlan implements Plan {
       return new ProjectScan(s, schema.fields());
    }
 
+   /**
+    * Creates a project batch scan for this query.
+    * @see simpledb.plan.Plan#openBatch()
+    */
+   public BatchScan openBatch() {
+      return new ProjectBatchScan(p.openBatch(), schema.fields());
+   }
+
    /**
     * Estimates the number of block accesses in the projection,
     * which is the same as in the underlying query.
@@ -3,8 +3,10 @@ package simpledb.plan;
 import simpledb.display.ExecutionChain;
 import simpledb.display.Join;
 import simpledb.display.Select;
+import simpledb.query.BatchScan;
 import simpledb.query.Predicate;
 import simpledb.query.Scan;
+import simpledb.query.SelectBatchScan;
 import simpledb.query.SelectScan;
 import simpledb.record.Schema;
 
@@ -36,6 +38,14 @@ public class SelectPlan implements Plan {
       return new SelectScan(s, pred);
    }
    
+   /**
+    * Creates a select batch scan for this query.
+    * @see simpledb.plan.Plan#openBatch()
+    */
+   public BatchScan openBatch() {
+      return new SelectBatchScan(p.openBatch(), pred);
+   }
+   
    /**
     * Estimates the number of block accesses in the selection,
     * which is the same as in the underlying query.
@@ -3,9 +3,10 @@ package simpledb.plan;
 import simpledb.display.ExecutionChain;
 import simpledb.display.Join;
 import simpledb.display.Table;
+import java.util.Collection;
 import simpledb.tx.Transaction;
 import simpledb.metadata.*;
-import simpledb.query.Scan;
+import simpledb.query.*;
 import simpledb.record.*;
 
 /** The Plan class corresponding to a table.
@@ -16,6 +17,8 @@ public class TablePlan implements Plan {
    private Transaction tx;
    private Layout layout;
    private StatInfo si;
+   private Schema columns;
+   private Predicate filter;
    
    /**
     * Creates a leaf node in the query tree corresponding
@@ -31,20 +34,68 @@ public class TablePlan implements Plan {
    }
    
    /**
-    * Creates a table scan for this query.
+    * Restricts a columnar table to the specified fields,
+    * which are the only columns its scan will read.
+    * The schema of the plan then has only those fields.
+    * Other tables read whole records, and are unaffected.
+    * @param fldnames the fields that the query uses
+    */
+   public void useColumns(Collection<String> fldnames) {
+      if (layout.format() != Layout.COLUMNAR)
+         return;
+      columns = new Schema();
+      for (String fldname : layout.schema().fields())
+         if (fldnames.contains(fldname))
+            columns.add(fldname, layout.schema());
+   }
+   
+   /**
+    * Passes the selection predicate of the table to
+    * the scan of a columnar table, which uses it to skip
+    * the blocks that cannot satisfy it.
+    * The predicate must still be applied to the output.
+    * @param pred the selection predicate, or null
+    */
+   public void useFilter(Predicate pred) {
+      filter = pred;
+   }
+   
+   /**
+    * Creates a table scan for this query, or a column
+    * scan for a columnar table.
     * @see simpledb.plan.Plan#open()
     */
    public Scan open() {
+      if (layout.format() == Layout.COLUMNAR)
+         return new ColumnScan(tx, tblname, layout, schema().fields(), filter);
       return new TableScan(tx, tblname, layout);
    }
    
+   /**
+    * Creates a batch scan of the table. A columnar table
+    * is read through its column scan.
+    * @see simpledb.plan.Plan#openBatch()
+    */
+   public BatchScan openBatch() {
+      if (layout.format() == Layout.COLUMNAR)
+         return Plan.super.openBatch();
+      return new TableBatchScan(tx, tblname, layout);
+   }
+   
    /**
     * Estimates the number of block accesses for the table,
     * which is obtainable from the statistics manager.
+    * A columnar table restricted to some of its fields
+    * reads only the blocks of those columns.
     * @see simpledb.plan.Plan#blocksAccessed()
     */ 
    public int blocksAccessed() {
-      return si.blocksAccessed();
+      if (columns == null)
+         return si.blocksAccessed();
+      int numblocks = 0;
+      for (String fldname : columns.fields())
+         numblocks += ColumnScan.numBlocks(tx, layout, fldname, si.recordsOutput());
+      return numblocks;
    }
    
    /**
@@ -71,7 +122,7 @@ public class TablePlan implements Plan {
     * @see simpledb.plan.Plan#schema()
     */
    public Schema schema() {
-      return layout.schema();
+      return (columns != null) ? columns : layout.schema();
    }
 
    public ExecutionChain GetEC() {
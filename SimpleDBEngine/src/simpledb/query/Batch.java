@@ -0,0 +1,243 @@
+package simpledb.query;
+
+import static java.sql.Types.INTEGER;
+import java.util.*;
+import simpledb.record.Schema;
+
+/**
+ * A batch of records, stored as one vector per field:
+ * an int array for an integer field and a String array
+ * for a string field. The records of the batch are its rows.
+ * <P>
+ * The selection vector lists the rows that are in the
+ * batch, in order. A selection removes rows by rewriting
+ * it in place, so that no values are copied; operators
+ * therefore read the values of row <code>selection()[i]</code>,
+ * for <code>i</code> less than <code>size()</code>.
+ * <P>
+ * A batch is reused for each batch that its scan returns,
+ * and operators look up the vector of a field once per
+ * batch rather than once per value.
+ */
+public class Batch {
+   private static int defaultCapacity = 1024;
+   private Schema sch;
+   private Map<String,Integer> columns = new HashMap<>();
+   private int[] types;
+   private int[][] ints;
+   private String[][] strings;
+   private int[] sel;
+   private int count, size;
+
+   /**
+    * Set the number of rows of a batch, when none is given.
+    * @param capacity the number of rows
+    */
+   public static void setDefaultCapacity(int capacity) {
+      defaultCapacity = capacity;
+   }
+
+   /**
+    * Create an empty batch for the fields of the schema,
+    * having the default capacity.
+    * @param sch the schema of the records
+    */
+   public Batch(Schema sch) {
+      this(sch, defaultCapacity);
+   }
+
+   /**
+    * Create an empty batch for the fields of the schema.
+    * @param sch the schema of the records
+    * @param capacity the number of rows of the batch
+    */
+   public Batch(Schema sch, int capacity) {
+      this.sch = sch;
+      List<String> fields = sch.fields();
+      types = new int[fields.size()];
+      ints = new int[fields.size()][];
+      strings = new String[fields.size()][];
+      for (int c=0; c<fields.size(); c++) {
+         String fldname = fields.get(c);
+         columns.put(fldname, c);
+         types[c] = sch.type(fldname);
+         if (types[c] == INTEGER)
+            ints[c] = new int[capacity];
+         else
+            strings[c] = new String[capacity];
+      }
+      sel = new int[capacity];
+   }
+
+   /**
+    * Create a batch that shares the vectors of the specified
+    * fields of another batch, for a projection.
+    * Its rows are those of the other batch when last shared.
+    */
+   Batch(Batch b, Schema sch) {
+      this.sch = sch;
+      List<String> fields = sch.fields();
+      types = new int[fields.size()];
+      ints = new int[fields.size()][];
+      strings = new String[fields.size()][];
+      for (int c=0; c<fields.size(); c++) {
+         String fldname = fields.get(c);
+         int bc = b.column(fldname);
+         columns.put(fldname, c);
+         types[c] = b.types[bc];
+         ints[c] = b.ints[bc];
+         strings[c] = b.strings[bc];
+      }
+      sel = b.sel;
+   }
+
+   /**
+    * Return the schema of the records of the batch.
+    * @return the schema
+    */
+   public Schema schema() {
+      return sch;
+   }
+
+   /**
+    * Return the number of rows that the batch can hold.
+    * @return the capacity of the batch
+    */
+   public int capacity() {
+      return sel.length;
+   }
+
+   /**
+    * Return the number of rows in the batch,
+    * which is the length of its selection vector.
+    * @return the number of selected rows
+    */
+   public int size() {
+      return size;
+   }
+
+   /**
+    * Return the selection vector, whose first size()
+    * entries are the rows in the batch.
+    * @return the selection vector
+    */
+   public int[] selection() {
+      return sel;
+   }
+
+   /**
+    * Keep only the first rows of the selection vector,
+    * after an operator has rewritten it.
+    * @param n the number of rows kept
+    */
+   public void select(int n) {
+      size = n;
+   }
+
+   /**
+    * Return the position of a field's vector.
+    * @param fldname the name of the field
+    * @return the position of the field's vector
+    */
+   public int column(String fldname) {
+      Integer c = columns.get(fldname);
+      if (c == null)
+         throw new RuntimeException("field " + fldname + " not found.");
+      return c;
+   }
+
+   public boolean hasField(String fldname) {
+      return columns.containsKey(fldname);
+   }
+
+   /**
+    * Return true if the field at the specified
+    * position is an integer field.
+    * @param col the position of the field
+    * @return true if the vector holds ints
+    */
+   public boolean isInt(int col) {
+      return types[col] == INTEGER;
+   }
+
+   /**
+    * Return the vector of an integer field.
+    * @param col the position of the field
+    * @return the values of the field, indexed by row
+    */
+   public int[] ints(int col) {
+      return ints[col];
+   }
+
+   /**
+    * Return the vector of a string field.
+    * @param col the position of the field
+    * @return the values of the field, indexed by row
+    */
+   public String[] strings(int col) {
+      return strings[col];
+   }
+
+   /**
+    * Return the value of a field at the specified row,
+    * as a Constant.
+    * @param col the position of the field
+    * @param row the row
+    * @return the value of the field
+    */
+   public Constant getVal(int col, int row) {
+      if (types[col] == INTEGER)
+         return Constant.valueOf(ints[col][row]);
+      else
+         return new Constant(strings[col][row]);
+   }
+
+   /**
+    * Store the value of a field at the specified row.
+    * @param col the position of the field
+    * @param row the row
+    * @param val the value
+    */
+   public void setVal(int col, int row, Constant val) {
+      if (types[col] == INTEGER)
+         ints[col][row] = val.asInt();
+      else
+         strings[col][row] = val.asString();
+   }
+
+   /**
+    * Return true if no more rows can be added to the batch.
+    * @return true if the batch is full
+    */
+   public boolean isFull() {
+      return count == sel.length;
+   }
+
+   /**
+    * Add a row at the end of the batch, and select it.
+    * The caller then stores its values.
+    * @return the new row
+    */
+   public int addRow() {
+      int row = count++;
+      sel[size++] = row;
+      return row;
+   }
+
+   /**
+    * Remove all rows from the batch.
+    */
+   public void clear() {
+      count = 0;
+      size = 0;
+   }
+
+   /**
+    * Give this batch the rows of the batch
+    * whose vectors it shares.
+    */
+   void shareRows(Batch b) {
+      count = b.count;
+      size = b.size;
+   }
+}
@@ -0,0 +1,39 @@
+package simpledb.query;
+
+import simpledb.record.Schema;
+
+/**
+ * The interface implemented by scans that return their
+ * records a batch at a time, as vectors of values.
+ * There is a batch scan for the operators whose
+ * per-record cost is dominated by the calls of a
+ * Scan rather than by the work of the operator;
+ * adapters convert between the two kinds of scan.
+ * @see Batch
+ */
+public interface BatchScan {
+
+   /**
+    * Position the scan before its first batch.
+    */
+   public void beforeFirst();
+
+   /**
+    * Return the next batch of records, which has at least
+    * one row. The batch is reused by the next call, so its
+    * values must be read before the scan is called again.
+    * @return the next batch, or null if there are no more records
+    */
+   public Batch nextBatch();
+
+   /**
+    * Return the schema of the records of the scan.
+    * @return the schema of the scan
+    */
+   public Schema schema();
+
+   /**
+    * Close the scan and its subscans, if any.
+    */
+   public void close();
+}
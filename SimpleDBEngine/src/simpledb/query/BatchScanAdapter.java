@@ -0,0 +1,72 @@
+package simpledb.query;
+
+/**
+ * A scan that returns the records of a batch scan one
+ * at a time, so that the result of a batch operator can
+ * be read like that of any other query.
+ */
+public class BatchScanAdapter implements Scan {
+   private BatchScan bs;
+   private Batch batch;
+   private int current;
+   private boolean done;
+
+   /**
+    * Create a scan for the specified batch scan.
+    * @param bs the batch scan
+    */
+   public BatchScanAdapter(BatchScan bs) {
+      this.bs = bs;
+      beforeFirst();
+   }
+
+   public void beforeFirst() {
+      bs.beforeFirst();
+      batch = null;
+      done = false;
+   }
+
+   /**
+    * Move to the next selected row of the current batch,
+    * reading the next batch when the current one is done.
+    * @see simpledb.query.Scan#next()
+    */
+   public boolean next() {
+      if (done)
+         return false;
+      current++;
+      if (batch == null || current >= batch.size()) {
+         batch = bs.nextBatch();
+         current = 0;
+         if (batch == null) {
+            done = true;
+            return false;
+         }
+      }
+      return true;
+   }
+
+   public int getInt(String fldname) {
+      return batch.ints(batch.column(fldname))[row()];
+   }
+
+   public String getString(String fldname) {
+      return batch.strings(batch.column(fldname))[row()];
+   }
+
+   public Constant getVal(String fldname) {
+      return batch.getVal(batch.column(fldname), row());
+   }
+
+   public boolean hasField(String fldname) {
+      return bs.schema().hasField(fldname);
+   }
+
+   public void close() {
+      bs.close();
+   }
+
+   private int row() {
+      return batch.selection()[current];
+   }
+}
@@ -0,0 +1,89 @@
+package simpledb.query;
+
+import java.util.*;
+import simpledb.server.SimpleDB;
+import simpledb.hash.HashJoinBatchScan;
+import simpledb.plan.*;
+import simpledb.record.*;
+import simpledb.tx.Transaction;
+
+/**
+ * Each query is run both through the scans of its plan and
+ * through their batch versions, read back one record at a time
+ * by a BatchScanAdapter. Both must return the same records,
+ * in any order. The selection, the aggregations and the
+ * group by use the batch operators of the planner's plans;
+ * the join compares a batch hash join with the planner's join.
+ */
+public class BatchScanTest {
+   private static final int NUMSTUDENTS = 2000, NUMENROLLS = 20000;
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("batchtest");
+      Planner planner = db.planner();
+      Transaction tx = db.newTx();
+      planner.executeUpdate("create table student (sid int, sname varchar(10))", tx);
+      planner.executeUpdate("create table enroll (eid int, studentid int, sect int, grade varchar(2))", tx);
+      UpdateScan s = new TableScan(tx, "student", db.mdMgr().getLayout("student", tx));
+      for (int i=0; i<NUMSTUDENTS; i++) {
+         s.insert();
+         s.setInt("sid", i);
+         s.setString("sname", "stu" + i);
+      }
+      s.close();
+      s = new TableScan(tx, "enroll", db.mdMgr().getLayout("enroll", tx));
+      for (int i=0; i<NUMENROLLS; i++) {
+         s.insert();
+         s.setInt("eid", i);
+         s.setInt("studentid", (i * 7) % (2 * NUMSTUDENTS));
+         s.setInt("sect", i % 50);
+         s.setString("grade", "" + (char) ('A' + i % 5) + (i % 3 == 0 ? "+" : ""));
+      }
+      s.close();
+      tx.commit();
+
+      tx = db.newTx();
+      compare(planner, tx, "select eid, grade from enroll where studentid < 500 and grade = 'B'");
+      compare(planner, tx, "select avg(studentid), count(eid) from enroll");
+      compare(planner, tx, "select sect, count(eid), max(grade), min(studentid) from enroll group by sect");
+
+      Plan p = planner.createQueryPlan("select sname, eid from student, enroll where sid = studentid", tx);
+      long start = System.nanoTime();
+      List<String> rows = read(p.open(), p.schema());
+      long rowmillis = (System.nanoTime() - start) / 1000000;
+      start = System.nanoTime();
+      BatchScan join = new HashJoinBatchScan(
+            new TableBatchScan(tx, "student", db.mdMgr().getLayout("student", tx)), "sid",
+            new TableBatchScan(tx, "enroll", db.mdMgr().getLayout("enroll", tx)), "studentid");
+      List<String> batchrows = read(new BatchScanAdapter(join), p.schema());
+      long batchmillis = (System.nanoTime() - start) / 1000000;
+      System.out.println("hash join: " + rows.size() + " records (" + rowmillis + " ms), in batches "
+            + batchrows.size() + " (" + batchmillis + " ms), same: " + rows.equals(batchrows));
+      tx.commit();
+   }
+
+   private static void compare(Planner planner, Transaction tx, String qry) {
+      Plan p = planner.createQueryPlan(qry, tx);
+      long start = System.nanoTime();
+      List<String> rows = read(p.open(), p.schema());
+      long rowmillis = (System.nanoTime() - start) / 1000000;
+      start = System.nanoTime();
+      List<String> batchrows = read(new BatchScanAdapter(p.openBatch()), p.schema());
+      long batchmillis = (System.nanoTime() - start) / 1000000;
+      System.out.println(qry + ": " + rows.size() + " records (" + rowmillis + " ms), in batches "
+            + batchrows.size() + " (" + batchmillis + " ms), same: " + rows.equals(batchrows));
+   }
+
+   private static List<String> read(Scan s, Schema sch) {
+      List<String> rows = new ArrayList<>();
+      while (s.next()) {
+         StringBuilder sb = new StringBuilder();
+         for (String fldname : sch.fields())
+            sb.append(s.getVal(fldname)).append(' ');
+         rows.add(sb.toString());
+      }
+      s.close();
+      Collections.sort(rows);
+      return rows;
+   }
+}
@@ -0,0 +1,114 @@
+package simpledb.query;
+
+import simpledb.server.SimpleDB;
+import simpledb.parse.Parser;
+import simpledb.plan.*;
+import simpledb.record.*;
+import simpledb.tx.Transaction;
+
+/**
+ * Selections are evaluated by comparing field values where
+ * the scan stores them. Each predicate is counted both that
+ * way and by reading every value into a Constant, and the
+ * counts must agree. A sort and a group by, which compare
+ * their records the same way, are then checked to give
+ * ordered and complete results. The same rows are also
+ * stored in a columnar table, whose scan compares its values
+ * in the column files, a block of rows at a time.
+ */
+public class CompareTest {
+   private static final int NUMRECS = 5000;
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("comparetest");
+      Planner planner = db.planner();
+      Transaction tx = db.newTx();
+      planner.executeUpdate("create table emp (eid int, name varchar(20), dept varchar(10))", tx);
+      planner.executeUpdate("create table cemp (eid int, name varchar(20), dept varchar(10)) using columnar", tx);
+      Layout layout = db.mdMgr().getLayout("emp", tx);
+      Layout clayout = db.mdMgr().getLayout("cemp", tx);
+      load(new TableScan(tx, "emp", layout));
+      load(new ColumnScan(tx, "cemp", clayout));
+      tx.commit();
+
+      tx = db.newTx();
+      String[] preds = { "eid < 2500", "eid = 42", "name = 'name42'",
+                         "dept >= 'd5'", "'d3' < dept", "eid = eid", "name <> dept" };
+      for (String pred : preds) {
+         Predicate p = new Parser(pred).predicate();
+         long start = System.nanoTime();
+         int fast = count(new SelectScan(new TableScan(tx, "emp", layout), p));
+         long fastmillis = (System.nanoTime() - start) / 1000000;
+         start = System.nanoTime();
+         int slow = countByConstants(new TableScan(tx, "emp", layout), p);
+         long slowmillis = (System.nanoTime() - start) / 1000000;
+         System.out.println(pred + ": " + fast + " records (" + fastmillis + " ms), with Constants "
+               + slow + " (" + slowmillis + " ms), same: " + (fast == slow));
+         int col = count(new SelectScan(new ColumnScan(tx, "cemp", clayout), p));
+         int colslow = countByConstants(new ColumnScan(tx, "cemp", clayout), p);
+         System.out.println(pred + " on the columnar table: " + col + " records, same: "
+               + (col == fast && colslow == fast));
+      }
+
+      for (String tblname : new String[] {"emp", "cemp"}) {
+         Scan s = planner.createQueryPlan("select name, eid from " + tblname + " order by name", tx).open();
+         String prev = "";
+         int count = 0;
+         boolean sorted = true;
+         while (s.next()) {
+            String name = s.getString("name");
+            if (name.compareTo(prev) < 0)
+               sorted = false;
+            prev = name;
+            count++;
+         }
+         s.close();
+         System.out.println("sorted " + count + " records of " + tblname + " by name, in order: " + sorted);
+      }
+
+      Scan s = planner.createQueryPlan("select dept, count(eid) from emp group by dept", tx).open();
+      int groups = 0;
+      boolean complete = true;
+      while (s.next()) {
+         groups++;
+         if (s.getInt("countofeid") != NUMRECS / 10)
+            complete = false;
+      }
+      s.close();
+      System.out.println("grouped into " + groups + " departments of "
+            + NUMRECS / 10 + " records each: " + complete);
+      tx.commit();
+   }
+
+   private static void load(UpdateScan us) {
+      for (int i=0; i<NUMRECS; i++) {
+         us.insert();
+         us.setInt("eid", (i * 7919) % NUMRECS - 1000);
+         us.setString("name", "name" + i);
+         us.setString("dept", "d" + (i % 10));
+      }
+      us.close();
+   }
+
+   private static int count(Scan s) {
+      int count = 0;
+      while (s.next())
+         count++;
+      s.close();
+      return count;
+   }
+
+   private static int countByConstants(Scan s, Predicate p) {
+      int count = 0;
+      while (s.next()) {
+         boolean ok = true;
+         for (Term t : p.terms())
+            if (!t.getCondOp().evaluate(t.getLhs().evaluate(s), t.getRhs().evaluate(s)))
+               ok = false;
+         if (ok)
+            count++;
+      }
+      s.close();
+      return count;
+   }
+}
@@ -94,6 +94,32 @@ public class CondOp {
         }
     }
 
+    /**
+     * Return true if the operator holds between two values,
+     * given the result of comparing the first with the second.
+     *
+     * @param cmp the result of the comparison, as from compareTo
+     * @return true if the operator holds
+     */
+    public boolean satisfies(int cmp) {
+        switch (val) {
+            case lessThan:
+                return cmp < 0;
+            case lessThanOrEquals:
+                return cmp <= 0;
+            case equals:
+                return cmp == 0;
+            case moreThan:
+                return cmp > 0;
+            case moreThanOrEquals:
+                return cmp >= 0;
+            case notEquals:
+                return cmp != 0;
+            default:
+                throw new BadSyntaxException();
+        }
+    }
+
     @Override
     public String toString() {
         switch (val) {
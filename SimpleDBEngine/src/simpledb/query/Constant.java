@@ -5,9 +5,29 @@ package simpledb.query;
  * @author Edward Sciore
  */
 public class Constant implements Comparable<Constant> {
+   private static final int CACHE_LOW = -128, CACHE_HIGH = 1023;
+   private static final Constant[] cache = new Constant[CACHE_HIGH - CACHE_LOW + 1];
    private Integer ival = null;
    private String  sval = null;
    
+   static {
+      for (int i=0; i<cache.length; i++)
+         cache[i] = new Constant(i + CACHE_LOW);
+   }
+   
+   /**
+    * Return a Constant for the specified integer.
+    * The Constants of small integers are shared,
+    * so that scans reading them allocate nothing.
+    * @param ival the integer
+    * @return a Constant holding the integer
+    */
+   public static Constant valueOf(int ival) {
+      if (ival >= CACHE_LOW && ival <= CACHE_HIGH)
+         return cache[ival - CACHE_LOW];
+      return new Constant(ival);
+   }
+   
    public Constant(Integer ival) {
       this.ival = ival;
    }
@@ -57,6 +57,19 @@ public class Predicate {
       return true;
    }
 
+   /**
+    * Remove from the batch the rows that do not satisfy
+    * the predicate, one term at a time.
+    * @param b the batch
+    */
+   public void select(Batch b) {
+      for (Term t : terms) {
+         if (b.size() == 0)
+            return;
+         t.select(b);
+      }
+   }
+
    /** 
     * Calculate the extent to which selecting on the predicate 
     * reduces the number of records output by a query.
@@ -72,6 +85,29 @@ public class Predicate {
       return factor;
    }
 
+   /**
+    * Return the terms of the predicate.
+    * @return the terms
+    */
+   public List<Term> terms() {
+      return terms;
+   }
+
+   /**
+    * Return the fields mentioned by the predicate.
+    * @return the field names
+    */
+   public Collection<String> fields() {
+      Collection<String> result = new HashSet<>();
+      for (Term t : terms) {
+         if (t.getLhs().isFieldName())
+            result.add(t.getLhs().asFieldName());
+         if (t.getRhs().isFieldName())
+            result.add(t.getRhs().asFieldName());
+      }
+      return result;
+   }
+
    /**
     * Return the subpredicate that applies to the specified schema.
     * @param sch the schema
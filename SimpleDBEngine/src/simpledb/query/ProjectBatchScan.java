@@ -0,0 +1,52 @@
+package simpledb.query;
+
+import java.util.List;
+import simpledb.record.Schema;
+
+/**
+ * The batch scan class corresponding to the <i>project</i>
+ * relational algebra operator. Its batch shares the vectors
+ * of the projected fields with the underlying batch,
+ * so no values are copied.
+ */
+public class ProjectBatchScan implements BatchScan {
+   private BatchScan s;
+   private Schema sch = new Schema();
+   private Batch source, batch;
+
+   /**
+    * Create a project scan having the specified
+    * underlying batch scan and field list.
+    * @param s the underlying scan
+    * @param fieldlist the list of field names
+    */
+   public ProjectBatchScan(BatchScan s, List<String> fieldlist) {
+      this.s = s;
+      for (String fldname : fieldlist)
+         sch.add(fldname, s.schema());
+   }
+
+   public void beforeFirst() {
+      s.beforeFirst();
+   }
+
+   public Batch nextBatch() {
+      Batch b = s.nextBatch();
+      if (b == null)
+         return null;
+      if (b != source) {
+         batch = new Batch(b, sch);
+         source = b;
+      }
+      batch.shareRows(b);
+      return batch;
+   }
+
+   public Schema schema() {
+      return sch;
+   }
+
+   public void close() {
+      s.close();
+   }
+}
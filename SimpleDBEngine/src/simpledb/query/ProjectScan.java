@@ -53,6 +53,27 @@ public class ProjectScan implements Scan {
          throw new RuntimeException("field " + fldname + " not found.");
    }
 
+   public int compareField(String fldname, Constant val) {
+      if (hasField(fldname))
+         return s.compareField(fldname, val);
+      else
+         throw new RuntimeException("field " + fldname + " not found.");
+   }
+
+   public int compareField(String fldname, Scan other, String otherfld) {
+      if (hasField(fldname))
+         return s.compareField(fldname, other, otherfld);
+      else
+         throw new RuntimeException("field " + fldname + " not found.");
+   }
+
+   public int hashField(String fldname) {
+      if (hasField(fldname))
+         return s.hashField(fldname);
+      else
+         throw new RuntimeException("field " + fldname + " not found.");
+   }
+
    public boolean hasField(String fldname) {
       return fieldlist.contains(fldname);
    }
@@ -44,6 +44,47 @@ public interface Scan {
     */
    public Constant getVal(String fldname);
    
+   /**
+    * Compare the value of the specified field in the current
+    * record with a constant. Scans that read their records
+    * from pages compare the value where it is stored,
+    * without creating a Constant for it.
+    * @param fldname the name of the field
+    * @param val the constant to compare with
+    * @return a negative number, zero or a positive number as
+    * the field's value is less than, equal to or greater than val
+    */
+   public default int compareField(String fldname, Constant val) {
+      return getVal(fldname).compareTo(val);
+   }
+   
+   /**
+    * Compare the value of the specified field in the current
+    * record with the value of a field in the current record
+    * of another scan. Scans that read their records from
+    * pages compare integers as ints, and strings where
+    * their own value is stored.
+    * @param fldname the name of the field
+    * @param other the other scan
+    * @param otherfld the name of the field of the other scan
+    * @return a negative number, zero or a positive number as
+    * the field's value is less than, equal to or greater than the other
+    */
+   public default int compareField(String fldname, Scan other, String otherfld) {
+      return getVal(fldname).compareTo(other.getVal(otherfld));
+   }
+   
+   /**
+    * Return the hash code of the value of the specified
+    * field in the current record, which is that of its
+    * Constant.
+    * @param fldname the name of the field
+    * @return the hash code of the field's value
+    */
+   public default int hashField(String fldname) {
+      return getVal(fldname).hashCode();
+   }
+   
    /**
     * Return true if the scan has the specified field.
     * @param fldname the name of the field
@@ -0,0 +1,56 @@
+package simpledb.query;
+
+import java.util.List;
+import simpledb.record.Schema;
+
+/**
+ * A batch scan that reads its records from a scan,
+ * so that any query can be the input of a batch operator.
+ * The batch is filled through the typed getInt and
+ * getString methods of the scan.
+ */
+public class ScanBatchAdapter implements BatchScan {
+   private Scan s;
+   private Schema sch;
+   private String[] fields;
+   private Batch batch;
+
+   /**
+    * Create a batch scan for the specified scan.
+    * @param s the scan
+    * @param sch the schema of the records of the scan
+    */
+   public ScanBatchAdapter(Scan s, Schema sch) {
+      this.s = s;
+      this.sch = sch;
+      List<String> fldnames = sch.fields();
+      fields = fldnames.toArray(new String[0]);
+      batch = new Batch(sch);
+   }
+
+   public void beforeFirst() {
+      s.beforeFirst();
+   }
+
+   public Batch nextBatch() {
+      batch.clear();
+      while (!batch.isFull() && s.next()) {
+         int row = batch.addRow();
+         for (int c=0; c<fields.length; c++) {
+            if (batch.isInt(c))
+               batch.ints(c)[row] = s.getInt(fields[c]);
+            else
+               batch.strings(c)[row] = s.getString(fields[c]);
+         }
+      }
+      return (batch.size() > 0) ? batch : null;
+   }
+
+   public Schema schema() {
+      return sch;
+   }
+
+   public void close() {
+      s.close();
+   }
+}
@@ -0,0 +1,52 @@
+package simpledb.query;
+
+import simpledb.record.Schema;
+
+/**
+ * The batch scan class corresponding to the <i>select</i>
+ * relational algebra operator. Each batch of the underlying
+ * scan is returned with the rows that do not satisfy the
+ * predicate removed from its selection vector.
+ */
+public class SelectBatchScan implements BatchScan {
+   private BatchScan s;
+   private Predicate pred;
+
+   /**
+    * Create a select scan having the specified underlying
+    * batch scan and predicate.
+    * @param s the scan of the underlying query
+    * @param pred the selection predicate
+    */
+   public SelectBatchScan(BatchScan s, Predicate pred) {
+      this.s = s;
+      this.pred = pred;
+   }
+
+   public void beforeFirst() {
+      s.beforeFirst();
+   }
+
+   /**
+    * Return the next underlying batch having
+    * a row that satisfies the predicate.
+    * @see simpledb.query.BatchScan#nextBatch()
+    */
+   public Batch nextBatch() {
+      Batch b;
+      while ((b = s.nextBatch()) != null) {
+         pred.select(b);
+         if (b.size() > 0)
+            return b;
+      }
+      return null;
+   }
+
+   public Schema schema() {
+      return s.schema();
+   }
+
+   public void close() {
+      s.close();
+   }
+}
@@ -50,6 +50,18 @@ public class SelectScan implements UpdateScan {
       return s.getVal(fldname);
    }
 
+   public int compareField(String fldname, Constant val) {
+      return s.compareField(fldname, val);
+   }
+
+   public int compareField(String fldname, Scan other, String otherfld) {
+      return s.compareField(fldname, other, otherfld);
+   }
+
+   public int hashField(String fldname) {
+      return s.hashField(fldname);
+   }
+
 	public boolean hasField(String fldname) {
 		return s.hasField(fldname);
 	}
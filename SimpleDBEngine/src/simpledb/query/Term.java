@@ -36,11 +36,71 @@ public class Term {
      * @return true if both expressions have the same value in the scan
      */
     public boolean isSatisfied(Scan s) {
+        // a field is compared where it is stored, without reading it into a Constant
+        if (lhs.isFieldName() && rhs.isFieldName())
+            return condOp.satisfies(s.compareField(lhs.asFieldName(), s, rhs.asFieldName()));
+        if (lhs.isFieldName() && !rhs.isFieldName())
+            return condOp.satisfies(s.compareField(lhs.asFieldName(), rhs.asConstant()));
+        if (rhs.isFieldName() && !lhs.isFieldName())
+            return condOp.satisfies(-Integer.signum(s.compareField(rhs.asFieldName(), lhs.asConstant())));
         Constant lhsval = lhs.evaluate(s);
         Constant rhsval = rhs.evaluate(s);
         return condOp.evaluate(lhsval, rhsval);
     }
 
+    /**
+     * Remove from the batch the rows that do not satisfy
+     * the term, by rewriting its selection vector.
+     * The comparison is made on the field vectors,
+     * with the field on the left.
+     *
+     * @param b the batch
+     */
+    public void select(Batch b) {
+        if (!lhs.isFieldName() && !rhs.isFieldName()) {
+            if (!condOp.evaluate(lhs.asConstant(), rhs.asConstant()))
+                b.select(0);
+            return;
+        }
+        Expression fld = lhs, other = rhs;
+        CondOp op = condOp;
+        if (!lhs.isFieldName()) {
+            fld = rhs;
+            other = lhs;
+            op = condOp.flip();
+        }
+        int col = b.column(fld.asFieldName());
+        int[] sel = b.selection();
+        int n = b.size(), kept = 0;
+        if (other.isFieldName()) {
+            int col2 = b.column(other.asFieldName());
+            if (b.isInt(col)) {
+                int[] v1 = b.ints(col), v2 = b.ints(col2);
+                for (int i = 0; i < n; i++)
+                    if (op.satisfies(Integer.compare(v1[sel[i]], v2[sel[i]])))
+                        sel[kept++] = sel[i];
+            } else {
+                String[] v1 = b.strings(col), v2 = b.strings(col2);
+                for (int i = 0; i < n; i++)
+                    if (op.satisfies(v1[sel[i]].compareTo(v2[sel[i]])))
+                        sel[kept++] = sel[i];
+            }
+        } else if (b.isInt(col)) {
+            int[] v = b.ints(col);
+            int c = other.asConstant().asInt();
+            for (int i = 0; i < n; i++)
+                if (op.satisfies(Integer.compare(v[sel[i]], c)))
+                    sel[kept++] = sel[i];
+        } else {
+            String[] v = b.strings(col);
+            String c = other.asConstant().asString();
+            for (int i = 0; i < n; i++)
+                if (op.satisfies(v[sel[i]].compareTo(c)))
+                    sel[kept++] = sel[i];
+        }
+        b.select(kept);
+    }
+
     /**
      * Calculate the extent to which selecting on the term reduces
      * the number of records output by a query.
@@ -0,0 +1,258 @@
+package simpledb.record;
+
+import static java.sql.Types.INTEGER;
+import simpledb.file.*;
+import simpledb.query.*;
+import simpledb.tx.Transaction;
+
+/**
+ * The file holding one column of a columnar table.
+ * The values of the column are stored in row order,
+ * each in the same number of bytes. Each block begins with
+ * the number of rows it holds and the smallest and largest
+ * of their values, which let a scan skip the blocks that
+ * cannot satisfy a predicate. The values follow.
+ * The smallest and largest values are only widened when a
+ * value changes, so they are bounds that may not be attained:
+ * a value that is modified away from a bound leaves it loose.
+ * The bounds are written with the value and logged like it,
+ * so a rollback restores them together.
+ * <P>
+ * Blocks are appended in batches, as for a table scan. The
+ * blocks after the last row have a row count of 0, as do
+ * the blocks of rows that were appended and rolled back.
+ */
+class ColumnFile {
+   private static final int COUNT = 0, MIN = Integer.BYTES;
+   private static final int MAX_APPEND_BATCH = 32;
+   private Transaction tx;
+   private String filename;
+   private int type, valsize, rowsperblock;
+   private BlockId current;
+   private int appendBatch = 1;
+
+   /**
+    * Create an object for the file of a column.
+    * @param tx the transaction
+    * @param filename the name of the file
+    * @param type the type of the column
+    * @param length the declared length of a string column
+    */
+   ColumnFile(Transaction tx, String filename, int type, int length) {
+      this.tx = tx;
+      this.filename = filename;
+      this.type = type;
+      valsize = valueSize(type, length);
+      rowsperblock = rowsPerBlock(tx.blockSize(), type, length);
+   }
+
+   /**
+    * Return the number of rows in each full block
+    * of a column of the specified type.
+    * @param blocksize the usable size of a block
+    * @param type the type of the column
+    * @param length the declared length of a string column
+    * @return the rows per block
+    */
+   static int rowsPerBlock(int blocksize, int type, int length) {
+      int valsize = valueSize(type, length);
+      return (blocksize - MIN - 2 * valsize) / valsize;
+   }
+
+   /**
+    * Return the number of rows in each full block.
+    * @return the rows per block
+    */
+   int rowsPerBlock() {
+      return rowsperblock;
+   }
+
+   /**
+    * Return the number of rows of the column, which
+    * is known from the row count of its last block
+    * that has rows.
+    * @return the number of rows
+    */
+   int numRows() {
+      for (int blknum = numBlocks() - 1; blknum >= 0; blknum--) {
+         moveToBlock(blknum);
+         int count = tx.getInt(current, COUNT);
+         if (count > 0)
+            return blknum * rowsperblock + count;
+      }
+      return 0;
+   }
+
+   int numBlocks() {
+      return tx.size(filename);
+   }
+
+   int getInt(int row) {
+      int pos = moveToRow(row);
+      return tx.getInt(current, pos);
+   }
+
+   String getString(int row) {
+      int pos = moveToRow(row);
+      return tx.getString(current, pos);
+   }
+
+   Constant getVal(int row) {
+      return read(moveToRow(row));
+   }
+
+   /**
+    * Compare the value of the specified row with a constant,
+    * where the value is stored.
+    * @param row the row
+    * @param val the constant
+    * @return the result of the comparison
+    */
+   int compare(int row, Constant val) {
+      return compareAt(moveToRow(row), val);
+   }
+
+   /**
+    * Compare the value of the specified row with
+    * the value of a field of another scan.
+    * @param row the row
+    * @param other the other scan
+    * @param otherfld the field of the other scan
+    * @return the result of the comparison
+    */
+   int compare(int row, Scan other, String otherfld) {
+      int pos = moveToRow(row);
+      if (type == INTEGER)
+         return Integer.compare(tx.getInt(current, pos), other.getInt(otherfld));
+      else
+         return tx.compareString(current, pos, other.getString(otherfld));
+   }
+
+   int hash(int row) {
+      int pos = moveToRow(row);
+      if (type == INTEGER)
+         return Integer.hashCode(tx.getInt(current, pos));
+      else
+         return tx.hashString(current, pos);
+   }
+
+   /**
+    * Store a value in the specified row,
+    * widening the bounds of its block if needed.
+    * @param row the row
+    * @param val the new value
+    */
+   void setVal(int row, Constant val) {
+      write(moveToRow(row), val);
+      widen(val, false);
+   }
+
+   /**
+    * Add a row at the end of the column, appending blocks
+    * if the row is past the last one. The batches of blocks
+    * double as the column grows, up to MAX_APPEND_BATCH blocks.
+    * The value of the row is 0 or the empty string,
+    * as in a new record of a table.
+    * @param row the number of the new row, which is the number of rows
+    */
+   void append(int row) {
+      int count = row % rowsperblock;
+      int blknum = row / rowsperblock;
+      if (blknum >= numBlocks()) {
+         close();
+         current = tx.appendMany(filename, appendBatch);
+         tx.pin(current);
+         appendBatch = Math.min(2 * appendBatch, MAX_APPEND_BATCH);
+      }
+      else
+         moveToBlock(blknum);
+      tx.setInt(current, COUNT, count + 1, true);
+      Constant val = (type == INTEGER) ? Constant.valueOf(0) : new Constant("");
+      write(valuePos(count), val);
+      widen(val, count == 0);
+   }
+
+   /**
+    * Return false if no row of the specified block
+    * can satisfy the comparison with the constant,
+    * according to the bounds of the block.
+    * The bounds are compared where they are stored.
+    * @param blknum the block
+    * @param op the comparison, with the column on its left
+    * @param val the constant on the right of the comparison
+    * @return false if the block can be skipped
+    */
+   boolean mayMatch(int blknum, CondOp op, Constant val) {
+      moveToBlock(blknum);
+      int min = compareAt(MIN, val), max = compareAt(MIN + valsize, val);
+      switch (op.getVal()) {
+         case equals:
+            return min <= 0 && max >= 0;
+         case lessThan:
+            return min < 0;
+         case lessThanOrEquals:
+            return min <= 0;
+         case moreThan:
+            return max > 0;
+         case moreThanOrEquals:
+            return max >= 0;
+         default:
+            return !(min == 0 && max == 0);
+      }
+   }
+
+   void close() {
+      if (current != null)
+         tx.unpin(current);
+      current = null;
+   }
+
+   private int moveToRow(int row) {
+      moveToBlock(row / rowsperblock);
+      return valuePos(row % rowsperblock);
+   }
+
+   private void moveToBlock(int blknum) {
+      if (current != null && current.number() == blknum)
+         return;
+      close();
+      current = new BlockId(filename, blknum);
+      tx.pin(current);
+   }
+
+   private int valuePos(int i) {
+      return MIN + (2 + i) * valsize;
+   }
+
+   private void widen(Constant val, boolean first) {
+      if (first || compareAt(MIN, val) > 0)
+         write(MIN, val);
+      if (first || compareAt(MIN + valsize, val) < 0)
+         write(MIN + valsize, val);
+   }
+
+   private static int valueSize(int type, int length) {
+      return (type == INTEGER) ? Integer.BYTES : Page.maxLength(length);
+   }
+
+   private int compareAt(int pos, Constant val) {
+      if (type == INTEGER)
+         return Integer.compare(tx.getInt(current, pos), val.asInt());
+      else
+         return tx.compareString(current, pos, val.asString());
+   }
+
+   private Constant read(int pos) {
+      if (type == INTEGER)
+         return Constant.valueOf(tx.getInt(current, pos));
+      else
+         return new Constant(tx.getString(current, pos));
+   }
+
+   private void write(int pos, Constant val) {
+      if (type == INTEGER)
+         tx.setInt(current, pos, val.asInt(), true);
+      else
+         tx.setString(current, pos, val.asString(), true);
+   }
+}
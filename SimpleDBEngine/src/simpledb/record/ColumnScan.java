@@ -0,0 +1,269 @@
+package simpledb.record;
+
+import java.util.*;
+import simpledb.query.*;
+import simpledb.tx.Transaction;
+
+/**
+ * Provides the abstraction of an array of records
+ * for a columnar table, which stores each column in its
+ * own file. The scan reads only the files of the columns
+ * it is opened on, and skips the blocks whose bounds
+ * show that no row can satisfy its filter.
+ * <P>
+ * Rows are numbered in insertion order, and the RID of a
+ * row is its position in the file of the table's first
+ * column. A columnar table is append-only: rows can be
+ * inserted and modified, but not deleted.
+ */
+public class ColumnScan implements UpdateScan {
+   private Transaction tx;
+   private Layout layout;
+   private ColumnFile rows;
+   private Map<String,ColumnFile> columns = new LinkedHashMap<>();
+   private List<Bound> bounds = new ArrayList<>();
+   private int numrows;
+   private int currentrow;
+
+   /**
+    * Open a scan on every column of the table.
+    * @param tx the transaction
+    * @param tblname the name of the table
+    * @param layout the layout of the table
+    */
+   public ColumnScan(Transaction tx, String tblname, Layout layout) {
+      this(tx, tblname, layout, layout.schema().fields(), null);
+   }
+
+   /**
+    * Open a scan on the specified columns of the table.
+    * The terms of the filter that compare a column with a
+    * constant are used to skip blocks; the filter itself
+    * must still be applied to the rows of the scan.
+    * @param tx the transaction
+    * @param tblname the name of the table
+    * @param layout the layout of the table
+    * @param fldnames the columns to read
+    * @param filter a predicate on the rows, or null
+    */
+   public ColumnScan(Transaction tx, String tblname, Layout layout,
+                     Collection<String> fldnames, Predicate filter) {
+      this.tx = tx;
+      this.layout = layout;
+      Schema sch = layout.schema();
+      for (String fldname : sch.fields())
+         if (fldnames.contains(fldname))
+            columns.put(fldname, open(tblname, fldname));
+      String first = sch.fields().get(0);
+      rows = columns.containsKey(first) ? columns.get(first) : open(tblname, first);
+      if (filter != null)
+         for (Term t : filter.terms())
+            addBound(t);
+      beforeFirst();
+   }
+
+   /**
+    * Return the name of the file holding
+    * the specified column of a table.
+    * @param tblname the name of the table
+    * @param fldname the name of the column
+    * @return the name of the column's file
+    */
+   public static String fileName(String tblname, String fldname) {
+      return tblname + "." + fldname + ".col";
+   }
+
+   // Methods that implement Scan
+
+   public void beforeFirst() {
+      numrows = rows.numRows();
+      currentrow = -1;
+   }
+
+   /**
+    * Move to the next row whose blocks may satisfy
+    * the filter, skipping the rest of a block
+    * as soon as one of its bounds rules it out.
+    */
+   public boolean next() {
+      currentrow++;
+      while (currentrow < numrows) {
+         int skipto = currentrow;
+         for (Bound b : bounds) {
+            int perblock = b.col.rowsPerBlock();
+            int blknum = currentrow / perblock;
+            if (!b.mayMatch(blknum)) {
+               skipto = (blknum + 1) * perblock;
+               break;
+            }
+         }
+         if (skipto == currentrow)
+            return true;
+         currentrow = skipto;
+      }
+      return false;
+   }
+
+   public int getInt(String fldname) {
+      return column(fldname).getInt(currentrow);
+   }
+
+   public String getString(String fldname) {
+      return column(fldname).getString(currentrow);
+   }
+
+   public Constant getVal(String fldname) {
+      return column(fldname).getVal(currentrow);
+   }
+
+   public int compareField(String fldname, Constant val) {
+      return column(fldname).compare(currentrow, val);
+   }
+
+   public int compareField(String fldname, Scan other, String otherfld) {
+      return column(fldname).compare(currentrow, other, otherfld);
+   }
+
+   public int hashField(String fldname) {
+      return column(fldname).hash(currentrow);
+   }
+
+   public boolean hasField(String fldname) {
+      return columns.containsKey(fldname);
+   }
+
+   public void close() {
+      for (ColumnFile col : columns.values())
+         col.close();
+      rows.close();
+   }
+
+   // Methods that implement UpdateScan
+
+   public void setVal(String fldname, Constant val) {
+      column(fldname).setVal(currentrow, val);
+   }
+
+   public void setInt(String fldname, int val) {
+      setVal(fldname, new Constant(val));
+   }
+
+   public void setString(String fldname, String val) {
+      setVal(fldname, new Constant(val));
+   }
+
+   /**
+    * Append a row to the table. The scan must be
+    * open on every column, since each one gets a value.
+    */
+   public void insert() {
+      if (columns.size() < layout.schema().fields().size())
+         throw new RuntimeException("an insertion needs every column of the table");
+      currentrow = numrows++;
+      for (ColumnFile col : columns.values())
+         col.append(currentrow);
+   }
+
+   /**
+    * Columnar tables are append-only; the update planners
+    * reject a delete statement on one before opening its scan.
+    */
+   public void delete() {
+      throw new UnsupportedOperationException("columnar tables are append-only");
+   }
+
+   public RID getRid() {
+      int perblock = rows.rowsPerBlock();
+      return new RID(currentrow / perblock, currentrow % perblock);
+   }
+
+   public void moveToRid(RID rid) {
+      currentrow = rid.blockNumber() * rows.rowsPerBlock() + rid.slot();
+   }
+
+   /**
+    * Return the number of blocks that hold the rows
+    * of the columns of the scan.
+    * @return the number of blocks
+    */
+   public int numBlocks() {
+      int numblocks = 0;
+      for (String fldname : columns.keySet())
+         numblocks += numBlocks(tx, layout, fldname, numrows);
+      return numblocks;
+   }
+
+   /**
+    * Return the number of blocks that hold the specified
+    * number of rows of a column. The file of the column
+    * may be longer, since blocks are appended in batches.
+    * @param tx the transaction
+    * @param layout the layout of the table
+    * @param fldname the name of the column
+    * @param numrows the number of rows
+    * @return the number of blocks
+    */
+   public static int numBlocks(Transaction tx, Layout layout, String fldname, int numrows) {
+      Schema sch = layout.schema();
+      int perblock = ColumnFile.rowsPerBlock(tx.blockSize(), sch.type(fldname), sch.length(fldname));
+      return (numrows + perblock - 1) / perblock;
+   }
+
+   /**
+    * Return the number of rows of the table.
+    * @return the number of rows
+    */
+   public int numRows() {
+      return numrows;
+   }
+
+   // Private auxiliary methods
+
+   private ColumnFile open(String tblname, String fldname) {
+      Schema sch = layout.schema();
+      return new ColumnFile(tx, fileName(tblname, fldname),
+                            sch.type(fldname), sch.length(fldname));
+   }
+
+   private ColumnFile column(String fldname) {
+      ColumnFile col = columns.get(fldname);
+      if (col == null)
+         throw new RuntimeException("field " + fldname + " not found.");
+      return col;
+   }
+
+   /**
+    * Keep a term that compares a column of the scan
+    * with a constant, with the column on the left.
+    */
+   private void addBound(Term t) {
+      Expression lhs = t.getLhs(), rhs = t.getRhs();
+      if (lhs.isFieldName() && !rhs.isFieldName() && columns.containsKey(lhs.asFieldName()))
+         bounds.add(new Bound(columns.get(lhs.asFieldName()), t.getCondOp(), rhs.asConstant()));
+      else if (rhs.isFieldName() && !lhs.isFieldName() && columns.containsKey(rhs.asFieldName()))
+         bounds.add(new Bound(columns.get(rhs.asFieldName()), t.getCondOp().flip(), lhs.asConstant()));
+   }
+
+   private static class Bound {
+      ColumnFile col;
+      CondOp op;
+      Constant val;
+      int blknum = -1;
+      boolean matches;
+
+      Bound(ColumnFile col, CondOp op, Constant val) {
+         this.col = col;
+         this.op = op;
+         this.val = val;
+      }
+
+      // the bounds of a block are read once, not for each of its rows
+      boolean mayMatch(int blknum) {
+         if (blknum != this.blknum) {
+            matches = col.mayMatch(blknum, op, val);
+            this.blknum = blknum;
+         }
+         return matches;
+      }
+   }
+}
@@ -0,0 +1,70 @@
+package simpledb.record;
+
+import simpledb.server.SimpleDB;
+import simpledb.plan.*;
+import simpledb.query.*;
+import simpledb.tx.Transaction;
+
+/**
+ * The same rows are stored in a wide row table and in a
+ * columnar one. An aggregate over one column reads only
+ * that column's file from the columnar table, and a
+ * selection on the insertion order skips the blocks whose
+ * bounds rule them out; both queries must give the same
+ * answers as on the row table. A delete statement on the
+ * columnar table is rejected, and leaves its rows in place.
+ */
+public class ColumnScanTest {
+   private static final int NUMROWS = 5000;
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("columntest");
+      Planner planner = db.planner();
+      Transaction tx = db.newTx();
+      String fields = "(eid int, grade int, c1 varchar(20), c2 varchar(20), "
+            + "c3 varchar(20), c4 varchar(20), c5 varchar(20))";
+      planner.executeUpdate("create table rowenroll " + fields, tx);
+      planner.executeUpdate("create table colenroll " + fields + " using columnar", tx);
+      load(new TableScan(tx, "rowenroll", db.mdMgr().getLayout("rowenroll", tx)));
+      load(new ColumnScan(tx, "colenroll", db.mdMgr().getLayout("colenroll", tx)));
+      tx.commit();
+
+      tx = db.newTx();
+      run(planner, tx, "select avg(grade) from rowenroll", "avgofgrade");
+      run(planner, tx, "select avg(grade) from colenroll", "avgofgrade");
+      run(planner, tx, "select count(eid) from rowenroll where eid < 100", "countofeid");
+      run(planner, tx, "select count(eid) from colenroll where eid < 100", "countofeid");
+      try {
+         planner.executeUpdate("delete from colenroll where eid < 100", tx);
+         System.out.println("the delete statement was executed");
+      }
+      catch (RuntimeException e) {
+         System.out.println("the delete statement was rejected: " + e.getMessage());
+      }
+      run(planner, tx, "select count(eid) from colenroll where eid < 100", "countofeid");
+      tx.commit();
+   }
+
+   private static void load(UpdateScan s) {
+      for (int i=0; i<NUMROWS; i++) {
+         s.insert();
+         s.setInt("eid", i);
+         s.setInt("grade", i % 100);
+         for (int c=1; c<=5; c++)
+            s.setString("c" + c, "value" + c + "of" + i);
+      }
+      s.close();
+   }
+
+   private static void run(Planner planner, Transaction tx, String qry, String fldname) {
+      Plan p = planner.createQueryPlan(qry, tx);
+      long start = System.nanoTime();
+      Scan s = p.open();
+      s.next();
+      int result = s.getInt(fldname);
+      s.close();
+      long millis = (System.nanoTime() - start) / 1000000;
+      System.out.println(qry + ": " + result + " (" + p.blocksAccessed()
+            + " blocks estimated, " + millis + " ms)");
+   }
+}
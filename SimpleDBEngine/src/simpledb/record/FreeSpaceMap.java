@@ -0,0 +1,112 @@
+package simpledb.record;
+
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+
+/**
+ * The free-space map of a table, which tells the blocks
+ * of the table that have an empty slot, so that an insertion
+ * can go directly to one of them.
+ * The map is a file with a bit for each block of the table.
+ * Its first word is a hint: no block before it has room.
+ * <P>
+ * The map is read and written as hints, without locks or
+ * logging, so it may be out of date. A block marked as having
+ * room may be full, in which case the inserter clears its bit
+ * and looks further. A rollback marks the blocks that its
+ * insertions used as having room; a block with room may still
+ * be marked as full after recovery undoes an insertion,
+ * and is marked again when a record of it is deleted.
+ */
+class FreeSpaceMap {
+   private static final int BITS_PER_WORD = Integer.SIZE;
+   private static final int HINT_BITS = BITS_PER_WORD; // the first word holds the hint
+   private Transaction tx;
+   private String filename;
+   private int bitsPerBlock;
+
+   /**
+    * Create the free-space map of the specified table.
+    * @param tx the transaction
+    * @param tblname the name of the table
+    */
+   FreeSpaceMap(Transaction tx, String tblname) {
+      this.tx = tx;
+      filename = tblname + ".fsm";
+      bitsPerBlock = (tx.blockSize() / Integer.BYTES) * BITS_PER_WORD;
+   }
+
+   /**
+    * Return the first block of the table that may have room,
+    * starting from the hint, and move the hint forward
+    * to that block.
+    * @return the number of the block, or -1 if no block has room
+    */
+   int firstWithRoom() {
+      int mapsize = tx.size(filename);
+      if (mapsize == 0)
+         return -1;
+      int hint = read(0, 0);
+      int end = mapsize * bitsPerBlock - HINT_BITS;
+      int found = -1;
+      int bit = hint + HINT_BITS;
+      while (found < 0 && bit - HINT_BITS < end) {
+         int mapblk = bit / bitsPerBlock;
+         int pos = (bit % bitsPerBlock) / BITS_PER_WORD * Integer.BYTES;
+         int word = read(mapblk, pos) & (-1 << (bit % BITS_PER_WORD));
+         if (word != 0)
+            found = bit - bit % BITS_PER_WORD + Integer.numberOfTrailingZeros(word) - HINT_BITS;
+         else
+            bit = bit - bit % BITS_PER_WORD + BITS_PER_WORD;
+      }
+      // fails if a block before the new hint was marked meanwhile
+      compareAndSet(0, 0, hint, (found < 0) ? end : found);
+      return found;
+   }
+
+   /**
+    * Mark whether the specified block of the table has room.
+    * A block marked as having room moves the hint back to it.
+    * @param blknum the number of the block
+    * @param room true if the block has an empty slot
+    */
+   void setRoom(int blknum, boolean room) {
+      int bit = blknum + HINT_BITS;
+      int mapblk = bit / bitsPerBlock;
+      int mapsize = tx.size(filename);
+      if (mapblk >= mapsize) {
+         if (!room)
+            return;
+         tx.appendMany(filename, mapblk + 1 - mapsize);
+      }
+      int pos = (bit % bitsPerBlock) / BITS_PER_WORD * Integer.BYTES;
+      int mask = 1 << (bit % BITS_PER_WORD);
+      int word;
+      do {
+         word = read(mapblk, pos);
+      } while (((word & mask) != 0) != room
+               && !compareAndSet(mapblk, pos, word, word ^ mask));
+      if (room) {
+         int hint;
+         do {
+            hint = read(0, 0);
+         } while (blknum < hint && !compareAndSet(0, 0, hint, blknum));
+      }
+   }
+
+   private int read(int mapblk, int pos) {
+      BlockId blk = new BlockId(filename, mapblk);
+      tx.pin(blk);
+      int val = tx.getHint(blk, pos);
+      tx.unpin(blk);
+      return val;
+   }
+
+   private boolean compareAndSet(int mapblk, int pos, int expect, int update) {
+      BlockId blk = new BlockId(filename, mapblk);
+      tx.pin(blk);
+      boolean ok = tx.compareAndSetHint(blk, pos, expect, update);
+      tx.unpin(blk);
+      return ok;
+   }
+}
@@ -0,0 +1,99 @@
+package simpledb.record;
+
+import java.util.*;
+import simpledb.server.SimpleDB;
+import simpledb.tx.Transaction;
+
+/**
+ * Records are deleted here and there in a large table.
+ * Each later insertion opens a new scan, as an SQL insert
+ * statement does, and goes through the free-space map
+ * straight to a block with room, so the freed slots are
+ * reused without reading the blocks before them.
+ * The slots freed again are then filled by a transaction
+ * that rolls back, and must still be reused afterwards.
+ */
+public class FreeSpaceTest {
+   private static final int NUMRECS = 5000, NUMDELETES = 100;
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("freespacetest", 400, 16);
+      Schema sch = new Schema();
+      sch.addIntField("A");
+      sch.addStringField("B", 9);
+      Layout layout = new Layout(sch);
+
+      Transaction tx = db.newTx();
+      TableScan ts = new TableScan(tx, "T", layout);
+      for (int i=0; i<NUMRECS; i++) {
+         ts.insert();
+         ts.setInt("A", i);
+         ts.setString("B", "rec"+i);
+      }
+      ts.beforeFirst();
+      int deleted = 0;
+      while (ts.next())
+         if (ts.getInt("A") % (NUMRECS / NUMDELETES) == 0) {
+            ts.delete();
+            deleted++;
+         }
+      ts.close();
+      tx.commit();
+      System.out.println("inserted " + NUMRECS + " records, deleted " + deleted);
+
+      tx = db.newTx();
+      int size = tx.size("T.tbl");
+      long start = System.nanoTime();
+      for (int i=0; i<NUMDELETES; i++)
+         insert(tx, layout, -1);
+      long micros = (System.nanoTime() - start) / 1000 / NUMDELETES;
+      System.out.println("the freed slots were reused: " + (tx.size("T.tbl") == size));
+      System.out.println("each insertion took " + micros + " microseconds");
+
+      ts = new TableScan(tx, "T", layout);
+      int count = 0, added = 0;
+      while (ts.next()) {
+         count++;
+         if (ts.getInt("A") < 0)
+            added++;
+      }
+      ts.close();
+      System.out.println("the table has " + count + " records, " + added + " of them new");
+      tx.commit();
+
+      tx = db.newTx();
+      Set<Integer> freed = new HashSet<>();
+      ts = new TableScan(tx, "T", layout);
+      while (ts.next())
+         if (ts.getInt("A") % (NUMRECS / NUMDELETES) == 1) {
+            ts.delete();
+            freed.add(ts.getRid().blockNumber());
+         }
+      ts.close();
+      tx.commit();
+      tx = db.newTx();
+      for (int i=0; i<2*NUMDELETES; i++)
+         insert(tx, layout, -2);
+      tx.rollback();
+      tx = db.newTx();
+      for (int i=0; i<NUMDELETES; i++)
+         insert(tx, layout, -3);
+      ts = new TableScan(tx, "T", layout);
+      int reused = 0;
+      while (ts.next())
+         if (ts.getInt("A") == -3 && freed.contains(ts.getRid().blockNumber()))
+            reused++;
+      ts.close();
+      System.out.println("after a rollback, " + reused + " of " + NUMDELETES
+            + " freed slots were reused");
+      tx.commit();
+   }
+
+   private static void insert(Transaction tx, Layout layout, int val) {
+      TableScan ts = new TableScan(tx, "T", layout);
+      ts.insert();
+      ts.setInt("A", val);
+      ts.setString("B", "new");
+      ts.close();
+   }
+}
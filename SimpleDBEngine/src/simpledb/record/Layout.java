@@ -7,14 +7,19 @@ import simpledb.file.Page;
 /**
  * Description of the structure of a record.
  * It contains the name, type, length and offset of
- * each field of the table.
+ * each field of the table, and the format of its blocks:
+ * fixed-size slots, a slotted page of variable-length
+ * records, whose fields have no fixed offsets, or columnar,
+ * with a file per field (see {@link ColumnScan}).
  * @author Edward Sciore
  *
  */
 public class Layout {
+   public static final int FIXED = 0, SLOTTED = 1, COLUMNAR = 2;
    private Schema schema;
    private Map<String,Integer> offsets;
    private int slotsize;
+   private int format = FIXED;
 
    /**
     * This constructor creates a Layout object from a schema. 
@@ -27,12 +32,26 @@ public class Layout {
    public Layout(Schema schema) {
       this.schema = schema;
       offsets  = new HashMap<>();
-      int pos = Integer.BYTES; // leave space for the empty/inuse flag
+      int pos = 0; // the empty/inuse flags are in the block's bitmap
       for (String fldname : schema.fields()) {
          offsets.put(fldname, pos);
          pos += lengthInBytes(fldname);
       }
-      slotsize = pos;
+      slotsize = Math.max(pos, 1); // a record with no fields still needs a slot
+   }
+
+   /**
+    * Create a Layout object for a new table whose blocks
+    * have the specified format. The slot size of a slotted
+    * table is the size of its largest possible record.
+    * @param schema the schema of the table's records
+    * @param format the format of the table's blocks
+    */
+   public Layout(Schema schema, int format) {
+      this(schema);
+      this.format = format;
+      if (format == SLOTTED)
+         slotsize = SlottedPage.maxRecordSize(schema);
    }
 
    /**
@@ -50,6 +69,19 @@ public class Layout {
       this.slotsize = slotsize;
    }
 
+   /**
+    * Create a Layout object from the specified metadata,
+    * for a table whose blocks have the specified format.
+    * @param schema the schema of the table's records
+    * @param offsets the already-calculated offsets of the fields within a record
+    * @param slotsize the already-calculated length of each record
+    * @param format the format of the table's blocks
+    */
+   public Layout(Schema schema, Map<String,Integer> offsets, int slotsize, int format) {
+      this(schema, offsets, slotsize);
+      this.format = format;
+   }
+
    /**
     * Return the schema of the table's records
     * @return the table's record schema
@@ -75,6 +107,15 @@ public class Layout {
       return slotsize;
    }
 
+   /**
+    * Return the format of the table's blocks,
+    * either FIXED, SLOTTED or COLUMNAR.
+    * @return the format of the blocks
+    */
+   public int format() {
+      return format;
+   }
+
    private int lengthInBytes(String fldname) {
       int fldtype = schema.type(fldname);
       if (fldtype == INTEGER)
@@ -0,0 +1,11 @@
+package simpledb.record;
+
+/**
+ * A runtime exception indicating that a record
+ * could not grow, because its block has no room left.
+ */
+@SuppressWarnings("serial")
+public class PageFullException extends RuntimeException {
+   public PageFullException() {
+   }
+}
@@ -0,0 +1,134 @@
+package simpledb.record;
+
+import simpledb.file.BlockId;
+import simpledb.query.Batch;
+import simpledb.tx.Transaction;
+
+/**
+ * The records of a block, each stored in a numbered slot.
+ * A table stores its records in the format chosen when
+ * it was created, which the layout records.
+ */
+public interface RecordBlock {
+
+   /**
+    * Return the integer value stored for the
+    * specified field of a specified slot.
+    * @param slot the slot of the record
+    * @param fldname the name of the field.
+    * @return the integer stored in that field
+    */
+   public int getInt(int slot, String fldname);
+
+   /**
+    * Return the string value stored for the
+    * specified field of the specified slot.
+    * @param slot the slot of the record
+    * @param fldname the name of the field.
+    * @return the string stored in that field
+    */
+   public String getString(int slot, String fldname);
+
+   /**
+    * Compare the string stored for the specified field
+    * of the specified slot with a string, without
+    * creating a String for the stored value.
+    * @param slot the slot of the record
+    * @param fldname the name of the field.
+    * @param val the string to compare with
+    * @return a negative number, zero or a positive number as
+    * the stored string is less than, equal to or greater than val
+    */
+   public int compareString(int slot, String fldname, String val);
+
+   /**
+    * Return the hash code of the string stored for the
+    * specified field of the specified slot.
+    * @param slot the slot of the record
+    * @param fldname the name of the field.
+    * @return the hash code of the stored string
+    */
+   public int hashString(int slot, String fldname);
+
+   /**
+    * Add the records of the used slots after the specified
+    * one to the batch, until the block has no more records
+    * or the batch is full. The values are read from the
+    * block's page under a single lock.
+    * @param slot the slot after which records are read
+    * @param batch the batch, whose fields are fields of the table
+    * @return the last slot read, or -1 if the block has no more records
+    */
+   public int readBatch(int slot, Batch batch);
+
+   /**
+    * Store an integer at the specified field
+    * of the specified slot.
+    * @param slot the slot of the record
+    * @param fldname the name of the field
+    * @param val the integer value stored in that field
+    */
+   public void setInt(int slot, String fldname, int val);
+
+   /**
+    * Store a string at the specified field
+    * of the specified slot.
+    * @param slot the slot of the record
+    * @param fldname the name of the field
+    * @param val the string value stored in that field
+    */
+   public void setString(int slot, String fldname, String val);
+
+   /**
+    * Delete the record of the specified slot.
+    * @param slot the slot of the record
+    */
+   public void delete(int slot);
+
+   /**
+    * Format a new block, which then holds no records.
+    * A block of zeros is also a formatted block.
+    */
+   public void format();
+
+   /**
+    * Return the first slot after the specified one
+    * that holds a record.
+    * @param slot a slot, or -1 to start from the beginning
+    * @return the slot, or -1 if there is none
+    */
+   public int nextAfter(int slot);
+
+   /**
+    * Insert an empty record, and return its slot.
+    * The record goes in the first empty slot after the
+    * specified one, if the format numbers its slots
+    * by position, and in any empty slot otherwise.
+    * @param slot a slot, or -1 to start from the beginning
+    * @return the slot of the new record, or -1 if the block is full
+    */
+   public int insertAfter(int slot);
+
+   /**
+    * Return true if a record can be inserted in the block.
+    * @return true if the block has room for a record
+    */
+   public boolean hasRoom();
+
+   public BlockId block();
+
+   /**
+    * Create the record block of the specified block,
+    * in the format of the layout, and pin the block.
+    * @param tx the transaction
+    * @param blk the block
+    * @param layout the layout of the table
+    * @return the records of the block
+    */
+   public static RecordBlock open(Transaction tx, BlockId blk, Layout layout) {
+      if (layout.format() == Layout.SLOTTED)
+         return new SlottedPage(tx, blk, layout);
+      else
+         return new RecordPage(tx, blk, layout);
+   }
+}
@@ -1,26 +1,52 @@
 package simpledb.record;
 
 import static java.sql.Types.INTEGER;
+import java.util.List;
 import simpledb.file.*;
+import simpledb.query.Batch;
 import simpledb.tx.Transaction;
 
 /**
  * Store a record at a given location in a block. 
+ * The block begins with a bitmap of its slots, in which
+ * the bit of a slot is set if the slot holds a record.
+ * The slots follow the bitmap. A block of zeros is
+ * therefore a formatted block with empty slots.
  * @author Edward Sciore
  */
-public class RecordPage {
+public class RecordPage implements RecordBlock {
    public static final int EMPTY = 0, USED = 1;
+   private static final int BITS_PER_WORD = Integer.SIZE;
    private Transaction tx;
    private BlockId blk;
    private Layout layout;
+   private int numslots;
+   private int headersize;
 
    public RecordPage(Transaction tx, BlockId blk, Layout layout) {
       this.tx = tx;
       this.blk = blk;
       this.layout = layout;
+      // the layout of a table missing from the catalog has no slot size
+      numslots = (layout.slotSize() > 0) ? slotsPerBlock(tx.blockSize(), layout.slotSize()) : 0;
+      headersize = words(numslots) * Integer.BYTES;
       tx.pin(blk);
    }
 
+   /**
+    * Return the number of slots of a block,
+    * after room is made for the bitmap.
+    * @param blocksize the usable size of a block
+    * @param slotsize the size of a slot
+    * @return the number of slots
+    */
+   public static int slotsPerBlock(int blocksize, int slotsize) {
+      int n = blocksize / slotsize;
+      while (n > 0 && words(n) * Integer.BYTES + n * slotsize > blocksize)
+         n--;
+      return n;
+   }
+
    /**
     * Return the integer value stored for the
     * specified field of a specified slot.
@@ -43,6 +69,38 @@ public class RecordPage {
       return tx.getString(blk, fldpos);
    }
 
+   public int compareString(int slot, String fldname, String val) {
+      int fldpos = offset(slot) + layout.offset(fldname);
+      return tx.compareString(blk, fldpos, val);
+   }
+
+   public int hashString(int slot, String fldname) {
+      int fldpos = offset(slot) + layout.offset(fldname);
+      return tx.hashString(blk, fldpos);
+   }
+
+   public int readBatch(int slot, Batch batch) {
+      Page p = tx.readPage(blk);
+      List<String> fields = batch.schema().fields();
+      int[] offsets = new int[fields.size()];
+      for (int c=0; c<offsets.length; c++)
+         offsets[c] = layout.offset(fields.get(c));
+      while (!batch.isFull()) {
+         slot = searchAfter(p, slot, USED);
+         if (slot < 0)
+            return -1;
+         int row = batch.addRow();
+         int pos = offset(slot);
+         for (int c=0; c<offsets.length; c++) {
+            if (batch.isInt(c))
+               batch.ints(c)[row] = p.getInt(pos + offsets[c]);
+            else
+               batch.strings(c)[row] = p.getString(pos + offsets[c]);
+         }
+      }
+      return slot;
+   }
+
    /**
     * Store an integer at the specified field
     * of the specified slot.
@@ -74,10 +132,10 @@ public class RecordPage {
     *  (because the old values are meaningless).
     */ 
    public void format() {
-      int slot = 0;
-      while (isValidSlot(slot)) {
-         tx.setInt(blk, offset(slot), EMPTY, false); 
-         Schema sch = layout.schema();
+      for (int w=0; w<words(numslots); w++)
+         tx.setInt(blk, w * Integer.BYTES, 0, false);
+      Schema sch = layout.schema();
+      for (int slot=0; slot<numslots; slot++) {
          for (String fldname : sch.fields()) {
             int fldpos = offset(slot) + layout.offset(fldname);
             if (sch.type(fldname) == INTEGER)
@@ -85,7 +143,6 @@ public class RecordPage {
             else
                tx.setString(blk, fldpos, "", false);
          }
-         slot++;
       }
    }
 
@@ -93,12 +150,29 @@ public class RecordPage {
       return searchAfter(slot, USED);
    }
  
+   /**
+    * Insert a record in the first empty slot after the
+    * specified one, if there is one.
+    * @throws RuntimeException if no record fits in a block
+    */
    public int insertAfter(int slot) {
+      if (numslots == 0)
+         throw new RuntimeException((layout.slotSize() > 0)
+               ? "record too large for block: " + layout.slotSize() + " bytes"
+               : "the table has no record layout");
       int newslot = searchAfter(slot, EMPTY);
       if (newslot >= 0)
          setFlag(newslot, USED);
       return newslot;
    }
+
+   /**
+    * Return true if the block has an empty slot.
+    * @return true if a record can be inserted in the block
+    */
+   public boolean hasRoom() {
+      return searchAfter(-1, EMPTY) >= 0;
+   }
   
    public BlockId block() {
       return blk;
@@ -107,28 +181,54 @@ public class RecordPage {
    // Private auxiliary methods
    
    /**
-    * Set the record's empty/inuse flag.
+    * Set or clear the record's bit in the bitmap.
     */
    private void setFlag(int slot, int flag) {
-      tx.setInt(blk, offset(slot), flag, true); 
+      int pos = (slot / BITS_PER_WORD) * Integer.BYTES;
+      int mask = 1 << (slot % BITS_PER_WORD);
+      int word = tx.getInt(blk, pos);
+      word = (flag == USED) ? (word | mask) : (word & ~mask);
+      tx.setInt(blk, pos, word, true); 
    }
 
+   /**
+    * Find the first slot after the specified one whose flag
+    * has the specified value, reading the bitmap a word at
+    * a time. The bits of empty slots are the zeros of a word,
+    * so the word is inverted when looking for one.
+    */
    private int searchAfter(int slot, int flag) {
+      return searchAfter(null, slot, flag);
+   }
+
+   /**
+    * Search the bitmap as above, reading it from
+    * the specified page if it is not null.
+    */
+   private int searchAfter(Page p, int slot, int flag) {
       slot++;
-      while (isValidSlot(slot)) {
-         if (tx.getInt(blk, offset(slot)) == flag)
-            return slot;
-         slot++;
+      while (slot < numslots) {
+         int w = slot / BITS_PER_WORD;
+         int word = (p == null) ? tx.getInt(blk, w * Integer.BYTES)
+                                : p.getInt(w * Integer.BYTES);
+         if (flag == EMPTY)
+            word = ~word;
+         word &= -1 << (slot % BITS_PER_WORD);
+         if (word != 0) {
+            int found = w * BITS_PER_WORD + Integer.numberOfTrailingZeros(word);
+            return (found < numslots) ? found : -1;
+         }
+         slot = (w + 1) * BITS_PER_WORD;
       }
       return -1;
    }
 
-   private boolean isValidSlot(int slot) {
-      return offset(slot+1) <= tx.blockSize();
+   private int offset(int slot) {
+      return headersize + slot * layout.slotSize();
    }
 
-   private int offset(int slot) {
-      return slot * layout.slotSize();
+   private static int words(int numslots) {
+      return (numslots + BITS_PER_WORD - 1) / BITS_PER_WORD;
    }
 }
 
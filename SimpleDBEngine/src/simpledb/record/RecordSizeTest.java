@@ -0,0 +1,49 @@
+package simpledb.record;
+
+import simpledb.server.SimpleDB;
+import simpledb.materialize.TempTable;
+import simpledb.query.UpdateScan;
+import simpledb.tx.Transaction;
+
+/**
+ * Records of extreme sizes. A temporary table with no fields,
+ * such as a projection onto no fields produces, still stores
+ * one record per insertion. A record that cannot fit in a block
+ * is rejected when it is inserted, for both block formats,
+ * instead of appending blocks in search of room.
+ */
+public class RecordSizeTest {
+   private static final int NUMRECS = 1000;
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("recordsizetest", 400, 8);
+      Transaction tx = db.newTx();
+      TempTable tt = new TempTable(tx, new Schema());
+      UpdateScan us = tt.open();
+      for (int i=0; i<NUMRECS; i++)
+         us.insert();
+      us.beforeFirst();
+      int count = 0;
+      while (us.next())
+         count++;
+      us.close();
+      System.out.println("the empty temporary table has " + count + " records, in "
+            + tx.size(tt.tableName() + ".tbl") + " blocks");
+
+      Schema sch = new Schema();
+      sch.addIntField("A");
+      sch.addStringField("B", 500);
+      for (int format : new int[] {Layout.FIXED, Layout.SLOTTED}) {
+         try {
+            TableScan ts = new TableScan(tx, "big" + format, new Layout(sch, format));
+            ts.insert();
+            ts.close();
+            System.out.println("a record larger than a block was inserted");
+         }
+         catch (RuntimeException e) {
+            System.out.println("format " + format + " rejected the record: " + e.getMessage());
+         }
+      }
+      tx.rollback();
+   }
+}
@@ -0,0 +1,389 @@
+package simpledb.record;
+
+import static java.sql.Types.INTEGER;
+import java.util.*;
+import simpledb.file.*;
+import simpledb.query.Batch;
+import simpledb.tx.Transaction;
+
+/**
+ * Store variable-length records in a block.
+ * The block begins with a header holding the number of
+ * slots and the end of the free space, followed by the
+ * slot directory, which holds the offset of the record
+ * of each slot, or 0 if the slot is empty.
+ * The records are stored from the end of the block
+ * towards the directory. Each one begins with the size
+ * of the space allocated to it, followed by its values
+ * in schema order; a string takes only as many bytes as
+ * its characters, rounded up to a whole number of integers.
+ * A block of zeros is therefore a formatted block with no slots.
+ * <P>
+ * The block is only ever written an integer at a time.
+ * The recovery manager logs the string that a string
+ * overwrites, but a record may be written over any bytes
+ * of other records, which do not form a string there;
+ * the integers they form can always be logged and restored.
+ * <P>
+ * A record that outgrows its space is moved to the
+ * free space, keeping its slot, so its RID does not change.
+ * The space it leaves, and that of deleted records,
+ * is reclaimed by compacting the block when the free
+ * space runs out.
+ */
+public class SlottedPage implements RecordBlock {
+   private static final int NUMSLOTS = 0, FREEEND = Integer.BYTES;
+   private static final int DIRECTORY = 2 * Integer.BYTES;
+   private Transaction tx;
+   private BlockId blk;
+   private Layout layout;
+   private Schema sch;
+
+   public SlottedPage(Transaction tx, BlockId blk, Layout layout) {
+      this.tx = tx;
+      this.blk = blk;
+      this.layout = layout;
+      sch = layout.schema();
+      tx.pin(blk);
+   }
+
+   public int getInt(int slot, String fldname) {
+      return tx.getInt(blk, fieldPos(slot, fldname));
+   }
+
+   public String getString(int slot, String fldname) {
+      return tx.getString(blk, fieldPos(slot, fldname));
+   }
+
+   public int compareString(int slot, String fldname, String val) {
+      return tx.compareString(blk, fieldPos(slot, fldname), val);
+   }
+
+   public int hashString(int slot, String fldname) {
+      return tx.hashString(blk, fieldPos(slot, fldname));
+   }
+
+   /**
+    * Read the records of the block into the batch,
+    * skipping over the values of the fields it does not have.
+    */
+   public int readBatch(int slot, Batch batch) {
+      Page p = tx.readPage(blk);
+      List<String> fields = sch.fields();
+      int[] cols = new int[fields.size()];
+      boolean[] isint = new boolean[fields.size()];
+      for (int i=0; i<cols.length; i++) {
+         String fldname = fields.get(i);
+         cols[i] = batch.hasField(fldname) ? batch.column(fldname) : -1;
+         isint[i] = (sch.type(fldname) == INTEGER);
+      }
+      int numslots = p.getInt(NUMSLOTS);
+      while (!batch.isFull()) {
+         do {
+            slot++;
+         } while (slot < numslots && p.getInt(DIRECTORY + slot * Integer.BYTES) == 0);
+         if (slot >= numslots)
+            return -1;
+         int row = batch.addRow();
+         int pos = p.getInt(DIRECTORY + slot * Integer.BYTES) + Integer.BYTES;
+         for (int i=0; i<cols.length; i++) {
+            if (isint[i]) {
+               if (cols[i] >= 0)
+                  batch.ints(cols[i])[row] = p.getInt(pos);
+               pos += Integer.BYTES;
+            }
+            else {
+               if (cols[i] >= 0)
+                  batch.strings(cols[i])[row] = p.getString(pos);
+               pos += stringSize(p.getInt(pos));
+            }
+         }
+      }
+      return slot;
+   }
+
+   public void setInt(int slot, String fldname, int val) {
+      tx.setInt(blk, fieldPos(slot, fldname), val, true);
+   }
+
+   /**
+    * Return the size of the largest record of the schema,
+    * which is the slot size of a slotted table.
+    * @param sch the schema of the table
+    * @return the size of the largest record
+    */
+   public static int maxRecordSize(Schema sch) {
+      int size = Integer.BYTES;
+      for (String fldname : sch.fields())
+         size += (sch.type(fldname) == INTEGER) ? Integer.BYTES
+                                                : stringSize(sch.length(fldname));
+      return size;
+   }
+
+   /**
+    * Store a string at the specified field of the
+    * specified slot. If the string needs a different amount
+    * of space than the current one, the record is rewritten,
+    * in its own space if it fits and in the free space
+    * otherwise.
+    * @throws PageFullException if the block has no room for the record
+    */
+   public void setString(int slot, String fldname, String val) {
+      int fldpos = fieldPos(slot, fldname);
+      if (stringSize(tx.getInt(blk, fldpos)) == stringSize(val.length())) {
+         writeString(fldpos, val);
+         return;
+      }
+      List<Object> vals = readRecord(slot);
+      vals.set(sch.fields().indexOf(fldname), val);
+      int size = recordSize(vals);
+      int recpos = entry(slot);
+      int allocated = tx.getInt(blk, recpos);
+      if (size <= allocated)
+         writeRecord(recpos, allocated, vals);
+      else {
+         recpos = allocate(size, slot);
+         writeRecord(recpos, size, vals);
+         setEntry(slot, recpos);
+      }
+   }
+
+   public void delete(int slot) {
+      setEntry(slot, 0);
+   }
+
+   /**
+    * Format a new block, which has no slots.
+    * These values should not be logged
+    * (because the old values are meaningless).
+    */
+   public void format() {
+      tx.setInt(blk, NUMSLOTS, 0, false);
+      tx.setInt(blk, FREEEND, 0, false);
+   }
+
+   public int nextAfter(int slot) {
+      int numslots = numSlots();
+      for (int i=slot+1; i<numslots; i++)
+         if (entry(i) != 0)
+            return i;
+      return -1;
+   }
+
+   /**
+    * Insert a record whose strings are empty, reusing
+    * an empty slot if there is one, and adding a slot
+    * to the directory if not.
+    * The slots of a slotted page are not ordered,
+    * so the specified slot is ignored.
+    * @throws RuntimeException if no record fits in a block
+    */
+   public int insertAfter(int slot) {
+      if (DIRECTORY + Integer.BYTES + layout.slotSize() > tx.blockSize())
+         throw new RuntimeException("record too large for block: " + layout.slotSize() + " bytes");
+      if (!hasRoom())
+         return -1;
+      int newslot = emptySlot();
+      if (newslot < 0) {
+         newslot = numSlots();
+         if (freeEnd() - directoryEnd(newslot) < Integer.BYTES)
+            compact(-1);
+         tx.setInt(blk, NUMSLOTS, newslot + 1, true);
+         setEntry(newslot, 0);
+      }
+      List<Object> vals = new ArrayList<>();
+      for (String fldname : sch.fields())
+         vals.add(sch.type(fldname) == INTEGER ? (Object) 0 : "");
+      int size = recordSize(vals);
+      int recpos = allocate(size, newslot);
+      writeRecord(recpos, size, vals);
+      setEntry(newslot, recpos);
+      return newslot;
+   }
+
+   /**
+    * Return true if the block, once compacted, has room for
+    * a record of the largest possible size, and for its
+    * directory entry if no empty slot can be reused.
+    * The inserted record can then grow to any size it is
+    * allowed; later inserts and growth of other records may
+    * take that room again, and a record that grows then can
+    * find the block full.
+    * @return true if a record can be inserted in the block
+    */
+   public boolean hasRoom() {
+      int numslots = numSlots();
+      int needed = layout.slotSize() + (emptySlot() < 0 ? Integer.BYTES : 0);
+      return freeEnd() - directoryEnd(numslots) >= needed
+            || reclaimable(-1) >= needed;
+   }
+
+   public BlockId block() {
+      return blk;
+   }
+
+   // Private auxiliary methods
+
+   /**
+    * Return the position of a field, by skipping
+    * over the values that precede it in the record.
+    */
+   private int fieldPos(int slot, String fldname) {
+      int pos = entry(slot) + Integer.BYTES;
+      for (String f : sch.fields()) {
+         if (f.equals(fldname))
+            return pos;
+         if (sch.type(f) == INTEGER)
+            pos += Integer.BYTES;
+         else
+            pos += stringSize(tx.getInt(blk, pos));
+      }
+      throw new RuntimeException("field " + fldname + " not found.");
+   }
+
+   private List<Object> readRecord(int slot) {
+      List<Object> vals = new ArrayList<>();
+      int pos = entry(slot) + Integer.BYTES;
+      for (String fldname : sch.fields()) {
+         if (sch.type(fldname) == INTEGER) {
+            vals.add(tx.getInt(blk, pos));
+            pos += Integer.BYTES;
+         }
+         else {
+            vals.add(tx.getString(blk, pos));
+            pos += stringSize(tx.getInt(blk, pos));
+         }
+      }
+      return vals;
+   }
+
+   private void writeRecord(int recpos, int allocated, List<Object> vals) {
+      tx.setInt(blk, recpos, allocated, true);
+      int pos = recpos + Integer.BYTES;
+      for (Object val : vals) {
+         if (val instanceof Integer) {
+            tx.setInt(blk, pos, (Integer) val, true);
+            pos += Integer.BYTES;
+         }
+         else {
+            writeString(pos, (String) val);
+            pos += stringSize(((String) val).length());
+         }
+      }
+   }
+
+   private int recordSize(List<Object> vals) {
+      int size = Integer.BYTES;
+      for (Object val : vals)
+         size += (val instanceof Integer) ? Integer.BYTES
+                                          : stringSize(((String) val).length());
+      return size;
+   }
+
+   /**
+    * Write a string as its length followed by its bytes,
+    * as a page does, but as a sequence of integers.
+    */
+   private void writeString(int pos, String val) {
+      byte[] b = val.getBytes(Page.CHARSET);
+      tx.setInt(blk, pos, b.length, true);
+      for (int i=0; i<b.length; i+=Integer.BYTES) {
+         int word = 0;
+         for (int j=i; j<i+Integer.BYTES; j++)
+            word = (word << 8) | (j < b.length ? (b[j] & 0xff) : 0);
+         tx.setInt(blk, pos + Integer.BYTES + i, word, true);
+      }
+   }
+
+   private static int stringSize(int strlen) {
+      int bytes = Page.maxLength(strlen) - Integer.BYTES;
+      return Integer.BYTES + (bytes + Integer.BYTES - 1) / Integer.BYTES * Integer.BYTES;
+   }
+
+   /**
+    * Take space for a record from the free space,
+    * compacting the block if there is not enough.
+    * The record of the specified slot is being rewritten,
+    * so compaction does not keep its current space, and
+    * neither does the allocation if it is the last record
+    * allocated, which then grows towards the directory.
+    * The block is not changed if the record does not fit.
+    */
+   private int allocate(int size, int slot) {
+      int end = freeEnd();
+      int recpos = entry(slot);
+      if (recpos != 0 && recpos == end)
+         end += tx.getInt(blk, recpos);
+      if (end - directoryEnd(numSlots()) < size) {
+         if (reclaimable(slot) < size)
+            throw new PageFullException();
+         compact(slot);
+         end = freeEnd();
+      }
+      tx.setInt(blk, FREEEND, end - size, true);
+      return end - size;
+   }
+
+   /**
+    * Move the records to the end of the block, next to each
+    * other, so that all unused space becomes free space.
+    * Each record is given just the space it needs.
+    */
+   private void compact(int skipslot) {
+      int numslots = numSlots();
+      Map<Integer,List<Object>> recs = new LinkedHashMap<>();
+      for (int i=0; i<numslots; i++)
+         if (i != skipslot && entry(i) != 0)
+            recs.put(i, readRecord(i));
+      int end = tx.blockSize();
+      for (Map.Entry<Integer,List<Object>> e : recs.entrySet()) {
+         int size = recordSize(e.getValue());
+         end -= size;
+         writeRecord(end, size, e.getValue());
+         setEntry(e.getKey(), end);
+      }
+      tx.setInt(blk, FREEEND, end, true);
+   }
+
+   /**
+    * Return the free space of the block once compacted,
+    * not counting the record of the specified slot.
+    */
+   private int reclaimable(int skipslot) {
+      int numslots = numSlots();
+      int used = 0;
+      for (int i=0; i<numslots; i++)
+         if (i != skipslot && entry(i) != 0)
+            used += recordSize(readRecord(i));
+      return tx.blockSize() - directoryEnd(numslots) - used;
+   }
+
+   private int emptySlot() {
+      int numslots = numSlots();
+      for (int i=0; i<numslots; i++)
+         if (entry(i) == 0)
+            return i;
+      return -1;
+   }
+
+   private int numSlots() {
+      return tx.getInt(blk, NUMSLOTS);
+   }
+
+   private int freeEnd() {
+      int end = tx.getInt(blk, FREEEND);
+      return (end == 0) ? tx.blockSize() : end;
+   }
+
+   private int directoryEnd(int numslots) {
+      return DIRECTORY + numslots * Integer.BYTES;
+   }
+
+   private int entry(int slot) {
+      return tx.getInt(blk, DIRECTORY + slot * Integer.BYTES);
+   }
+
+   private void setEntry(int slot, int recpos) {
+      tx.setInt(blk, DIRECTORY + slot * Integer.BYTES, recpos, true);
+   }
+}
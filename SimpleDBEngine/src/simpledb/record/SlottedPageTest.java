@@ -0,0 +1,106 @@
+package simpledb.record;
+
+import simpledb.server.SimpleDB;
+import simpledb.metadata.MetadataMgr;
+import simpledb.plan.Planner;
+import simpledb.tx.Transaction;
+
+/**
+ * The same short names are stored in a fixed table and in a
+ * slotted one, whose varchar field can hold far longer values.
+ * The slotted table stores only the characters of each name,
+ * so it takes fewer blocks. Some records are then deleted and
+ * some names grow, which moves their records within the block
+ * and compacts it, and the records are checked to still hold
+ * the right values. Finally, two thirds of the records of
+ * the first block are deleted and its other names grow to
+ * full size, which needs the space of the deleted records,
+ * until a record no longer fits in the block.
+ */
+public class SlottedPageTest {
+   private static final int NUMRECS = 1000;
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("slottedtest");
+      MetadataMgr mdm = db.mdMgr();
+      Planner planner = db.planner();
+      Transaction tx = db.newTx();
+      planner.executeUpdate("create table f (a int, b varchar(100))", tx);
+      planner.executeUpdate("create table s (a int, b varchar(100)) using slotted", tx);
+      for (int i=0; i<NUMRECS; i++) {
+         planner.executeUpdate("insert into f (a, b) values (" + i + ", 'rec" + i + "')", tx);
+         planner.executeUpdate("insert into s (a, b) values (" + i + ", 'rec" + i + "')", tx);
+      }
+      System.out.println("the fixed table has " + tx.size("f.tbl") + " blocks, the slotted table "
+            + tx.size("s.tbl"));
+
+      Layout layout = mdm.getLayout("s", tx);
+      System.out.println("s is slotted: " + (layout.format() == Layout.SLOTTED));
+      tx.commit();
+
+      tx = db.newTx();
+      TableScan ts = new TableScan(tx, "s", layout);
+      while (ts.next())
+         if (ts.getInt("a") % 10 == 5)
+            ts.delete();
+      ts.beforeFirst();
+      while (ts.next()) {
+         int a = ts.getInt("a");
+         if (a % 10 == 0)
+            ts.setString("b", longName(a, 40));
+      }
+      ts.close();
+      tx.commit();
+
+      tx = db.newTx();
+      ts = new TableScan(tx, "s", layout);
+      int count = 0;
+      boolean ok = true;
+      while (ts.next()) {
+         count++;
+         int a = ts.getInt("a");
+         String expected = (a % 10 == 0) ? longName(a, 40) : "rec" + a;
+         if (a % 10 == 5 || !ts.getString("b").equals(expected))
+            ok = false;
+      }
+      ts.close();
+      System.out.println("the slotted table has " + count + " records, with the right values: " + ok);
+
+      ts = new TableScan(tx, "s", layout);
+      ts.next();
+      int firstblk = ts.getRid().blockNumber();
+      int deleted = 0;
+      do {
+         if (ts.getInt("a") % 3 != 0) {
+            ts.delete();
+            deleted++;
+         }
+      } while (ts.next() && ts.getRid().blockNumber() == firstblk);
+      ts.beforeFirst();
+      int grown = 0;
+      try {
+         while (ts.next() && ts.getRid().blockNumber() == firstblk) {
+            ts.setString("b", longName(ts.getInt("a"), 100));
+            grown++;
+         }
+         System.out.println("after " + deleted + " deletes, all " + grown
+               + " records of the first block grew");
+      }
+      catch (PageFullException e) {
+         int a = ts.getInt("a");
+         String expected = (a % 10 == 0) ? longName(a, 40) : "rec" + a;
+         System.out.println("after " + deleted + " deletes, the first block was full after "
+               + grown + " records grew; the next record is unchanged: "
+               + ts.getString("b").equals(expected));
+      }
+      ts.close();
+      tx.rollback();
+   }
+
+   private static String longName(int a, int len) {
+      StringBuilder sb = new StringBuilder("rec" + a);
+      while (sb.length() < len)
+         sb.append('x');
+      return sb.toString();
+   }
+}
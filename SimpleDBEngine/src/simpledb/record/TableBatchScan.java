@@ -0,0 +1,96 @@
+package simpledb.record;
+
+import java.util.Collection;
+import simpledb.file.BlockId;
+import simpledb.query.*;
+import simpledb.tx.Transaction;
+
+/**
+ * A batch scan of the records of a table, stored in
+ * either the fixed or the slotted format. Each block
+ * is read under a single lock, and its records are copied
+ * into the vectors of the batch a block at a time.
+ */
+public class TableBatchScan implements BatchScan {
+   private Transaction tx;
+   private Layout layout;
+   private String filename;
+   private Schema sch = new Schema();
+   private Batch batch;
+   private RecordBlock rp;
+   private int currentslot, numblocks;
+
+   /**
+    * Open a batch scan on every field of the table.
+    * @param tx the transaction
+    * @param tblname the name of the table
+    * @param layout the layout of the table
+    */
+   public TableBatchScan(Transaction tx, String tblname, Layout layout) {
+      this(tx, tblname, layout, layout.schema().fields());
+   }
+
+   /**
+    * Open a batch scan on the specified fields of the table;
+    * the batches only have vectors for those fields.
+    * @param tx the transaction
+    * @param tblname the name of the table
+    * @param layout the layout of the table
+    * @param fldnames the fields to read
+    */
+   public TableBatchScan(Transaction tx, String tblname, Layout layout,
+                         Collection<String> fldnames) {
+      this.tx = tx;
+      this.layout = layout;
+      filename = tblname + ".tbl";
+      for (String fldname : layout.schema().fields())
+         if (fldnames.contains(fldname))
+            sch.add(fldname, layout.schema());
+      batch = new Batch(sch);
+      beforeFirst();
+   }
+
+   public void beforeFirst() {
+      numblocks = tx.size(filename);
+      if (numblocks > 0)
+         moveToBlock(0);
+      else
+         close();
+   }
+
+   /**
+    * Fill the batch from the current block, moving
+    * to the next block when it has no more records.
+    * @see simpledb.query.BatchScan#nextBatch()
+    */
+   public Batch nextBatch() {
+      batch.clear();
+      while (rp != null && !batch.isFull()) {
+         currentslot = rp.readBatch(currentslot, batch);
+         if (currentslot < 0) {
+            if (rp.block().number() >= numblocks - 1)
+               close();
+            else
+               moveToBlock(rp.block().number() + 1);
+         }
+      }
+      return (batch.size() > 0) ? batch : null;
+   }
+
+   public Schema schema() {
+      return sch;
+   }
+
+   public void close() {
+      if (rp != null)
+         tx.unpin(rp.block());
+      rp = null;
+   }
+
+   private void moveToBlock(int blknum) {
+      close();
+      BlockId blk = new BlockId(filename, blknum);
+      rp = RecordBlock.open(tx, blk, layout);
+      currentslot = -1;
+   }
+}
@@ -13,17 +13,22 @@ import java.util.Arrays;
  * @author sciore
  */
 public class TableScan implements UpdateScan {
+   private static final int MAX_APPEND_BATCH = 32;
    private Transaction tx;
    private Layout layout;
-   private RecordPage rp;
+   private RecordBlock rp;
+   private FreeSpaceMap fsm;
    private String filename;
    private int currentslot;
+   private int appendBatch = 1;
+   private int undoBlock = -1;
 
    public TableScan(Transaction tx, String tblname, Layout layout) {
       this.tx = tx;
       this.layout = layout;
       filename = tblname + ".tbl";
-      if (tx.size(filename) == 0)
+      fsm = new FreeSpaceMap(tx, tblname);
+      if (tx.size(filename) == 0 && !tx.isReadOnly())
          moveToNewBlock();
       else 
          moveToBlock(0);
@@ -56,11 +61,32 @@ public class TableScan implements UpdateScan {
 
    public Constant getVal(String fldname) {
       if (layout.schema().type(fldname) == INTEGER)
-         return new Constant(getInt(fldname));
+         return Constant.valueOf(getInt(fldname));
       else
          return new Constant(getString(fldname));
    }
 
+   public int compareField(String fldname, Constant val) {
+      if (layout.schema().type(fldname) == INTEGER)
+         return Integer.compare(getInt(fldname), val.asInt());
+      else
+         return rp.compareString(currentslot, fldname, val.asString());
+   }
+
+   public int compareField(String fldname, Scan other, String otherfld) {
+      if (layout.schema().type(fldname) == INTEGER)
+         return Integer.compare(getInt(fldname), other.getInt(otherfld));
+      else
+         return rp.compareString(currentslot, fldname, other.getString(otherfld));
+   }
+
+   public int hashField(String fldname) {
+      if (layout.schema().type(fldname) == INTEGER)
+         return Integer.hashCode(getInt(fldname));
+      else
+         return rp.hashString(currentslot, fldname);
+   }
+
    public boolean hasField(String fldname) {
       return layout.schema().hasField(fldname);
    }
@@ -87,25 +113,42 @@ public class TableScan implements UpdateScan {
          setString(fldname, val.asString());
    }
 
+   /**
+    * Insert a new record after the current one, or else
+    * in the first block that the free-space map shows
+    * to have room, appending blocks if there is none.
+    * A block that turns out to be full is marked as such.
+    * The block is marked as having room again if the
+    * transaction rolls back, which undoes the insertion.
+    */
    public void insert() {
       currentslot = rp.insertAfter(currentslot);
       while (currentslot < 0) {
-         if (atLastBlock()) 
+         if (!rp.hasRoom())
+            fsm.setRoom(rp.block().number(), false);
+         int blknum = fsm.firstWithRoom();
+         if (blknum < 0) 
             moveToNewBlock();
          else 
-            moveToBlock(rp.block().number()+1);
+            moveToBlock(blknum);
          currentslot = rp.insertAfter(currentslot);
       }
+      int blknum = rp.block().number();
+      if (blknum != undoBlock) {
+         undoBlock = blknum;
+         tx.onRollback(() -> fsm.setRoom(blknum, true));
+      }
    }
 
    public void delete() {
       rp.delete(currentslot);
+      fsm.setRoom(rp.block().number(), true);
    }
 
    public void moveToRid(RID rid) {
       close();
       BlockId blk = new BlockId(filename, rid.blockNumber());
-      rp = new RecordPage(tx, blk, layout);
+      rp = RecordBlock.open(tx, blk, layout);
       currentslot = rid.slot();
    }
 
@@ -118,19 +161,29 @@ public class TableScan implements UpdateScan {
    private void moveToBlock(int blknum) {
       close();
       BlockId blk = new BlockId(filename, blknum);
-      rp = new RecordPage(tx, blk, layout);
+      rp = RecordBlock.open(tx, blk, layout);
       currentslot = -1;
    }
 
+   /**
+    * Appends blocks in batches that double as the scan
+    * keeps inserting, up to MAX_APPEND_BATCH blocks.
+    * The blocks after the first are left zeroed,
+    * which is the same as formatted.
+    * The new blocks are marked in the free-space map.
+    */
    private void moveToNewBlock() {
       close();
-      BlockId blk = tx.append(filename);
-      rp = new RecordPage(tx, blk, layout);
+      BlockId blk = tx.appendMany(filename, appendBatch);
+      for (int i=0; i<appendBatch; i++)
+         fsm.setRoom(blk.number() + i, true);
+      appendBatch = Math.min(2 * appendBatch, MAX_APPEND_BATCH);
+      rp = RecordBlock.open(tx, blk, layout);
       rp.format();
       currentslot = -1;
    }
 
    private boolean atLastBlock() {
-      return rp.block().number() == tx.size(filename) - 1;
+      return rp.block().number() >= tx.size(filename) - 1;
    }
 }
@@ -2,11 +2,17 @@ package simpledb.server;
 
 import java.io.File;
 import simpledb.file.FileMgr;
+import simpledb.file.MappedFileMgr;
+import simpledb.file.SyncPolicy;
 import simpledb.log.LogMgr;
 import simpledb.buffer.BufferMgr;
+import simpledb.buffer.ReplacementPolicy;
 import simpledb.tx.Transaction;
+import simpledb.tx.recovery.RecoveryMgr;
+import simpledb.tx.concurrency.ConcurrencyMgr;
 import simpledb.metadata.MetadataMgr;
 import simpledb.plan.*;
+import simpledb.query.Batch;
 import simpledb.index.planner.IndexUpdatePlanner;
 import simpledb.opt.HeuristicQueryPlanner;
 
@@ -19,6 +25,17 @@ public class SimpleDB {
    public static int BLOCK_SIZE = 400;
    public static int BUFFER_SIZE = 8;
    public static String LOG_FILE = "simpledb.log";
+   public static ReplacementPolicy BUFFER_POLICY = ReplacementPolicy.CLOCK;
+   public static long WRITER_INTERVAL = 100; // milliseconds; 0 means no background writer
+   public static int PREFETCH_WINDOW = 8; // blocks; 0 means no read-ahead
+   public static boolean MAPPED_FILES = false; // use the memory-mapped file manager
+   public static SyncPolicy SYNC_POLICY = SyncPolicy.COMMIT;
+   public static long GROUP_COMMIT_DELAY = 200; // microseconds; negative means no group commit
+   public static long CHECKPOINT_INTERVAL = 1000; // milliseconds; 0 means no periodic checkpoints
+   public static int LOCK_ESCALATION = 64; // block locks per file before a file lock; 0 means never
+   public static long LOCK_TIMEOUT = 10000; // milliseconds before a waiting transaction aborts
+   public static boolean SNAPSHOT_READS = true; // save prior versions for lock-free snapshot reads
+   public static int BATCH_SIZE = 1024; // rows in each batch of a batch scan
 
    private  FileMgr     fm;
    private  BufferMgr   bm;
@@ -33,10 +50,32 @@ public class SimpleDB {
     * @param buffsize the number of buffers
     */
    public SimpleDB(String dirname, int blocksize, int buffsize) {
+      this(dirname, blocksize, buffsize, BUFFER_POLICY);
+   }
+   
+   /**
+    * A constructor useful for comparing buffer replacement policies.
+    * @param dirname the name of the database directory
+    * @param blocksize the block size
+    * @param buffsize the number of buffers
+    * @param policy the buffer replacement policy
+    */
+   public SimpleDB(String dirname, int blocksize, int buffsize, ReplacementPolicy policy) {
       File dbDirectory = new File(dirname);
-      fm = new FileMgr(dbDirectory, blocksize);
+      fm = MAPPED_FILES ? new MappedFileMgr(dbDirectory, blocksize, SYNC_POLICY)
+                        : new FileMgr(dbDirectory, blocksize, SYNC_POLICY);
       lm = new LogMgr(fm, LOG_FILE);
-      bm = new BufferMgr(fm, lm, buffsize); 
+      if (GROUP_COMMIT_DELAY >= 0)
+         lm.startGroupCommit(GROUP_COMMIT_DELAY);
+      bm = new BufferMgr(fm, lm, buffsize, policy); 
+      ConcurrencyMgr.setEscalationThreshold(LOCK_ESCALATION);
+      ConcurrencyMgr.setLockTimeout(LOCK_TIMEOUT);
+      ConcurrencyMgr.setVersioning(SNAPSHOT_READS);
+      Batch.setDefaultCapacity(BATCH_SIZE);
+      if (WRITER_INTERVAL > 0)
+         bm.startWriter(WRITER_INTERVAL);
+      if (PREFETCH_WINDOW > 0)
+         bm.startPrefetcher(PREFETCH_WINDOW);
    }
    
    /**
@@ -61,6 +100,8 @@ public class SimpleDB {
       UpdatePlanner up = new IndexUpdatePlanner(mdm);
       planner = new Planner(qp, up);
       tx.commit();
+      if (CHECKPOINT_INTERVAL > 0)
+         RecoveryMgr.startCheckpointer(lm, bm, CHECKPOINT_INTERVAL);
    }
    
    /**
@@ -71,6 +112,15 @@ public class SimpleDB {
       return new Transaction(fm, lm, bm);
    }
    
+   /**
+    * Create a read-only transaction, which reads a snapshot
+    * of the database without locks and writes nothing to the log.
+    * @return the new transaction
+    */
+   public Transaction newReadOnlyTx() {
+      return new Transaction(fm, lm, bm, true);
+   }
+   
    public MetadataMgr mdMgr() {
       return mdm;
    }
@@ -31,13 +31,30 @@ class BufferList {
    /**
     * Pin the block and keep track of the buffer internally.
     * @param blk a reference to the disk block
+    * @param maxwait the maximum time to wait for a buffer, in milliseconds
     */
-   void pin(BlockId blk) {
-      Buffer buff = bm.pin(blk);
+   void pin(BlockId blk, long maxwait) {
+      Buffer buff = bm.pin(blk, maxwait);
       buffers.put(blk, buff);
       pins.add(blk);
    }
    
+   /**
+    * Pin a range of consecutive blocks of a file
+    * and keep track of the buffers internally.
+    * @param filename the name of the file
+    * @param startblk the number of the first block
+    * @param endblk the number of the last block
+    * @param maxwait the maximum time to wait for each buffer, in milliseconds
+    */
+   void pinRange(String filename, int startblk, int endblk, long maxwait) {
+      Buffer[] buffs = bm.pinRange(filename, startblk, endblk, maxwait);
+      for (Buffer buff : buffs) {
+         buffers.put(buff.block(), buff);
+         pins.add(buff.block());
+      }
+   }
+   
    /**
     * Unpin the specified block.
     * @param blk a reference to the disk block
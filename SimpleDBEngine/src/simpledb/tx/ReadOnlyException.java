@@ -0,0 +1,11 @@
+package simpledb.tx;
+
+/**
+ * A runtime exception indicating that a read-only
+ * transaction tried to modify the database.
+ */
+@SuppressWarnings("serial")
+public class ReadOnlyException extends RuntimeException {
+   public ReadOnlyException() {
+   }
+}
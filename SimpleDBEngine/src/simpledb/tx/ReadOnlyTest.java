@@ -0,0 +1,56 @@
+package simpledb.tx;
+
+import simpledb.server.SimpleDB;
+import simpledb.plan.*;
+import simpledb.query.Scan;
+
+/**
+ * A read-only transaction runs a query while another
+ * transaction is modifying the table. The query sees the
+ * committed values, and neither it nor its commit writes
+ * anything to the log. An update in a read-only
+ * transaction is refused.
+ */
+public class ReadOnlyTest {
+   public static void main(String[] args) {
+      SimpleDB.CHECKPOINT_INTERVAL = 0;
+      SimpleDB db = new SimpleDB("readonlytest");
+      Planner planner = db.planner();
+      Transaction setup = db.newTx();
+      if (db.fileMgr().length("accounts.tbl") == 0) {
+         planner.executeUpdate("create table accounts(id int, balance int)", setup);
+         for (int i=0; i<20; i++)
+            planner.executeUpdate("insert into accounts(id, balance) values ("
+                  + i + ", 100)", setup);
+      }
+      setup.commit();
+
+      Transaction writer = db.newTx();
+      planner.executeUpdate("update accounts set balance = 0 where id = 3", writer);
+
+      long before = db.logMgr().lastLSN();
+      Transaction reader = db.newReadOnlyTx();
+      Plan p = planner.createQueryPlan("select id, balance from accounts", reader);
+      Scan s = p.open();
+      int total = 0;
+      while (s.next())
+         total += s.getInt("balance");
+      s.close();
+      reader.commit();
+      System.out.println("the query read the committed balances: " + (total == 2000));
+      System.out.println("the query wrote nothing to the log: "
+            + (db.logMgr().lastLSN() == before));
+      writer.rollback();
+
+      Transaction other = db.newReadOnlyTx();
+      try {
+         planner.executeUpdate("delete from accounts where id = 4", other);
+         System.out.println("the read-only transaction modified the table");
+         other.commit();
+      }
+      catch(ReadOnlyException e) {
+         System.out.println("the read-only transaction could not modify the table");
+         other.rollback();
+      }
+   }
+}
@@ -1,5 +1,6 @@
 package simpledb.tx;
 
+import java.util.*;
 import simpledb.file.*;
 import simpledb.log.LogMgr;
 import simpledb.buffer.*;
@@ -21,6 +22,9 @@ public class Transaction {
    private FileMgr fm;
    private int txnum;
    private BufferList mybuffers;
+   private long pinTimeout;
+   private boolean readOnly;
+   private List<Runnable> rollbackActions = new ArrayList<>();
    
    /**
     * Create a new transaction and its associated 
@@ -35,24 +39,46 @@ public class Transaction {
     * is called first.
     */
    public Transaction(FileMgr fm, LogMgr lm, BufferMgr bm) {
+      this(fm, lm, bm, false);
+   }
+   
+   /**
+    * Create a new transaction, which is read-only if requested.
+    * A read-only transaction reads a snapshot of the database:
+    * it sees the changes of the transactions that committed
+    * before it started, and reads without locks, so that it
+    * neither waits for writers nor delays them.
+    * It may only modify temporary files, such as those of
+    * a sort, and has no recovery manager: it writes nothing
+    * to the log, and its commit forces nothing to disk.
+    * @param readOnly whether the transaction is read-only
+    */
+   public Transaction(FileMgr fm, LogMgr lm, BufferMgr bm, boolean readOnly) {
       this.fm = fm;
       this.bm = bm;
+      this.readOnly = readOnly;
       txnum       = nextTxNumber();
-      recoveryMgr = new RecoveryMgr(this, txnum, lm, bm);
-      concurMgr   = new ConcurrencyMgr();
+      if (!readOnly)
+         recoveryMgr = new RecoveryMgr(this, txnum, lm, bm);
+      concurMgr   = new ConcurrencyMgr(txnum, readOnly);
       mybuffers = new BufferList(bm);
+      pinTimeout = bm.maxWaitTime();
    }
    
    /**
     * Commit the current transaction.
-    * Flush all modified buffers (and their log records),
-    * write and flush a commit record to the log,
+    * Write and flush a commit record to the log,
     * release all locks, and unpin any pinned buffers.
+    * The modified buffers are written to disk later,
+    * unless they hold changes that were not logged.
+    * A read-only transaction only releases its locks
+    * and unpins its buffers.
     */
    public void commit() {
-      recoveryMgr.commit();
+      if (!readOnly)
+         recoveryMgr.commit();
       System.out.println("transaction " + txnum + " committed");
-      concurMgr.release();
+      concurMgr.commit();
       mybuffers.unpinAll();
    }
    
@@ -62,14 +88,31 @@ public class Transaction {
     * flush those buffers,
     * write and flush a rollback record to the log,
     * release all locks, and unpin any pinned buffers.
+    * The temporary files written by a read-only
+    * transaction need not be restored.
     */
    public void rollback() {
-      recoveryMgr.rollback();
+      if (!readOnly)
+         recoveryMgr.rollback();
+      for (Runnable action : rollbackActions)
+         action.run();
       System.out.println("transaction " + txnum + " rolled back");
-      concurMgr.release();
+      concurMgr.rollback();
       mybuffers.unpinAll();
    }
    
+   /**
+    * Register an action to run if the transaction rolls back,
+    * after its changes are undone and before its locks
+    * are released. Such actions repair state that is kept
+    * outside the log, such as the free-space map of a table;
+    * they are not run when recovery undoes the transaction.
+    * @param action the action to run
+    */
+   public void onRollback(Runnable action) {
+      rollbackActions.add(action);
+   }
+
    /**
     * Flush all modified buffers.
     * Then go through the log, rolling back all
@@ -89,7 +132,30 @@ public class Transaction {
     * @param blk a reference to the disk block
     */
    public void pin(BlockId blk) {
-      mybuffers.pin(blk);
+      mybuffers.pin(blk, pinTimeout);
+   }
+   
+   /**
+    * Pin a range of consecutive blocks of a file,
+    * reading the blocks that are not in memory
+    * with as few disk accesses as possible.
+    * Each block must later be unpinned separately.
+    * @param filename the name of the file
+    * @param startblk the number of the first block
+    * @param endblk the number of the last block
+    */
+   public void pinRange(String filename, int startblk, int endblk) {
+      mybuffers.pinRange(filename, startblk, endblk, pinTimeout);
+   }
+   
+   /**
+    * Set how long this transaction's pins wait for a
+    * buffer before throwing a {@link BufferAbortException}.
+    * The default is the buffer manager's waiting time.
+    * @param millis the waiting time in milliseconds
+    */
+   public void setPinTimeout(long millis) {
+      pinTimeout = millis;
    }
    
    /**
@@ -99,6 +165,8 @@ public class Transaction {
     * @param blk a reference to the disk block
     */
    public void unpin(BlockId blk) {
+      if (!readOnly)
+         recoveryMgr.logChanges(mybuffers.getBuffer(blk));
       mybuffers.unpin(blk);
    }
    
@@ -107,6 +175,8 @@ public class Transaction {
     * specified offset of the specified block.
     * The method first obtains an SLock on the block,
     * then it calls the buffer to retrieve the value.
+    * A snapshot transaction takes no lock, and reads
+    * the value as of its snapshot instead.
     * @param blk a reference to a disk block
     * @param offset the byte offset within the block
     * @return the integer stored at that offset
@@ -114,7 +184,12 @@ public class Transaction {
    public int getInt(BlockId blk, int offset) {
       concurMgr.sLock(blk);
       Buffer buff = mybuffers.getBuffer(blk);
-      return buff.contents().getInt(offset);
+      if (!concurMgr.readsSnapshot())
+         return buff.contents().getInt(offset);
+      synchronized (buff) { // keep writers out while the versions are consulted
+         Page p = concurMgr.snapshotVersion(blk);
+         return (p != null ? p : buff.contents()).getInt(offset);
+      }
    }
    
    /**
@@ -122,6 +197,8 @@ public class Transaction {
     * specified offset of the specified block.
     * The method first obtains an SLock on the block,
     * then it calls the buffer to retrieve the value.
+    * A snapshot transaction takes no lock, and reads
+    * the value as of its snapshot instead.
     * @param blk a reference to a disk block
     * @param offset the byte offset within the block
     * @return the string stored at that offset
@@ -129,55 +206,230 @@ public class Transaction {
    public String getString(BlockId blk, int offset) {
       concurMgr.sLock(blk);
       Buffer buff = mybuffers.getBuffer(blk);
-      return buff.contents().getString(offset);
+      if (!concurMgr.readsSnapshot())
+         return buff.contents().getString(offset);
+      synchronized (buff) { // keep writers out while the versions are consulted
+         Page p = concurMgr.snapshotVersion(blk);
+         return (p != null ? p : buff.contents()).getString(offset);
+      }
+   }
+   
+   /**
+    * Compare the string stored at the specified offset of
+    * the specified block with the specified string, without
+    * creating a String for it. Locks and snapshots are
+    * handled as by {@link #getString}.
+    * @param blk a reference to a disk block
+    * @param offset the byte offset within the block
+    * @param val the string to compare with
+    * @return a negative number, zero or a positive number as
+    * the stored string is less than, equal to or greater than val
+    */
+   public int compareString(BlockId blk, int offset, String val) {
+      concurMgr.sLock(blk);
+      Buffer buff = mybuffers.getBuffer(blk);
+      if (!concurMgr.readsSnapshot())
+         return buff.contents().compareString(offset, val);
+      synchronized (buff) {
+         Page p = concurMgr.snapshotVersion(blk);
+         return (p != null ? p : buff.contents()).compareString(offset, val);
+      }
+   }
+   
+   /**
+    * Return the hash code of the string stored at the
+    * specified offset of the specified block, without
+    * creating a String for it. Locks and snapshots are
+    * handled as by {@link #getString}.
+    * @param blk a reference to a disk block
+    * @param offset the byte offset within the block
+    * @return the hash code of the stored string
+    */
+   public int hashString(BlockId blk, int offset) {
+      concurMgr.sLock(blk);
+      Buffer buff = mybuffers.getBuffer(blk);
+      if (!concurMgr.readsSnapshot())
+         return buff.contents().hashString(offset);
+      synchronized (buff) {
+         Page p = concurMgr.snapshotVersion(blk);
+         return (p != null ? p : buff.contents()).hashString(offset);
+      }
+   }
+   
+   /**
+    * Return the contents of the specified block as the
+    * transaction sees them, so that many of its values can
+    * be read under a single lock. The method obtains an
+    * SLock on the block, as getInt does. A snapshot
+    * transaction gets the version of its snapshot, or a
+    * copy of the buffer's page, which writers cannot change.
+    * The page must only be read, while the block is pinned.
+    * @param blk a reference to a disk block
+    * @return the page holding the block's values
+    */
+   public Page readPage(BlockId blk) {
+      concurMgr.sLock(blk);
+      Buffer buff = mybuffers.getBuffer(blk);
+      if (!concurMgr.readsSnapshot())
+         return buff.contents();
+      synchronized (buff) {
+         Page p = concurMgr.snapshotVersion(blk);
+         return (p != null) ? p : buff.contents().copy();
+      }
+   }
+   
+   /**
+    * Return the integer stored at the specified offset
+    * of a block that holds hints, such as a free-space map.
+    * Hints are read and written without locks and are not
+    * logged, so their users must tolerate stale values,
+    * and values lost in a crash.
+    * The block must be pinned.
+    * @param blk a reference to a disk block
+    * @param offset the byte offset within the block
+    * @return the integer stored at that offset
+    */
+   public int getHint(BlockId blk, int offset) {
+      Buffer buff = mybuffers.getBuffer(blk);
+      synchronized (buff) {
+         return buff.contents().getInt(offset);
+      }
+   }
+   
+   /**
+    * Store an integer at the specified offset of a block
+    * that holds hints, provided that the integer there
+    * has the expected value, as for
+    * {@link java.util.concurrent.atomic.AtomicInteger#compareAndSet}.
+    * The block must be pinned.
+    * @param blk a reference to a disk block
+    * @param offset the byte offset within the block
+    * @param expect the expected value
+    * @param update the new value
+    * @return true if the value was stored
+    */
+   public boolean compareAndSetHint(BlockId blk, int offset, int expect, int update) {
+      Buffer buff = mybuffers.getBuffer(blk);
+      synchronized (buff) {
+         Page p = buff.contents();
+         if (p.getInt(offset) != expect)
+            return false;
+         p.setInt(offset, update);
+         buff.setModified(txnum, -1);
+         return true;
+      }
    }
    
    /**
     * Store an integer at the specified offset 
     * of the specified block.
     * The method first obtains an XLock on the block.
-    * It then reads the current value at that offset,
-    * puts it into an update log record, and 
-    * writes that record to the log.
-    * Finally, it calls the buffer to store the value,
-    * passing in the LSN of the log record and the transaction's id. 
+    * It then reads the current value at that offset
+    * and adds it and the new value to the transaction's
+    * row image of the block, which is written to the log
+    * as a single record when the transaction is done with
+    * the block, and saves a copy of the block for snapshots
+    * if it is the transaction's first change to it.
+    * Finally, it stores the value and marks
+    * the buffer as modified by the transaction.
     * @param blk a reference to the disk block
     * @param offset a byte offset within that block
     * @param val the value to be stored
     */
    public void setInt(BlockId blk, int offset, int val, boolean okToLog) {
+      checkWritable(blk.fileName());
       concurMgr.xLock(blk);
       Buffer buff = mybuffers.getBuffer(blk);
-      int lsn = -1;
-      if (okToLog)
-         lsn = recoveryMgr.setInt(buff, offset, val);
-      Page p = buff.contents();
-      p.setInt(offset, val);
-      buff.setModified(txnum, lsn);
+      synchronized (buff) { // keep the page from being flushed or checkpointed mid-update
+         Page p = buff.contents();
+         if (!readOnly) { // the temporary files of a read-only transaction are not logged
+            if (okToLog) {
+               concurMgr.saveVersion(blk, p);
+               recoveryMgr.setInt(buff, offset, val);
+            }
+            else
+               recoveryMgr.unloggedChange();
+         }
+         p.setInt(offset, val);
+         buff.setModified(txnum, -1);
+      }
+   }
+   
+   /**
+    * Restore an integer during rollback or recovery.
+    * The value is stored as by setInt, but the change
+    * is logged in a compensation record, which is redone
+    * after a crash but never undone.
+    * @param blk a reference to the disk block
+    * @param offset a byte offset within that block
+    * @param val the value to be restored
+    */
+   public void undoSetInt(BlockId blk, int offset, int val) {
+      concurMgr.xLock(blk);
+      Buffer buff = mybuffers.getBuffer(blk);
+      synchronized (buff) {
+         long lsn = recoveryMgr.undoSetInt(buff, offset, val);
+         Page p = buff.contents();
+         concurMgr.saveVersion(blk, p);
+         p.setInt(offset, val);
+         buff.setModified(txnum, lsn);
+      }
    }
    
    /**
     * Store a string at the specified offset 
     * of the specified block.
     * The method first obtains an XLock on the block.
-    * It then reads the current value at that offset,
-    * puts it into an update log record, and 
-    * writes that record to the log.
-    * Finally, it calls the buffer to store the value,
-    * passing in the LSN of the log record and the transaction's id. 
+    * It then reads the current value at that offset
+    * and adds it and the new value to the transaction's
+    * row image of the block, which is written to the log
+    * as a single record when the transaction is done with
+    * the block, and saves a copy of the block for snapshots
+    * if it is the transaction's first change to it.
+    * Finally, it stores the value and marks
+    * the buffer as modified by the transaction.
     * @param blk a reference to the disk block
     * @param offset a byte offset within that block
     * @param val the value to be stored
     */
    public void setString(BlockId blk, int offset, String val, boolean okToLog) {
+      checkWritable(blk.fileName());
+      concurMgr.xLock(blk);
+      Buffer buff = mybuffers.getBuffer(blk);
+      synchronized (buff) { // keep the page from being flushed or checkpointed mid-update
+         Page p = buff.contents();
+         if (!readOnly) { // the temporary files of a read-only transaction are not logged
+            if (okToLog) {
+               concurMgr.saveVersion(blk, p);
+               recoveryMgr.setString(buff, offset, val);
+            }
+            else
+               recoveryMgr.unloggedChange();
+         }
+         p.setString(offset, val);
+         buff.setModified(txnum, -1);
+      }
+   }
+   
+   /**
+    * Restore a string during rollback or recovery.
+    * The value is stored as by setString, but the change
+    * is logged in a compensation record, which is redone
+    * after a crash but never undone.
+    * @param blk a reference to the disk block
+    * @param offset a byte offset within that block
+    * @param val the value to be restored
+    */
+   public void undoSetString(BlockId blk, int offset, String val) {
       concurMgr.xLock(blk);
       Buffer buff = mybuffers.getBuffer(blk);
-      int lsn = -1;
-      if (okToLog)
-         lsn = recoveryMgr.setString(buff, offset, val);
-      Page p = buff.contents();
-      p.setString(offset, val);
-      buff.setModified(txnum, lsn);
+      synchronized (buff) {
+         long lsn = recoveryMgr.undoSetString(buff, offset, val);
+         Page p = buff.contents();
+         concurMgr.saveVersion(blk, p);
+         p.setString(offset, val);
+         buff.setModified(txnum, lsn);
+      }
    }
 
    /**
@@ -203,19 +455,59 @@ public class Transaction {
     * @return a reference to the newly-created disk block
     */
    public BlockId append(String filename) {
+      checkWritable(filename);
       BlockId dummyblk = new BlockId(filename, END_OF_FILE);
       concurMgr.xLock(dummyblk);
       return fm.append(filename);
    }
    
+   /**
+    * Append several new blocks to the end of the specified file
+    * and returns a reference to the first of them.
+    * The "end of the file" is locked only once,
+    * and the blocks are added with a single call
+    * to the file manager.
+    * @param filename the name of the file
+    * @param n the number of blocks to append
+    * @return a reference to the first of the newly-created blocks
+    */
+   public BlockId appendMany(String filename, int n) {
+      checkWritable(filename);
+      BlockId dummyblk = new BlockId(filename, END_OF_FILE);
+      concurMgr.xLock(dummyblk);
+      return fm.appendMany(filename, n);
+   }
+   
+   /**
+    * Return the number of bytes of a block that can hold data.
+    * The end of each page is reserved for its LSN.
+    * @return the usable size of a block
+    */
    public int blockSize() {
-      return fm.blockSize();
+      return fm.blockSize() - Buffer.LSN_SIZE;
+   }
+   
+   /**
+    * Returns true if the transaction is read-only.
+    * @return true if the transaction is read-only
+    */
+   public boolean isReadOnly() {
+      return readOnly;
    }
    
    public int availableBuffs() {
       return bm.available();
    }
    
+   /**
+    * Throw an exception if a read-only transaction
+    * tries to modify a file that is not temporary.
+    */
+   private void checkWritable(String filename) {
+      if (readOnly && !filename.startsWith("temp"))
+         throw new ReadOnlyException();
+   }
+   
    private static synchronized int nextTxNumber() {
       nextTxNum++;
       return nextTxNum;
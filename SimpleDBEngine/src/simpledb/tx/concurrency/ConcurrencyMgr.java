@@ -1,7 +1,7 @@
 package simpledb.tx.concurrency;
 
 import java.util.*;
-import simpledb.file.BlockId;
+import simpledb.file.*;
 
 /**
  * The concurrency manager for the transaction.
@@ -9,6 +9,25 @@ import simpledb.file.BlockId;
  * The concurrency manager keeps track of which locks the 
  * transaction currently has, and interacts with the
  * global lock table as needed. 
+ * <P>
+ * Locking is hierarchical: before locking a block, the
+ * transaction locks the block's file in the corresponding
+ * intention mode. When the transaction holds more than
+ * a threshold of block locks in one file, it escalates them
+ * to a single lock on the file. If it has only read the file,
+ * the file is locked in mode S and the block locks are released.
+ * If it has also modified some blocks, the file is locked in
+ * mode SIX: the S block locks are released, but the X block
+ * locks are kept, so that other transactions can still read
+ * the blocks that were not modified. Only when the threshold
+ * is exceeded by X block locks is the file locked in mode X.
+ * A long scan therefore holds a bounded number of locks, and
+ * after escalation locks no more blocks of the file for reading.
+ * <P>
+ * A snapshot transaction reads without locks. It sees the
+ * database as it was when it started: the values written by
+ * transactions that had not committed by then are replaced
+ * by the prior versions of the blocks that the writers saved.
  * @author Edward Sciore
  */
 public class ConcurrencyMgr {
@@ -18,48 +37,260 @@ public class ConcurrencyMgr {
     * all transactions share the same table.
     */
    private static LockTable locktbl = new LockTable();
-   private Map<BlockId,String> locks  = new HashMap<BlockId,String>();
+   private static VersionStore versions = new VersionStore();
+   private static volatile int escalationThreshold = 64;
+   private static volatile boolean versioning = true;
+   private int txnum;
+   private Map<Object,LockMode> locks = new HashMap<>();
+   private Map<String,Integer> blockLocks = new HashMap<>();
+   private Map<String,Integer> xBlockLocks = new HashMap<>();
+   private boolean snapshot = false;
+   private long snapshotStart;
+   private Set<BlockId> versioned = new HashSet<>();
+
+   /**
+    * Create a concurrency manager for the specified transaction.
+    * @param txnum the ID of the transaction
+    */
+   public ConcurrencyMgr(int txnum) {
+      this(txnum, false);
+   }
+
+   /**
+    * Create a concurrency manager for the specified transaction,
+    * which reads a snapshot if requested and if
+    * versioning is enabled. Otherwise its reads take locks.
+    * @param txnum the ID of the transaction
+    * @param snapshot whether the transaction reads a snapshot
+    */
+   public ConcurrencyMgr(int txnum, boolean snapshot) {
+      this.txnum = txnum;
+      if (snapshot && versioning) {
+         this.snapshot = true;
+         snapshotStart = versions.beginSnapshot();
+      }
+   }
+
+   /**
+    * Set whether writers save prior versions, which
+    * snapshot transactions need in order to read without locks.
+    * @param enabled true if prior versions are saved
+    */
+   public static void setVersioning(boolean enabled) {
+      versioning = enabled;
+   }
+
+   /**
+    * Set the number of block locks that a transaction may
+    * hold in one file before they are escalated to a lock
+    * on the file; 0 means that locks are never escalated.
+    * @param threshold the number of block locks per file
+    */
+   public static void setEscalationThreshold(int threshold) {
+      escalationThreshold = threshold;
+   }
+
+   /**
+    * Set the maximum time that a transaction waits for a lock
+    * before it is aborted. Deadlocks are detected without
+    * waiting, so the timeout only ends waits that are
+    * too long for other reasons.
+    * @param millis the timeout, in milliseconds
+    */
+   public static void setLockTimeout(long millis) {
+      locktbl.setTimeout(millis);
+   }
+
+   /**
+    * Returns the number of items in the lock table.
+    * @return the number of locked blocks and files
+    */
+   static int lockTableSize() {
+      return locktbl.size();
+   }
+
+   /**
+    * Returns the number of blocks that have prior versions.
+    * @return the number of blocks in the version store
+    */
+   static int versionStoreSize() {
+      return versions.size();
+   }
+
+   /**
+    * Returns true if the transaction reads a snapshot
+    * rather than locking what it reads.
+    * @return true if the transaction reads a snapshot
+    */
+   public boolean readsSnapshot() {
+      return snapshot;
+   }
 
    /**
     * Obtain an SLock on the block, if necessary.
-    * The method will ask the lock table for an SLock
-    * if the transaction currently has no locks on that block.
+    * The method will first lock the block's file in mode IS,
+    * and then ask the lock table for an SLock on the block,
+    * unless the transaction already holds a lock on the
+    * block or the file that allows reading it.
+    * A snapshot transaction takes no lock.
     * @param blk a reference to the disk block
     */
    public void sLock(BlockId blk) {
-      if (locks.get(blk) == null) {
-         locktbl.sLock(blk);
-         locks.put(blk, "S");
-      }
+      if (snapshot)
+         return;
+      String filename = blk.fileName();
+      if (holds(filename, LockMode.S) || holds(blk, LockMode.S))
+         return;
+      lock(filename, LockMode.IS);
+      lockBlock(blk, LockMode.S);
    }
 
    /**
     * Obtain an XLock on the block, if necessary.
-    * If the transaction does not have an XLock on that block,
-    * then the method first gets an SLock on that block
-    * (if necessary), and then upgrades it to an XLock.
+    * The method will first lock the block's file in mode IX,
+    * and then ask the lock table for an XLock on the block,
+    * upgrading the transaction's SLock if it has one,
+    * unless the transaction already holds an XLock on the
+    * block or the file.
     * @param blk a reference to the disk block
     */
    public void xLock(BlockId blk) {
-      if (!hasXLock(blk)) {
-         sLock(blk);
-         locktbl.xLock(blk);
-         locks.put(blk, "X");
-      }
+      String filename = blk.fileName();
+      if (holds(filename, LockMode.X) || holds(blk, LockMode.X))
+         return;
+      lock(filename, LockMode.IX);
+      lockBlock(blk, LockMode.X);
+   }
+
+   /**
+    * Save a copy of the block before the transaction first
+    * modifies it, so that snapshots can still read it.
+    * Temporary files are private to their transaction,
+    * and need no versions.
+    * The caller must hold the XLock on the block, and
+    * synchronize on its buffer.
+    * @param blk a reference to the disk block
+    * @param contents the current contents of the block
+    */
+   public void saveVersion(BlockId blk, Page contents) {
+      if (!versioning || versioned.contains(blk) || blk.fileName().startsWith("temp"))
+         return;
+      versions.save(txnum, blk, contents);
+      versioned.add(blk);
+   }
+
+   /**
+    * Return the version of the block that a snapshot
+    * transaction sees, or null if it sees the current contents.
+    * The caller must synchronize on the block's buffer.
+    * @param blk a reference to the disk block
+    * @return the prior version of the block, or null
+    */
+   public Page snapshotVersion(BlockId blk) {
+      return versions.read(txnum, snapshotStart, blk);
+   }
+
+   /**
+    * Make the transaction's changes visible to later
+    * snapshots, then release its locks.
+    */
+   public void commit() {
+      if (!versioned.isEmpty())
+         versions.commit(txnum, versioned);
+      release();
+   }
+
+   /**
+    * Discard the versions saved by the transaction, whose
+    * changes have been undone, then release its locks.
+    */
+   public void rollback() {
+      if (!versioned.isEmpty())
+         versions.rollback(txnum, versioned);
+      release();
    }
 
    /**
     * Release all locks by asking the lock table to
-    * unlock each one.
+    * unlock each one, and end the transaction's snapshot.
     */
    public void release() {
-      for (BlockId blk : locks.keySet()) 
-         locktbl.unlock(blk);
+      for (Object item : locks.keySet()) 
+         locktbl.unlock(item, txnum);
       locks.clear();
+      blockLocks.clear();
+      xBlockLocks.clear();
+      versioned = new HashSet<>();
+      if (snapshot) {
+         versions.endSnapshot(snapshotStart);
+         snapshot = false;
+      }
+   }
+
+   private void lockBlock(BlockId blk, LockMode mode) {
+      boolean isNew = !locks.containsKey(blk);
+      boolean isNewX = (mode == LockMode.X) && !holds(blk, LockMode.X);
+      lock(blk, mode);
+      if (isNewX)
+         xBlockLocks.merge(blk.fileName(), 1, Integer::sum);
+      if (isNew) {
+         int count = blockLocks.merge(blk.fileName(), 1, Integer::sum);
+         int threshold = escalationThreshold;
+         if (threshold > 0 && count > threshold)
+            escalate(blk.fileName());
+      }
+   }
+
+   /**
+    * Replace the transaction's block locks in the specified
+    * file by a lock on the whole file: X if the X block locks
+    * alone exceed the threshold, S if there are none, and
+    * otherwise SIX, which keeps the X block locks.
+    */
+   private void escalate(String filename) {
+      int xcount = xBlockLocks.getOrDefault(filename, 0);
+      LockMode mode;
+      if (xcount > escalationThreshold)
+         mode = LockMode.X;
+      else if (xcount > 0)
+         mode = LockMode.SIX;
+      else
+         mode = LockMode.S;
+      lock(filename, mode);
+      Iterator<Map.Entry<Object,LockMode>> iter = locks.entrySet().iterator();
+      while (iter.hasNext()) {
+         Map.Entry<Object,LockMode> e = iter.next();
+         Object item = e.getKey();
+         if (item instanceof BlockId && ((BlockId) item).fileName().equals(filename)
+               && (mode != LockMode.SIX || e.getValue() != LockMode.X)) {
+            locktbl.unlock(item, txnum);
+            iter.remove();
+         }
+      }
+      if (mode == LockMode.SIX)
+         blockLocks.put(filename, xcount);
+      else {
+         blockLocks.remove(filename);
+         xBlockLocks.remove(filename);
+      }
+   }
+
+   /**
+    * Lock the item in the specified mode, combined with the
+    * mode the transaction already holds, so that the lock table
+    * checks the mode that the transaction will actually hold.
+    */
+   private void lock(Object item, LockMode mode) {
+      if (holds(item, mode))
+         return;
+      LockMode held = locks.get(item);
+      LockMode target = (held == null) ? mode : held.supremum(mode);
+      locktbl.lock(item, txnum, target);
+      locks.put(item, target);
    }
 
-   private boolean hasXLock(BlockId blk) {
-      String locktype = locks.get(blk);
-      return locktype != null && locktype.equals("X");
+   private boolean holds(Object item, LockMode mode) {
+      LockMode held = locks.get(item);
+      return held != null && held.covers(mode);
    }
 }
@@ -0,0 +1,55 @@
+package simpledb.tx.concurrency;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+
+/**
+ * Two transactions each modify a block and then try to
+ * modify the other's block. The deadlock is detected when
+ * the second one blocks: the younger transaction is aborted
+ * at once, and the older one then gets its lock.
+ */
+public class DeadlockTest {
+   private static BlockId blk1 = new BlockId("deadlockfile", 1);
+   private static BlockId blk2 = new BlockId("deadlockfile", 2);
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("deadlocktest", 400, 8);
+      Transaction setup = db.newTx();
+      if (setup.size("deadlockfile") == 0)
+         db.fileMgr().appendMany("deadlockfile", 3);
+      setup.commit();
+
+      Transaction older = db.newTx();
+      Transaction younger = db.newTx();
+      older.pin(blk1);
+      older.setInt(blk1, 0, 1, true);
+      younger.pin(blk2);
+      younger.setInt(blk2, 0, 2, true);
+
+      long start = System.currentTimeMillis();
+      Thread t = new Thread(() -> {
+         older.pin(blk2);
+         older.setInt(blk2, 0, 1, true);
+         System.out.println("the older transaction got its lock");
+         older.commit();
+      });
+      t.start();
+      Thread.sleep(200);
+      try {
+         younger.pin(blk1);
+         younger.setInt(blk1, 0, 2, true);
+         System.out.println("no deadlock was detected");
+         younger.commit();
+      }
+      catch(LockAbortException e) {
+         System.out.println("the younger transaction was aborted");
+         younger.rollback();
+      }
+      t.join();
+      long elapsed = System.currentTimeMillis() - start;
+      System.out.println("the deadlock was resolved in less than a second: "
+            + (elapsed < 1000));
+   }
+}
@@ -0,0 +1,106 @@
+package simpledb.tx.concurrency;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+
+/**
+ * A transaction reads every block of a large file.
+ * Its block locks are escalated to a single lock on the
+ * file, so the lock table stays small. Another transaction
+ * can read the file meanwhile, but must wait to modify it.
+ * <P>
+ * A transaction that modifies a block before reading the
+ * file escalates to SIX: it keeps the X lock on the block it
+ * modified, and another transaction can still read the other
+ * blocks, while a writer must wait.
+ */
+public class LockEscalationTest {
+   private static final int NUM_BLOCKS = 500;
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("lockescalationtest", 400, 8);
+      Transaction setup = db.newTx();
+      if (setup.size("lockfile") == 0)
+         db.fileMgr().appendMany("lockfile", NUM_BLOCKS);
+      setup.commit();
+
+      Transaction scanner = db.newTx();
+      for (int b=0; b<NUM_BLOCKS; b++) {
+         BlockId blk = new BlockId("lockfile", b);
+         scanner.pin(blk);
+         scanner.getInt(blk, 0);
+         scanner.unpin(blk);
+      }
+      System.out.println("after reading " + NUM_BLOCKS + " blocks, the lock table has "
+            + ConcurrencyMgr.lockTableSize() + " entries");
+
+      Thread reader = new Thread(() -> {
+         Transaction tx = db.newTx();
+         BlockId blk = new BlockId("lockfile", 7);
+         tx.pin(blk);
+         tx.getInt(blk, 0);
+         System.out.println("another transaction reads the file");
+         tx.commit();
+      });
+      reader.start();
+      reader.join();
+
+      Thread writer = new Thread(() -> {
+         Transaction tx = db.newTx();
+         BlockId blk = new BlockId("lockfile", 7);
+         tx.pin(blk);
+         tx.setInt(blk, 0, 1, true);
+         System.out.println("another transaction modifies the file");
+         tx.commit();
+      });
+      writer.start();
+      Thread.sleep(500);
+      System.out.println("the scanner commits");
+      scanner.commit();
+      writer.join();
+      System.out.println("at the end, the lock table has "
+            + ConcurrencyMgr.lockTableSize() + " entries");
+
+      Transaction updater = db.newTx();
+      BlockId modified = new BlockId("lockfile", 0);
+      updater.pin(modified);
+      updater.setInt(modified, 0, 2, true);
+      for (int b=1; b<NUM_BLOCKS; b++) {
+         BlockId blk = new BlockId("lockfile", b);
+         updater.pin(blk);
+         updater.getInt(blk, 0);
+         updater.unpin(blk);
+      }
+      System.out.println("after modifying a block and reading the others, the lock table has "
+            + ConcurrencyMgr.lockTableSize() + " entries");
+
+      long start = System.currentTimeMillis();
+      Thread unmodifiedReader = new Thread(() -> {
+         Transaction tx = db.newTx();
+         BlockId blk = new BlockId("lockfile", 7);
+         tx.pin(blk);
+         tx.getInt(blk, 0);
+         System.out.println("another transaction reads an unmodified block");
+         tx.commit();
+      });
+      unmodifiedReader.start();
+      unmodifiedReader.join();
+      System.out.println("the reader did not wait for the updater: "
+            + (System.currentTimeMillis() - start < 500));
+
+      Thread secondWriter = new Thread(() -> {
+         Transaction tx = db.newTx();
+         BlockId blk = new BlockId("lockfile", 7);
+         tx.pin(blk);
+         tx.setInt(blk, 0, 3, true);
+         System.out.println("another transaction modifies the file");
+         tx.commit();
+      });
+      secondWriter.start();
+      Thread.sleep(500);
+      System.out.println("the updater commits");
+      updater.commit();
+      secondWriter.join();
+   }
+}
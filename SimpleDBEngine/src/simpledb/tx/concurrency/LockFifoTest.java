@@ -0,0 +1,72 @@
+package simpledb.tx.concurrency;
+
+import java.util.*;
+import simpledb.server.SimpleDB;
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+
+/**
+ * A transaction reads a block, and a second transaction
+ * then queues to modify it. Readers that arrive later
+ * are compatible with the first reader, but must queue
+ * behind the writer instead of overtaking it, so the
+ * writer is not starved.
+ */
+public class LockFifoTest {
+   private static final int NUM_READERS = 3;
+   private static BlockId blk = new BlockId("fifofile", 0);
+   private static List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("lockfifotest", 400, 8);
+      Transaction setup = db.newTx();
+      if (setup.size("fifofile") == 0)
+         db.fileMgr().appendMany("fifofile", 1);
+      setup.commit();
+
+      Transaction first = db.newTx();
+      first.pin(blk);
+      first.getInt(blk, 0);
+
+      Thread writer = new Thread(() -> {
+         Transaction tx = db.newTx();
+         tx.pin(blk);
+         tx.setInt(blk, 0, 1, true);
+         events.add("writer");
+         sleep(200);
+         tx.commit();
+      });
+      writer.start();
+      Thread.sleep(200);
+
+      List<Thread> readers = new ArrayList<>();
+      for (int i=0; i<NUM_READERS; i++) {
+         Thread reader = new Thread(() -> {
+            Transaction tx = db.newTx();
+            tx.pin(blk);
+            tx.getInt(blk, 0);
+            events.add("reader");
+            tx.commit();
+         });
+         readers.add(reader);
+         reader.start();
+      }
+      Thread.sleep(300);
+      System.out.println("while the first reader holds the block: " + events);
+      first.commit();
+
+      writer.join();
+      for (Thread reader : readers)
+         reader.join();
+      System.out.println("after it commits: " + events);
+      System.out.println("the writer was granted first: "
+            + events.get(0).equals("writer"));
+   }
+
+   private static void sleep(long millis) {
+      try {
+         Thread.sleep(millis);
+      }
+      catch(InterruptedException e) {}
+   }
+}
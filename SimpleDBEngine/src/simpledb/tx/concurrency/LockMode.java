@@ -0,0 +1,61 @@
+package simpledb.tx.concurrency;
+
+/**
+ * The lock modes of multi-granularity locking.
+ * A transaction locks a block in mode S or X after locking
+ * its file in the corresponding intention mode, IS or IX;
+ * a lock on a whole file in mode S or X covers all of its blocks.
+ * SIX is held by a transaction that reads the whole file
+ * and modifies some of its blocks.
+ */
+enum LockMode {
+   IS, IX, S, SIX, X;
+
+   private static final boolean[][] COMPATIBLE = {
+      //          IS     IX     S      SIX    X
+      /* IS  */ { true,  true,  true,  true,  false },
+      /* IX  */ { true,  true,  false, false, false },
+      /* S   */ { true,  false, true,  false, false },
+      /* SIX */ { true,  false, false, false, false },
+      /* X   */ { false, false, false, false, false } };
+
+   private static final LockMode[][] SUPREMUM = {
+      //          IS   IX   S    SIX  X
+      /* IS  */ { IS,  IX,  S,   SIX, X },
+      /* IX  */ { IX,  IX,  SIX, SIX, X },
+      /* S   */ { S,   SIX, S,   SIX, X },
+      /* SIX */ { SIX, SIX, SIX, SIX, X },
+      /* X   */ { X,   X,   X,   X,   X } };
+
+   /**
+    * Returns true if another transaction may hold
+    * a lock of the specified mode along with this one.
+    * @param other the other mode
+    * @return true if the modes are compatible
+    */
+   boolean compatible(LockMode other) {
+      return COMPATIBLE[ordinal()][other.ordinal()];
+   }
+
+   /**
+    * Returns the weakest mode that grants everything
+    * that this mode and the specified mode grant.
+    * A transaction that holds a lock and requests another
+    * mode on the same item ends up holding this mode.
+    * @param other the other mode
+    * @return the combined mode
+    */
+   LockMode supremum(LockMode other) {
+      return SUPREMUM[ordinal()][other.ordinal()];
+   }
+
+   /**
+    * Returns true if this mode grants everything
+    * that the specified mode grants.
+    * @param other the other mode
+    * @return true if this mode is at least as strong
+    */
+   boolean covers(LockMode other) {
+      return supremum(other) == this;
+   }
+}
@@ -0,0 +1,289 @@
+package simpledb.tx.concurrency;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.*;
+
+/**
+ * One partition of the lock table.
+ * Each item is hashed to a stripe, which alone holds the
+ * item's lock: the mode in which each transaction holds the
+ * item, and a queue of the requests waiting for it.
+ * All of this is protected by the stripe's lock, so
+ * transactions locking items of different stripes
+ * do not contend.
+ * <P>
+ * Requests are granted in FIFO order. A request is granted
+ * at once only if it is compatible with the holders of the
+ * item and no request is waiting for it, so that a stream of
+ * shared requests cannot starve a queued exclusive one.
+ * Otherwise it joins the item's queue, behind the other
+ * waiters; a transaction that already holds the item is
+ * upgrading its lock, and is granted at once if it can be,
+ * or else goes ahead of the waiters.
+ * When a lock is released, or a waiter gives up, the requests
+ * at the head of the queue are granted in order, up to the
+ * first one that is not compatible, and only their threads
+ * are woken up.
+ * <P>
+ * The stripe records in the wait-for graph which transactions
+ * each waiting request is blocked by: the incompatible holders,
+ * and the waiters ahead of it in the queue. A request that
+ * closes a cycle of the graph is resolved at once. If a request
+ * of the cycle waits only for the waiters ahead of it, that
+ * request is granted out of turn, as a reader queued behind a
+ * writer that waits for the reader's own transaction would
+ * otherwise deadlock; else the youngest transaction of the
+ * cycle is aborted.
+ */
+class LockStripe {
+   private ReentrantLock latch = new ReentrantLock();
+   private Map<Object,ItemLock> items = new HashMap<>();
+   private WaitForGraph graph;
+
+   LockStripe(WaitForGraph graph) {
+      this.graph = graph;
+   }
+
+   /**
+    * Grant a lock of the specified mode on the specified item,
+    * waiting until it is compatible with the other holders.
+    * If the transaction already holds the item, the lock is
+    * upgraded to the combination of both modes.
+    * @param item the block or file to lock
+    * @param txnum the id of the requesting transaction
+    * @param mode the requested mode
+    * @param maxwait the maximum time to wait, in milliseconds
+    * @throws LockAbortException if the transaction is chosen as the
+    * victim of a deadlock, or if the lock is not granted in time
+    */
+   void lock(Object item, int txnum, LockMode mode, long maxwait) {
+      Request r;
+      latch.lock();
+      try {
+         ItemLock lk = items.computeIfAbsent(item, k -> new ItemLock());
+         boolean upgrade = lk.holders.containsKey(txnum);
+         if ((upgrade || lk.waiters.isEmpty()) && lk.compatible(txnum, mode)) {
+            lk.grant(txnum, mode);
+            updateWaiters(lk);
+            return;
+         }
+         r = new Request(this, item, txnum, mode, latch.newCondition());
+         if (upgrade)
+            lk.waiters.addFirst(r);
+         else
+            lk.waiters.addLast(r);
+         updateWaiters(lk);
+      }
+      finally {
+         latch.unlock();
+      }
+
+      // the graph is searched outside of the latch,
+      // because the victim may wait in another stripe
+      Request victim = graph.victim(txnum);
+      if (victim != null)
+         victim.stripe.resolve(victim);
+
+      latch.lock();
+      try {
+         long deadline = System.currentTimeMillis() + maxwait;
+         try {
+            while (!r.granted && !r.aborted) {
+               long remaining = deadline - System.currentTimeMillis();
+               if (remaining <= 0)
+                  break;
+               r.cond.await(remaining, TimeUnit.MILLISECONDS);
+            }
+         }
+         catch(InterruptedException e) {
+            // give up, unless the lock was granted meanwhile
+         }
+         if (!r.granted) {
+            ItemLock lk = items.get(item);
+            lk.waiters.remove(r);
+            graph.remove(txnum);
+            grantWaiters(lk);
+            removeIfUnused(item, lk);
+            throw new LockAbortException();
+         }
+      }
+      finally {
+         latch.unlock();
+      }
+   }
+
+   /**
+    * Release the transaction's lock on the specified item,
+    * and grant the waiting requests that have become compatible.
+    * @param item the locked block or file
+    * @param txnum the id of the transaction
+    */
+   void unlock(Object item, int txnum) {
+      latch.lock();
+      try {
+         ItemLock lk = items.get(item);
+         if (lk == null)
+            return;
+         lk.holders.remove(txnum);
+         grantWaiters(lk);
+         removeIfUnused(item, lk);
+      }
+      finally {
+         latch.unlock();
+      }
+   }
+
+   /**
+    * Returns the number of items locked or waited for.
+    * @return the number of items in the stripe
+    */
+   int size() {
+      latch.lock();
+      try {
+         return items.size();
+      }
+      finally {
+         latch.unlock();
+      }
+   }
+
+   /**
+    * Break a deadlock at the specified waiting request.
+    * A request that waits only for the requests queued ahead
+    * of it is granted out of turn. Any other is aborted:
+    * its thread is woken up, and gives up its request.
+    * @param r the request chosen in a cycle of the wait-for graph
+    */
+   private void resolve(Request r) {
+      latch.lock();
+      try {
+         if (r.granted || r.aborted)
+            return;
+         ItemLock lk = items.get(r.item);
+         if (r.queued && lk.compatible(r.txnum, r.mode)) {
+            lk.waiters.remove(r);
+            grant(lk, r);
+            updateWaiters(lk);
+         }
+         else {
+            r.aborted = true;
+            r.cond.signal();
+         }
+      }
+      finally {
+         latch.unlock();
+      }
+   }
+
+   /**
+    * Grant the requests at the head of the queue, in order,
+    * until one is not compatible with the holders.
+    * A request whose transaction is aborting is passed over,
+    * since its thread removes it.
+    */
+   private void grantWaiters(ItemLock lk) {
+      Iterator<Request> iter = lk.waiters.iterator();
+      while (iter.hasNext()) {
+         Request r = iter.next();
+         if (r.aborted)
+            continue;
+         if (!lk.compatible(r.txnum, r.mode))
+            break;
+         iter.remove();
+         grant(lk, r);
+      }
+      updateWaiters(lk);
+   }
+
+   /**
+    * Grant a request that has been taken off the queue,
+    * and wake up its thread.
+    */
+   private void grant(ItemLock lk, Request r) {
+      lk.grant(r.txnum, r.mode);
+      r.granted = true;
+      r.cond.signal();
+      graph.remove(r.txnum);
+   }
+
+   /**
+    * Record in the wait-for graph the transactions that
+    * each waiting request is now blocked by: the holders
+    * it is not compatible with, and the waiters ahead of it.
+    */
+   private void updateWaiters(ItemLock lk) {
+      Set<Integer> ahead = new HashSet<>();
+      for (Request r : lk.waiters) {
+         if (r.aborted)
+            continue;
+         Set<Integer> blockers = lk.blockers(r.txnum, r.mode);
+         r.queued = blockers.isEmpty();
+         blockers.addAll(ahead);
+         blockers.remove(r.txnum);
+         graph.waitFor(r, blockers);
+         ahead.add(r.txnum);
+      }
+   }
+
+   private void removeIfUnused(Object item, ItemLock lk) {
+      if (lk.holders.isEmpty() && lk.waiters.isEmpty())
+         items.remove(item);
+   }
+
+   /**
+    * The lock on one item: its holders, each with its mode,
+    * and the requests waiting for it, in the order in
+    * which they are to be granted.
+    */
+   private static class ItemLock {
+      Map<Integer,LockMode> holders = new HashMap<>();
+      Deque<Request> waiters = new ArrayDeque<>();
+
+      boolean compatible(int txnum, LockMode mode) {
+         for (Map.Entry<Integer,LockMode> e : holders.entrySet())
+            if (e.getKey() != txnum && !e.getValue().compatible(mode))
+               return false;
+         return true;
+      }
+
+      Set<Integer> blockers(int txnum, LockMode mode) {
+         Set<Integer> result = new HashSet<>();
+         for (Map.Entry<Integer,LockMode> e : holders.entrySet())
+            if (e.getKey() != txnum && !e.getValue().compatible(mode))
+               result.add(e.getKey());
+         return result;
+      }
+
+      void grant(int txnum, LockMode mode) {
+         holders.merge(txnum, mode, LockMode::supremum);
+      }
+   }
+
+   /**
+    * A waiting request. The request is granted by the
+    * thread that releases the lock, or granted or aborted
+    * by the thread that finds it in a deadlock; either one
+    * then signals the waiting thread. A request is queued
+    * if it is compatible with the holders, and waits only
+    * for the requests ahead of it.
+    */
+   static class Request {
+      LockStripe stripe;
+      Object item;
+      int txnum;
+      LockMode mode;
+      Condition cond;
+      boolean granted = false;
+      boolean aborted = false;
+      boolean queued = false;
+
+      Request(LockStripe stripe, Object item, int txnum, LockMode mode, Condition cond) {
+         this.stripe = stripe;
+         this.item = item;
+         this.txnum = txnum;
+         this.mode = mode;
+         this.cond = cond;
+      }
+   }
+}
@@ -1,103 +1,87 @@
 package simpledb.tx.concurrency;
 
-import java.util.*;
-import simpledb.file.BlockId;
-
 /**
- * The lock table, which provides methods to lock and unlock blocks.
- * If a transaction requests a lock that causes a conflict with an
- * existing lock, then that transaction is placed on a wait list.
- * There is only one wait list for all blocks.
- * When the last lock on a block is unlocked, then all transactions
- * are removed from the wait list and rescheduled.
- * If one of those transactions discovers that the lock it is waiting for
- * is still locked, it will place itself back on the wait list.
+ * The lock table, which provides methods to lock and unlock items.
+ * An item is either a block, identified by its BlockId,
+ * or a whole file, identified by its name.
+ * The table records the mode in which each transaction holds
+ * each item. A transaction that requests a mode conflicting
+ * with the mode of another holder waits in the item's queue
+ * until the lock is released.
+ * The items are partitioned into stripes, each with its own
+ * lock, so that transactions locking unrelated items
+ * do not contend.
+ * <P>
+ * Deadlocks are detected as soon as they occur, by searching
+ * the wait-for graph for a cycle each time a transaction blocks.
+ * The timeout remains as a fallback, for transactions that
+ * wait too long for other reasons.
  * @author Edward Sciore
  */
 class LockTable {
-   private static final long MAX_TIME = 10000; // 10 seconds
+   private static final int NUM_STRIPES = 64;
+   
+   private LockStripe[] stripes = new LockStripe[NUM_STRIPES];
+   private WaitForGraph graph = new WaitForGraph();
+   private volatile long maxTime = 10000; // 10 seconds
    
-   private Map<BlockId,Integer> locks = new HashMap<BlockId,Integer>();
+   LockTable() {
+      for (int i=0; i<NUM_STRIPES; i++)
+         stripes[i] = new LockStripe(graph);
+   }
    
    /**
-    * Grant an SLock on the specified block.
-    * If an XLock exists when the method is called,
-    * then the calling thread will be placed on a wait list
-    * until the lock is released.
-    * If the thread remains on the wait list for a certain 
-    * amount of time (currently 10 seconds),
-    * then an exception is thrown.
-    * @param blk a reference to the disk block
+    * Set the maximum time that a transaction waits for a lock.
+    * @param millis the timeout, in milliseconds
     */
-   public synchronized void sLock(BlockId blk) {
-      try {
-         long timestamp = System.currentTimeMillis();
-         while (hasXlock(blk) && !waitingTooLong(timestamp))
-            wait(MAX_TIME);
-         if (hasXlock(blk))
-            throw new LockAbortException();
-         int val = getLockVal(blk);  // will not be negative
-         locks.put(blk, val+1);
-      }
-      catch(InterruptedException e) {
-         throw new LockAbortException();
-      }
+   void setTimeout(long millis) {
+      maxTime = millis;
    }
    
    /**
-    * Grant an XLock on the specified block.
-    * If a lock of any type exists when the method is called,
-    * then the calling thread will be placed on a wait list
-    * until the locks are released.
-    * If the thread remains on the wait list for a certain 
-    * amount of time (currently 10 seconds),
+    * Grant a lock of the specified mode on the specified item.
+    * If the transaction already holds a lock on the item,
+    * the lock is upgraded to the combination of both modes.
+    * If another transaction holds the item in a conflicting mode
+    * when the method is called, then the calling thread will be
+    * placed on the item's wait queue until the lock is released.
+    * If waiting would cause a deadlock, the youngest transaction
+    * of the deadlock is aborted by throwing an exception.
+    * If the thread remains on the wait queue for a certain 
+    * amount of time (by default 10 seconds),
     * then an exception is thrown.
-    * @param blk a reference to the disk block
+    * @param item the block or file to lock
+    * @param txnum the id of the requesting transaction
+    * @param mode the requested mode
     */
-   synchronized void xLock(BlockId blk) {
-      try {
-         long timestamp = System.currentTimeMillis();
-         while (hasOtherSLocks(blk) && !waitingTooLong(timestamp))
-            wait(MAX_TIME);
-         if (hasOtherSLocks(blk))
-            throw new LockAbortException();
-         locks.put(blk, -1);
-      }
-      catch(InterruptedException e) {
-         throw new LockAbortException();
-      }
+   void lock(Object item, int txnum, LockMode mode) {
+      stripe(item).lock(item, txnum, mode, maxTime);
    }
    
    /**
-    * Release a lock on the specified block.
-    * If this lock is the last lock on that block,
-    * then the waiting transactions are notified.
-    * @param blk a reference to the disk block
+    * Release the transaction's lock on the specified item,
+    * and grant the waiting requests that have become compatible.
+    * @param item the locked block or file
+    * @param txnum the id of the transaction
     */
-   synchronized void unlock(BlockId blk) {
-      int val = getLockVal(blk);
-      if (val > 1)
-         locks.put(blk, val-1);
-      else {
-         locks.remove(blk);
-         notifyAll();
-      }
-   }
-   
-   private boolean hasXlock(BlockId blk) {
-      return getLockVal(blk) < 0;
-   }
-   
-   private boolean hasOtherSLocks(BlockId blk) {
-      return getLockVal(blk) > 1;
+   void unlock(Object item, int txnum) {
+      stripe(item).unlock(item, txnum);
    }
    
-   private boolean waitingTooLong(long starttime) {
-      return System.currentTimeMillis() - starttime > MAX_TIME;
+   /**
+    * Returns the number of items that are locked or waited for.
+    * @return the number of entries in the table
+    */
+   int size() {
+      int size = 0;
+      for (LockStripe s : stripes)
+         size += s.size();
+      return size;
    }
    
-   private int getLockVal(BlockId blk) {
-      Integer ival = locks.get(blk);
-      return (ival == null) ? 0 : ival.intValue();
+   private LockStripe stripe(Object item) {
+      int h = item.hashCode();
+      h ^= (h >>> 16);
+      return stripes[(h & 0x7fffffff) % NUM_STRIPES];
    }
 }
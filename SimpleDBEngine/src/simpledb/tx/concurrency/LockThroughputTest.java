@@ -0,0 +1,69 @@
+package simpledb.tx.concurrency;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import simpledb.file.BlockId;
+
+/**
+ * Measures the lock/unlock throughput of the lock table
+ * as the number of threads grows.
+ * Each thread runs short transactions that lock a few blocks
+ * and release them. In the first workload every thread
+ * writes blocks of its own file; in the second, all threads
+ * read blocks of the same file.
+ */
+public class LockThroughputTest {
+   private static final int TXS_PER_THREAD = 20000, LOCKS_PER_TX = 8;
+   private static final int NUMBLOCKS = 1000;
+   private static AtomicInteger nexttx = new AtomicInteger(1000000);
+
+   public static void main(String[] args) throws Exception {
+      for (boolean shared : new boolean[] {false, true}) {
+         System.out.println(shared ? "shared file, slocks:" : "own file, xlocks:");
+         for (int numthreads : new int[] {1, 2, 4, 8}) {
+            long start = System.nanoTime();
+            Thread[] threads = new Thread[numthreads];
+            for (int t=0; t<numthreads; t++) {
+               String filename = shared ? "sharedfile" : "file" + t;
+               threads[t] = new Thread(new Locker(filename, !shared, t));
+               threads[t].start();
+            }
+            for (Thread t : threads)
+               t.join();
+            long nanos = System.nanoTime() - start;
+            long ops = (long) numthreads * TXS_PER_THREAD * LOCKS_PER_TX;
+            System.out.println("   " + numthreads + " thread(s): "
+                  + (ops * 1000000000L / nanos) + " locks/s, lock table has "
+                  + ConcurrencyMgr.lockTableSize() + " entries");
+         }
+      }
+   }
+
+   // Each transaction locks consecutive blocks of the
+   // thread's file, starting at a different block each time.
+   static class Locker implements Runnable {
+      private String filename;
+      private boolean exclusive;
+      private int seed;
+
+      Locker(String filename, boolean exclusive, int seed) {
+         this.filename = filename;
+         this.exclusive = exclusive;
+         this.seed = seed;
+      }
+
+      public void run() {
+         for (int i=0; i<TXS_PER_THREAD; i++) {
+            ConcurrencyMgr cm = new ConcurrencyMgr(nexttx.getAndIncrement());
+            int first = (seed * 7919 + i * LOCKS_PER_TX) % NUMBLOCKS;
+            for (int k=0; k<LOCKS_PER_TX; k++) {
+               BlockId blk = new BlockId(filename, (first + k) % NUMBLOCKS);
+               if (exclusive)
+                  cm.xLock(blk);
+               else
+                  cm.sLock(blk);
+            }
+            cm.release();
+         }
+      }
+   }
+}
@@ -0,0 +1,65 @@
+package simpledb.tx.concurrency;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.BlockId;
+import simpledb.tx.Transaction;
+
+/**
+ * Snapshot transactions read a block that a writer holds
+ * locked, without waiting. Each sees the values that were
+ * committed when it started, whatever the writers do later.
+ * When the snapshots end, the saved versions are discarded.
+ */
+public class SnapshotTest {
+   private static BlockId blk = new BlockId("snapshotfile", 0);
+
+   public static void main(String[] args) throws Exception {
+      SimpleDB db = new SimpleDB("snapshottest", 400, 8);
+      Transaction setup = db.newTx();
+      if (setup.size("snapshotfile") == 0)
+         setup.append("snapshotfile");
+      setup.pin(blk);
+      setup.setInt(blk, 0, 1, true);
+      setup.setString(blk, 40, "one", true);
+      setup.commit();
+
+      Transaction writer = db.newTx();
+      writer.pin(blk);
+      writer.setInt(blk, 0, 2, true);
+      writer.setString(blk, 40, "two", true);
+
+      Transaction snap1 = db.newReadOnlyTx();
+      Thread reader = new Thread(() -> {
+         snap1.pin(blk);
+         System.out.println("the first snapshot reads " + read(snap1)
+               + " while the block is locked");
+      });
+      reader.start();
+      reader.join(1000);
+      System.out.println("the reader did not wait: " + !reader.isAlive());
+      writer.commit();
+      System.out.println("after the commit, the first snapshot still reads " + read(snap1));
+
+      Transaction snap2 = db.newReadOnlyTx();
+      snap2.pin(blk);
+      System.out.println("a later snapshot reads " + read(snap2));
+
+      Transaction loser = db.newTx();
+      loser.pin(blk);
+      loser.setInt(blk, 0, 3, true);
+      loser.setString(blk, 40, "three", true);
+      System.out.println("during another change, the later snapshot reads " + read(snap2));
+      loser.rollback();
+      System.out.println("after its rollback, the later snapshot reads " + read(snap2)
+            + " and the first one " + read(snap1));
+
+      snap1.commit();
+      snap2.commit();
+      System.out.println("versions left after the snapshots end: "
+            + ConcurrencyMgr.versionStoreSize());
+   }
+
+   private static String read(Transaction tx) {
+      return tx.getInt(blk, 0) + "/" + tx.getString(blk, 40);
+   }
+}
@@ -0,0 +1,185 @@
+package simpledb.tx.concurrency;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import simpledb.file.*;
+
+/**
+ * The store of prior versions, which lets snapshot
+ * transactions read without locks.
+ * Before a transaction first modifies a block, it saves a
+ * copy of the block in the store.
+ * When a transaction commits, it is stamped with the
+ * value of a logical clock. A snapshot transaction
+ * notes the clock when it starts, and sees the changes
+ * of the transactions stamped no later than that.
+ * <P>
+ * Writers lock the blocks they modify, so the transactions
+ * that modify a block do so one after the other, and the
+ * ones that a snapshot does not see come after all of those
+ * that it sees. The snapshot therefore reads a block as it
+ * was before the first of them modified it, and reads the
+ * current block if there is none.
+ * Since versions are whole blocks, this holds whatever the
+ * format of the block.
+ * <P>
+ * The versions of a committed transaction are discarded when
+ * every active snapshot sees its changes, and those of a
+ * rolled back transaction as soon as it has undone them.
+ */
+class VersionStore {
+   private Map<BlockId,List<Version>> versions = new ConcurrentHashMap<>();
+   private Map<Integer,Long> commitTimes = new ConcurrentHashMap<>();
+   private TreeMap<Long,Integer> snapshots = new TreeMap<>();
+   private Deque<Retired> retired = new ArrayDeque<>();
+   private long clock = 0;
+
+   /**
+    * Save a copy of a block that a transaction is about
+    * to modify for the first time.
+    * The caller must keep the block from being read meanwhile,
+    * by synchronizing on its buffer.
+    * @param txnum the id of the writing transaction
+    * @param blk the block being modified
+    * @param contents the current contents of the block
+    */
+   void save(int txnum, BlockId blk, Page contents) {
+      Version v = new Version(txnum, contents.copy());
+      versions.compute(blk, (k, list) -> {
+         if (list == null)
+            list = new ArrayList<>();
+         synchronized (list) {
+            list.add(v);
+         }
+         return list;
+      });
+   }
+
+   /**
+    * Return the version of the block that the snapshot sees,
+    * or null if it sees the current block.
+    * The caller must keep the block from being modified
+    * meanwhile, by synchronizing on its buffer.
+    * @param txnum the id of the snapshot transaction
+    * @param start the clock when the snapshot started
+    * @param blk the block being read
+    * @return the prior version of the block, or null
+    */
+   Page read(int txnum, long start, BlockId blk) {
+      List<Version> list = versions.get(blk);
+      if (list == null)
+         return null;
+      synchronized (list) {
+         for (Version v : list)
+            if (!visible(v.txnum, txnum, start))
+               return v.contents;
+         return null;
+      }
+   }
+
+   /**
+    * Start a snapshot.
+    * @return the clock when the snapshot started
+    */
+   synchronized long beginSnapshot() {
+      snapshots.merge(clock, 1, Integer::sum);
+      return clock;
+   }
+
+   /**
+    * End a snapshot, and discard the versions
+    * that no remaining snapshot needs.
+    * @param start the clock when the snapshot started
+    */
+   void endSnapshot(long start) {
+      List<Retired> done = new ArrayList<>();
+      synchronized (this) {
+         snapshots.computeIfPresent(start, (k, n) -> (n == 1) ? null : n - 1);
+         while (!retired.isEmpty() && !needed(retired.peekFirst().committed))
+            done.add(retired.pollFirst());
+      }
+      for (Retired r : done)
+         discard(r.txnum, r.blocks);
+   }
+
+   /**
+    * Stamp a transaction that saved versions as committed,
+    * and discard its versions unless a snapshot needs them.
+    * @param txnum the id of the transaction
+    * @param blocks the blocks for which it saved versions
+    */
+   void commit(int txnum, Set<BlockId> blocks) {
+      synchronized (this) {
+         clock++;
+         commitTimes.put(txnum, clock);
+         if (needed(clock)) {
+            retired.addLast(new Retired(txnum, clock, blocks));
+            return;
+         }
+      }
+      discard(txnum, blocks);
+   }
+
+   /**
+    * Discard the versions of a transaction that rolled back.
+    * Its changes are undone, so no snapshot needs them.
+    * @param txnum the id of the transaction
+    * @param blocks the blocks for which it saved versions
+    */
+   void rollback(int txnum, Set<BlockId> blocks) {
+      discard(txnum, blocks);
+   }
+
+   /**
+    * Returns the number of blocks that have saved versions.
+    * @return the number of blocks with versions
+    */
+   int size() {
+      return versions.size();
+   }
+
+   private boolean visible(int writer, int txnum, long start) {
+      if (writer == txnum)
+         return true;
+      Long committed = commitTimes.get(writer);
+      return committed != null && committed <= start;
+   }
+
+   // a snapshot that started before the commit needs the versions
+   private boolean needed(long committed) {
+      return !snapshots.isEmpty() && snapshots.firstKey() < committed;
+   }
+
+   private void discard(int txnum, Set<BlockId> blocks) {
+      for (BlockId blk : blocks)
+         versions.computeIfPresent(blk, (k, list) -> {
+            synchronized (list) {
+               list.removeIf(v -> v.txnum == txnum);
+               return list.isEmpty() ? null : list;
+            }
+         });
+      commitTimes.remove(txnum);
+   }
+
+   private static class Version {
+      int txnum;
+      Page contents;
+
+      Version(int txnum, Page contents) {
+         this.txnum = txnum;
+         this.contents = contents;
+      }
+   }
+
+   private static class Retired {
+      int txnum;
+      long committed;
+      Set<BlockId> blocks;
+
+      Retired(int txnum, long committed, Set<BlockId> blocks) {
+         this.txnum = txnum;
+         this.committed = committed;
+         this.blocks = blocks;
+      }
+   }
+}
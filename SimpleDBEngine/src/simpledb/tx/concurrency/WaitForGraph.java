@@ -0,0 +1,89 @@
+package simpledb.tx.concurrency;
+
+import java.util.*;
+
+/**
+ * The wait-for graph of the lock table.
+ * The graph has an edge from each waiting transaction to
+ * every transaction holding a conflicting lock on the item
+ * it waits for, and to every transaction queued ahead of it,
+ * since locks are granted in FIFO order. The stripes keep the
+ * edges of their waiting requests current as holders come and go.
+ * <P>
+ * A transaction can only close a cycle when it starts to
+ * wait, so the graph is searched for a cycle through a
+ * transaction each time one blocks. If a transaction of
+ * the cycle waits only because of the queue order, its
+ * request is chosen, to be granted out of turn. Otherwise
+ * the youngest transaction of the cycle, the one with the
+ * largest number, is chosen as the victim; it has done the
+ * least work and its abort breaks the deadlock.
+ */
+class WaitForGraph {
+   private Map<Integer,Set<Integer>> edges = new HashMap<>();
+   private Map<Integer,LockStripe.Request> waiting = new HashMap<>();
+
+   /**
+    * Record that the transaction of the specified request
+    * waits for the specified transactions.
+    * @param r the waiting request
+    * @param blockers the transactions holding conflicting locks or queued ahead
+    */
+   synchronized void waitFor(LockStripe.Request r, Set<Integer> blockers) {
+      waiting.put(r.txnum, r);
+      edges.put(r.txnum, blockers);
+   }
+
+   /**
+    * Record that the transaction no longer waits.
+    * @param txnum the id of the transaction
+    */
+   synchronized void remove(int txnum) {
+      waiting.remove(txnum);
+      edges.remove(txnum);
+   }
+
+   /**
+    * Look for a cycle through the specified transaction, and
+    * return the request at which the deadlock is to be broken:
+    * a request that waits only because of the queue order,
+    * or else the request of the youngest transaction.
+    * @param txnum the id of a transaction that has just blocked
+    * @return the request of the victim, or null if there is no deadlock
+    */
+   synchronized LockStripe.Request victim(int txnum) {
+      Deque<Integer> path = new ArrayDeque<>();
+      if (!reaches(txnum, txnum, path, new HashSet<>()))
+         return null;
+      path.push(txnum);
+      int youngest = txnum;
+      for (int t : path) {
+         if (waiting.get(t).queued)
+            return waiting.get(t);
+         youngest = Math.max(youngest, t);
+      }
+      return waiting.get(youngest);
+   }
+
+   /**
+    * Depth-first search for a path from the transaction
+    * to the target, leaving the transactions of the path
+    * on the stack.
+    */
+   private boolean reaches(int from, int target, Deque<Integer> path, Set<Integer> visited) {
+      Set<Integer> next = edges.get(from);
+      if (next == null)
+         return false;
+      for (int t : next) {
+         if (t == target)
+            return true;
+         if (visited.add(t)) {
+            path.push(t);
+            if (reaches(t, target, path, visited))
+               return true;
+            path.pop();
+         }
+      }
+      return false;
+   }
+}
@@ -1,7 +1,8 @@
 package simpledb.tx.recovery;
 
-import simpledb.file.Page;
-import simpledb.log.LogMgr;
+import simpledb.file.*;
+import simpledb.buffer.Buffer;
+import simpledb.log.*;
 import simpledb.tx.Transaction;
 
 /**
@@ -30,6 +31,16 @@ public class CheckpointRecord implements LogRecord {
     */
    public void undo(Transaction tx) {}
 
+   public BlockId block() {
+      return null;
+   }
+
+   /**
+    * Does nothing, because a checkpoint record
+    * contains no redo information.
+    */
+   public void redo(Buffer buff, int txnum, long lsn) {}
+
    public String toString() {
       return "<CHECKPOINT>";
    }
@@ -40,10 +51,8 @@ public class CheckpointRecord implements LogRecord {
     * and nothing else.
     * @return the LSN of the last log value
     */
-   public static int writeToLog(LogMgr lm) {
-      byte[] rec = new byte[Integer.BYTES];
-      Page p = new Page(rec);
-      p.setInt(0, CHECKPOINT);
+   public static long writeToLog(LogMgr lm) {
+      byte[] rec = new RecordWriter(lm).writeInt(CHECKPOINT).toBytes();
       return lm.append(rec);
    }
 }
@@ -0,0 +1,86 @@
+package simpledb.tx.recovery;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+import simpledb.log.LogMgr;
+import simpledb.buffer.BufferMgr;
+import simpledb.tx.Transaction;
+
+/**
+ * Like RecoveryTest, this test is run twice.
+ * The first run executes many small transactions with periodic
+ * fuzzy checkpoints, leaving one transaction unfinished as if
+ * the server had crashed. The checkpoints keep the log short,
+ * except for what the unfinished transaction still needs.
+ * The second run recovers the database.
+ */
+public class CheckpointTest {
+   private static final int NUM_TXS = 1000;
+   private static final int UNFINISHED_TX = 801;
+
+   public static void main(String[] args) {
+      SimpleDB db = new SimpleDB("checkpointtest", 400, 8);
+      if (db.fileMgr().length("testfile") == 0)
+         run(db);
+      else
+         recover(db);
+   }
+
+   private static void run(SimpleDB db) {
+      FileMgr fm = db.fileMgr();
+      LogMgr lm = db.logMgr();
+      BufferMgr bm = db.bufferMgr();
+      BlockId blk4 = new BlockId("testfile", 4);
+      Transaction unfinished = null;
+      int unfinishedNum = 0;
+      int txcount = 0;
+      for (int i=1; i<=NUM_TXS; i++) {
+         if (i == UNFINISHED_TX) {
+            unfinished = db.newTx();
+            unfinishedNum = ++txcount;
+            unfinished.pin(blk4);
+            for (int k=0; k<10; k++)
+               unfinished.setInt(blk4, k*Integer.BYTES, -1, true);
+         }
+         Transaction tx = db.newTx();
+         txcount++;
+         BlockId blk = new BlockId("testfile", i % 4);
+         tx.pin(blk);
+         for (int k=0; k<20; k++)
+            tx.setInt(blk, k*Integer.BYTES, i, true);
+         tx.commit();
+         if (i % 100 == 0)
+            RecoveryMgr.checkpoint(lm, bm);
+      }
+      // the unfinished transaction's page reaches the disk
+      bm.flushAll(unfinishedNum);
+      long logblocks = lm.lastLSN() / fm.blockSize();
+      System.out.println("the log has grown to " + logblocks + " blocks, in "
+            + fm.fileNames("simpledb.log.").size() + " segment(s)");
+   }
+
+   private static void recover(SimpleDB db) {
+      FileMgr fm = db.fileMgr();
+      Transaction tx = db.newTx();
+      tx.recover();
+      System.out.println("after recovery, the log has "
+            + fm.fileNames("simpledb.log.").size() + " segment(s)");
+
+      Page p = new Page(fm.blockSize());
+      boolean ok = true;
+      for (int b=0; b<4; b++) {
+         fm.read(new BlockId("testfile", b), p);
+         int expected = NUM_TXS - (NUM_TXS - b) % 4;
+         for (int k=0; k<20; k++)
+            if (p.getInt(k*Integer.BYTES) != expected)
+               ok = false;
+      }
+      System.out.println("committed values survived: " + ok);
+      fm.read(new BlockId("testfile", 4), p);
+      ok = true;
+      for (int k=0; k<10; k++)
+         if (p.getInt(k*Integer.BYTES) != 0)
+            ok = false;
+      System.out.println("unfinished transaction was undone: " + ok);
+   }
+}
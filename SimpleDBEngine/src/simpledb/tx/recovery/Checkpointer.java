@@ -0,0 +1,64 @@
+package simpledb.tx.recovery;
+
+import simpledb.buffer.BufferMgr;
+import simpledb.log.LogMgr;
+
+/**
+ * The background checkpointer.
+ * The checkpointer periodically writes a fuzzy checkpoint
+ * and then deletes the log segments that recovery can no
+ * longer need. Transactions keep running during a checkpoint,
+ * so the time that recovery takes after a crash is bounded
+ * by the checkpoint interval instead of the age of the log.
+ */
+class Checkpointer implements Runnable {
+   private LogMgr lm;
+   private BufferMgr bm;
+   private long interval;
+   private volatile boolean stopped = false;
+   private long checkpoints = 0;
+
+   /**
+    * Create a checkpointer for the specified log and buffer managers.
+    * @param lm the log manager
+    * @param bm the buffer manager
+    * @param interval the time between checkpoints, in milliseconds
+    */
+   Checkpointer(LogMgr lm, BufferMgr bm, long interval) {
+      this.lm = lm;
+      this.bm = bm;
+      this.interval = interval;
+   }
+
+   public void run() {
+      while (!stopped) {
+         try {
+            Thread.sleep(interval);
+         }
+         catch(InterruptedException e) {
+            return;
+         }
+         if (stopped)
+            return;
+         RecoveryMgr.checkpoint(lm, bm);
+         synchronized (this) {
+            checkpoints++;
+         }
+      }
+   }
+
+   /**
+    * Ask the checkpointer to stop before its next checkpoint.
+    */
+   void stop() {
+      stopped = true;
+   }
+
+   /**
+    * Return the number of checkpoints written by the checkpointer.
+    * @return the number of checkpoints
+    */
+   synchronized long checkpoints() {
+      return checkpoints;
+   }
+}
@@ -1,7 +1,8 @@
 package simpledb.tx.recovery;
 
-import simpledb.file.Page;
-import simpledb.log.LogMgr;
+import simpledb.file.*;
+import simpledb.buffer.Buffer;
+import simpledb.log.*;
 import simpledb.tx.Transaction;
 
 /**
@@ -11,9 +12,8 @@ import simpledb.tx.Transaction;
 public class CommitRecord implements LogRecord {
    private int txnum;
 
-   public CommitRecord(Page p) {
-      int tpos = Integer.BYTES;
-      txnum = p.getInt(tpos);
+   public CommitRecord(RecordReader r) {
+      txnum = r.readInt();
    }
 
    public int op() {
@@ -30,6 +30,16 @@ public class CommitRecord implements LogRecord {
     */
    public void undo(Transaction tx) {}
 
+   public BlockId block() {
+      return null;
+   }
+
+   /**
+    * Does nothing, because a commit record
+    * contains no redo information.
+    */
+   public void redo(Buffer buff, int txnum, long lsn) {}
+
    public String toString() {
       return "<COMMIT " + txnum + ">";
    }
@@ -40,11 +50,8 @@ public class CommitRecord implements LogRecord {
     * followed by the transaction id.
     * @return the LSN of the last log value
     */
-   public static int writeToLog(LogMgr lm, int txnum) {
-      byte[] rec = new byte[2*Integer.BYTES];
-      Page p = new Page(rec);
-      p.setInt(0, COMMIT);
-      p.setInt(Integer.BYTES, txnum);
+   public static long writeToLog(LogMgr lm, int txnum) {
+      byte[] rec = new RecordWriter(lm).writeInt(COMMIT).writeInt(txnum).toBytes();
       return lm.append(rec);
    }
 }
@@ -0,0 +1,168 @@
+package simpledb.tx.recovery;
+
+import java.util.*;
+import simpledb.file.*;
+import simpledb.buffer.Buffer;
+import simpledb.log.*;
+import simpledb.tx.Transaction;
+
+/**
+ * The FUZZYCHECKPOINT log record, written while transactions
+ * keep running. A checkpoint records the end of the log when it
+ * began, the transactions that were active then, each with the
+ * log position at which it started, and the dirty page table.
+ * These tables may not fit in one log record, so a checkpoint
+ * is written as a sequence of pieces; it is complete only if
+ * its last piece is in the log.
+ */
+public class FuzzyCheckpointRecord implements LogRecord {
+   private static final int HEADER_SIZE = 25;
+   private static final int TX_ENTRY = 0, DIRTY_ENTRY = 1;
+   private long begin;
+   private int piece, pieces;
+   private Map<Integer,Long> txs = new HashMap<>();
+   private Map<BlockId,Long> dirty = new HashMap<>();
+
+   /**
+    * Create a log record by reading the values from the log.
+    * @param r the reader positioned after the operator
+    */
+   public FuzzyCheckpointRecord(RecordReader r) {
+      begin = r.readLong();
+      piece = r.readInt();
+      pieces = r.readInt();
+      while (r.hasMore()) {
+         if (r.readInt() == TX_ENTRY)
+            txs.put(r.readInt(), r.readLong());
+         else
+            dirty.put(r.readBlockId(), r.readLong());
+      }
+   }
+
+   public int op() {
+      return FUZZYCHECKPOINT;
+   }
+
+   /**
+    * Checkpoint records have no associated transaction,
+    * and so the method returns a "dummy", negative txid.
+    */
+   public int txNumber() {
+      return -1; // dummy value
+   }
+
+   /**
+    * Does nothing, because a checkpoint record
+    * contains no undo information.
+    */
+   public void undo(Transaction tx) {}
+
+   public BlockId block() {
+      return null;
+   }
+
+   /**
+    * Does nothing, because a checkpoint record
+    * contains no redo information.
+    */
+   public void redo(Buffer buff, int txnum, long lsn) {}
+
+   /**
+    * Returns the LSN at the end of the log when the
+    * checkpoint began; every piece of a checkpoint has the same one.
+    * @return the LSN at which the checkpoint began
+    */
+   public long begin() {
+      return begin;
+   }
+
+   /**
+    * Returns the number of this piece of the checkpoint,
+    * starting from 0.
+    * @return the piece number
+    */
+   public int piece() {
+      return piece;
+   }
+
+   /**
+    * Returns the number of pieces in the checkpoint.
+    * @return the number of pieces
+    */
+   public int pieces() {
+      return pieces;
+   }
+
+   /**
+    * Returns the transactions in this piece that were
+    * active when the checkpoint began. Each is mapped to the
+    * end of the log when it started; all of its log records
+    * lie after that position.
+    * @return the active transactions and their starting positions
+    */
+   public Map<Integer,Long> activeTxs() {
+      return txs;
+   }
+
+   /**
+    * Returns the dirty pages in this piece, each mapped
+    * to the LSN of the first record that modified it
+    * since it was last written.
+    * @return the dirty pages and their recovery LSNs
+    */
+   public Map<BlockId,Long> dirtyPages() {
+      return dirty;
+   }
+
+   public String toString() {
+      return "<FUZZYCHECKPOINT " + begin + " " + (piece+1) + "/" + pieces
+            + " " + txs + " " + dirty + ">";
+   }
+
+   /**
+    * A static method to write a fuzzy checkpoint to the log.
+    * The tables are split into as many records as needed,
+    * each containing the FUZZYCHECKPOINT operator, the beginning
+    * of the checkpoint, the piece number and the number of pieces,
+    * followed by entries for the transactions and the dirty
+    * pages of the piece, each tagged with its kind.
+    * @param lm the log manager
+    * @param begin the LSN at the end of the log when the checkpoint began
+    * @param txs the active transactions and their starting positions
+    * @param dirty the dirty pages and their recovery LSNs
+    * @return the LSN of the last piece
+    */
+   public static long writeToLog(LogMgr lm, long begin, Map<Integer,Long> txs,
+                                 Map<BlockId,Long> dirty) {
+      List<byte[]> entries = new ArrayList<>();
+      for (Map.Entry<Integer,Long> e : txs.entrySet())
+         entries.add(new RecordWriter(lm).writeInt(TX_ENTRY)
+               .writeInt(e.getKey()).writeLong(e.getValue()).toBytes());
+      for (Map.Entry<BlockId,Long> e : dirty.entrySet())
+         entries.add(new RecordWriter(lm).writeInt(DIRTY_ENTRY)
+               .writeBlockId(e.getKey()).writeLong(e.getValue()).toBytes());
+      int maxsize = lm.maxRecordSize() - HEADER_SIZE;
+      List<List<byte[]>> recs = new ArrayList<>();
+      List<byte[]> rec = new ArrayList<>();
+      int size = 0;
+      for (byte[] entry : entries) {
+         if (size + entry.length > maxsize) {
+            recs.add(rec);
+            rec = new ArrayList<>();
+            size = 0;
+         }
+         rec.add(entry);
+         size += entry.length;
+      }
+      recs.add(rec);
+      long lsn = -1;
+      for (int i=0; i<recs.size(); i++) {
+         RecordWriter w = new RecordWriter(lm).writeInt(FUZZYCHECKPOINT)
+               .writeLong(begin).writeInt(i).writeInt(recs.size());
+         for (byte[] entry : recs.get(i))
+            w.writeBytes(entry);
+         lsn = lm.append(w.toBytes());
+      }
+      return lsn;
+   }
+}
@@ -1,6 +1,8 @@
 package simpledb.tx.recovery;
 
-import simpledb.file.Page;
+import simpledb.file.*;
+import simpledb.buffer.Buffer;
+import simpledb.log.*;
 import simpledb.tx.Transaction;
 
 /**
@@ -10,7 +12,10 @@ import simpledb.tx.Transaction;
 public interface LogRecord {
    static final int CHECKPOINT = 0, START = 1,
          COMMIT = 2, ROLLBACK  = 3,
-         SETINT = 4, SETSTRING = 5;
+         SETINT = 4, SETSTRING = 5,
+         FUZZYCHECKPOINT = 6,
+         UNDO_SETINT = 7, UNDO_SETSTRING = 8,
+         ROWIMAGE = 9;
 
    /**
     * Returns the log record's type. 
@@ -25,6 +30,13 @@ public interface LogRecord {
     */
    int txNumber();
 
+   /**
+    * Returns the block that the log record modifies,
+    * or null if it modifies no block.
+    * @return the modified block
+    */
+   BlockId block();
+
    /**
     * Undoes the operation encoded by this log record.
     * The only log record types for which this method
@@ -33,28 +45,51 @@ public interface LogRecord {
     */
    void undo(Transaction tx);
 
+   /**
+    * Redoes the operation encoded by this log record
+    * on the buffer holding the modified block, if the page
+    * does not already hold it. Recovery redoes the records
+    * of different blocks concurrently, without locking:
+    * the caller pins the buffer, and no other transaction runs.
+    * The only log record types for which this method
+    * does anything interesting are SETINT and SETSTRING,
+    * and their compensation records.
+    * @param buff the pinned buffer holding the modified block
+    * @param txnum the id of the transaction that is performing the redo
+    * @param lsn the LSN of the log record
+    */
+   void redo(Buffer buff, int txnum, long lsn);
+
    /**
     * Interpret the bytes returned by the log iterator.
-    * @param bytes
-    * @return
+    * @param bytes the bytes of the log record
+    * @param lm the log manager, whose file dictionary names the blocks
+    * @return the log record
     */
-   static LogRecord createLogRecord(byte[] bytes) {
-      Page p = new Page(bytes);
-      switch (p.getInt(0)) {
+   static LogRecord createLogRecord(byte[] bytes, LogMgr lm) {
+      RecordReader r = new RecordReader(bytes, lm);
+      int op = r.readInt();
+      switch (op) {
       case CHECKPOINT: 
          return new CheckpointRecord();
       case START: 
-         return new StartRecord(p);
+         return new StartRecord(r);
       case COMMIT: 
-         return new CommitRecord(p);
+         return new CommitRecord(r);
       case ROLLBACK: 
-         return new RollbackRecord(p);
+         return new RollbackRecord(r);
       case SETINT: 
-         return new SetIntRecord(p);
+      case UNDO_SETINT: 
+         return new SetIntRecord(op, r);
       case SETSTRING: 
-         return new SetStringRecord(p);
+      case UNDO_SETSTRING: 
+         return new SetStringRecord(op, r);
+      case FUZZYCHECKPOINT: 
+         return new FuzzyCheckpointRecord(r);
+      case ROWIMAGE: 
+         return new RowImageRecord(r);
       default:
          return null;
       }
    }
-}
\ No newline at end of file
+}
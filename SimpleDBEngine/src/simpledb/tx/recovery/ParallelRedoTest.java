@@ -0,0 +1,62 @@
+package simpledb.tx.recovery;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+import simpledb.tx.Transaction;
+
+/**
+ * Like RecoveryTest, this test is run twice.
+ * The first run commits many transactions spread over many
+ * pages, none of which is written, as if the server had crashed.
+ * The second run recovers the database, timing the recovery,
+ * and checks that every page was redone.
+ */
+public class ParallelRedoTest {
+   private static final int NUM_PAGES = 500;
+   private static final int NUM_TXS = 20000;
+   private static final int NUM_VALUES = 10;
+
+   public static void main(String[] args) {
+      SimpleDB.WRITER_INTERVAL = 0;
+      SimpleDB.CHECKPOINT_INTERVAL = 0;
+      SimpleDB db = new SimpleDB("paralleltest", 400, NUM_PAGES + 50);
+      if (db.fileMgr().length("pfile") == 0)
+         run(db);
+      else
+         recover(db);
+   }
+
+   private static void run(SimpleDB db) {
+      db.fileMgr().appendMany("pfile", NUM_PAGES);
+      for (int i=0; i<NUM_TXS; i++) {
+         Transaction tx = db.newTx();
+         BlockId blk = new BlockId("pfile", i % NUM_PAGES);
+         tx.pin(blk);
+         for (int k=0; k<NUM_VALUES; k++)
+            tx.setInt(blk, k*Integer.BYTES, i, true);
+         tx.commit();
+      }
+      System.out.println("committed " + NUM_TXS + " transactions; the log has "
+            + db.logMgr().lastLSN() / db.fileMgr().blockSize() + " blocks");
+   }
+
+   private static void recover(SimpleDB db) {
+      FileMgr fm = db.fileMgr();
+      Transaction tx = db.newTx();
+      long start = System.currentTimeMillis();
+      tx.recover();
+      long elapsed = System.currentTimeMillis() - start;
+      System.out.println("the recovery took " + elapsed + " ms");
+
+      Page p = new Page(fm.blockSize());
+      boolean ok = true;
+      for (int b=0; b<NUM_PAGES; b++) {
+         fm.read(new BlockId("pfile", b), p);
+         int expected = NUM_TXS - NUM_PAGES + b;
+         for (int k=0; k<NUM_VALUES; k++)
+            if (p.getInt(k*Integer.BYTES) != expected)
+               ok = false;
+      }
+      System.out.println("every page was redone: " + ok);
+   }
+}
@@ -1,6 +1,7 @@
 package simpledb.tx.recovery;
 
 import java.util.*;
+import java.util.concurrent.*;
 import simpledb.file.*;
 import simpledb.log.*;
 import simpledb.buffer.*;
@@ -9,13 +10,33 @@ import static simpledb.tx.recovery.LogRecord.*;
 
 /**
  * The recovery manager.  Each transaction has its own recovery manager.
+ * The recovery managers share a table of the active transactions,
+ * which is saved in the log by fuzzy checkpoints.
+ * <P>
+ * Update records hold both the old and the new value, so a
+ * committing transaction only has to flush the log: its modified
+ * pages are written later, when the buffers are needed or by
+ * the background writer. Pages modified by uncommitted
+ * transactions may be written too. After a crash, recovery
+ * redoes the changes that did not reach the disk and undoes
+ * those of the transactions that did not finish.
  * @author Edward Sciore
  */
 public class RecoveryMgr {
+   /**
+    * The active transactions, each mapped to the end of the log
+    * when it started. This variable is static because 
+    * all transactions share the same table.
+    */
+   private static Map<Integer,Long> activeTxs = new ConcurrentHashMap<>();
+   private static Checkpointer checkpointer = null;
    private LogMgr lm;
    private BufferMgr bm;
    private Transaction tx;
    private int txnum;
+   private boolean unlogged = false;
+   private RowImageRecord pending = null;
+   private volatile Buffer pendingBuff = null;
 
    /**
     * Create a recovery manager for the specified transaction.
@@ -26,61 +47,227 @@ public class RecoveryMgr {
       this.txnum = txnum;
       this.lm = lm;
       this.bm = bm;
+      // enter the transaction before its first record,
+      // so that no checkpoint can miss it
+      activeTxs.put(txnum, lm.lastLSN());
       StartRecord.writeToLog(lm, txnum);
    }
 
    /**
     * Write a commit record to the log, and flushes it to disk.
+    * The transaction's modified pages are not written, except
+    * if it changed some of them without logging the change,
+    * since redo could not restore such a change.
+    * The transaction stays in the table of active transactions
+    * until the commit record is on disk.
     */
    public void commit() {
-      bm.flushAll(txnum);
-      int lsn = CommitRecord.writeToLog(lm, txnum);
-      lm.flush(lsn);
+      logChanges();
+      if (unlogged)
+         bm.flushAll(txnum);
+      long lsn = CommitRecord.writeToLog(lm, txnum);
+      lm.flushCommit(lsn);
+      activeTxs.remove(txnum);
    }
 
    /**
-    * Write a rollback record to the log and flush it to disk.
+    * Undo the transaction's changes, logging each undo in a
+    * compensation record, then write the transaction's pages
+    * and write a rollback record to the log and flush it to disk.
     */
    public void rollback() {
+      logChanges();
       doRollback();
       bm.flushAll(txnum);
-      int lsn = RollbackRecord.writeToLog(lm, txnum);
-      lm.flush(lsn);
+      long lsn = RollbackRecord.writeToLog(lm, txnum);
+      lm.flushCommit(lsn);
+      activeTxs.remove(txnum);
    }
 
    /**
     * Recover uncompleted transactions from the log
     * and then write a quiescent checkpoint record to the log and flush it.
+    * The log before the checkpoint is no longer needed, and is truncated.
     */
    public void recover() {
       doRecover();
       bm.flushAll(txnum);
-      int lsn = CheckpointRecord.writeToLog(lm);
+      long lsn = CheckpointRecord.writeToLog(lm);
+      lm.flush(lsn);
+      lm.truncate(lsn - 1); // keep the checkpoint record itself
+   }
+
+   /**
+    * Write a fuzzy checkpoint to the log and flush it,
+    * then truncate the log before the oldest record that
+    * recovery from this checkpoint could need.
+    * That is the oldest of the beginning of the checkpoint,
+    * the start of each active transaction, and the first
+    * unwritten modification of each dirty page.
+    * The pages that were written before the checkpoint are
+    * forced to disk first, since their log records may be deleted.
+    * Transactions are not stopped during the checkpoint.
+    * @param lm the log manager
+    * @param bm the buffer manager
+    */
+   public static synchronized void checkpoint(LogMgr lm, BufferMgr bm) {
+      long begin = lm.lastLSN();
+      Map<Integer,Long> txs = new HashMap<>(activeTxs);
+      Map<BlockId,Long> dirty = bm.dirtyPages();
+      long lsn = FuzzyCheckpointRecord.writeToLog(lm, begin, txs, dirty);
       lm.flush(lsn);
+      bm.forceWrittenPages();
+      long oldest = begin;
+      for (long start : txs.values())
+         oldest = Math.min(oldest, start);
+      for (long reclsn : dirty.values())
+         oldest = Math.min(oldest, reclsn - 1);
+      lm.truncate(oldest);
    }
 
    /**
-    * Write a setint record to the log and return its lsn.
+    * Starts a daemon thread that writes a fuzzy checkpoint
+    * at regular intervals.
+    * @param lm the log manager
+    * @param bm the buffer manager
+    * @param interval the time between checkpoints, in milliseconds
+    */
+   public static synchronized void startCheckpointer(LogMgr lm, BufferMgr bm, long interval) {
+      if (checkpointer != null)
+         return;
+      checkpointer = new Checkpointer(lm, bm, interval);
+      Thread t = new Thread(checkpointer, "simpledb-checkpointer");
+      t.setDaemon(true);
+      t.start();
+   }
+
+   /**
+    * Stops the checkpointer, if it is running.
+    */
+   public static synchronized void stopCheckpointer() {
+      if (checkpointer != null)
+         checkpointer.stop();
+      checkpointer = null;
+   }
+
+   /**
+    * Returns the number of checkpoints written by the checkpointer.
+    * @return the number of checkpoints
+    */
+   public static synchronized long checkpoints() {
+      return (checkpointer == null) ? 0 : checkpointer.checkpoints();
+   }
+
+   /**
+    * Add a change to an integer to the transaction's row
+    * image of the page. The row image is written to the log
+    * when the transaction turns to another page, unpins
+    * the page, or finishes, or before the page is written,
+    * and the page takes its LSN then.
     * @param buff the buffer containing the page
     * @param offset the offset of the value in the page
     * @param newval the value to be written
     */
-   public int setInt(Buffer buff, int offset, int newval) {
+   public void setInt(Buffer buff, int offset, int newval) {
       int oldval = buff.contents().getInt(offset);
+      rowImage(buff, RowImageRecord.maxIntChangeSize()).addInt(offset, oldval, newval);
+   }
+
+   /**
+    * Write an undo_setint compensation record to the log
+    * and return its lsn.
+    * @param buff the buffer containing the page
+    * @param offset the offset of the value in the page
+    * @param val the value to be restored
+    */
+   public long undoSetInt(Buffer buff, int offset, int val) {
+      int curval = buff.contents().getInt(offset);
       BlockId blk = buff.block();
-      return SetIntRecord.writeToLog(lm, txnum, blk, offset, oldval);
+      return SetIntRecord.writeCompensationToLog(lm, txnum, blk, offset, curval, val);
    }
 
    /**
-    * Write a setstring record to the log and return its lsn.
+    * Add a change to a string to the transaction's row
+    * image of the page, as for {@link #setInt}.
     * @param buff the buffer containing the page
     * @param offset the offset of the value in the page
     * @param newval the value to be written
     */
-   public int setString(Buffer buff, int offset, String newval) {
+   public void setString(Buffer buff, int offset, String newval) {
       String oldval = buff.contents().getString(offset);
+      int size = RowImageRecord.maxStringChangeSize(oldval, newval);
+      rowImage(buff, size).addString(offset, oldval, newval);
+   }
+
+   /**
+    * Write an undo_setstring compensation record to the log
+    * and return its lsn.
+    * @param buff the buffer containing the page
+    * @param offset the offset of the value in the page
+    * @param val the value to be restored
+    */
+   public long undoSetString(Buffer buff, int offset, String val) {
+      String curval = buff.contents().getString(offset);
       BlockId blk = buff.block();
-      return SetStringRecord.writeToLog(lm, txnum, blk, offset, oldval);
+      return SetStringRecord.writeCompensationToLog(lm, txnum, blk, offset, curval, val);
+   }
+
+   /**
+    * Write the transaction's row image of the specified page
+    * to the log, if it has one.
+    * @param buff the buffer containing the page
+    */
+   public void logChanges(Buffer buff) {
+      if (pendingBuff == buff)
+         logChanges();
+   }
+
+   /**
+    * Write the transaction's pending row image to the log,
+    * and give its LSN to the page.
+    * This method is also the log hook of the page, which
+    * runs in the thread that writes the page.
+    */
+   private void logChanges() {
+      Buffer buff = pendingBuff;
+      if (buff == null)
+         return;
+      synchronized (buff) {
+         if (pendingBuff != buff)
+            return;
+         long lsn = pending.writeToLog(lm);
+         buff.setModified(txnum, lsn);
+         buff.setLogHook(null);
+         pending = null;
+         pendingBuff = null;
+      }
+   }
+
+   /**
+    * Returns the row image for the page in the specified buffer,
+    * with room for a change of the specified size.
+    * The pending row image is written first if it is for
+    * another page, or if the change would not fit in it.
+    */
+   private RowImageRecord rowImage(Buffer buff, int changesize) {
+      int maxsize = lm.maxRecordSize() - RowImageRecord.HEADER_SIZE;
+      if (pending != null && (pendingBuff != buff || pending.size() + changesize > maxsize))
+         logChanges();
+      if (pending == null) {
+         pending = new RowImageRecord(lm, txnum, buff.block());
+         pendingBuff = buff;
+         buff.setLogHook(this::logChanges);
+      }
+      return pending;
+   }
+
+   /**
+    * Note that the transaction has changed a page without
+    * logging it, as is done when formatting a new page.
+    * The transaction's pages will be written when it commits.
+    */
+   public void unloggedChange() {
+      unlogged = true;
    }
 
    /**
@@ -94,7 +281,7 @@ public class RecoveryMgr {
       Iterator<byte[]> iter = lm.iterator();
       while (iter.hasNext()) {
          byte[] bytes = iter.next();
-         LogRecord rec = LogRecord.createLogRecord(bytes); 
+         LogRecord rec = LogRecord.createLogRecord(bytes, lm); 
          if (rec.txNumber() == txnum) {
             if (rec.op() == START)
                return;
@@ -104,24 +291,151 @@ public class RecoveryMgr {
    }
 
    /**
-    * Do a complete database recovery.
-    * The method iterates through the log records.
-    * Whenever it finds a log record for an unfinished
-    * transaction, it calls undo() on that record.
-    * The method stops when it encounters a CHECKPOINT record
-    * or the end of the log.
+    * Do a complete database recovery, in three passes.
+    * The analysis pass finds the unfinished transactions
+    * and the pages that may lack some logged changes.
+    * The redo pass repeats history: it redoes every change
+    * that such a page does not hold, whichever transaction
+    * made it, compensation records included.
+    * The undo pass then undoes the changes of the unfinished
+    * transactions, logging compensation records, so that
+    * a crash during recovery does no harm.
     */
    private void doRecover() {
-      Collection<Integer> finishedTxs = new ArrayList<>();
-      Iterator<byte[]> iter = lm.iterator();
+      Map<BlockId,Long> dirty = new HashMap<>();
+      Collection<Integer> losers = new HashSet<>();
+      long stopLSN = analyze(dirty, losers);
+      losers.remove(txnum);
+      redo(dirty);
+      undo(losers, stopLSN);
+   }
+
+   /**
+    * Read the log backwards up to the most recent CHECKPOINT
+    * record or complete fuzzy checkpoint, or else to the
+    * beginning of the log.
+    * The method fills in the dirty page table, mapping each
+    * page changed in that part of the log or dirty at the
+    * checkpoint to the LSN of its oldest such change,
+    * and the transactions that did not finish.
+    * It returns the log position before which there are no
+    * records of those transactions: the beginning of the
+    * checkpoint, or the start of the oldest unfinished
+    * transaction that was active at the checkpoint.
+    * @param dirty the dirty page table to fill in
+    * @param losers the set of unfinished transactions to fill in
+    * @return the position at which the undo pass can stop
+    */
+   private long analyze(Map<BlockId,Long> dirty, Collection<Integer> losers) {
+      Collection<Integer> finishedTxs = new HashSet<>();
+      Map<Integer,Long> ckptTxs = new HashMap<>();
+      Map<BlockId,Long> ckptDirty = new HashMap<>();
+      long ckptBegin = -1;
+      boolean complete = false;
+      LogIterator iter = lm.iterator();
       while (iter.hasNext()) {
          byte[] bytes = iter.next();
-         LogRecord rec = LogRecord.createLogRecord(bytes);
+         long lsn = iter.lsn();
+         if (complete && lsn <= ckptBegin)
+            break;
+         LogRecord rec = LogRecord.createLogRecord(bytes, lm);
          if (rec.op() == CHECKPOINT)
-            return;
+            return lsn;
+         if (rec.op() == FUZZYCHECKPOINT) {
+            FuzzyCheckpointRecord ckpt = (FuzzyCheckpointRecord) rec;
+            if (complete)
+               continue;
+            if (ckpt.piece() == ckpt.pieces() - 1) {
+               ckptBegin = ckpt.begin();
+               ckptTxs.clear();
+               ckptDirty.clear();
+            }
+            if (ckpt.begin() == ckptBegin) {
+               ckptTxs.putAll(ckpt.activeTxs());
+               ckptDirty.putAll(ckpt.dirtyPages());
+               complete = (ckpt.piece() == 0);
+            }
+            continue;
+         }
          if (rec.op() == COMMIT || rec.op() == ROLLBACK)
             finishedTxs.add(rec.txNumber());
          else if (!finishedTxs.contains(rec.txNumber()))
+            losers.add(rec.txNumber());
+         BlockId blk = rec.block();
+         if (blk != null)
+            dirty.put(blk, lsn); // reading backwards, the oldest change comes last
+      }
+      if (!complete)
+         return 0;
+      for (Map.Entry<BlockId,Long> e : ckptDirty.entrySet())
+         dirty.merge(e.getKey(), e.getValue(), Math::min);
+      long stopLSN = ckptBegin;
+      for (Map.Entry<Integer,Long> e : ckptTxs.entrySet())
+         if (!finishedTxs.contains(e.getKey())) {
+            losers.add(e.getKey());
+            stopLSN = Math.min(stopLSN, e.getValue());
+         }
+      return stopLSN;
+   }
+
+   /**
+    * Read the log forward from the oldest change in the
+    * dirty page table, and redo each change to a page in the
+    * table that is not older than the page's entry.
+    * The changes are grouped by page, and the pages are redone
+    * concurrently by a fork-join pool; each page's changes are
+    * redone in log order. The pool has no more threads than
+    * there are available buffers, each thread pinning one page
+    * at a time.
+    * Each record checks the page's LSN, so changes that
+    * the page already holds are not redone.
+    * Temporary files do not survive a restart, and are skipped.
+    * @param dirty the dirty page table
+    */
+   private void redo(Map<BlockId,Long> dirty) {
+      if (dirty.isEmpty())
+         return;
+      Map<BlockId,RedoTask.PageRecords> pages = new HashMap<>();
+      long start = Collections.min(dirty.values());
+      ForwardLogIterator iter = lm.forwardIterator(start - 1);
+      while (iter.hasNext()) {
+         LogRecord rec = LogRecord.createLogRecord(iter.next(), lm);
+         BlockId blk = rec.block();
+         if (blk == null || blk.fileName().startsWith("temp"))
+            continue;
+         Long reclsn = dirty.get(blk);
+         if (reclsn != null && iter.lsn() >= reclsn)
+            pages.computeIfAbsent(blk, RedoTask.PageRecords::new).add(rec, iter.lsn());
+      }
+      if (pages.isEmpty())
+         return;
+      int threads = Math.min(Runtime.getRuntime().availableProcessors(), bm.available());
+      ForkJoinPool pool = new ForkJoinPool(Math.max(threads, 1));
+      try {
+         List<RedoTask.PageRecords> work = new ArrayList<>(pages.values());
+         pool.invoke(new RedoTask(bm, txnum, work, 0, work.size()));
+      }
+      finally {
+         pool.shutdown();
+      }
+   }
+
+   /**
+    * Read the log backwards, undoing the changes of the
+    * unfinished transactions, until the specified position.
+    * @param losers the unfinished transactions
+    * @param stopLSN the position before which they have no records
+    */
+   private void undo(Collection<Integer> losers, long stopLSN) {
+      if (losers.isEmpty())
+         return;
+      LogIterator iter = lm.iterator();
+      while (iter.hasNext()) {
+         byte[] bytes = iter.next();
+         if (iter.lsn() <= stopLSN)
+            return;
+         LogRecord rec = LogRecord.createLogRecord(bytes, lm);
+         if (losers.contains(rec.txNumber()))
             rec.undo(tx);
       }
    }
@@ -0,0 +1,78 @@
+package simpledb.tx.recovery;
+
+import java.util.*;
+import java.util.concurrent.RecursiveAction;
+import simpledb.file.BlockId;
+import simpledb.buffer.*;
+
+/**
+ * A fork-join task that redoes the log records of a
+ * range of pages during recovery. The task splits its range
+ * in halves until it holds a single page, whose records are
+ * redone in log order while its buffer stays pinned.
+ * The records of different pages are independent,
+ * so the pages are redone concurrently.
+ */
+class RedoTask extends RecursiveAction {
+   private static final long serialVersionUID = 1L;
+   private BufferMgr bm;
+   private int txnum;
+   private List<PageRecords> pages;
+   private int lo, hi;
+
+   /**
+    * Create a task that redoes the records of pages lo to hi-1.
+    * @param bm the buffer manager
+    * @param txnum the id of the recovering transaction
+    * @param pages the records to redo, grouped by page
+    * @param lo the first page of the task
+    * @param hi the page after the last page of the task
+    */
+   RedoTask(BufferMgr bm, int txnum, List<PageRecords> pages, int lo, int hi) {
+      this.bm = bm;
+      this.txnum = txnum;
+      this.pages = pages;
+      this.lo = lo;
+      this.hi = hi;
+   }
+
+   protected void compute() {
+      if (hi - lo == 1) {
+         pages.get(lo).redo(bm, txnum);
+         return;
+      }
+      int mid = (lo + hi) >>> 1;
+      invokeAll(new RedoTask(bm, txnum, pages, lo, mid),
+                new RedoTask(bm, txnum, pages, mid, hi));
+   }
+
+   /**
+    * The log records to be redone on one page,
+    * with their LSNs, in log order.
+    */
+   static class PageRecords {
+      private BlockId blk;
+      private List<LogRecord> recs = new ArrayList<>();
+      private List<Long> lsns = new ArrayList<>();
+
+      PageRecords(BlockId blk) {
+         this.blk = blk;
+      }
+
+      void add(LogRecord rec, long lsn) {
+         recs.add(rec);
+         lsns.add(lsn);
+      }
+
+      void redo(BufferMgr bm, int txnum) {
+         Buffer buff = bm.pin(blk);
+         try {
+            for (int i=0; i<recs.size(); i++)
+               recs.get(i).redo(buff, txnum, lsns.get(i));
+         }
+         finally {
+            bm.unpin(buff);
+         }
+      }
+   }
+}
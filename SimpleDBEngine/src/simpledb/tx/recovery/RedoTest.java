@@ -0,0 +1,87 @@
+package simpledb.tx.recovery;
+
+import simpledb.server.SimpleDB;
+import simpledb.file.*;
+import simpledb.buffer.BufferMgr;
+import simpledb.tx.Transaction;
+
+/**
+ * Like RecoveryTest, this test is run twice.
+ * The first run commits a transaction whose pages are never
+ * written, rolls back another, and leaves a third unfinished
+ * after one of its pages has been written, as if the server
+ * had crashed. The second run recovers the database: the
+ * committed changes must be redone from the log, and the
+ * unfinished ones undone.
+ */
+public class RedoTest {
+   private static BlockId blk0 = new BlockId("redofile", 0);
+   private static BlockId blk1 = new BlockId("redofile", 1);
+   private static BlockId blk2 = new BlockId("redofile", 2);
+
+   public static void main(String[] args) {
+      SimpleDB.WRITER_INTERVAL = 0;
+      SimpleDB db = new SimpleDB("redotest", 400, 8);
+      if (db.fileMgr().length("redofile") == 0)
+         run(db);
+      else
+         recover(db);
+   }
+
+   private static void run(SimpleDB db) {
+      FileMgr fm = db.fileMgr();
+      BufferMgr bm = db.bufferMgr();
+      for (int b=0; b<3; b++)
+         fm.append("redofile");
+
+      Transaction tx1 = db.newTx();
+      tx1.pin(blk0);
+      for (int k=0; k<10; k++)
+         tx1.setInt(blk0, k*Integer.BYTES, 100+k, true);
+      tx1.setString(blk0, 80, "committed", true);
+      tx1.commit();
+
+      Transaction tx2 = db.newTx();
+      tx2.pin(blk1);
+      tx2.setInt(blk1, 0, 200, true);
+      tx2.setString(blk1, 40, "rolled back", true);
+      tx2.rollback();
+
+      Transaction tx3 = db.newTx();
+      tx3.pin(blk1);
+      tx3.pin(blk2);
+      tx3.setInt(blk1, 80, 300, true);
+      bm.flushAll(3); // tx3 is the third transaction
+      tx3.setString(blk2, 0, "unfinished", true);
+
+      Page p = new Page(fm.blockSize());
+      fm.read(blk0, p);
+      System.out.println("the committed page was not written: "
+            + (p.getInt(0) == 0));
+      fm.read(blk1, p);
+      System.out.println("the unfinished change was written: "
+            + (p.getInt(80) == 300));
+   }
+
+   private static void recover(SimpleDB db) {
+      FileMgr fm = db.fileMgr();
+      Transaction tx = db.newTx();
+      tx.recover();
+
+      Page p = new Page(fm.blockSize());
+      fm.read(blk0, p);
+      boolean ok = p.getString(80).equals("committed");
+      for (int k=0; k<10; k++)
+         if (p.getInt(k*Integer.BYTES) != 100+k)
+            ok = false;
+      System.out.println("committed changes were redone: " + ok);
+      fm.read(blk1, p);
+      System.out.println("rolled back changes stayed undone: "
+            + (p.getInt(0) == 0 && p.getString(40).equals("")));
+      fm.read(blk2, p);
+      System.out.println("unfinished changes were undone: "
+            + p.getString(0).equals(""));
+      fm.read(blk1, p);
+      System.out.println("including the written one: " + (p.getInt(80) == 0));
+   }
+}
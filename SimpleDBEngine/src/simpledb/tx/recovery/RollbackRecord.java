@@ -1,7 +1,8 @@
 package simpledb.tx.recovery;
 
-import simpledb.file.Page;
-import simpledb.log.LogMgr;
+import simpledb.file.*;
+import simpledb.buffer.Buffer;
+import simpledb.log.*;
 import simpledb.tx.Transaction;
 
 /**
@@ -15,9 +16,8 @@ public class RollbackRecord implements LogRecord {
     * Create a RollbackRecord object.
     * @param txnum the ID of the specified transaction
     */
-   public RollbackRecord(Page p) {
-      int tpos = Integer.BYTES;
-      txnum = p.getInt(tpos);
+   public RollbackRecord(RecordReader r) {
+      txnum = r.readInt();
    }
 
    public int op() {
@@ -34,6 +34,16 @@ public class RollbackRecord implements LogRecord {
     */
    public void undo(Transaction tx) {}
 
+   public BlockId block() {
+      return null;
+   }
+
+   /**
+    * Does nothing, because a rollback record
+    * contains no redo information.
+    */
+   public void redo(Buffer buff, int txnum, long lsn) {}
+
    public String toString() {
       return "<ROLLBACK " + txnum + ">";
    }
@@ -44,11 +54,8 @@ public class RollbackRecord implements LogRecord {
     * followed by the transaction id.
     * @return the LSN of the last log value
     */
-   public static int writeToLog(LogMgr lm, int txnum) {
-      byte[] rec = new byte[2*Integer.BYTES];
-      Page p = new Page(rec);
-      p.setInt(0, ROLLBACK);
-      p.setInt(Integer.BYTES, txnum);
+   public static long writeToLog(LogMgr lm, int txnum) {
+      byte[] rec = new RecordWriter(lm).writeInt(ROLLBACK).writeInt(txnum).toBytes();
       return lm.append(rec);
    }
 }
@@ -0,0 +1,200 @@
+package simpledb.tx.recovery;
+
+import java.util.*;
+import simpledb.file.*;
+import simpledb.buffer.Buffer;
+import simpledb.log.*;
+import simpledb.tx.Transaction;
+
+/**
+ * The ROWIMAGE log record, which holds several changes that
+ * a transaction made to one block, each with its offset and
+ * its previous and new value. The changes that a transaction
+ * makes to a block are collected in one row image until the
+ * transaction turns to another block or unpins the block,
+ * so that inserting or modifying a row writes one log record
+ * instead of one per field.
+ */
+public class RowImageRecord implements LogRecord {
+   /**
+    * An upper bound on the size of the record
+    * without its changes.
+    */
+   static final int HEADER_SIZE = 16;
+   private static final int INT_FIELD = 0, STRING_FIELD = 1;
+   private int txnum;
+   private BlockId blk;
+   private List<Integer> offsets = new ArrayList<>();
+   private List<Object> oldvals = new ArrayList<>();
+   private List<Object> newvals = new ArrayList<>();
+   private RecordWriter changes;
+
+   /**
+    * Create a log record by reading the values from the log.
+    * @param r the reader positioned after the operator
+    */
+   public RowImageRecord(RecordReader r) {
+      txnum = r.readInt();
+      blk = r.readBlockId();
+      while (r.hasMore()) {
+         int type = r.readInt();
+         offsets.add(r.readInt());
+         if (type == INT_FIELD) {
+            oldvals.add(r.readInt());
+            newvals.add(r.readInt());
+         }
+         else {
+            oldvals.add(r.readString());
+            newvals.add(r.readString());
+         }
+      }
+   }
+
+   /**
+    * Create an empty row image for the specified block,
+    * to which changes are added before it is written to the log.
+    * @param lm the log manager
+    * @param txnum the id of the transaction making the changes
+    * @param blk the modified block
+    */
+   public RowImageRecord(LogMgr lm, int txnum, BlockId blk) {
+      this.txnum = txnum;
+      this.blk = blk;
+      changes = new RecordWriter(lm);
+   }
+
+   public int op() {
+      return ROWIMAGE;
+   }
+
+   public int txNumber() {
+      return txnum;
+   }
+
+   public BlockId block() {
+      return blk;
+   }
+
+   /**
+    * Add a change to an integer.
+    * @param offset the offset of the value in the block
+    * @param oldval the previous value
+    * @param newval the new value
+    */
+   public void addInt(int offset, int oldval, int newval) {
+      offsets.add(offset);
+      oldvals.add(oldval);
+      newvals.add(newval);
+      changes.writeInt(INT_FIELD).writeInt(offset).writeInt(oldval).writeInt(newval);
+   }
+
+   /**
+    * Add a change to a string.
+    * @param offset the offset of the value in the block
+    * @param oldval the previous value
+    * @param newval the new value
+    */
+   public void addString(int offset, String oldval, String newval) {
+      offsets.add(offset);
+      oldvals.add(oldval);
+      newvals.add(newval);
+      changes.writeInt(STRING_FIELD).writeInt(offset).writeString(oldval).writeString(newval);
+   }
+
+   /**
+    * Returns the number of bytes taken by the changes
+    * added so far.
+    * @return the size of the changes
+    */
+   public int size() {
+      return changes.size();
+   }
+
+   /**
+    * Returns an upper bound on the size of a change
+    * to an integer.
+    */
+   static int maxIntChangeSize() {
+      return 16;
+   }
+
+   /**
+    * Returns an upper bound on the size of a change
+    * to a string.
+    */
+   static int maxStringChangeSize(String oldval, String newval) {
+      return 16 + oldval.length() + newval.length();
+   }
+
+   public String toString() {
+      StringBuilder sb = new StringBuilder("<ROWIMAGE " + txnum + " " + blk);
+      for (int i=0; i<offsets.size(); i++)
+         sb.append(" " + offsets.get(i) + ":" + oldvals.get(i) + "->" + newvals.get(i));
+      return sb.append(">").toString();
+   }
+
+   /**
+    * Replace the changed values with the values saved in the
+    * log record, starting with the last change.
+    * The method pins a buffer to the specified block,
+    * calls undoSetInt or undoSetString to restore each
+    * saved value, and unpins the buffer.
+    */
+   public void undo(Transaction tx) {
+      tx.pin(blk);
+      for (int i=offsets.size()-1; i>=0; i--) {
+         Object oldval = oldvals.get(i);
+         if (oldval instanceof Integer)
+            tx.undoSetInt(blk, offsets.get(i), (Integer) oldval);
+         else
+            tx.undoSetString(blk, offsets.get(i), (String) oldval);
+      }
+      tx.unpin(blk);
+   }
+
+   /**
+    * Store the new values saved in the log record in the
+    * buffer, unless the page's LSN shows that it already
+    * holds the changes; the page then takes the record's LSN.
+    */
+   public void redo(Buffer buff, int txnum, long lsn) {
+      synchronized (buff) {
+         if (buff.pageLSN() < lsn) {
+            Page p = buff.contents();
+            for (int i=0; i<offsets.size(); i++) {
+               Object newval = newvals.get(i);
+               if (newval instanceof Integer)
+                  p.setInt(offsets.get(i), (Integer) newval);
+               else
+                  p.setString(offsets.get(i), (String) newval);
+            }
+            buff.setModified(txnum, lsn);
+         }
+      }
+   }
+
+   /**
+    * Write the changes to the log.
+    * A single change is written as a SETINT or SETSTRING
+    * record. Otherwise, the log record contains the ROWIMAGE
+    * operator, followed by the transaction id and the modified
+    * block, and then, for each change, its type, its offset,
+    * and the previous and new values.
+    * @param lm the log manager
+    * @return the LSN of the log record
+    */
+   public long writeToLog(LogMgr lm) {
+      if (offsets.size() == 1) {
+         Object oldval = oldvals.get(0);
+         if (oldval instanceof Integer)
+            return SetIntRecord.writeToLog(lm, txnum, blk, offsets.get(0),
+                  (Integer) oldval, (Integer) newvals.get(0));
+         else
+            return SetStringRecord.writeToLog(lm, txnum, blk, offsets.get(0),
+                  (String) oldval, (String) newvals.get(0));
+      }
+      byte[] rec = new RecordWriter(lm).writeInt(ROWIMAGE).writeInt(txnum)
+            .writeBlockId(blk).writeBytes(changes.toBytes()).toBytes();
+      return lm.append(rec);
+   }
+}
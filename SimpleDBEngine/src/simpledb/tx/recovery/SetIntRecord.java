@@ -1,78 +1,109 @@
 package simpledb.tx.recovery;
 
 import simpledb.file.*;
-import simpledb.log.LogMgr;
+import simpledb.buffer.Buffer;
+import simpledb.log.*;
 import simpledb.tx.Transaction;
 
+/**
+ * The SETINT log record, which holds both the previous and
+ * the new value, so that the change can be undone and redone.
+ * The same format is used for the UNDO_SETINT compensation
+ * record, which logs the undoing of a SETINT record;
+ * it is redone after a crash, but never undone.
+ */
 public class SetIntRecord implements LogRecord {
-   private int txnum, offset, val;
+   private int op, txnum, offset, oldval, newval;
    private BlockId blk;
 
    /**
     * Create a new setint log record.
-    * @param bb the bytebuffer containing the log values
+    * @param op the operator, SETINT or UNDO_SETINT
+    * @param r the reader positioned after the operator
     */
-   public SetIntRecord(Page p) {
-      int tpos = Integer.BYTES;
-      txnum = p.getInt(tpos);
-      int fpos = tpos + Integer.BYTES;
-      String filename = p.getString(fpos);
-      int bpos = fpos + Page.maxLength(filename.length());
-      int blknum = p.getInt(bpos);
-      blk = new BlockId(filename, blknum);
-      int opos = bpos + Integer.BYTES;
-      offset = p.getInt(opos);
-      int vpos = opos + Integer.BYTES;      
-      val = p.getInt(vpos);
+   public SetIntRecord(int op, RecordReader r) {
+      this.op = op;
+      txnum = r.readInt();
+      blk = r.readBlockId();
+      offset = r.readInt();
+      oldval = r.readInt();
+      newval = r.readInt();
    }
 
    public int op() {
-      return SETINT;
+      return op;
    }
 
    public int txNumber() {
       return txnum;
    }
 
+   public BlockId block() {
+      return blk;
+   }
+
    public String toString() {
-      return "<SETINT " + txnum + " " + blk + " " + offset + " " + val + ">";
+      String name = (op == SETINT) ? "<SETINT " : "<UNDO_SETINT ";
+      return name + txnum + " " + blk + " " + offset + " " + oldval + " " + newval + ">";
    }
 
    /**
     * Replace the specified data value with the value saved in the log record.
     * The method pins a buffer to the specified block,
-    * calls setInt to restore the saved value,
+    * calls undoSetInt to restore the saved value,
     * and unpins the buffer.
+    * A compensation record is never undone.
     * @see simpledb.tx.recovery.LogRecord#undo(int)
     */
    public void undo(Transaction tx) {
+      if (op != SETINT)
+         return;
       tx.pin(blk);
-      tx.setInt(blk, offset, val, false); // don't log the undo!
+      tx.undoSetInt(blk, offset, oldval);
       tx.unpin(blk);
    }
 
+   /**
+    * Store the new value saved in the log record in the
+    * buffer, unless the page's LSN shows that it already
+    * holds the change; the page then takes the record's LSN.
+    */
+   public void redo(Buffer buff, int txnum, long lsn) {
+      synchronized (buff) {
+         if (buff.pageLSN() < lsn) {
+            buff.contents().setInt(offset, newval);
+            buff.setModified(txnum, lsn);
+         }
+      }
+   }
+
    /**
     * A static method to write a setInt record to the log.
     * This log record contains the SETINT operator,
-    * followed by the transaction id, the filename, number,
-    * and offset of the modified block, and the previous
-    * integer value at that offset.
+    * followed by the transaction id, the modified block,
+    * the offset within it, and the previous
+    * and new integer values at that offset.
     * @return the LSN of the last log value
     */
-   public static int writeToLog(LogMgr lm, int txnum, BlockId blk, int offset, int val) {
-      int tpos = Integer.BYTES;
-      int fpos = tpos + Integer.BYTES;
-      int bpos = fpos + Page.maxLength(blk.fileName().length());
-      int opos = bpos + Integer.BYTES;
-      int vpos = opos + Integer.BYTES;
-      byte[] rec = new byte[vpos + Integer.BYTES];
-      Page p = new Page(rec);
-      p.setInt(0, SETINT);
-      p.setInt(tpos, txnum);
-      p.setString(fpos, blk.fileName());
-      p.setInt(bpos, blk.number());
-      p.setInt(opos, offset);
-      p.setInt(vpos, val);
+   public static long writeToLog(LogMgr lm, int txnum, BlockId blk, int offset, int oldval, int newval) {
+      return writeToLog(lm, SETINT, txnum, blk, offset, oldval, newval);
+   }
+
+   /**
+    * A static method to write an undo_setInt record to the log.
+    * The record has the same format as a setInt record,
+    * with the UNDO_SETINT operator; the new value is
+    * the one being restored.
+    * @return the LSN of the last log value
+    */
+   public static long writeCompensationToLog(LogMgr lm, int txnum, BlockId blk, int offset, int oldval, int newval) {
+      return writeToLog(lm, UNDO_SETINT, txnum, blk, offset, oldval, newval);
+   }
+
+   private static long writeToLog(LogMgr lm, int op, int txnum, BlockId blk, int offset, int oldval, int newval) {
+      byte[] rec = new RecordWriter(lm).writeInt(op).writeInt(txnum)
+            .writeBlockId(blk).writeInt(offset)
+            .writeInt(oldval).writeInt(newval).toBytes();
       return lm.append(rec);
    }
 }
@@ -1,7 +1,8 @@
 package simpledb.tx.recovery;
 
-import simpledb.file.Page;
-import simpledb.log.LogMgr;
+import simpledb.file.*;
+import simpledb.buffer.Buffer;
+import simpledb.log.*;
 import simpledb.tx.Transaction;
 
 public class StartRecord implements LogRecord {
@@ -9,11 +10,10 @@ public class StartRecord implements LogRecord {
    
    /**
     * Create a log record by reading one other value from the log.
-    * @param bb the bytebuffer containing the log values
+    * @param r the reader positioned after the operator
     */
-   public StartRecord(Page p) {
-      int tpos = Integer.BYTES;
-      txnum = p.getInt(tpos);
+   public StartRecord(RecordReader r) {
+      txnum = r.readInt();
    }
    
    public int op() {
@@ -29,6 +29,16 @@ public class StartRecord implements LogRecord {
     * contains no undo information.
     */
    public void undo(Transaction tx) {}
+
+   public BlockId block() {
+      return null;
+   }
+
+   /**
+    * Does nothing, because a start record
+    * contains no redo information.
+    */
+   public void redo(Buffer buff, int txnum, long lsn) {}
    
    public String toString() {
       return "<START " + txnum + ">";
@@ -40,11 +50,8 @@ public class StartRecord implements LogRecord {
     * followed by the transaction id.
     * @return the LSN of the last log value
     */
-   public static int writeToLog(LogMgr lm, int txnum) {
-      byte[] rec = new byte[2*Integer.BYTES];
-      Page p = new Page(rec);
-      p.setInt(0, START);
-      p.setInt(Integer.BYTES, txnum);
+   public static long writeToLog(LogMgr lm, int txnum) {
+      byte[] rec = new RecordWriter(lm).writeInt(START).writeInt(txnum).toBytes();
       return lm.append(rec);
    }
 }